@@ -0,0 +1,238 @@
+package dev.coms4156.project.config;
+
+import java.util.List;
+import java.util.Locale;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies schema changes that Hibernate's {@code ddl-auto: update} cannot express.
+ * <p>
+ * Runs once at startup, once every singleton has been created, so Hibernate has created or
+ * updated the tables, but before the embedded web server accepts requests and before any
+ * {@link org.springframework.boot.ApplicationRunner} reads the migrated tables. Every
+ * statement is idempotent. A failing migration or trigger stops the application from
+ * starting, as running on a half-migrated schema could lose data; only optional statements,
+ * such as extensions and indexes, are logged and skipped when they fail. Only PostgreSQL is
+ * supported; other databases are skipped.
+ * </p>
+ */
+@Component
+public class DatabaseSchemaInitializer implements SmartInitializingSingleton {
+
+  private static final Logger logger = LoggerFactory.getLogger(DatabaseSchemaInitializer.class);
+
+  /**
+   * Moves extracted text from the legacy {@code documents.extracted_text} column into
+   * {@code document_contents}, then drops the column.
+   */
+  private static final String MIGRATE_EXTRACTED_TEXT = "DO $$ "
+      + "DECLARE doc RECORD; new_content_id BIGINT; "
+      + "BEGIN "
+      + "  IF EXISTS (SELECT 1 FROM information_schema.columns "
+      + "             WHERE table_schema = current_schema() "
+      + "               AND table_name = 'documents' AND column_name = 'extracted_text') THEN "
+      + "    FOR doc IN SELECT id, extracted_text FROM documents "
+      + "               WHERE content_id IS NULL AND extracted_text IS NOT NULL LOOP "
+      + "      INSERT INTO document_contents (extracted_text) VALUES (doc.extracted_text) "
+      + "        RETURNING id INTO new_content_id; "
+      + "      UPDATE documents SET content_id = new_content_id WHERE id = doc.id; "
+      + "    END LOOP; "
+      + "    ALTER TABLE documents DROP COLUMN extracted_text; "
+      + "  END IF; "
+      + "END $$";
+
+  /**
+   * Moves chunk embeddings from the legacy {@code document_chunks.embedding} column into
+   * {@code chunk_embeddings}, one row per normalized chunk text, links the chunks to them and
+   * counts their references, then drops the column. The key is computed as
+   * {@code ChunkEmbeddingStore.contentKey} computes it.
+   */
+  private static final String MIGRATE_CHUNK_EMBEDDINGS = "DO $$ "
+      + "BEGIN "
+      + "  IF EXISTS (SELECT 1 FROM information_schema.columns "
+      + "             WHERE table_schema = current_schema() "
+      + "               AND table_name = 'document_chunks' AND column_name = 'embedding') THEN "
+      + "    CREATE TEMP TABLE chunk_keys ON COMMIT DROP AS "
+      + "      SELECT dc.id, dc.embedding, encode(sha256(convert_to(btrim(regexp_replace("
+      + "          COALESCE(dc.text_content, substring(c.extracted_text "
+      + "            FROM dc.start_position + 1 FOR dc.end_position - dc.start_position)), "
+      + "          '[ \\t\\n\\v\\f\\r]+', ' ', 'g'), ' '), 'UTF8')), 'hex') AS content_hash "
+      + "      FROM document_chunks dc "
+      + "      JOIN documents d ON d.id = dc.document_id "
+      + "      LEFT JOIN document_contents c ON c.id = d.content_id "
+      + "      WHERE dc.embedding IS NOT NULL AND dc.embedding_id IS NULL; "
+      + "    INSERT INTO chunk_embeddings (content_hash, embedding, ref_count, created_at) "
+      + "      SELECT DISTINCT ON (content_hash) content_hash, embedding, 0, now() "
+      + "      FROM chunk_keys WHERE content_hash IS NOT NULL ORDER BY content_hash, id "
+      + "      ON CONFLICT (content_hash) DO NOTHING; "
+      + "    UPDATE document_chunks dc SET embedding_id = ce.id "
+      + "      FROM chunk_keys k JOIN chunk_embeddings ce ON ce.content_hash = k.content_hash "
+      + "      WHERE dc.id = k.id; "
+      + "    UPDATE chunk_embeddings ce SET ref_count = (SELECT count(*) FROM document_chunks dc "
+      + "      WHERE dc.embedding_id = ce.id); "
+      + "    ALTER TABLE document_chunks DROP COLUMN embedding; "
+      + "  END IF; "
+      + "END $$";
+
+  /**
+   * Keeps {@code chunk_embeddings.ref_count} equal to the number of chunks referring to each
+   * embedding, whichever statement inserts, relinks or deletes the chunks, and deletes an
+   * embedding once no chunk refers to it. Linking a chunk to an embedding that no longer exists
+   * fails with a foreign key violation.
+   */
+  private static final String CREATE_EMBEDDING_REFS_FUNCTION =
+      "CREATE OR REPLACE FUNCTION chunk_embedding_refs() RETURNS trigger AS $$ "
+      + "BEGIN "
+      + "  IF TG_OP = 'UPDATE' AND OLD.embedding_id IS NOT DISTINCT FROM NEW.embedding_id THEN "
+      + "    RETURN NULL; "
+      + "  END IF; "
+      + "  IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.embedding_id IS NOT NULL THEN "
+      + "    UPDATE chunk_embeddings SET ref_count = ref_count - 1 WHERE id = OLD.embedding_id; "
+      + "    DELETE FROM chunk_embeddings WHERE id = OLD.embedding_id AND ref_count <= 0; "
+      + "  END IF; "
+      + "  IF TG_OP IN ('UPDATE', 'INSERT') AND NEW.embedding_id IS NOT NULL THEN "
+      + "    UPDATE chunk_embeddings SET ref_count = ref_count + 1 WHERE id = NEW.embedding_id; "
+      + "    IF NOT FOUND THEN "
+      + "      RAISE EXCEPTION USING ERRCODE = 'foreign_key_violation', "
+      + "        MESSAGE = 'chunk embedding ' || NEW.embedding_id || ' does not exist'; "
+      + "    END IF; "
+      + "  END IF; "
+      + "  RETURN NULL; "
+      + "END $$ LANGUAGE plpgsql";
+
+  private static final String CREATE_EMBEDDING_REFS_TRIGGER = "DO $$ "
+      + "BEGIN "
+      + "  IF NOT EXISTS (SELECT 1 FROM pg_trigger "
+      + "                 WHERE tgname = 'document_chunks_embedding_refs' "
+      + "                   AND tgrelid = 'document_chunks'::regclass) THEN "
+      + "    CREATE TRIGGER document_chunks_embedding_refs "
+      + "      AFTER INSERT OR DELETE OR UPDATE OF embedding_id ON document_chunks "
+      + "      FOR EACH ROW EXECUTE FUNCTION chunk_embedding_refs(); "
+      + "  END IF; "
+      + "END $$";
+
+  /**
+   * Drops embeddings that were stored but never linked to a chunk, for example because saving
+   * the chunk failed. Recent ones are kept, as their chunks may still be being saved.
+   */
+  private static final String DELETE_UNREFERENCED_EMBEDDINGS =
+      "DELETE FROM chunk_embeddings "
+      + "WHERE ref_count <= 0 AND created_at < now() - interval '1 hour'";
+
+  /**
+   * Trigram index serving case-insensitive substring search on filenames.
+   */
+  private static final String CREATE_FILENAME_TRGM_INDEX =
+      "CREATE INDEX IF NOT EXISTS idx_documents_filename_trgm "
+      + "ON documents USING gin (filename gin_trgm_ops)";
+
+  /**
+   * Partial index over documents with a summary, in the order the summaries listing reads them.
+   */
+  private static final String CREATE_SUMMARIZED_INDEX =
+      "CREATE INDEX IF NOT EXISTS idx_documents_summarized "
+      + "ON documents (uploaded_at, id) WHERE summary IS NOT NULL AND summary <> ''";
+
+  /**
+   * Lets chunks be stored as offsets only, without their text.
+   */
+  private static final String ALLOW_OFFSET_ONLY_CHUNKS =
+      "ALTER TABLE document_chunks ALTER COLUMN text_content DROP NOT NULL";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Constructs a new {@code DatabaseSchemaInitializer}.
+   *
+   * @param jdbcTemplate the template used to run the schema statements.
+   */
+  public DatabaseSchemaInitializer(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    if (!isPostgres()) {
+      logger.info("Skipping schema initialization for non-PostgreSQL database");
+      return;
+    }
+
+    for (SchemaStatement statement : statements()) {
+      try {
+        jdbcTemplate.execute(statement.sql);
+      } catch (DataAccessException e) {
+        if (!statement.optional) {
+          throw new IllegalStateException(
+              "Required schema statement failed: " + e.getMessage(), e);
+        }
+        logger.warn("Optional schema statement failed, continuing without it: {}",
+            e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Returns the statements to apply, in order.
+   */
+  List<SchemaStatement> statements() {
+    return List.of(
+        SchemaStatement.required(MIGRATE_EXTRACTED_TEXT),
+        SchemaStatement.optional("CREATE EXTENSION IF NOT EXISTS pg_trgm"),
+        SchemaStatement.optional(CREATE_FILENAME_TRGM_INDEX),
+        SchemaStatement.optional(CREATE_SUMMARIZED_INDEX),
+        SchemaStatement.required(ALLOW_OFFSET_ONLY_CHUNKS),
+        SchemaStatement.required(MIGRATE_CHUNK_EMBEDDINGS),
+        // Without the trigger ref counts go stale and shared embeddings could be deleted
+        SchemaStatement.required(CREATE_EMBEDDING_REFS_FUNCTION),
+        SchemaStatement.required(CREATE_EMBEDDING_REFS_TRIGGER),
+        SchemaStatement.optional("CREATE INDEX IF NOT EXISTS idx_document_chunks_embedding_id "
+            + "ON document_chunks (embedding_id)"),
+        SchemaStatement.optional(DELETE_UNREFERENCED_EMBEDDINGS));
+  }
+
+  private boolean isPostgres() {
+    try {
+      String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+          connection.getMetaData().getDatabaseProductName());
+      return product != null && product.toLowerCase(Locale.ROOT).contains("postgres");
+    } catch (DataAccessException e) {
+      logger.warn("Could not determine database type: {}", e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * A schema statement and whether the application may start without it.
+   */
+  static final class SchemaStatement {
+    private final String sql;
+    private final boolean optional;
+
+    private SchemaStatement(String sql, boolean optional) {
+      this.sql = sql;
+      this.optional = optional;
+    }
+
+    static SchemaStatement required(String sql) {
+      return new SchemaStatement(sql, false);
+    }
+
+    static SchemaStatement optional(String sql) {
+      return new SchemaStatement(sql, true);
+    }
+
+    String getSql() {
+      return sql;
+    }
+
+    boolean isOptional() {
+      return optional;
+    }
+  }
+}
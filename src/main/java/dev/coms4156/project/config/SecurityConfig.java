@@ -1,5 +1,6 @@
 package dev.coms4156.project.config;
 
+import jakarta.servlet.DispatcherType;
 import java.util.Arrays;
 import java.util.List;
 import org.springframework.context.annotation.Bean;
@@ -61,6 +62,8 @@ public class SecurityConfig {
             .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html").permitAll()
             // Allow public access to health check endpoints (if any)
             .requestMatchers("/actuator/health").permitAll()
+            // Streamed responses complete on an async dispatch of an already authorized request
+            .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
             // Require authentication for all other endpoints
             .anyRequest().authenticated())
         .exceptionHandling(exceptions -> exceptions
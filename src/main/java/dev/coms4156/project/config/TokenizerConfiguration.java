@@ -0,0 +1,48 @@
+package dev.coms4156.project.config;
+
+import dev.coms4156.project.service.ApproximateTokenCounter;
+import dev.coms4156.project.service.BpeTokenizer;
+import dev.coms4156.project.service.TokenCounter;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the token counter shared by chunking, RAG context packing and
+ * summarization.
+ */
+@Configuration
+public class TokenizerConfiguration {
+
+  private static final Logger logger = LoggerFactory.getLogger(TokenizerConfiguration.class);
+
+  /**
+   * Creates the token counter: a {@link BpeTokenizer} over the vocabulary file at
+   * {@code app.tokenizer.vocabulary-path}, such as llama3.2's {@code tokenizer.model}, or an
+   * {@link ApproximateTokenCounter} if none is configured.
+   *
+   * @param vocabularyPath the tiktoken vocabulary file, or empty to estimate counts.
+   * @return TokenCounter instance
+   * @throws IllegalStateException if a configured vocabulary cannot be loaded.
+   */
+  @Bean
+  public TokenCounter tokenCounter(
+      @Value("${app.tokenizer.vocabulary-path:}") String vocabularyPath) {
+    if (vocabularyPath == null || vocabularyPath.isBlank()) {
+      logger.info("No tokenizer vocabulary configured; token counts are estimated");
+      return new ApproximateTokenCounter();
+    }
+    Path path = Path.of(vocabularyPath.trim());
+    try {
+      BpeTokenizer tokenizer = BpeTokenizer.load(path);
+      logger.info("Loaded {} tokens from {}", tokenizer.getVocabularySize(), path);
+      return tokenizer;
+    } catch (IOException | IllegalArgumentException e) {
+      throw new IllegalStateException("Cannot load tokenizer vocabulary " + path, e);
+    }
+  }
+}
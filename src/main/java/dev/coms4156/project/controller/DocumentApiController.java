@@ -1,8 +1,9 @@
 package dev.coms4156.project.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.coms4156.project.dtos.DocumentChunkDto;
 import dev.coms4156.project.dtos.DocumentDto;
-import dev.coms4156.project.dtos.DocumentListResponse;
+import dev.coms4156.project.dtos.DocumentPageResponse;
 import dev.coms4156.project.dtos.DocumentRelationshipDto;
 import dev.coms4156.project.dtos.DocumentRelationshipInfoResponse;
 import dev.coms4156.project.dtos.DocumentSearchResponse;
@@ -14,16 +15,20 @@ import dev.coms4156.project.dtos.ErrorResponse;
 import dev.coms4156.project.model.Document;
 import dev.coms4156.project.model.DocumentChunk;
 import dev.coms4156.project.service.ApiLoggingService;
+import dev.coms4156.project.service.DocumentBusyException;
 import dev.coms4156.project.service.DocumentService;
 import dev.coms4156.project.service.DocumentSummarizationService;
+import dev.coms4156.project.service.IngestionAdmissionService;
+import dev.coms4156.project.service.IngestionRejectedException;
 import dev.coms4156.project.service.RagService;
+import dev.coms4156.project.service.SummarizationQueue;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +36,8 @@ import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -42,6 +49,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST controller for document management and RAG operations.
@@ -52,9 +60,14 @@ public class DocumentApiController {
 
   private static final Logger logger = LoggerFactory.getLogger(DocumentApiController.class);
 
+  private static final String NDJSON = "application/x-ndjson";
+
   private final DocumentService documentService;
   private final DocumentSummarizationService summarizationService;
   private final RagService ragService;
+  private final SummarizationQueue summarizationQueue;
+  private final ObjectMapper objectMapper;
+  private final IngestionAdmissionService admissionService;
 
   @Autowired
   private ApiLoggingService apiLoggingService;
@@ -65,18 +78,36 @@ public class DocumentApiController {
    * @param documentService      The document service
    * @param summarizationService The summarization service
    * @param ragService           The RAG service
+   * @param summarizationQueue   The background summarization queue
+   * @param objectMapper         The mapper used to write streamed exports
+   * @param admissionService     The admission control limiting concurrent uploads
    */
   public DocumentApiController(DocumentService documentService,
                                DocumentSummarizationService summarizationService,
-                               RagService ragService) {
+                               RagService ragService,
+                               SummarizationQueue summarizationQueue,
+                               ObjectMapper objectMapper,
+                               IngestionAdmissionService admissionService) {
     this.documentService = documentService;
     this.summarizationService = summarizationService;
     this.ragService = ragService;
+    this.summarizationQueue = summarizationQueue;
+    this.objectMapper = objectMapper;
+    this.admissionService = admissionService;
   }
 
   /**
    * POST /api/v1/documents.
    * Upload a document for processing -- extract text, chunking and embedded.
+   *
+   * @param file        The uploaded file
+   * @param onDuplicate     For bytes that were already processed, {@code existing} returns
+   *                        that document and {@code clone} creates one sharing its chunks
+   * @param onNearDuplicate For text nearly matching a processed document, {@code process}
+   *                        processes it anyway, {@code link} stores it sharing that
+   *                        document's chunks and {@code skip} returns that document
+   * @param request         The HTTP request
+   * @return ResponseEntity describing the stored document
    */
   @PostMapping(value = "/documents", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
   @ApiResponses({
@@ -84,10 +115,16 @@ public class DocumentApiController {
           content = @Content(schema = @Schema(implementation = DocumentUploadResponse.class))),
       @ApiResponse(responseCode = "400",
           content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+      @ApiResponse(responseCode = "429",
+          content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
       @ApiResponse(responseCode = "500",
           content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
   })
   public ResponseEntity<?> uploadDocument(@RequestParam("file") MultipartFile file,
+                                          @RequestParam(defaultValue = "existing")
+                                          String onDuplicate,
+                                          @RequestParam(defaultValue = "process")
+                                          String onNearDuplicate,
                                           HttpServletRequest request) {
     String requestId = apiLoggingService.generateRequestId();
     String clientId = apiLoggingService.getClientId(
@@ -98,7 +135,14 @@ public class DocumentApiController {
       logger.info("Received file upload: {} from client: {} (requestId: {})",
           file.getOriginalFilename(), clientId, requestId);
 
-      Document document = documentService.processDocument(file);
+      DocumentService.DuplicatePolicy duplicatePolicy =
+          DocumentService.DuplicatePolicy.fromParameter(onDuplicate);
+      DocumentService.NearDuplicatePolicy nearDuplicatePolicy =
+          DocumentService.NearDuplicatePolicy.fromParameter(onNearDuplicate);
+      Document document;
+      try (IngestionAdmissionService.Permit permit = admissionService.admit(file.getSize())) {
+        document = documentService.processDocument(file, duplicatePolicy, nearDuplicatePolicy);
+      }
 
       // Skip RAG vector store ingestion - use existing document_chunks table instead
       // The document_chunks table already contains the embeddings for RAG operations
@@ -107,13 +151,18 @@ public class DocumentApiController {
           document.getId(),
           document.getFilename(),
           document.getProcessingStatus(),
-          "Document uploaded and processed successfully");
+          "Document uploaded and processed successfully",
+          document.getNearDuplicateOf() == null ? null : document.getNearDuplicateOf().getId());
 
       logger.info("Successfully processed document: {} for client: {}",
           document.getFilename(), clientId);
 
       return ResponseEntity.ok(response);
 
+    } catch (IngestionRejectedException e) {
+      logger.warn("Upload from client: {} rejected - {}", clientId, e.getMessage());
+      return tooManyRequests(e);
+
     } catch (IllegalArgumentException e) {
       logger.error("Invalid file upload from client: {} - {}", clientId, e.getMessage());
       ErrorResponse error = new ErrorResponse(e.getMessage());
@@ -135,6 +184,77 @@ public class DocumentApiController {
     }
   }
 
+  /**
+   * POST /api/v1/documents/{id}/versions.
+   * Replace a document's content with a new version, re-embedding only the chunks that changed.
+   *
+   * @param id   The document ID
+   * @param file The new version of the document
+   * @return ResponseEntity describing the revised document
+   */
+  @PostMapping(value = "/documents/{id}/versions",
+      consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  @ApiResponses({
+      @ApiResponse(responseCode = "200",
+          content = @Content(schema = @Schema(implementation = DocumentUploadResponse.class))),
+      @ApiResponse(responseCode = "400",
+          content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+      @ApiResponse(responseCode = "404",
+          content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+      @ApiResponse(responseCode = "409",
+          content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+      @ApiResponse(responseCode = "429",
+          content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+      @ApiResponse(responseCode = "500",
+          content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+  })
+  public ResponseEntity<?> uploadDocumentVersion(@PathVariable Long id,
+                                                 @RequestParam("file") MultipartFile file) {
+    if (documentService.getDocumentById(id).isEmpty()) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND)
+          .body(new ErrorResponse("Document not found"));
+    }
+
+    try (IngestionAdmissionService.Permit permit = admissionService.admit(file.getSize())) {
+      Document document = documentService.processNewVersion(id, file);
+
+      return ResponseEntity.ok(new DocumentUploadResponse(
+          document.getId(),
+          document.getFilename(),
+          document.getProcessingStatus(),
+          "New version of document " + id + " processed successfully",
+          null));
+
+    } catch (IngestionRejectedException e) {
+      logger.warn("New version of document {} rejected - {}", id, e.getMessage());
+      return tooManyRequests(e);
+
+    } catch (IllegalArgumentException e) {
+      logger.error("Invalid new version of document {} - {}", id, e.getMessage());
+      return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+
+    } catch (DocumentBusyException e) {
+      logger.warn("Cannot revise document {} - {}", id, e.getMessage());
+      return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse(e.getMessage()));
+
+    } catch (IOException e) {
+      logger.error("File upload error for document {} - {}", id, e.getMessage());
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(new ErrorResponse("File upload failed"));
+
+    } catch (Exception e) {
+      logger.error("Error processing new version of document {}: {}", id, e.getMessage(), e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(new ErrorResponse("Document processing failed"));
+    }
+  }
+
+  private static ResponseEntity<ErrorResponse> tooManyRequests(IngestionRejectedException e) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+        .body(new ErrorResponse(e.getMessage()));
+  }
+
   /**
    * GET /api/v1/documents/{id}.
    * Retrieve document metadata, summaries, and processing status.
@@ -153,6 +273,7 @@ public class DocumentApiController {
 
       if (document.isPresent()) {
         Document doc = document.get();
+        summarizationQueue.recordAccess(id);
 
         DocumentDto response = DocumentDto.fromDocument(doc);
 
@@ -222,6 +343,7 @@ public class DocumentApiController {
   })
   public ResponseEntity<?> getDocumentSummary(@PathVariable Long id) {
     try {
+      summarizationQueue.recordAccess(id);
       String summary = summarizationService.getDocumentSummary(id);
 
       if (summary != null) {
@@ -290,40 +412,37 @@ public class DocumentApiController {
 
   /**
    * GET /api/v1/documents.
-   * Retrieve documents.
+   * Retrieve one page of documents, newest first by default.
    *
-   * @param filename Optional filename to match on.
-   * @return ResponseEntity containing list of all documents
+   * @param filename  Optional case-insensitive substring to match on.
+   * @param cursor    Optional cursor from the previous page's {@code nextCursor}.
+   * @param limit     Optional maximum number of documents to return; by default the largest
+   *                  page {@code app.document.list.max-page-size} allows.
+   * @param direction Upload time order, {@code asc} or {@code desc}.
+   * @return ResponseEntity containing the page of documents
    */
   @GetMapping("/documents")
   @ApiResponses({
       @ApiResponse(responseCode = "200",
-          content = @Content(schema = @Schema(implementation = DocumentListResponse.class))),
+          content = @Content(schema = @Schema(implementation = DocumentPageResponse.class))),
+      @ApiResponse(responseCode = "400",
+          content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
       @ApiResponse(responseCode = "500",
           content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
   })
   public ResponseEntity<?> getAllDocuments(
-      @RequestParam(required = false) String filename) {
+      @RequestParam(required = false) String filename,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Integer limit,
+      @RequestParam(defaultValue = "desc") String direction) {
 
     try {
-      List<Document> documents;
-      if (filename == null || filename.isBlank()) {
-        documents = documentService.getAllDocuments();
-      } else {
-        documents = documentService.getDocumentsByFilename(filename);
-      }
-
-      List<DocumentDto> docsDto = documents.stream()
-          .map(DocumentDto::fromDocument)
-          .toList();
-
-      DocumentListResponse response = new DocumentListResponse(
-          docsDto,
-          (long) documents.size(),
-          "Documents retrieved successfully");
-
+      DocumentPageResponse response = documentService.listDocumentPage(
+          filename, cursor, limit, Sort.Direction.fromString(direction));
       return ResponseEntity.ok(response);
 
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
     } catch (Exception e) {
       logger.error("Error retrieving documents: {}", e.getMessage(), e);
       ErrorResponse error = new ErrorResponse("Failed to retrieve documents");
@@ -359,35 +478,72 @@ public class DocumentApiController {
 
   /**
    * GET /api/v1/documents/summaries.
-   * Get docs with summaries.
+   * Retrieve one page of documents that have a summary, newest first by default.
+   *
+   * @param cursor    Optional cursor from the previous page's {@code nextCursor}.
+   * @param limit     Maximum number of documents to return.
+   * @param direction Upload time order, {@code asc} or {@code desc}.
+   * @return ResponseEntity containing the page of documents
    */
   @GetMapping("/documents/summaries")
   @ApiResponses({
       @ApiResponse(responseCode = "200",
-          content = @Content(schema = @Schema(implementation = DocumentListResponse.class))),
+          content = @Content(schema = @Schema(implementation = DocumentPageResponse.class))),
+      @ApiResponse(responseCode = "400",
+          content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
   })
-  public ResponseEntity<?> getDocumentsWithSummaries() {
-    List<Document> all = documentService.getAllDocuments();
-    List<Document> documents = new ArrayList<>();
-
-    for (Document d : all) {
-      String s = d.getSummary();
-      if (s != null && !s.isBlank()) {
-        documents.add(d);
-      }
+  public ResponseEntity<?> getDocumentsWithSummaries(
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "50") int limit,
+      @RequestParam(defaultValue = "desc") String direction) {
+
+    try {
+      DocumentPageResponse response = documentService.listSummarizedPage(
+          cursor, limit, Sort.Direction.fromString(direction));
+      return ResponseEntity.ok(response);
+
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
     }
+  }
 
-    DocumentListResponse response = new DocumentListResponse(
-        documents.stream().map(DocumentDto::fromDocument).toList(),
-        (long) documents.size(),
-        "Documents with summaries retrieved successfully");
+  /**
+   * GET /api/v1/documents/summaries/export.
+   * Stream every document that has a summary as newline-delimited JSON, oldest first.
+   *
+   * @return ResponseEntity streaming one JSON document per line
+   */
+  @GetMapping(value = "/documents/summaries/export", produces = NDJSON)
+  @ApiResponses({
+      @ApiResponse(responseCode = "200",
+          content = @Content(mediaType = NDJSON,
+              schema = @Schema(implementation = DocumentDto.class)))
+  })
+  public ResponseEntity<StreamingResponseBody> exportDocumentsWithSummaries() {
+    StreamingResponseBody body = out -> {
+      try {
+        long count = documentService.forEachSummarized(document -> {
+          try {
+            out.write(objectMapper.writeValueAsBytes(document));
+            out.write('\n');
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+        logger.info("Exported {} documents with summaries", count);
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    };
 
-    return ResponseEntity.ok(response);
+    return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
   }
 
   /**
    * GET /api/v1/documents/stats.
-   * Get docs with their statistics.
+   * Get document counts per processing status, served from in-memory counters, together with
+   * the utilization and timeout counts of the text extraction parser pool and the chunks the
+   * quality filter skipped or down-weighted.
    */
   @GetMapping("/documents/stats")
   @ApiResponses({
@@ -395,41 +551,20 @@ public class DocumentApiController {
           content = @Content(schema = @Schema(implementation = DocumentStatsResponse.class)))
   })
   public ResponseEntity<?> getProcessingStatistics() {
-    List<Document> allDocuments = documentService.getAllDocuments();
-    final long total = allDocuments.size();
-
-    long uploaded = 0;
-    long textExtracted = 0;
-    long chunked = 0;
-    long embeddingsGenerated = 0;
-    long summarized = 0;
-    long completed = 0;
-    long failed = 0;
-
-    for (Document doc : allDocuments) {
-      Document.ProcessingStatus status = doc.getProcessingStatus();
-      if (status == Document.ProcessingStatus.UPLOADED) {
-        uploaded++;
-      } else if (status == Document.ProcessingStatus.TEXT_EXTRACTED) {
-        textExtracted++;
-      } else if (status == Document.ProcessingStatus.CHUNKED) {
-        chunked++;
-      } else if (status == Document.ProcessingStatus.EMBEDDINGS_GENERATED) {
-        embeddingsGenerated++;
-      } else if (status == Document.ProcessingStatus.SUMMARIZED) {
-        summarized++;
-      } else if (status == Document.ProcessingStatus.COMPLETED) {
-        completed++;
-      } else if (status == Document.ProcessingStatus.FAILED) {
-        failed++;
-      }
+    Map<Document.ProcessingStatus, Long> counts = documentService.getStatusCounts();
+    long total = 0;
+    for (long count : counts.values()) {
+      total += count;
     }
+
+    long completed = counts.getOrDefault(Document.ProcessingStatus.COMPLETED, 0L);
+    long failed = counts.getOrDefault(Document.ProcessingStatus.FAILED, 0L);
     DocumentStatusCounts statusCounts = new DocumentStatusCounts(
-        uploaded,
-        textExtracted,
-        chunked,
-        embeddingsGenerated,
-        summarized,
+        counts.getOrDefault(Document.ProcessingStatus.UPLOADED, 0L),
+        counts.getOrDefault(Document.ProcessingStatus.TEXT_EXTRACTED, 0L),
+        counts.getOrDefault(Document.ProcessingStatus.CHUNKED, 0L),
+        counts.getOrDefault(Document.ProcessingStatus.EMBEDDINGS_GENERATED, 0L),
+        counts.getOrDefault(Document.ProcessingStatus.SUMMARIZED, 0L),
         completed,
         failed);
 
@@ -448,7 +583,9 @@ public class DocumentApiController {
         total,
         statusCounts,
         completionRate,
-        failureRate);
+        failureRate,
+        documentService.getExtractionStats(),
+        documentService.getChunkFilterStats());
 
     return ResponseEntity.ok(response);
   }
@@ -0,0 +1,28 @@
+package dev.coms4156.project.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * DTO describing the chunk quality filter: how many chunks it scored and what it did with the
+ * low-value ones. Counters are cumulative since the application started.
+ */
+@Data
+@AllArgsConstructor
+@Builder
+public class ChunkFilterStats {
+
+  private String mode;
+
+  private Double minScore;
+
+  private Long scored;
+
+  private Long skipped;
+
+  private Long downWeighted;
+
+  private Long embeddingCallsSaved;
+
+}
@@ -6,16 +6,20 @@ import lombok.Builder;
 import lombok.Data;
 
 /**
- * Response DTO for listing documents.
- * Contains a list of documents and metadata about the response.
+ * Response DTO for one page of a keyset-paginated document listing.
+ * Pass {@code nextCursor} back as the {@code cursor} parameter to fetch the following page.
  */
 @Data
 @AllArgsConstructor
 @Builder
-public class DocumentListResponse {
+public class DocumentPageResponse {
   private List<DocumentDto> documents;
 
   private Long count;
 
+  private String nextCursor;
+
+  private boolean hasMore;
+
   private String message;
 }
@@ -6,7 +6,8 @@ import lombok.Data;
 
 /**
  * Response DTO for document statistics.
- * Contains overall statistics about documents in the system.
+ * Contains overall statistics about documents in the system, the text extraction pool and the
+ * chunk quality filter.
  */
 @Data
 @AllArgsConstructor
@@ -19,4 +20,8 @@ public class DocumentStatsResponse {
   private Double completionRate;
 
   private Double failureRate;
+
+  private ExtractionStats extraction;
+
+  private ChunkFilterStats chunkFilter;
 }
\ No newline at end of file
@@ -20,4 +20,9 @@ public class DocumentUploadResponse {
   private ProcessingStatus processingStatus;
 
   private String message;
+
+  /**
+   * The ID of the processed document whose text the uploaded text nearly matches, if any.
+   */
+  private Long nearDuplicateOf;
 }
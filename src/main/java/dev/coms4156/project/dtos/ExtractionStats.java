@@ -0,0 +1,35 @@
+package dev.coms4156.project.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * DTO describing the Tika parser pool: how busy it is and how parses have ended.
+ * Counters are cumulative since the application started; {@code failed} includes the parses
+ * that timed out. {@code stuckParses} counts timed-out parses still holding a thread.
+ */
+@Data
+@AllArgsConstructor
+@Builder
+public class ExtractionStats {
+
+  private String mode;
+
+  private Integer poolSize;
+
+  private Integer activeParses;
+
+  private Integer queuedParses;
+
+  private Double utilization;
+
+  private Long completed;
+
+  private Long failed;
+
+  private Long timedOut;
+
+  private Integer stuckParses;
+
+}
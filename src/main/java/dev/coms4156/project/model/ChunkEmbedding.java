@@ -0,0 +1,63 @@
+package dev.coms4156.project.model;
+
+import io.hypersistence.utils.hibernate.type.json.JsonType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.Type;
+import org.hibernate.type.SqlTypes;
+
+/**
+ * Entity holding one embedding shared by every chunk with the same normalized text.
+ * <p>
+ * Boilerplate such as footers and disclaimers repeats across many documents; its chunks all
+ * point at one row through {@link DocumentChunk#getEmbeddingId()}, so it is embedded and stored
+ * once. {@link #refCount} is kept up to date by a database trigger on {@code document_chunks},
+ * which deletes the row once no chunk refers to it.
+ * </p>
+ */
+@Entity
+@Table(name = "chunk_embeddings", indexes = {
+    @Index(name = "idx_chunk_embeddings_content_hash", columnList = "content_hash", unique = true)
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChunkEmbedding {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  /**
+   * Hex SHA-256 of the chunk text with its whitespace runs collapsed.
+   */
+  @Column(name = "content_hash", length = 64, nullable = false)
+  private String contentHash;
+
+  @JdbcTypeCode(SqlTypes.VECTOR)
+  @Column(name = "embedding", columnDefinition = "vector(3072)")
+  @Type(JsonType.class)
+  private float[] embedding;
+
+  /**
+   * The number of chunks referring to this embedding.
+   */
+  @Column(name = "ref_count", nullable = false)
+  private int refCount;
+
+  @CreationTimestamp
+  @Column(name = "created_at")
+  private LocalDateTime createdAt;
+}
@@ -6,11 +6,16 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
 import jakarta.persistence.Lob;
+import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -19,6 +24,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -26,7 +32,10 @@ import org.hibernate.annotations.UpdateTimestamp;
  * Entity representing a document with extracted text and processing status.
  */
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = {
+    @Index(name = "idx_documents_uploaded_at_id", columnList = "uploaded_at, id"),
+    @Index(name = "idx_documents_content_hash", columnList = "content_hash", unique = true)
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -45,16 +54,51 @@ public class Document {
   @Column(name = "file_size")
   private Long fileSize;
 
-  @Lob
-  @Column(name = "extracted_text", columnDefinition = "TEXT")
+  /**
+   * Hex SHA-256 of the uploaded bytes. Set only on documents whose content was processed, so
+   * an identical upload can reuse that work; cleared if processing fails.
+   */
+  @Column(name = "content_hash", length = 64)
+  @JsonIgnore
+  private String contentHash;
+
+  /**
+   * The document whose chunks this one shares, if it was cloned from an identical upload.
+   */
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "duplicate_of_id")
   @JsonIgnore
-  private String extractedText;
+  @ToString.Exclude
+  private Document duplicateOf;
+
+  /**
+   * The processed document whose text this one's was found to nearly match when it was
+   * uploaded, if any.
+   */
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "near_duplicate_of_id")
+  @JsonIgnore
+  @ToString.Exclude
+  private Document nearDuplicateOf;
+
+  @OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+  @JoinColumn(name = "content_id")
+  @JsonIgnore
+  @ToString.Exclude
+  private DocumentContent content;
 
   @Lob
   @Column(name = "summary", columnDefinition = "TEXT")
   @JsonIgnore
   private String summary;
 
+  /**
+   * Version number of the content, starting at 1 and incremented by each new version upload.
+   */
+  @Column(name = "revision", columnDefinition = "integer default 1")
+  @Builder.Default
+  private Integer revision = 1;
+
   @Enumerated(EnumType.STRING)
   @Column(name = "processing_status", nullable = false)
   @Builder.Default
@@ -71,6 +115,52 @@ public class Document {
   @OneToMany(mappedBy = "document", cascade = CascadeType.ALL, orphanRemoval = true)
   private List<DocumentChunk> chunks = new ArrayList<>();
 
+  /**
+   * Returns the full extracted text of the document.
+   * <p>
+   * The text is stored in a lazily loaded {@link DocumentContent}; on a document read from the
+   * database this must be called inside a session, or the document must have been loaded with
+   * {@code DocumentRepository.findWithContentById}.
+   * </p>
+   *
+   * @return the extracted text, or {@code null} if none has been stored.
+   */
+  @JsonIgnore
+  public String getExtractedText() {
+    return content == null ? null : content.getExtractedText();
+  }
+
+  /**
+   * Sets the full extracted text of the document.
+   *
+   * @param extractedText the extracted text.
+   */
+  public void setExtractedText(String extractedText) {
+    if (content == null) {
+      if (extractedText == null) {
+        return;
+      }
+      content = new DocumentContent();
+    }
+    content.setExtractedText(extractedText);
+  }
+
+  /**
+   * Builder accepting the extracted text directly.
+   */
+  public static class DocumentBuilder {
+    /**
+     * Sets the full extracted text of the document being built.
+     *
+     * @param extractedText the extracted text.
+     * @return this builder.
+     */
+    public DocumentBuilder extractedText(String extractedText) {
+      return content(extractedText == null ? null
+          : DocumentContent.builder().extractedText(extractedText).build());
+    }
+  }
+
   /**
    * Enum representing the processing status of a document.
    */
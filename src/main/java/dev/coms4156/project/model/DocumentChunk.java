@@ -1,7 +1,6 @@
 package dev.coms4156.project.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import io.hypersistence.utils.hibernate.type.json.JsonType;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -12,7 +11,11 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import java.time.LocalDateTime;
 import java.util.List;
 import lombok.AllArgsConstructor;
@@ -21,13 +24,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.ColumnTransformer;
 import org.hibernate.annotations.CreationTimestamp;
-import org.hibernate.annotations.JdbcTypeCode;
-import org.hibernate.annotations.Type;
 import org.hibernate.annotations.UpdateTimestamp;
-import org.hibernate.type.SqlTypes;
 
 /**
- * Entity representing a chunk of text from a document with embedding vector.
+ * Entity representing a chunk of text from a document and its shared embedding vector.
  */
 @Entity
 @Table(name = "document_chunks")
@@ -52,9 +52,36 @@ public class DocumentChunk {
   @Column(name = "document_id", insertable = false, updatable = false)
   private Long documentId;
 
-  @Column(name = "text_content", columnDefinition = "TEXT", nullable = false)
+  /**
+   * The chunk text. It is set when a chunk is created and when a chunk whose text is stored
+   * is loaded; for a chunk stored as offsets only, {@code ChunkTextResolver} fills it in from
+   * its document's text.
+   */
+  @Transient
   private String textContent;
 
+  /**
+   * The stored copy of {@link #textContent}, or {@code null} if only the chunk's offsets into
+   * its document's text are stored.
+   */
+  @Column(name = "text_content", columnDefinition = "TEXT")
+  @JsonIgnore
+  private String storedText;
+
+  /**
+   * Whether the chunk is stored without its text ({@code app.document.chunks.store-text:
+   * false}); its text is then rebuilt from {@link #startPosition} and {@link #endPosition}.
+   */
+  @Transient
+  @JsonIgnore
+  private boolean offsetsOnly;
+
+  /**
+   * Hex SHA-256 of {@link #textContent}, used to match chunks across document versions.
+   */
+  @Column(name = "content_hash", length = 64)
+  private String contentHash;
+
   @Column(name = "chunk_size")
   private Integer chunkSize;
 
@@ -64,12 +91,29 @@ public class DocumentChunk {
   @Column(name = "end_position")
   private Integer endPosition;
 
-  @JdbcTypeCode(SqlTypes.VECTOR)
-  @Column(name = "embedding", columnDefinition = "vector(3072)")
-  @Type(JsonType.class)
+  /**
+   * The ID of the {@link ChunkEmbedding} this chunk shares with every chunk of the same
+   * normalized text, or {@code null} while the chunk has no embedding.
+   */
+  @Column(name = "embedding_id")
+  @JsonIgnore
+  private Long embeddingId;
+
+  /**
+   * The embedding of the chunk. It is set when the chunk is embedded; for a loaded chunk,
+   * {@code ChunkEmbeddingStore} fills it in from {@link #embeddingId}.
+   */
+  @Transient
   @JsonIgnore
   private float[] embedding;
 
+  /**
+   * The factor below 1 that search divides the distance of this low-value chunk by, or
+   * {@code null} for a chunk searched at full weight; see {@code ChunkQualityFilter}.
+   */
+  @Column(name = "search_weight")
+  private Float searchWeight;
+
   @ColumnTransformer(write = "?::jsonb")
   @Column(name = "metadata", columnDefinition = "JSONB")
   private String metadata;
@@ -89,4 +133,16 @@ public class DocumentChunk {
   @OneToMany(mappedBy = "targetChunk", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
   @JsonIgnore
   private List<DocumentRelationship> targetRelationships;
+
+  @PrePersist
+  @PreUpdate
+  void storeText() {
+    storedText = offsetsOnly ? null : textContent;
+  }
+
+  @PostLoad
+  void loadText() {
+    offsetsOnly = storedText == null;
+    textContent = storedText;
+  }
 }
@@ -0,0 +1,36 @@
+package dev.coms4156.project.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity holding the full extracted text of a document.
+ * <p>
+ * Kept apart from {@link Document} and loaded lazily, so queries over document metadata never
+ * read the text column.
+ * </p>
+ */
+@Entity
+@Table(name = "document_contents")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DocumentContent {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Lob
+  @Column(name = "extracted_text", columnDefinition = "TEXT")
+  private String extractedText;
+}
@@ -0,0 +1,47 @@
+package dev.coms4156.project.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.UpdateTimestamp;
+
+/**
+ * Entity holding the MinHash signature of a document's extracted text, from which the
+ * in-memory near-duplicate index is rebuilt at startup.
+ */
+@Entity
+@Table(name = "document_signatures")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DocumentSignature {
+  @Id
+  @Column(name = "document_id")
+  private Long documentId;
+
+  /**
+   * The number of words per shingle the signature was computed with; signatures computed with
+   * another shingle size are not comparable and are ignored.
+   */
+  @Column(name = "shingle_size", nullable = false)
+  private int shingleSize;
+
+  /**
+   * The minimum hash of every hash function, as big-endian 32-bit integers.
+   */
+  @Column(name = "min_hashes", nullable = false)
+  @ToString.Exclude
+  private byte[] minHashes;
+
+  @UpdateTimestamp
+  @Column(name = "updated_at")
+  private LocalDateTime updatedAt;
+}
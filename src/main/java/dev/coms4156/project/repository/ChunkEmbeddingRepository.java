@@ -0,0 +1,56 @@
+package dev.coms4156.project.repository;
+
+import dev.coms4156.project.model.ChunkEmbedding;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository interface for ChunkEmbedding entities.
+ */
+@Repository
+public interface ChunkEmbeddingRepository extends JpaRepository<ChunkEmbedding, Long> {
+
+  Optional<ChunkEmbedding> findByContentHash(String contentHash);
+
+  /**
+   * Stores an embedding under a content hash, unless one is already stored under it.
+   *
+   * @param contentHash the hash of the normalized chunk text
+   * @param embedding   the embedding in vector format
+   * @return the ID of the stored embedding, which may be one stored before
+   */
+  @Transactional
+  @Query(value = "INSERT INTO chunk_embeddings (content_hash, embedding, ref_count, created_at) "
+      + "VALUES (:contentHash, CAST(:embedding AS vector), 0, now()) "
+      + "ON CONFLICT (content_hash) DO UPDATE SET content_hash = EXCLUDED.content_hash "
+      + "RETURNING id", nativeQuery = true)
+  Long insertIfAbsent(@Param("contentHash") String contentHash,
+                      @Param("embedding") String embedding);
+
+  /**
+   * Identity and content hash of a stored embedding, without its vector.
+   */
+  interface ContentHashRow {
+    Long getId();
+
+    String getContentHash();
+  }
+
+  /**
+   * Returns the content hashes of the embeddings after an ID, in ID order.
+   *
+   * @param afterId  the ID to continue after, 0 for the first page
+   * @param pageable the page size
+   * @return the next content hashes
+   */
+  @Query("SELECT ce.id AS id, ce.contentHash AS contentHash FROM ChunkEmbedding ce "
+      + "WHERE ce.id > :afterId ORDER BY ce.id")
+  List<ContentHashRow> findContentHashesAfter(@Param("afterId") Long afterId,
+      Pageable pageable);
+}
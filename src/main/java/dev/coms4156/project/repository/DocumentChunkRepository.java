@@ -2,12 +2,14 @@ package dev.coms4156.project.repository;
 
 import dev.coms4156.project.model.Document;
 import dev.coms4156.project.model.DocumentChunk;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Repository interface for DocumentChunk entities.
@@ -25,32 +27,48 @@ public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, Lo
       + "ORDER BY dc.chunkIndex")
   List<DocumentChunk> findByDocumentOrderByChunkIndex(@Param("document") Document document);
 
-  @Query(value = "SELECT * FROM document_chunks WHERE embedding IS NOT NULL", nativeQuery = true)
+  @Query(value = "SELECT * FROM document_chunks WHERE embedding_id IS NOT NULL", nativeQuery = true)
   List<DocumentChunk> findChunksWithEmbeddings();
 
   @Query(value = "SELECT * FROM document_chunks WHERE document_id = :documentId "
-      + "AND embedding IS NOT NULL", nativeQuery = true)
+      + "AND embedding_id IS NOT NULL", nativeQuery = true)
   List<DocumentChunk> findChunksWithEmbeddingsByDocumentId(@Param("documentId") Long documentId);
 
   @Query(value = "SELECT * FROM document_chunks WHERE document_id = :documentId "
-      + "AND embedding IS NULL", nativeQuery = true)
+      + "AND embedding_id IS NULL", nativeQuery = true)
   List<DocumentChunk> findByDocumentIdAndEmbeddingIsNull(@Param("documentId") Long documentId);
 
-  @Query(value = "SELECT * FROM document_chunks WHERE embedding IS NOT NULL", nativeQuery = true)
+  @Query(value = "SELECT * FROM document_chunks WHERE embedding_id IS NOT NULL", nativeQuery = true)
   List<DocumentChunk> findByEmbeddingIsNotNull();
 
-  @Query(value = "SELECT COUNT(*) FROM document_chunks WHERE embedding IS NOT NULL",
+  /**
+   * Returns the embedded chunks of a document that are not the source of any relationship.
+   *
+   * @param documentId the document ID
+   * @return the chunks still to be related
+   */
+  @Query(value = "SELECT * FROM document_chunks dc WHERE dc.document_id = :documentId "
+      + "AND dc.embedding_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM document_relationships r "
+      + "WHERE r.source_chunk_id = dc.id) ORDER BY dc.chunk_index", nativeQuery = true)
+  List<DocumentChunk> findUnrelatedChunksByDocumentId(@Param("documentId") Long documentId);
+
+  @Query(value = "SELECT COUNT(*) FROM document_chunks WHERE embedding_id IS NOT NULL",
       nativeQuery = true)
   Long countByEmbeddingIsNotNull();
 
-  @Query(value = "SELECT * FROM document_chunks WHERE embedding IS NOT NULL "
-      + "ORDER BY embedding <-> CAST(:queryEmbedding AS vector) LIMIT :limit", nativeQuery = true)
+  @Query(value = "SELECT dc.* FROM document_chunks dc "
+      + "JOIN chunk_embeddings ce ON ce.id = dc.embedding_id "
+      + "ORDER BY (ce.embedding <-> CAST(:queryEmbedding AS vector)) "
+      + "/ COALESCE(dc.search_weight, 1) LIMIT :limit",
+      nativeQuery = true)
   List<DocumentChunk> findSimilarChunks(@Param("queryEmbedding") String queryEmbedding,
                                         @Param("limit") int limit);
 
-  @Query(value = "SELECT * FROM document_chunks WHERE document_id != :documentId "
-      + "AND embedding IS NOT NULL "
-      + "ORDER BY embedding <-> CAST(:embedding AS vector) LIMIT :limit", nativeQuery = true)
+  @Query(value = "SELECT dc.* FROM document_chunks dc "
+      + "JOIN chunk_embeddings ce ON ce.id = dc.embedding_id "
+      + "WHERE dc.document_id != :documentId "
+      + "ORDER BY (ce.embedding <-> CAST(:embedding AS vector)) "
+      + "/ COALESCE(dc.search_weight, 1) LIMIT :limit", nativeQuery = true)
   List<DocumentChunk> findRelatedChunks(@Param("documentId") Long documentId,
                                         @Param("embedding") String embedding,
                                        @Param("limit") int limit);
@@ -71,15 +89,141 @@ public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, Lo
   @Query(value = "DELETE FROM document_chunks WHERE document_id = :documentId", nativeQuery = true)
   int deleteByDocumentIdNative(@Param("documentId") Long documentId);
 
+  /**
+   * Counts the chunks of a document that have an embedding, for example before they are
+   * deleted.
+   *
+   * @param documentId the document ID
+   * @return the number of its chunks with an embedding
+   */
+  @Query(value = "SELECT COUNT(*) FROM document_chunks WHERE document_id = :documentId "
+      + "AND embedding_id IS NOT NULL", nativeQuery = true)
+  long countEmbeddedByDocumentId(@Param("documentId") Long documentId);
+
+  /**
+   * Counts the given chunks that have an embedding, for example before they are deleted.
+   *
+   * @param ids the chunk IDs
+   * @return the number of them with an embedding
+   */
+  @Query(value = "SELECT COUNT(*) FROM document_chunks WHERE id IN (:ids) "
+      + "AND embedding_id IS NOT NULL", nativeQuery = true)
+  long countEmbeddedByIds(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Deletes the chunks of a document that have no embedding using native SQL.
+   *
+   * @param documentId the document ID
+   * @return the number of chunks deleted
+   */
+  @Transactional
+  @Modifying
+  @Query(value = "DELETE FROM document_chunks WHERE document_id = :documentId "
+      + "AND embedding_id IS NULL", nativeQuery = true)
+  int deleteUnembeddedByDocumentIdNative(@Param("documentId") Long documentId);
+
+  /**
+   * Identity, position and content of a stored chunk, without its embedding. The text is only
+   * present for chunks that store it.
+   */
+  interface ChunkFingerprint {
+    Long getId();
+
+    Integer getChunkIndex();
+
+    Integer getStartPosition();
+
+    Integer getEndPosition();
+
+    String getContentHash();
+
+    String getTextContent();
+  }
+
+  /**
+   * Returns the fingerprints of a document's chunks in chunk order.
+   *
+   * @param documentId the document ID
+   * @return the fingerprints of its chunks
+   */
+  @Query("SELECT dc.id AS id, dc.chunkIndex AS chunkIndex, dc.startPosition AS startPosition, "
+      + "dc.endPosition AS endPosition, dc.contentHash AS contentHash, "
+      + "dc.storedText AS textContent "
+      + "FROM DocumentChunk dc WHERE dc.document.id = :documentId ORDER BY dc.chunkIndex")
+  List<ChunkFingerprint> findFingerprintsByDocumentId(@Param("documentId") Long documentId);
+
+  /**
+   * Moves a chunk to a new place in its document's text without touching its embedding.
+   *
+   * @param id            the chunk ID
+   * @param chunkIndex    the new chunk index
+   * @param startPosition the new start offset
+   * @param endPosition   the new end offset
+   * @param contentHash   the content hash of the chunk
+   * @return the number of chunks updated
+   */
+  @Modifying
+  @Query("UPDATE DocumentChunk dc SET dc.chunkIndex = :chunkIndex, "
+      + "dc.startPosition = :startPosition, dc.endPosition = :endPosition, "
+      + "dc.contentHash = :contentHash WHERE dc.id = :id")
+  int updatePosition(@Param("id") Long id, @Param("chunkIndex") Integer chunkIndex,
+      @Param("startPosition") Integer startPosition, @Param("endPosition") Integer endPosition,
+      @Param("contentHash") String contentHash);
+
+  /**
+   * Stores the text of a chunk, or clears it so the chunk is resolved from its offsets again.
+   *
+   * @param id         the chunk ID
+   * @param storedText the text to store, or {@code null} to store offsets only
+   * @return the number of chunks updated
+   */
+  @Modifying
+  @Query("UPDATE DocumentChunk dc SET dc.storedText = :storedText WHERE dc.id = :id")
+  int updateStoredText(@Param("id") Long id, @Param("storedText") String storedText);
+
+  /**
+   * Returns the IDs of a document's retired chunks: those of its previous version that a new
+   * version dropped, kept at a negative chunk index until the new chunks are embedded.
+   *
+   * @param documentId the document ID
+   * @return the IDs of its retired chunks
+   */
+  @Query("SELECT dc.id FROM DocumentChunk dc WHERE dc.document.id = :documentId "
+      + "AND dc.chunkIndex < 0")
+  List<Long> findRetiredIdsByDocumentId(@Param("documentId") Long documentId);
+
+  /**
+   * Deletes the given chunks using native SQL.
+   *
+   * @param ids the chunk IDs
+   * @return the number of chunks deleted
+   */
+  @Modifying
+  @Query(value = "DELETE FROM document_chunks WHERE id IN (:ids)", nativeQuery = true)
+  int deleteByIdsNative(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Moves all chunks of one document to another using native SQL.
+   *
+   * @param fromId the ID of the document that currently owns the chunks
+   * @param toId   the ID of the document that should own them
+   * @return the number of chunks moved
+   */
+  @Modifying
+  @Query(value = "UPDATE document_chunks SET document_id = :toId WHERE document_id = :fromId",
+      nativeQuery = true)
+  int reassignDocumentNative(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+  @Transactional
   @Modifying
   @Query(value = "INSERT INTO document_chunks (chunk_index, chunk_size, document_id, "
-      + "embedding, end_position, start_position, text_content) VALUES "
-      + "(:chunkIndex, :chunkSize, :documentId, CAST(:embedding AS vector), "
+      + "embedding_id, end_position, start_position, text_content) VALUES "
+      + "(:chunkIndex, :chunkSize, :documentId, :embeddingId, "
       + ":endPosition, :startPosition, :textContent)", nativeQuery = true)
   void insertChunkWithEmbedding(@Param("chunkIndex") Integer chunkIndex,
                                 @Param("chunkSize") Integer chunkSize,
                                 @Param("documentId") Long documentId,
-                                @Param("embedding") String embedding,
+                                @Param("embeddingId") Long embeddingId,
                                 @Param("endPosition") Integer endPosition,
                                 @Param("startPosition") Integer startPosition,
                                 @Param("textContent") String textContent);
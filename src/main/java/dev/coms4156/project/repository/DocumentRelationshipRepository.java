@@ -1,6 +1,7 @@
 package dev.coms4156.project.repository;
 
 import dev.coms4156.project.model.DocumentRelationship;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -48,4 +49,16 @@ public interface DocumentRelationshipRepository extends JpaRepository<DocumentRe
       "OR target_chunk_id IN (SELECT id FROM document_chunks WHERE document_id = :documentId)",
       nativeQuery = true)
   int deleteByDocumentIdNative(@Param("documentId") Long documentId);
+
+  /**
+   * Deletes all relationships from or to the given chunks using native SQL.
+   *
+   * @param chunkIds the chunk IDs
+   * @return the number of relationships deleted
+   */
+  @Modifying
+  @Query(value = "DELETE FROM document_relationships "
+      + "WHERE source_chunk_id IN (:chunkIds) OR target_chunk_id IN (:chunkIds)",
+      nativeQuery = true)
+  int deleteByChunkIdsNative(@Param("chunkIds") Collection<Long> chunkIds);
 }
@@ -1,11 +1,19 @@
 package dev.coms4156.project.repository;
 
+import dev.coms4156.project.dtos.DocumentDto;
 import dev.coms4156.project.model.Document;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Repository interface for Document entities.
@@ -13,16 +21,187 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
 
-  List<Document> findByProcessingStatus(Document.ProcessingStatus status);
+  /**
+   * Selects only the listing columns of a document; the extracted text is never read.
+   */
+  String DTO_PROJECTION = "SELECT new dev.coms4156.project.dtos.DocumentDto(d.id, d.filename, "
+      + "d.contentType, d.fileSize, d.processingStatus, d.summary, d.uploadedAt, d.updatedAt) "
+      + "FROM Document d";
 
-  List<Document> findByContentType(String contentType);
+  /**
+   * Matches documents whose summary is present and not blank.
+   */
+  String HAS_SUMMARY = "d.summary IS NOT NULL AND d.summary <> '' AND TRIM(d.summary) <> ''";
+
+  @EntityGraph(attributePaths = "content")
+  Optional<Document> findWithContentById(Long id);
+
+  /**
+   * Returns only the extracted text of a document.
+   *
+   * @param id the document ID
+   * @return the extracted text, or empty if the document or its text does not exist
+   */
+  @Query("SELECT c.extractedText FROM Document d JOIN d.content c WHERE d.id = :id")
+  Optional<String> findExtractedTextById(@Param("id") Long id);
+
+  // Keyset pages ordered by (uploadedAt, id), served by idx_documents_uploaded_at_id
+
+  @Query(DTO_PROJECTION + " WHERE (d.uploadedAt, d.id) > (:uploadedAt, :id)"
+      + " ORDER BY d.uploadedAt ASC, d.id ASC")
+  List<DocumentDto> findPageAfter(@Param("uploadedAt") LocalDateTime uploadedAt,
+      @Param("id") Long id, Pageable pageable);
+
+  @Query(DTO_PROJECTION + " WHERE (d.uploadedAt, d.id) < (:uploadedAt, :id)"
+      + " ORDER BY d.uploadedAt DESC, d.id DESC")
+  List<DocumentDto> findPageBefore(@Param("uploadedAt") LocalDateTime uploadedAt,
+      @Param("id") Long id, Pageable pageable);
+
+  // Substring filename search, served by the pg_trgm index idx_documents_filename_trgm
+
+  @Query(DTO_PROJECTION + " WHERE d.filename ILIKE :pattern ESCAPE '\\'"
+      + " AND (d.uploadedAt, d.id) > (:uploadedAt, :id)"
+      + " ORDER BY d.uploadedAt ASC, d.id ASC")
+  List<DocumentDto> findPageByFilenameAfter(@Param("pattern") String pattern,
+      @Param("uploadedAt") LocalDateTime uploadedAt, @Param("id") Long id, Pageable pageable);
+
+  @Query(DTO_PROJECTION + " WHERE d.filename ILIKE :pattern ESCAPE '\\'"
+      + " AND (d.uploadedAt, d.id) < (:uploadedAt, :id)"
+      + " ORDER BY d.uploadedAt DESC, d.id DESC")
+  List<DocumentDto> findPageByFilenameBefore(@Param("pattern") String pattern,
+      @Param("uploadedAt") LocalDateTime uploadedAt, @Param("id") Long id, Pageable pageable);
+
+  // Documents with a non-blank summary, served by the partial index idx_documents_summarized.
+  // The redundant "summary <> ''" lets the planner match the index predicate.
+
+  @Query(DTO_PROJECTION + " WHERE " + HAS_SUMMARY
+      + " AND (d.uploadedAt, d.id) > (:uploadedAt, :id)"
+      + " ORDER BY d.uploadedAt ASC, d.id ASC")
+  List<DocumentDto> findSummarizedPageAfter(@Param("uploadedAt") LocalDateTime uploadedAt,
+      @Param("id") Long id, Pageable pageable);
+
+  @Query(DTO_PROJECTION + " WHERE " + HAS_SUMMARY
+      + " AND (d.uploadedAt, d.id) < (:uploadedAt, :id)"
+      + " ORDER BY d.uploadedAt DESC, d.id DESC")
+  List<DocumentDto> findSummarizedPageBefore(@Param("uploadedAt") LocalDateTime uploadedAt,
+      @Param("id") Long id, Pageable pageable);
 
-  @Query("SELECT d FROM Document d WHERE d.filename LIKE %:filename%")
-  List<Document> findByFilenameContaining(@Param("filename") String filename);
+  Optional<Document> findByContentHash(String contentHash);
 
-  @Query("SELECT d FROM Document d WHERE d.summary IS NOT NULL")
-  List<Document> findDocumentsWithSummaries();
+  List<Document> findByDuplicateOfIdOrderByIdAsc(Long duplicateOfId);
+
+  /**
+   * Returns the ID of the document whose chunks belong to the given document: the original
+   * for a clone, and the document itself otherwise.
+   *
+   * @param id the document ID.
+   * @return the ID owning the chunks, or empty if the document does not exist.
+   */
+  @Query("SELECT COALESCE(o.id, d.id) FROM Document d LEFT JOIN d.duplicateOf o "
+      + "WHERE d.id = :id")
+  Optional<Long> findChunkOwnerId(@Param("id") Long id);
+
+  /**
+   * Copies a summary to every clone of a document.
+   *
+   * @param id      the ID of the original document.
+   * @param summary the summary to copy.
+   * @return the number of clones updated.
+   */
+  @Transactional
+  @Modifying
+  @Query("UPDATE Document d SET d.summary = :summary WHERE d.duplicateOf.id = :id")
+  int updateSummaryOfDuplicates(@Param("id") Long id, @Param("summary") String summary);
+
+  /**
+   * Stores the summary and status of a document, unless it was revised or moved to another
+   * status since it was loaded. Only these two columns are written, so changes made to the
+   * document in the meantime are kept.
+   *
+   * @param id       the ID of the document.
+   * @param revision the revision the summary was made from.
+   * @param expected the statuses the document may still be in.
+   * @param summary  the summary to store.
+   * @param status   the new status.
+   * @return 1 if the document was updated, 0 if it no longer matched.
+   */
+  @Transactional
+  @Modifying
+  @Query("UPDATE Document d SET d.summary = :summary, d.processingStatus = :status "
+      + "WHERE d.id = :id AND COALESCE(d.revision, 1) = :revision "
+      + "AND d.processingStatus IN :expected")
+  int updateSummaryIfCurrent(@Param("id") Long id, @Param("revision") int revision,
+      @Param("expected") Collection<Document.ProcessingStatus> expected,
+      @Param("summary") String summary, @Param("status") Document.ProcessingStatus status);
+
+  /**
+   * Moves a document to a new status, unless it was revised or moved to another status since
+   * it was loaded.
+   *
+   * @param id       the ID of the document.
+   * @param revision the revision it was loaded with.
+   * @param expected the statuses it may still be in.
+   * @param status   the new status.
+   * @return 1 if the document was updated, 0 if it no longer matched.
+   */
+  @Transactional
+  @Modifying
+  @Query("UPDATE Document d SET d.processingStatus = :status "
+      + "WHERE d.id = :id AND COALESCE(d.revision, 1) = :revision "
+      + "AND d.processingStatus IN :expected")
+  int updateStatusIfCurrent(@Param("id") Long id, @Param("revision") int revision,
+      @Param("expected") Collection<Document.ProcessingStatus> expected,
+      @Param("status") Document.ProcessingStatus status);
+
+  /**
+   * Points the clones of one document at another.
+   *
+   * @param fromId the ID of the document the clones currently share.
+   * @param toId   the ID of the document they should share instead.
+   * @return the number of clones updated.
+   */
+  @Modifying
+  @Query(value = "UPDATE documents SET duplicate_of_id = :toId "
+      + "WHERE duplicate_of_id = :fromId AND id <> :toId", nativeQuery = true)
+  int reassignDuplicatesNative(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+  /**
+   * Removes the near-duplicate link of every document found to nearly match a document.
+   *
+   * @param id the ID of the document.
+   * @return the number of documents updated.
+   */
+  @Modifying
+  @Query(value = "UPDATE documents SET near_duplicate_of_id = NULL "
+      + "WHERE near_duplicate_of_id = :id", nativeQuery = true)
+  int clearNearDuplicateOfNative(@Param("id") Long id);
+
+  List<Document> findByProcessingStatus(Document.ProcessingStatus status);
+
+  /**
+   * Returns the IDs of documents in the given statuses that have not been updated since the
+   * cutoff, oldest first.
+   *
+   * @param statuses the statuses to look for.
+   * @param cutoff   documents updated after this time are skipped.
+   * @return the matching document IDs.
+   */
+  @Query("SELECT d.id FROM Document d WHERE d.processingStatus IN :statuses "
+      + "AND (d.updatedAt IS NULL OR d.updatedAt < :cutoff) ORDER BY d.id")
+  List<Long> findIdsByStatusNotUpdatedSince(
+      @Param("statuses") Collection<Document.ProcessingStatus> statuses,
+      @Param("cutoff") LocalDateTime cutoff);
+
+  List<Document> findByContentType(String contentType);
 
   @Query("SELECT COUNT(d) FROM Document d WHERE d.processingStatus = :status")
   Long countByProcessingStatus(@Param("status") Document.ProcessingStatus status);
+
+  /**
+   * Counts documents per processing status in a single aggregate query.
+   *
+   * @return one {@code [ProcessingStatus, Long]} row per status that has documents.
+   */
+  @Query("SELECT d.processingStatus, COUNT(d) FROM Document d GROUP BY d.processingStatus")
+  List<Object[]> countGroupedByProcessingStatus();
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package dev.coms4156.project.repository;
+
+import dev.coms4156.project.model.DocumentSignature;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository interface for DocumentSignature entities.
+ */
+@Repository
+public interface DocumentSignatureRepository extends JpaRepository<DocumentSignature, Long> {
+
+  /**
+   * Returns the signatures of the documents after an ID, in ID order.
+   *
+   * @param afterId  the document ID to continue after, 0 for the first page
+   * @param pageable the page size
+   * @return the next signatures
+   */
+  @Query("SELECT s FROM DocumentSignature s WHERE s.documentId > :afterId "
+      + "ORDER BY s.documentId")
+  List<DocumentSignature> findPageAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+  /**
+   * Deletes the signature of a document, if it has one.
+   *
+   * @param documentId the document ID
+   * @return the number of signatures deleted
+   */
+  @Transactional
+  @Modifying
+  @Query(value = "DELETE FROM document_signatures WHERE document_id = :documentId",
+      nativeQuery = true)
+  int deleteByDocumentIdNative(@Param("documentId") Long documentId);
+
+  /**
+   * Moves a signature to another document, which must not have one.
+   *
+   * @param fromId the document the signature belongs to
+   * @param toId   the document it should belong to instead
+   * @return the number of signatures moved
+   */
+  @Transactional
+  @Modifying
+  @Query(value = "UPDATE document_signatures SET document_id = :toId "
+      + "WHERE document_id = :fromId", nativeQuery = true)
+  int reassignNative(@Param("fromId") Long fromId, @Param("toId") Long toId);
+}
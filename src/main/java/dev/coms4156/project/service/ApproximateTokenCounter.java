@@ -0,0 +1,61 @@
+package dev.coms4156.project.service;
+
+/**
+ * Estimates token counts from the shape of the text, the way BPE vocabularies such as
+ * llama3.2's tend to split it: a common short word is one token, longer words take about one
+ * token per four letters, numbers one per three digits, and every ideograph and symbol one
+ * each. It never looks anything up, so it costs one pass over the characters. It is used
+ * when no vocabulary for {@link BpeTokenizer} is configured.
+ */
+public class ApproximateTokenCounter implements TokenCounter {
+
+  private static final int SHORT_WORD = 6;
+
+  @Override
+  public int countTokens(CharSequence text, int start, int end) {
+    int tokens = 0;
+    int i = start;
+    while (i < end) {
+      char c = text.charAt(i);
+      int runStart = i;
+      if (Character.isLetter(c) && !isIdeograph(c)) {
+        while (i < end && Character.isLetter(text.charAt(i)) && !isIdeograph(text.charAt(i))) {
+          i++;
+        }
+        int letters = i - runStart;
+        tokens += letters <= SHORT_WORD ? 1 : (letters + 3) / 4;
+      } else if (Character.isDigit(c)) {
+        while (i < end && Character.isDigit(text.charAt(i))) {
+          i++;
+        }
+        tokens += (i - runStart + 2) / 3;
+      } else if (c == '\n') {
+        while (i < end && text.charAt(i) == '\n') {
+          i++;
+        }
+        tokens++;
+      } else if (Character.isWhitespace(c)) {
+        // Spaces are merged into the token that follows them
+        i++;
+      } else {
+        tokens++;
+        i++;
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * Returns whether a character is written without spaces between words, such as CJK, where
+   * vocabularies hold about one token per character.
+   */
+  private static boolean isIdeograph(char c) {
+    if (c < '\u3040') {
+      return false;
+    }
+    Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+    return Character.isIdeographic(c) || block == Character.UnicodeBlock.HIRAGANA
+        || block == Character.UnicodeBlock.KATAKANA
+        || block == Character.UnicodeBlock.HANGUL_SYLLABLES;
+  }
+}
@@ -0,0 +1,92 @@
+package dev.coms4156.project.service;
+
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over hex SHA-256 content hashes.
+ * <p>
+ * The hashes are already uniformly distributed, so the bit positions are derived from their
+ * first 128 bits by double hashing instead of hashing them again. A filter never forgets a
+ * hash, so removed content only raises the false positive rate.
+ * </p>
+ */
+final class BloomFilter {
+
+  private final AtomicLongArray words;
+  private final long bitCount;
+  private final int hashCount;
+
+  /**
+   * Creates a filter sized for a number of hashes and a false positive rate.
+   *
+   * @param expectedHashes    the number of hashes the filter is sized for.
+   * @param falsePositiveRate the share of absent hashes reported as present once it holds
+   *                          that many, between 0 and 1.
+   */
+  BloomFilter(long expectedHashes, double falsePositiveRate) {
+    if (expectedHashes < 1) {
+      throw new IllegalArgumentException("The expected number of hashes must be at least 1");
+    }
+    if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+      throw new IllegalArgumentException("The false positive rate must be between 0 and 1");
+    }
+    double ln2 = Math.log(2);
+    long bits = (long) Math.ceil(-expectedHashes * Math.log(falsePositiveRate) / (ln2 * ln2));
+    int words = (int) Math.min(Integer.MAX_VALUE - 8, (Math.max(64, bits) + 63) / 64);
+    this.words = new AtomicLongArray(words);
+    this.bitCount = 64L * words;
+    this.hashCount = (int) Math.max(1, Math.round((double) bitCount / expectedHashes * ln2));
+  }
+
+  /**
+   * Records a hash.
+   *
+   * @param hash a hex SHA-256 hash.
+   */
+  void add(String hash) {
+    long first = HexFormat.fromHexDigitsToLong(hash, 0, 16);
+    long second = HexFormat.fromHexDigitsToLong(hash, 16, 32);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.floorMod(first + i * second, bitCount);
+      long mask = 1L << bit;
+      words.getAndAccumulate((int) (bit >>> 6), mask, (word, set) -> word | set);
+    }
+  }
+
+  /**
+   * Returns whether a hash may have been recorded.
+   *
+   * @param hash a hex SHA-256 hash.
+   * @return {@code false} only if the hash was never recorded.
+   */
+  boolean mightContain(String hash) {
+    long first = HexFormat.fromHexDigitsToLong(hash, 0, 16);
+    long second = HexFormat.fromHexDigitsToLong(hash, 16, 32);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.floorMod(first + i * second, bitCount);
+      if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of bits of the filter.
+   *
+   * @return the size in bits.
+   */
+  long getBitCount() {
+    return bitCount;
+  }
+
+  /**
+   * Returns the number of bits set per hash.
+   *
+   * @return the number of hash functions.
+   */
+  int getHashCount() {
+    return hashCount;
+  }
+}
@@ -0,0 +1,550 @@
+package dev.coms4156.project.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Byte-level BPE tokenizer for tiktoken vocabularies such as llama3.2's
+ * {@code tokenizer.model}, run in-process so token counts cost no model call.
+ * <p>
+ * Text is split into pieces by the llama3 pre-tokenization rules, each piece is encoded as
+ * UTF-8, and adjacent parts of a piece are merged lowest rank first until no merge is left,
+ * exactly as tiktoken does. The pre-tokenizer is a hand-written scanner rather than the
+ * pattern it implements, the vocabulary is an open-addressing table over one byte array, and
+ * the merge state lives in per-thread scratch arrays, so counting tokens allocates nothing
+ * once a thread's buffers have grown to its longest piece. Special tokens are not recognized
+ * in the text. Instances are immutable and thread-safe.
+ * </p>
+ */
+public final class BpeTokenizer implements TokenCounter {
+
+  private static final int NONE = -1;
+
+  /**
+   * All token bytes, token {@code r} spanning {@code offsets[r]} to {@code offsets[r + 1]}.
+   */
+  private final byte[] pool;
+  private final int[] offsets;
+
+  /**
+   * Open-addressing hash table of rank + 1 by token bytes, 0 for an empty slot.
+   */
+  private final int[] table;
+  private final int mask;
+
+  private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+  private BpeTokenizer(List<byte[]> tokens) {
+    int size = 0;
+    for (byte[] token : tokens) {
+      if (token.length == 0) {
+        throw new IllegalArgumentException("Vocabulary contains an empty token");
+      }
+      size += token.length;
+    }
+    pool = new byte[size];
+    offsets = new int[tokens.size() + 1];
+    for (int rank = 0; rank < tokens.size(); rank++) {
+      byte[] token = tokens.get(rank);
+      System.arraycopy(token, 0, pool, offsets[rank], token.length);
+      offsets[rank + 1] = offsets[rank] + token.length;
+    }
+
+    table = new int[Integer.highestOneBit(Math.max(2, tokens.size()) * 2) * 2];
+    mask = table.length - 1;
+    for (int rank = 0; rank < tokens.size(); rank++) {
+      if (rank(pool, offsets[rank], offsets[rank + 1]) != NONE) {
+        throw new IllegalArgumentException("Vocabulary contains token " + rank + " twice");
+      }
+      int slot = hash(pool, offsets[rank], offsets[rank + 1]) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = rank + 1;
+    }
+
+    byte[] single = new byte[1];
+    for (int b = 0; b < 256; b++) {
+      single[0] = (byte) b;
+      if (rank(single, 0, 1) == NONE) {
+        throw new IllegalArgumentException("Vocabulary has no token for byte " + b);
+      }
+    }
+  }
+
+  /**
+   * Creates a tokenizer from its tokens in rank order.
+   *
+   * @param tokens the bytes of every token, the token with rank {@code r} at index {@code r}.
+   * @return the tokenizer.
+   * @throws IllegalArgumentException if a token is empty or repeated, or a byte has no token.
+   */
+  public static BpeTokenizer fromTokens(List<byte[]> tokens) {
+    return new BpeTokenizer(tokens);
+  }
+
+  /**
+   * Loads a tiktoken vocabulary file, one base64-encoded token and its rank per line, such as
+   * the {@code tokenizer.model} distributed with llama3.2.
+   *
+   * @param path the vocabulary file.
+   * @return the tokenizer.
+   * @throws IOException              if the file cannot be read.
+   * @throws IllegalArgumentException if the file is not a complete vocabulary.
+   */
+  public static BpeTokenizer load(Path path) throws IOException {
+    List<byte[]> tokens = new ArrayList<>();
+    Base64.Decoder decoder = Base64.getDecoder();
+    try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.US_ASCII)) {
+      String line;
+      int number = 0;
+      while ((line = reader.readLine()) != null) {
+        number++;
+        line = line.trim();
+        if (line.isEmpty()) {
+          continue;
+        }
+        int separator = line.indexOf(' ');
+        if (separator < 0) {
+          throw new IllegalArgumentException("Line " + number + " of " + path
+              + " is not a token and a rank");
+        }
+        int rank;
+        try {
+          rank = Integer.parseInt(line.substring(separator + 1).trim());
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Line " + number + " of " + path
+              + " has no valid rank", e);
+        }
+        while (tokens.size() <= rank) {
+          tokens.add(null);
+        }
+        if (tokens.get(rank) != null) {
+          throw new IllegalArgumentException("Rank " + rank + " appears twice in " + path);
+        }
+        tokens.set(rank, decoder.decode(line.substring(0, separator)));
+      }
+    }
+    int missing = tokens.indexOf(null);
+    if (missing >= 0) {
+      throw new IllegalArgumentException("Rank " + missing + " is missing from " + path);
+    }
+    return new BpeTokenizer(tokens);
+  }
+
+  /**
+   * Returns the number of tokens in the vocabulary.
+   *
+   * @return the vocabulary size.
+   */
+  public int getVocabularySize() {
+    return offsets.length - 1;
+  }
+
+  @Override
+  public int countTokens(CharSequence text, int start, int end) {
+    Scratch s = scratch.get();
+    int tokens = 0;
+    for (int i = start; i < end; ) {
+      int pieceEnd = nextPiece(text, i, end);
+      tokens += mergePiece(s, text, i, pieceEnd);
+      i = pieceEnd;
+    }
+    return tokens;
+  }
+
+  /**
+   * Returns the longest prefix of whole pieces, such as a word with the space before it, that
+   * fits the budget.
+   */
+  @Override
+  public int fittingPrefix(CharSequence text, int maxTokens) {
+    Scratch s = scratch.get();
+    int tokens = 0;
+    for (int i = 0; i < text.length(); ) {
+      int pieceEnd = nextPiece(text, i, text.length());
+      tokens += mergePiece(s, text, i, pieceEnd);
+      if (tokens > maxTokens) {
+        return i;
+      }
+      i = pieceEnd;
+    }
+    return text.length();
+  }
+
+  /**
+   * Encodes a text into token ranks.
+   *
+   * @param text the text.
+   * @return the ranks of its tokens, in order.
+   */
+  public int[] encode(CharSequence text) {
+    Scratch s = scratch.get();
+    int[] tokens = new int[Math.max(16, text.length() / 3)];
+    int count = 0;
+    for (int i = 0; i < text.length(); ) {
+      int pieceEnd = nextPiece(text, i, text.length());
+      int parts = mergePiece(s, text, i, pieceEnd);
+      if (count + parts > tokens.length) {
+        tokens = Arrays.copyOf(tokens, Math.max(count + parts, 2 * tokens.length));
+      }
+      if (s.whole != NONE) {
+        tokens[count++] = s.whole;
+      } else {
+        for (int part = 0; part != s.length; part = s.next[part]) {
+          tokens[count++] = rank(s.bytes, part, s.next[part]);
+        }
+      }
+      i = pieceEnd;
+    }
+    return Arrays.copyOf(tokens, count);
+  }
+
+  /**
+   * Decodes token ranks back into text.
+   *
+   * @param tokens the ranks.
+   * @return the text; bytes that are not valid UTF-8 become replacement characters.
+   * @throws IllegalArgumentException if a rank is not in the vocabulary.
+   */
+  public String decode(int[] tokens) {
+    int size = 0;
+    for (int token : tokens) {
+      if (token < 0 || token >= getVocabularySize()) {
+        throw new IllegalArgumentException("Unknown token " + token);
+      }
+      size += offsets[token + 1] - offsets[token];
+    }
+    byte[] bytes = new byte[size];
+    int length = 0;
+    for (int token : tokens) {
+      int tokenLength = offsets[token + 1] - offsets[token];
+      System.arraycopy(pool, offsets[token], bytes, length, tokenLength);
+      length += tokenLength;
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the bytes of a token.
+   */
+  byte[] tokenBytes(int token) {
+    return Arrays.copyOfRange(pool, offsets[token], offsets[token + 1]);
+  }
+
+  /**
+   * Encodes a piece into the scratch bytes and merges it.
+   *
+   * @return the number of tokens of the piece; {@code s.whole} is its rank if the whole piece
+   *         is one token, and {@code s.next} links the start of every token otherwise.
+   */
+  private int mergePiece(Scratch s, CharSequence text, int start, int end) {
+    int n = s.utf8(text, start, end);
+    s.whole = rank(s.bytes, 0, n);
+    if (s.whole != NONE) {
+      return 1;
+    }
+
+    // Parts start at every byte; next links them, with n as the end sentinel
+    int[] next = s.next;
+    int[] prev = s.prev;
+    int[] ranks = s.ranks;
+    s.heapSize = 0;
+    for (int i = 0; i <= n; i++) {
+      next[i] = i + 1;
+      prev[i] = i - 1;
+    }
+    for (int i = 0; i + 2 <= n; i++) {
+      ranks[i] = rank(s.bytes, i, i + 2);
+      if (ranks[i] != NONE) {
+        s.push(ranks[i], i);
+      }
+    }
+    ranks[n - 1] = NONE;
+
+    int parts = n;
+    while (s.heapSize > 0) {
+      long top = s.pop();
+      int rank = (int) (top >>> 32);
+      int i = (int) top;
+      // Entries of parts merged away or whose pair changed since are stale
+      if (next[i] == NONE || ranks[i] != rank) {
+        continue;
+      }
+      int removed = next[i];
+      next[i] = next[removed];
+      prev[next[i]] = i;
+      next[removed] = NONE;
+      ranks[removed] = NONE;
+      parts--;
+
+      ranks[i] = pairRank(s, i);
+      if (ranks[i] != NONE) {
+        s.push(ranks[i], i);
+      }
+      int before = prev[i];
+      if (before >= 0) {
+        ranks[before] = pairRank(s, before);
+        if (ranks[before] != NONE) {
+          s.push(ranks[before], before);
+        }
+      }
+    }
+    return parts;
+  }
+
+  /**
+   * Returns the rank of the part starting at {@code i} merged with the part after it.
+   */
+  private int pairRank(Scratch s, int i) {
+    int second = s.next[i];
+    if (second >= s.length) {
+      return NONE;
+    }
+    return rank(s.bytes, i, s.next[second]);
+  }
+
+  private int rank(byte[] bytes, int from, int to) {
+    int slot = hash(bytes, from, to) & mask;
+    while (table[slot] != 0) {
+      int rank = table[slot] - 1;
+      if (Arrays.equals(pool, offsets[rank], offsets[rank + 1], bytes, from, to)) {
+        return rank;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return NONE;
+  }
+
+  private static int hash(byte[] bytes, int from, int to) {
+    int h = 0x811c9dc5;
+    for (int i = from; i < to; i++) {
+      h = (h ^ (bytes[i] & 0xff)) * 0x01000193;
+    }
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Returns the end of the piece starting at {@code i}, as the llama3 pre-tokenization pattern
+   * {@code (?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\r\n\p{L}\p{N}]?\p{L}+|\p{N}{1,3}|
+   * ?[^\s\p{L}\p{N}]+[\r\n]*|\s*[\r\n]+|\s+(?!\S)|\s+} would match it.
+   */
+  static int nextPiece(CharSequence text, int i, int end) {
+    int c = Character.codePointAt(text, i);
+    int afterC = i + Character.charCount(c);
+
+    if (c == '\'' && afterC < end) {
+      int contraction = contractionEnd(text, afterC, end);
+      if (contraction > 0) {
+        return contraction;
+      }
+    }
+
+    if (isLetter(c)) {
+      return letters(text, afterC, end);
+    }
+    if (c != '\r' && c != '\n' && !isNumber(c) && afterC < end
+        && isLetter(Character.codePointAt(text, afterC))) {
+      return letters(text, afterC, end);
+    }
+
+    if (isNumber(c)) {
+      int j = afterC;
+      for (int digits = 1; digits < 3 && j < end; digits++) {
+        int d = Character.codePointAt(text, j);
+        if (!isNumber(d)) {
+          break;
+        }
+        j += Character.charCount(d);
+      }
+      return j;
+    }
+
+    int symbols = c == ' ' && afterC < end ? afterC : i;
+    if (symbols < end && isSymbol(Character.codePointAt(text, symbols))) {
+      int j = symbols;
+      while (j < end && isSymbol(Character.codePointAt(text, j))) {
+        j += Character.charCount(Character.codePointAt(text, j));
+      }
+      while (j < end && (text.charAt(j) == '\r' || text.charAt(j) == '\n')) {
+        j++;
+      }
+      return j;
+    }
+
+    // Whitespace: through its last line break, else all of it but the last character before
+    // a non-space, else all of it
+    int j = i;
+    int lastBreak = -1;
+    while (j < end) {
+      int w = Character.codePointAt(text, j);
+      if (!isSpace(w)) {
+        break;
+      }
+      if (w == '\r' || w == '\n') {
+        lastBreak = j;
+      }
+      j += Character.charCount(w);
+    }
+    if (lastBreak >= 0) {
+      return lastBreak + 1;
+    }
+    if (j < end && j - i > 1) {
+      return j - 1;
+    }
+    return j;
+  }
+
+  private static int contractionEnd(CharSequence text, int i, int end) {
+    char first = Character.toLowerCase(text.charAt(i));
+    if (first == 's' || first == '\u017f' || first == 't' || first == 'm' || first == 'd') {
+      return i + 1;
+    }
+    if (i + 1 < end) {
+      char second = Character.toLowerCase(text.charAt(i + 1));
+      if ((first == 'r' || first == 'v') && second == 'e' || first == 'l' && second == 'l') {
+        return i + 2;
+      }
+    }
+    return 0;
+  }
+
+  private static int letters(CharSequence text, int i, int end) {
+    int j = i;
+    while (j < end) {
+      int c = Character.codePointAt(text, j);
+      if (!isLetter(c)) {
+        break;
+      }
+      j += Character.charCount(c);
+    }
+    return j;
+  }
+
+  private static boolean isLetter(int c) {
+    return Character.isLetter(c);
+  }
+
+  private static boolean isNumber(int c) {
+    int type = Character.getType(c);
+    return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER
+        || type == Character.OTHER_NUMBER;
+  }
+
+  private static boolean isSymbol(int c) {
+    return !isSpace(c) && !isLetter(c) && !isNumber(c);
+  }
+
+  /**
+   * Matches the Unicode {@code White_Space} property, which {@code \s} stands for in the
+   * pattern.
+   */
+  static boolean isSpace(int c) {
+    return c >= '\t' && c <= '\r' || c == ' ' || c == 0x85 || c == 0xa0 || c == 0x1680
+        || c >= 0x2000 && c <= 0x200a || c == 0x2028 || c == 0x2029 || c == 0x202f
+        || c == 0x205f || c == 0x3000;
+  }
+
+  /**
+   * Per-thread buffers for one piece: its bytes, the linked list of its parts and a min-heap
+   * of candidate merges keyed by rank, then position.
+   */
+  private static final class Scratch {
+    private byte[] bytes = new byte[64];
+    private int[] next = new int[65];
+    private int[] prev = new int[65];
+    private int[] ranks = new int[65];
+    private long[] heap = new long[64];
+    private int heapSize;
+    private int length;
+    private int whole;
+
+    /**
+     * Writes a piece as UTF-8, with a replacement character for unpaired surrogates.
+     */
+    private int utf8(CharSequence text, int start, int end) {
+      int needed = 3 * (end - start);
+      if (needed > bytes.length) {
+        int size = Math.max(needed, 2 * bytes.length);
+        bytes = new byte[size];
+        next = new int[size + 1];
+        prev = new int[size + 1];
+        ranks = new int[size + 1];
+        heap = new long[size];
+      }
+      int n = 0;
+      for (int i = start; i < end; i++) {
+        int c = text.charAt(i);
+        if (Character.isHighSurrogate((char) c) && i + 1 < end
+            && Character.isLowSurrogate(text.charAt(i + 1))) {
+          c = Character.toCodePoint((char) c, text.charAt(++i));
+        } else if (Character.isSurrogate((char) c)) {
+          c = '\ufffd';
+        }
+        if (c < 0x80) {
+          bytes[n++] = (byte) c;
+        } else if (c < 0x800) {
+          bytes[n++] = (byte) (0xc0 | c >> 6);
+          bytes[n++] = (byte) (0x80 | c & 0x3f);
+        } else if (c < 0x10000) {
+          bytes[n++] = (byte) (0xe0 | c >> 12);
+          bytes[n++] = (byte) (0x80 | c >> 6 & 0x3f);
+          bytes[n++] = (byte) (0x80 | c & 0x3f);
+        } else {
+          bytes[n++] = (byte) (0xf0 | c >> 18);
+          bytes[n++] = (byte) (0x80 | c >> 12 & 0x3f);
+          bytes[n++] = (byte) (0x80 | c >> 6 & 0x3f);
+          bytes[n++] = (byte) (0x80 | c & 0x3f);
+        }
+      }
+      length = n;
+      return n;
+    }
+
+    private void push(int rank, int position) {
+      if (heapSize == heap.length) {
+        heap = Arrays.copyOf(heap, 2 * heap.length);
+      }
+      long entry = (long) rank << 32 | position;
+      int i = heapSize++;
+      while (i > 0) {
+        int parent = (i - 1) >>> 1;
+        if (heap[parent] <= entry) {
+          break;
+        }
+        heap[i] = heap[parent];
+        i = parent;
+      }
+      heap[i] = entry;
+    }
+
+    private long pop() {
+      long top = heap[0];
+      long last = heap[--heapSize];
+      int i = 0;
+      while (true) {
+        int child = 2 * i + 1;
+        if (child >= heapSize) {
+          break;
+        }
+        if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+          child++;
+        }
+        if (heap[child] >= last) {
+          break;
+        }
+        heap[i] = heap[child];
+        i = child;
+      }
+      heap[i] = last;
+      return top;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package dev.coms4156.project.service;
+
+/**
+ * Cuts chunks of a fixed number of characters, ending them at the last sentence end when one
+ * falls in the last 30% of the chunk.
+ * <p>
+ * Each chunk after the first starts {@code app.document.chunk-overlap} characters before the
+ * end of the previous one, so consecutive chunks share that much text; the size is set by
+ * {@code app.document.chunk-size}. This differs from the old cut, which started the next chunk
+ * at {@code max(start + size - overlap, end)}, never before the end of the previous one, so
+ * chunks of documents split before the change do not overlap.
+ * </p>
+ */
+public class CharacterChunkingStrategy implements ChunkingStrategy {
+
+  private final int chunkSize;
+  private final int overlapSize;
+
+  /**
+   * Constructs a new {@code CharacterChunkingStrategy}.
+   *
+   * @param chunkSize   the maximum number of characters in a chunk.
+   * @param overlapSize the number of characters a chunk repeats from the end of the previous
+   *                    one.
+   */
+  public CharacterChunkingStrategy(int chunkSize, int overlapSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunk-size must be at least 1");
+    }
+    this.chunkSize = chunkSize;
+    this.overlapSize = Math.max(0, overlapSize);
+  }
+
+  @Override
+  public String getName() {
+    return "character";
+  }
+
+  @Override
+  public Cut cut(Window window) {
+    int length = window.length();
+
+    // Until the text is complete, a chunk is only cut once its full window is known
+    if (!window.isComplete() && length <= chunkSize) {
+      return null;
+    }
+    int end = Math.min(chunkSize, length);
+
+    // Try to break at sentence boundaries
+    if (end < length) {
+      int lastSentenceEnd = window.lastSentenceEnd(end);
+
+      // Only break at sentence if it's not too short
+      if (lastSentenceEnd > chunkSize * 0.7) {
+        end = lastSentenceEnd;
+      }
+    }
+    return new Cut(end, overlapStart(end, length, overlapSize));
+  }
+
+  /**
+   * Returns where the chunk after one ending at {@code end} starts: {@code overlap} characters
+   * before that end, or at it for the last chunk or when the overlap would not move forward.
+   */
+  static int overlapStart(int end, int length, int overlap) {
+    return end < length && end - overlap > 0 ? end - overlap : end;
+  }
+}
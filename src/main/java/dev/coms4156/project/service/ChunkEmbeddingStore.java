@@ -0,0 +1,229 @@
+package dev.coms4156.project.service;
+
+import dev.coms4156.project.converter.FloatArrayToPgVectorConverter;
+import dev.coms4156.project.model.ChunkEmbedding;
+import dev.coms4156.project.model.DocumentChunk;
+import dev.coms4156.project.repository.ChunkEmbeddingRepository;
+import jakarta.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+/**
+ * Corpus-wide store of chunk embeddings, keyed by the hash of the normalized chunk text.
+ * <p>
+ * Chunks whose text differs at most in whitespace share one {@link ChunkEmbedding}, so
+ * boilerplate repeated across thousands of documents is embedded once and its vector is stored
+ * once. A {@link BloomFilter} of every stored hash answers most "seen before?" questions
+ * without a query: only hashes it may contain are looked up. It is filled from the database on
+ * a background thread at startup; until then every hash is looked up.
+ * </p>
+ * <p>
+ * The store is correct without the filter: the content hash is unique, so when a hash the
+ * filter does not know was stored meanwhile, for example by another instance, storing it
+ * again returns the existing embedding.
+ * </p>
+ */
+@Service
+public class ChunkEmbeddingStore implements ApplicationRunner {
+
+  private static final Logger logger = LoggerFactory.getLogger(ChunkEmbeddingStore.class);
+
+  private static final int LOAD_PAGE_SIZE = 10000;
+
+  private final ChunkEmbeddingRepository chunkEmbeddingRepository;
+  private final FloatArrayToPgVectorConverter vectorConverter =
+      new FloatArrayToPgVectorConverter();
+  private final BloomFilter filter;
+  private volatile boolean filterLoaded;
+  private final AtomicLong lookupsSkipped = new AtomicLong();
+  private final AtomicLong embeddingsReused = new AtomicLong();
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "chunk-embedding-filter");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Constructs a new {@code ChunkEmbeddingStore}.
+   *
+   * @param chunkEmbeddingRepository the repository the embeddings are stored in.
+   * @param expectedContents         the number of distinct chunk texts the filter is sized
+   *                                 for.
+   * @param falsePositiveRate        the share of new chunk texts that are still looked up
+   *                                 once the filter holds that many.
+   */
+  public ChunkEmbeddingStore(ChunkEmbeddingRepository chunkEmbeddingRepository,
+      @Value("${app.embedding.dedup.expected-contents:1000000}") long expectedContents,
+      @Value("${app.embedding.dedup.false-positive-rate:0.01}") double falsePositiveRate) {
+    this.chunkEmbeddingRepository = chunkEmbeddingRepository;
+    this.filter = new BloomFilter(expectedContents, falsePositiveRate);
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    // Runs after DatabaseSchemaInitializer, so legacy embeddings are migrated by now
+    executor.submit(this::loadFilter);
+  }
+
+  /**
+   * Adds the hash of every stored embedding to the filter.
+   */
+  void loadFilter() {
+    try {
+      long count = 0;
+      long afterId = 0;
+      List<ChunkEmbeddingRepository.ContentHashRow> page;
+      do {
+        page = chunkEmbeddingRepository.findContentHashesAfter(afterId,
+            PageRequest.of(0, LOAD_PAGE_SIZE));
+        for (ChunkEmbeddingRepository.ContentHashRow row : page) {
+          filter.add(row.getContentHash());
+          afterId = row.getId();
+        }
+        count += page.size();
+      } while (page.size() == LOAD_PAGE_SIZE);
+      filterLoaded = true;
+      logger.info("Loaded {} chunk embedding hashes into a {} bit filter", count,
+          filter.getBitCount());
+    } catch (RuntimeException e) {
+      logger.error("Could not load chunk embedding hashes; every chunk is looked up: {}",
+          e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Returns the key chunks share an embedding under: the SHA-256 of their text with every run
+   * of whitespace collapsed to one space and none at either end.
+   *
+   * @param text the chunk text.
+   * @return the 64-character hex hash.
+   */
+  public static String contentKey(String text) {
+    StringBuilder normalized = new StringBuilder(text.length());
+    boolean space = false;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r') {
+        space = normalized.length() > 0;
+      } else {
+        if (space) {
+          normalized.append(' ');
+          space = false;
+        }
+        normalized.append(c);
+      }
+    }
+    return ContentHashes.sha256(normalized.toString());
+  }
+
+  /**
+   * Returns the embedding shared by chunks with a text, embedding the text only if no chunk
+   * with it was embedded before.
+   *
+   * @param text     the chunk text.
+   * @param embedder computes an embedding for a text.
+   * @return the stored embedding, with its ID.
+   */
+  public ChunkEmbedding obtain(String text, Function<String, float[]> embedder) {
+    String key = contentKey(text);
+    Optional<ChunkEmbedding> stored = find(key);
+    if (stored.isPresent()) {
+      embeddingsReused.incrementAndGet();
+      return stored.get();
+    }
+    return store(key, embedder.apply(text));
+  }
+
+  /**
+   * Stores an embedding under a content key, or returns the one stored under it already.
+   *
+   * @param key       the content key, see {@link #contentKey(String)}.
+   * @param embedding the embedding.
+   * @return the stored embedding, with its ID.
+   */
+  public ChunkEmbedding store(String key, float[] embedding) {
+    Long id = chunkEmbeddingRepository.insertIfAbsent(key,
+        vectorConverter.convertToDatabaseColumn(embedding));
+    filter.add(key);
+    return ChunkEmbedding.builder().id(id).contentHash(key).embedding(embedding).build();
+  }
+
+  /**
+   * Returns whether the filter knows, without a query, that no embedding is stored under a
+   * content key. Until the filter is loaded it knows nothing.
+   *
+   * @param key the content key, see {@link #contentKey(String)}.
+   * @return {@code true} only if no embedding is stored under the key.
+   */
+  public boolean isKnownAbsent(String key) {
+    return filterLoaded && !filter.mightContain(key);
+  }
+
+  private Optional<ChunkEmbedding> find(String key) {
+    if (filterLoaded && !filter.mightContain(key)) {
+      lookupsSkipped.incrementAndGet();
+      return Optional.empty();
+    }
+    return chunkEmbeddingRepository.findByContentHash(key);
+  }
+
+  /**
+   * Sets the embedding of every chunk that refers to a stored embedding but has none loaded,
+   * reading each embedding once per call.
+   *
+   * @param chunks the chunks to complete.
+   */
+  public void resolve(List<DocumentChunk> chunks) {
+    Set<Long> ids = new LinkedHashSet<>();
+    for (DocumentChunk chunk : chunks) {
+      if (chunk.getEmbedding() == null && chunk.getEmbeddingId() != null) {
+        ids.add(chunk.getEmbeddingId());
+      }
+    }
+    if (ids.isEmpty()) {
+      return;
+    }
+    Map<Long, float[]> embeddings = new HashMap<>();
+    chunkEmbeddingRepository.findAllById(ids)
+        .forEach(stored -> embeddings.put(stored.getId(), stored.getEmbedding()));
+    for (DocumentChunk chunk : chunks) {
+      if (chunk.getEmbedding() == null && chunk.getEmbeddingId() != null) {
+        chunk.setEmbedding(embeddings.get(chunk.getEmbeddingId()));
+      }
+    }
+  }
+
+  /**
+   * Returns how often the filter spared a lookup, and how often a stored embedding was reused
+   * instead of computing one.
+   *
+   * @return the counts, by name.
+   */
+  public Map<String, Object> getStatistics() {
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("embeddingsReused", embeddingsReused.get());
+    stats.put("lookupsSkipped", lookupsSkipped.get());
+    stats.put("filterLoaded", filterLoaded);
+    return stats;
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,314 @@
+package dev.coms4156.project.service;
+
+import dev.coms4156.project.dtos.ChunkFilterStats;
+import dev.coms4156.project.model.Document;
+import dev.coms4156.project.model.DocumentChunk;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Scores chunks by how much readable text they hold before they are stored and embedded, and
+ * skips or down-weights those below {@code app.embedding.quality-filter.min-score}.
+ * <p>
+ * Spreadsheets and slide decks yield many chunks of numbers, whitespace, repeated separators or
+ * page furniture, each of which would still cost an embedding request and then crowd real text
+ * out of search results. A chunk is scored in one pass over its text from four signals, each
+ * between 0 and 1, whose product is the score:
+ * </p>
+ * <ul>
+ *   <li>letters: the share of visible characters that are letters, full from half;</li>
+ *   <li>whitespace: the share of characters that are not whitespace, full from half;</li>
+ *   <li>entropy: the Shannon entropy of the visible characters, full from 3.5 bits or from the
+ *       most a text that short can have;</li>
+ *   <li>repetition: the share of distinct words, full from 40%.</li>
+ * </ul>
+ * <p>
+ * In {@code down-weight} mode, the default, low-value chunks are embedded but given a search
+ * weight below 1, which search divides their distance by. In {@code skip} mode they are neither
+ * stored nor embedded, so their text cannot be found. A document whose chunks would all be
+ * skipped is down-weighted instead, so it stays searchable.
+ * </p>
+ */
+@Service
+public class ChunkQualityFilter {
+
+  private static final Logger logger = LoggerFactory.getLogger(ChunkQualityFilter.class);
+
+  private static final double LETTER_SHARE = 0.5;
+  private static final double VISIBLE_SHARE = 0.5;
+  private static final double ENTROPY_BITS = 3.5;
+  private static final double DISTINCT_WORD_SHARE = 0.4;
+  private static final int MIN_WORDS_FOR_REPETITION = 8;
+  private static final float MIN_SEARCH_WEIGHT = 0.1f;
+
+  /**
+   * What happens to a chunk scoring below the minimum.
+   */
+  public enum Mode {
+    /** The chunk is neither stored nor embedded. */
+    SKIP,
+    /** The chunk is embedded, and ranked lower in search. */
+    DOWN_WEIGHT;
+
+    /**
+     * Parses a configured mode such as {@code skip} or {@code down-weight}.
+     *
+     * @param value the configured value.
+     * @return the matching mode.
+     * @throws IllegalArgumentException if the value names no mode.
+     */
+    public static Mode fromProperty(String value) {
+      return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+  }
+
+  private final ChunkEmbeddingStore embeddingStore;
+  private final boolean enabled;
+  private final Mode mode;
+  private final double minScore;
+  private final AtomicLong scored = new AtomicLong();
+  private final AtomicLong skipped = new AtomicLong();
+  private final AtomicLong downWeighted = new AtomicLong();
+  private final AtomicLong embeddingCallsSaved = new AtomicLong();
+
+  /**
+   * Constructs a new {@code ChunkQualityFilter}.
+   *
+   * @param embeddingStore the store telling whether a skipped text would have been embedded.
+   * @param enabled        whether chunks are scored at all.
+   * @param mode           {@code skip} or {@code down-weight}.
+   * @param minScore       the score, between 0 and 1, below which a chunk is low-value.
+   */
+  public ChunkQualityFilter(ChunkEmbeddingStore embeddingStore,
+      @Value("${app.embedding.quality-filter.enabled:true}") boolean enabled,
+      @Value("${app.embedding.quality-filter.mode:down-weight}") String mode,
+      @Value("${app.embedding.quality-filter.min-score:0.3}") double minScore) {
+    if (minScore < 0 || minScore > 1) {
+      throw new IllegalArgumentException("min-score must be between 0 and 1");
+    }
+    this.embeddingStore = embeddingStore;
+    this.enabled = enabled;
+    this.mode = Mode.fromProperty(mode);
+    this.minScore = minScore;
+  }
+
+  /**
+   * Scores a document's chunks, returning those to store and embed.
+   * <p>
+   * In {@code skip} mode the low-value chunks are left out, keeping the indexes and offsets of
+   * the others; in {@code down-weight} mode they are returned with a search weight.
+   * </p>
+   *
+   * @param document the document the chunks belong to, for logging.
+   * @param chunks   its unsaved chunks.
+   * @return the chunks to store.
+   */
+  public List<DocumentChunk> filter(Document document, List<DocumentChunk> chunks) {
+    if (!enabled || chunks.isEmpty()) {
+      return chunks;
+    }
+    List<DocumentChunk> kept = new ArrayList<>(chunks.size());
+    List<DocumentChunk> lowValue = new ArrayList<>();
+    List<Assessment> lowScores = new ArrayList<>();
+    for (DocumentChunk chunk : chunks) {
+      Assessment assessment = assess(chunk.getTextContent());
+      if (assessment.score < minScore) {
+        lowValue.add(chunk);
+        lowScores.add(assessment);
+      } else {
+        kept.add(chunk);
+      }
+    }
+    scored.addAndGet(chunks.size());
+    if (lowValue.isEmpty()) {
+      return chunks;
+    }
+
+    if (mode == Mode.DOWN_WEIGHT || kept.isEmpty()) {
+      for (int i = 0; i < lowValue.size(); i++) {
+        lowValue.get(i).setSearchWeight(
+            Math.max(MIN_SEARCH_WEIGHT, (float) (lowScores.get(i).score / minScore)));
+      }
+      downWeighted.addAndGet(lowValue.size());
+      logger.info("Down-weighted {} of {} chunks of document {} scoring below {}",
+          lowValue.size(), chunks.size(), document.getId(), minScore);
+      return chunks;
+    }
+
+    // Every distinct text that has no stored embedding would have cost one request
+    Set<String> unembedded = new HashSet<>();
+    for (int i = 0; i < lowValue.size(); i++) {
+      DocumentChunk chunk = lowValue.get(i);
+      Assessment assessment = lowScores.get(i);
+      logger.debug("Skipping chunk {} of document {}: score {} ({})", chunk.getChunkIndex(),
+          document.getId(), String.format(Locale.ROOT, "%.2f", assessment.score),
+          assessment.weakness);
+      String key = ChunkEmbeddingStore.contentKey(chunk.getTextContent());
+      if (embeddingStore.isKnownAbsent(key)) {
+        unembedded.add(key);
+      }
+    }
+    skipped.addAndGet(lowValue.size());
+    embeddingCallsSaved.addAndGet(unembedded.size());
+    logger.info("Skipped {} of {} chunks of document {} scoring below {}, saving {} embedding "
+        + "requests", lowValue.size(), chunks.size(), document.getId(), minScore,
+        unembedded.size());
+    return kept;
+  }
+
+  /**
+   * Scores a chunk text.
+   *
+   * @param text the chunk text.
+   * @return the score, between 0 for a text without anything visible and 1.
+   */
+  public double score(String text) {
+    return assess(text).score;
+  }
+
+  /**
+   * Returns how many chunks were scored, skipped and down-weighted, and how many embedding
+   * requests skipping spared. Skipped texts are only counted as a spared request when the
+   * embedding store knows it has no embedding for them, so the last count is a lower bound.
+   *
+   * @return the statistics.
+   */
+  public ChunkFilterStats getStats() {
+    return ChunkFilterStats.builder()
+        .mode(enabled ? mode.name().toLowerCase(Locale.ROOT).replace('_', '-') : "disabled")
+        .minScore(minScore)
+        .scored(scored.get())
+        .skipped(skipped.get())
+        .downWeighted(downWeighted.get())
+        .embeddingCallsSaved(embeddingCallsSaved.get())
+        .build();
+  }
+
+  private static Assessment assess(String text) {
+    if (text == null) {
+      return new Assessment(0, "no visible text");
+    }
+    int letters = 0;
+    int whitespace = 0;
+    int visible = 0;
+    int[] asciiCounts = new int[128];
+    Map<Integer, Integer> otherCounts = null;
+    long[] words = new long[16];
+    int wordCount = 0;
+    long word = 0;
+    boolean inWord = false;
+
+    for (int i = 0; i < text.length(); ) {
+      int c = text.codePointAt(i);
+      i += Character.charCount(c);
+      if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+        whitespace++;
+      } else {
+        visible++;
+        if (c < 128) {
+          asciiCounts[c]++;
+        } else {
+          if (otherCounts == null) {
+            otherCounts = new HashMap<>();
+          }
+          otherCounts.merge(c, 1, Integer::sum);
+        }
+        if (Character.isLetter(c)) {
+          letters++;
+        }
+      }
+      boolean wordChar = Character.isLetterOrDigit(c);
+      if (wordChar) {
+        word = word * 31 + Character.toLowerCase(c);
+        inWord = true;
+      }
+      if (inWord && (!wordChar || i == text.length())) {
+        if (wordCount == words.length) {
+          words = Arrays.copyOf(words, wordCount * 2);
+        }
+        words[wordCount++] = word;
+        word = 0;
+        inWord = false;
+      }
+    }
+    if (visible == 0) {
+      return new Assessment(0, "no visible text");
+    }
+
+    double letterScore = Math.min(1, (double) letters / visible / LETTER_SHARE);
+    double visibleScore = Math.min(1, (double) visible / (visible + whitespace) / VISIBLE_SHARE);
+    double entropyScore = 1;
+    if (visible > 1) {
+      double entropy = 0;
+      for (int count : asciiCounts) {
+        entropy += entropyTerm(count, visible);
+      }
+      if (otherCounts != null) {
+        for (int count : otherCounts.values()) {
+          entropy += entropyTerm(count, visible);
+        }
+      }
+      double attainable = Math.min(ENTROPY_BITS, Math.log(visible) / Math.log(2));
+      entropyScore = Math.min(1, entropy / attainable);
+    }
+    double distinctScore = 1;
+    if (wordCount >= MIN_WORDS_FOR_REPETITION) {
+      Arrays.sort(words, 0, wordCount);
+      int distinct = 1;
+      for (int i = 1; i < wordCount; i++) {
+        if (words[i] != words[i - 1]) {
+          distinct++;
+        }
+      }
+      distinctScore = Math.min(1, (double) distinct / wordCount / DISTINCT_WORD_SHARE);
+    }
+
+    double score = letterScore * visibleScore * entropyScore * distinctScore;
+    String weakness = "few letters";
+    double weakest = letterScore;
+    if (visibleScore < weakest) {
+      weakness = "mostly whitespace";
+      weakest = visibleScore;
+    }
+    if (entropyScore < weakest) {
+      weakness = "repeated characters";
+      weakest = entropyScore;
+    }
+    if (distinctScore < weakest) {
+      weakness = "repeated words";
+    }
+    return new Assessment(score, weakness);
+  }
+
+  private static double entropyTerm(int count, int total) {
+    if (count == 0) {
+      return 0;
+    }
+    double p = (double) count / total;
+    return -p * Math.log(p) / Math.log(2);
+  }
+
+  /**
+   * The score of a chunk text and the signal that lowered it most.
+   */
+  private static final class Assessment {
+    private final double score;
+    private final String weakness;
+
+    Assessment(double score, String weakness) {
+      this.score = score;
+      this.weakness = weakness;
+    }
+  }
+}
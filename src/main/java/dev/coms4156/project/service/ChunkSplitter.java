@@ -0,0 +1,371 @@
+package dev.coms4156.project.service;
+
+import dev.coms4156.project.model.Document;
+import dev.coms4156.project.model.DocumentChunk;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits text into chunks as it is appended, so a document can be chunked while it is still
+ * being extracted.
+ * <p>
+ * Where each chunk ends is decided by a {@link ChunkingStrategy}. A chunk is cut as soon as
+ * the strategy has enough text buffered past its start, and the text before the next chunk is
+ * then dropped; only the current window is ever held. The chunks are the same as splitting the
+ * whole text at once. Obtain one from {@link DocumentChunkingService#openSplitter(String)}.
+ * </p>
+ * <p>
+ * Sentence ends (a run of {@code .!?} followed by whitespace) are found by looking at every
+ * character once as it arrives and are kept in a sorted int array, so the last sentence end
+ * in a chunk window is a binary search rather than a regex scan of the window; windows overlap,
+ * so a scan would read most characters more than once.
+ * </p>
+ * <p>
+ * With a segment length, the text is also cut into segments that are chunked independently:
+ * a segment ends at the first sentence end at least that many characters after its start, and
+ * no chunk crosses or overlaps across it. The boundaries depend on the text alone, so
+ * {@link DocumentChunkingService} can chunk the segments of a whole text on several cores and
+ * get the same chunks as a splitter fed the text sequentially.
+ * </p>
+ */
+public class ChunkSplitter implements Appendable {
+
+  private static final int OPEN = Integer.MAX_VALUE;
+
+  private final ChunkingStrategy strategy;
+  private final boolean storeText;
+  private final SplitterWindow strategyWindow = new SplitterWindow();
+  private final StringBuilder window = new StringBuilder();
+  private final List<DocumentChunk> chunks = new ArrayList<>();
+
+  /**
+   * Absolute offset of the first character in {@link #window}.
+   */
+  private int windowStart;
+  private int startIndex;
+
+  /**
+   * Characters after which the current segment ends at the next sentence end, or 0 for one
+   * segment.
+   */
+  private final int segmentLength;
+  private int segmentStart;
+
+  /**
+   * Absolute offset where the current segment ends, or -1 while that is not known yet.
+   */
+  private int segmentEnd = -1;
+
+  /**
+   * Length the text must reach before the strategy is asked again, after it needed more text.
+   */
+  private int retryLength;
+
+  /**
+   * Sentence ends not yet behind {@link #startIndex}, as pairs of absolute offsets: where the
+   * whitespace after the punctuation starts and where it ends, or {@link #OPEN} while it may
+   * continue in text not appended yet.
+   */
+  private int[] sentenceEnds = new int[64];
+  private int sentenceEndCount;
+  private int scanned;
+  private boolean afterPunctuation;
+  private boolean inSentenceEnd;
+
+  ChunkSplitter(int chunkSize, int overlapSize) {
+    this(new CharacterChunkingStrategy(chunkSize, overlapSize), true);
+  }
+
+  /**
+   * Creates a splitter whose chunks store their text, or only their offsets if
+   * {@code storeText} is {@code false}.
+   */
+  ChunkSplitter(ChunkingStrategy strategy, boolean storeText) {
+    this(strategy, storeText, 0);
+  }
+
+  /**
+   * Creates a splitter that also cuts the text into segments of at least
+   * {@code segmentLength} characters, or into one segment if it is 0.
+   */
+  ChunkSplitter(ChunkingStrategy strategy, boolean storeText, int segmentLength) {
+    this.strategy = strategy;
+    this.storeText = storeText;
+    this.segmentLength = Math.max(0, segmentLength);
+  }
+
+  /**
+   * Makes the first character appended sit at an offset of the whole text, so one segment of
+   * a text can be chunked on its own. Must be called before any text is appended.
+   *
+   * @param offset the offset of the segment in the whole text.
+   * @return this splitter.
+   */
+  ChunkSplitter startingAt(int offset) {
+    if (windowStart + window.length() > 0) {
+      throw new IllegalStateException("Text has already been appended");
+    }
+    windowStart = offset;
+    startIndex = offset;
+    scanned = offset;
+    segmentStart = offset;
+    return this;
+  }
+
+  /**
+   * Finds where a text is cut into segments, as a splitter with the same segment length would
+   * cut it.
+   *
+   * @param text          the whole text.
+   * @param segmentLength the segment length, or 0 for one segment.
+   * @return the offsets where the segments start, followed by the length of the text.
+   */
+  static int[] segmentBounds(CharSequence text, int segmentLength) {
+    int[] bounds = new int[2];
+    int count = 1;
+    int length = text.length();
+    int start = 0;
+    while (segmentLength > 0 && start < length - segmentLength) {
+      int end = start + segmentLength;
+      while (end < length && !(isWhitespace(text.charAt(end))
+          && isSentencePunctuation(text.charAt(end - 1)))) {
+        end++;
+      }
+      if (end == length) {
+        break;
+      }
+      if (count + 1 == bounds.length) {
+        bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+      }
+      bounds[count++] = end;
+      start = end;
+    }
+    bounds[count++] = length;
+    return Arrays.copyOf(bounds, count);
+  }
+
+  @Override
+  public ChunkSplitter append(CharSequence text) {
+    window.append(text);
+    split(false);
+    return this;
+  }
+
+  @Override
+  public ChunkSplitter append(CharSequence text, int start, int end) {
+    window.append(text, start, end);
+    split(false);
+    return this;
+  }
+
+  @Override
+  public ChunkSplitter append(char c) {
+    window.append(c);
+    split(false);
+    return this;
+  }
+
+  /**
+   * Cuts the remaining text and returns every chunk, bound to the document.
+   *
+   * @param document the document the chunks belong to.
+   * @return the unsaved chunks in order, each with its content hash set.
+   */
+  public List<DocumentChunk> finish(Document document) {
+    split(true);
+    chunks.forEach(chunk -> chunk.setDocument(document));
+    return chunks;
+  }
+
+  private void split(boolean complete) {
+    int length = windowStart + window.length();
+    scan(length);
+    findSegmentEnd();
+    if (!complete && segmentEnd < 0 && length < retryLength) {
+      return;
+    }
+
+    // The text of a segment is complete once its end is known
+    while (segmentEnd >= 0) {
+      cut(segmentEnd, true);
+      segmentStart = segmentEnd;
+      segmentEnd = -1;
+      retryLength = 0;
+      findSegmentEnd();
+    }
+    cut(length, complete);
+
+    // Nothing before the next chunk is needed again
+    int consumed = Math.min(startIndex, length) - windowStart;
+    if (consumed > 0) {
+      window.delete(0, consumed);
+      windowStart += consumed;
+    }
+    int passed = lastSentenceEndBefore(startIndex + 1) + 1;
+    if (passed > 0) {
+      System.arraycopy(sentenceEnds, 2 * passed, sentenceEnds, 0,
+          2 * (sentenceEndCount - passed));
+      sentenceEndCount -= passed;
+    }
+  }
+
+  /**
+   * Looks for the end of the current segment among the sentence ends scanned so far: the first
+   * one whose whitespace starts at least {@link #segmentLength} characters into the segment.
+   * Every sentence end past that point is still recorded, as none is behind the next chunk yet.
+   */
+  private void findSegmentEnd() {
+    if (segmentLength == 0 || segmentEnd >= 0) {
+      return;
+    }
+    int first = lastSentenceEndBefore(segmentStart + segmentLength) + 1;
+    if (first < sentenceEndCount) {
+      segmentEnd = sentenceEnds[2 * first];
+    }
+  }
+
+  /**
+   * Cuts chunks from the text up to an absolute offset, as far as the strategy can.
+   *
+   * @param limit    where the text the strategy sees ends.
+   * @param complete whether no text follows the limit in the current segment.
+   */
+  private void cut(int limit, boolean complete) {
+    strategyWindow.complete = complete;
+
+    while (startIndex < limit) {
+      strategyWindow.length = limit - startIndex;
+      ChunkingStrategy.Cut cut = strategy.cut(strategyWindow);
+      if (cut == null) {
+        // Wait for a quarter more text before asking again, so a window is not re-read on
+        // every small append
+        retryLength = limit + Math.max(1, (limit - startIndex) / 4);
+        break;
+      }
+      int endIndex = startIndex + Math.min(cut.getEnd(), limit - startIndex);
+
+      String chunkContent = window.substring(startIndex - windowStart, endIndex - windowStart)
+          .trim();
+
+      if (!chunkContent.isEmpty()) {
+        chunks.add(DocumentChunk.builder()
+            .chunkIndex(chunks.size())
+            .textContent(chunkContent)
+            .contentHash(ContentHashes.sha256(chunkContent))
+            .chunkSize(chunkContent.length())
+            .startPosition(startIndex)
+            .endPosition(endIndex)
+            .offsetsOnly(!storeText)
+            .embedding(null)
+            .build());
+      }
+
+      // The next chunk starts at or before the end of this one when they overlap
+      startIndex += Math.min(cut.getNextStart(), endIndex - startIndex);
+    }
+  }
+
+  /**
+   * Records the sentence ends in the text appended since the last scan.
+   */
+  private void scan(int length) {
+    for (; scanned < length; scanned++) {
+      char c = window.charAt(scanned - windowStart);
+      if (isWhitespace(c)) {
+        if (afterPunctuation) {
+          if (2 * sentenceEndCount == sentenceEnds.length) {
+            sentenceEnds = Arrays.copyOf(sentenceEnds, 2 * sentenceEnds.length);
+          }
+          sentenceEnds[2 * sentenceEndCount] = scanned;
+          sentenceEnds[2 * sentenceEndCount + 1] = OPEN;
+          sentenceEndCount++;
+          inSentenceEnd = true;
+        }
+        afterPunctuation = false;
+      } else {
+        if (inSentenceEnd && sentenceEndCount > 0
+            && sentenceEnds[2 * sentenceEndCount - 1] == OPEN) {
+          sentenceEnds[2 * sentenceEndCount - 1] = scanned;
+        }
+        inSentenceEnd = false;
+        afterPunctuation = isSentencePunctuation(c);
+      }
+    }
+  }
+
+  /**
+   * Matches the {@code \s} class of {@link java.util.regex.Pattern}.
+   */
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  private static boolean isSentencePunctuation(char c) {
+    return c == '.' || c == '!' || c == '?';
+  }
+
+  /**
+   * Returns the index of the last sentence end whose whitespace starts before an offset.
+   *
+   * @return the pair index, or -1 if there is none.
+   */
+  private int lastSentenceEndBefore(int offset) {
+    int low = 0;
+    int high = sentenceEndCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (sentenceEnds[2 * mid] < offset) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  /**
+   * Find the last sentence end between two absolute offsets, as the sentence-end pattern
+   * {@code [.!?]+\s+} would when matched against just the text between them.
+   *
+   * @return Position of the last sentence end relative to {@code start}, or -1 if not found
+   */
+  private int findLastSentenceEnd(int start, int end) {
+    int last = lastSentenceEndBefore(end);
+    // Its punctuation must lie in the window too
+    if (last < 0 || sentenceEnds[2 * last] <= start) {
+      return -1;
+    }
+    return Math.min(sentenceEnds[2 * last + 1], end) - start;
+  }
+
+  /**
+   * The splitter's buffered text as seen by its strategy, from the start of the next chunk.
+   */
+  private final class SplitterWindow implements ChunkingStrategy.Window {
+    private int length;
+    private boolean complete;
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public boolean isComplete() {
+      return complete;
+    }
+
+    @Override
+    public CharSequence getText() {
+      int offset = startIndex - windowStart;
+      return CharBuffer.wrap(window, offset, offset + length);
+    }
+
+    @Override
+    public int lastSentenceEnd(int end) {
+      return findLastSentenceEnd(startIndex, startIndex + end);
+    }
+  }
+}
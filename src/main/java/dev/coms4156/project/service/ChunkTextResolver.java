@@ -0,0 +1,77 @@
+package dev.coms4156.project.service;
+
+import dev.coms4156.project.model.DocumentChunk;
+import dev.coms4156.project.repository.DocumentRepository;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Fills in the text of chunks that are stored as offsets only.
+ * <p>
+ * With {@code app.document.chunks.store-text: false} a chunk row keeps its start and end
+ * offsets but not its text, which would otherwise repeat most of the document text a second
+ * time (and its overlap a third). The text is cut from the document's extracted text when the
+ * chunk is read, exactly as the chunker cut it. Each document's text is read once per call,
+ * however many of its chunks are resolved.
+ * </p>
+ */
+@Service
+public class ChunkTextResolver {
+
+  private static final Logger logger = LoggerFactory.getLogger(ChunkTextResolver.class);
+
+  private final DocumentRepository documentRepository;
+
+  /**
+   * Constructs a new {@code ChunkTextResolver}.
+   *
+   * @param documentRepository the repository the document texts are read from.
+   */
+  public ChunkTextResolver(DocumentRepository documentRepository) {
+    this.documentRepository = documentRepository;
+  }
+
+  /**
+   * Sets the text of every chunk that has none. Chunks that already carry their text are left
+   * untouched and cost nothing.
+   *
+   * @param chunks the chunks to complete.
+   */
+  public void resolve(List<DocumentChunk> chunks) {
+    Map<Long, String> texts = new HashMap<>();
+    for (DocumentChunk chunk : chunks) {
+      if (chunk.getTextContent() != null) {
+        continue;
+      }
+      Long documentId = chunk.getDocumentId() != null ? chunk.getDocumentId()
+          : chunk.getDocument() != null ? chunk.getDocument().getId() : null;
+      if (documentId == null) {
+        continue;
+      }
+      String text = texts.computeIfAbsent(documentId,
+          id -> documentRepository.findExtractedTextById(id).orElse(""));
+      resolve(chunk, text);
+    }
+  }
+
+  /**
+   * Sets a chunk's text from the text of its document.
+   *
+   * @param chunk        the chunk.
+   * @param documentText the extracted text of its document.
+   */
+  static void resolve(DocumentChunk chunk, String documentText) {
+    Integer start = chunk.getStartPosition();
+    Integer end = chunk.getEndPosition();
+    if (start == null || end == null || start < 0 || start > end
+        || end > documentText.length()) {
+      logger.warn("Chunk {} lies outside the text of its document", chunk.getId());
+      return;
+    }
+    chunk.setTextContent(documentText.substring(start, end).trim());
+  }
+}
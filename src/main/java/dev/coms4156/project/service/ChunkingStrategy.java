@@ -0,0 +1,98 @@
+package dev.coms4156.project.service;
+
+/**
+ * Decides where the text of a document is cut into chunks.
+ * <p>
+ * A {@link ChunkSplitter} asks its strategy for one chunk at a time, possibly before the whole
+ * text has been extracted. The strategy either returns the final cut for the chunk at the
+ * start of the window, or {@code null} if it cannot decide without more text; asked again with
+ * more text, it must return the same cut, so chunks do not depend on how the text arrived.
+ * Strategies hold no state of their own and are shared by all splitters. They are selected per
+ * content type by {@link ChunkingStrategySelector}.
+ * </p>
+ */
+public interface ChunkingStrategy {
+
+  /**
+   * Returns the name the strategy is selected by in configuration.
+   *
+   * @return the name, such as {@code character}.
+   */
+  String getName();
+
+  /**
+   * Cuts the chunk that starts at the beginning of the window.
+   *
+   * @param window the text buffered from the start of the chunk.
+   * @return where the chunk ends and the next one starts, or {@code null} if more text is
+   *         needed to decide.
+   */
+  Cut cut(Window window);
+
+  /**
+   * The text a strategy sees, indexed from the start of the chunk being cut.
+   */
+  interface Window {
+
+    /**
+     * Returns how many characters are buffered from the start of the chunk.
+     *
+     * @return the length of the window.
+     */
+    int length();
+
+    /**
+     * Returns whether the window holds the rest of the document.
+     *
+     * @return {@code false} while more text may be appended.
+     */
+    boolean isComplete();
+
+    /**
+     * Returns the buffered text, without copying it.
+     *
+     * @return a view of the window, valid until the splitter receives more text.
+     */
+    CharSequence getText();
+
+    /**
+     * Finds the last sentence end (a run of {@code .!?} and the whitespace after it) before
+     * an offset.
+     *
+     * @param end the offset in the window the sentence end may not pass.
+     * @return the offset just past the last sentence end, or -1 if there is none.
+     */
+    int lastSentenceEnd(int end);
+  }
+
+  /**
+   * Where a chunk ends and where the next chunk starts, as offsets in the window.
+   */
+  final class Cut {
+    private final int end;
+    private final int nextStart;
+
+    /**
+     * Creates a cut.
+     *
+     * @param end       the end of the chunk, at least 1.
+     * @param nextStart the start of the next chunk, after the start of this one and at most
+     *                  its end; before its end, the chunks overlap.
+     */
+    public Cut(int end, int nextStart) {
+      if (end < 1 || nextStart < 1 || nextStart > end) {
+        throw new IllegalArgumentException("Invalid cut: end " + end + ", next " + nextStart);
+      }
+      this.end = end;
+      this.nextStart = nextStart;
+    }
+
+    public int getEnd() {
+      return end;
+    }
+
+    public int getNextStart() {
+      return nextStart;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package dev.coms4156.project.service;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Picks the {@link ChunkingStrategy} for a document by its content type.
+ * <p>
+ * {@code app.document.chunking.content-types} maps content types, or whole families such as
+ * {@code text/*}, to a strategy name; every other document uses
+ * {@code app.document.chunking.default-strategy}. The strategies are:
+ * </p>
+ * <ul>
+ *   <li>{@code character}: {@code app.document.chunk-size} characters, with
+ *       {@code app.document.chunk-overlap} characters of overlap.</li>
+ *   <li>{@code token}: {@code app.document.chunking.max-tokens} tokens, with
+ *       {@code overlap-tokens} tokens of overlap.</li>
+ *   <li>{@code structure}: the same token budget, cut at paragraphs and lines first.</li>
+ * </ul>
+ */
+@Service
+public class ChunkingStrategySelector {
+
+  private final ChunkingStrategy defaultStrategy;
+  private final Map<String, ChunkingStrategy> byContentType = new HashMap<>();
+
+  /**
+   * Constructs a new {@code ChunkingStrategySelector}.
+   *
+   * @param tokenCounter    counts tokens for the token budget strategies.
+   * @param chunkSize       characters per chunk of the {@code character} strategy.
+   * @param chunkOverlap    characters of overlap of the {@code character} strategy.
+   * @param maxTokens       tokens per chunk of the token budget strategies.
+   * @param overlapTokens   tokens of overlap of the token budget strategies.
+   * @param defaultStrategy the strategy of content types not mapped.
+   * @param contentTypes    comma-separated {@code type=strategy} pairs.
+   * @throws IllegalArgumentException if a strategy name or pair is not recognized.
+   */
+  public ChunkingStrategySelector(TokenCounter tokenCounter,
+      @Value("${app.document.chunk-size:1000}") int chunkSize,
+      @Value("${app.document.chunk-overlap:200}") int chunkOverlap,
+      @Value("${app.document.chunking.max-tokens:512}") int maxTokens,
+      @Value("${app.document.chunking.overlap-tokens:0}") int overlapTokens,
+      @Value("${app.document.chunking.default-strategy:character}") String defaultStrategy,
+      @Value("${app.document.chunking.content-types:}") String contentTypes) {
+    Map<String, ChunkingStrategy> strategies = new HashMap<>();
+    for (ChunkingStrategy strategy : new ChunkingStrategy[] {
+        new CharacterChunkingStrategy(chunkSize, chunkOverlap),
+        new TokenBudgetChunkingStrategy(tokenCounter, maxTokens, overlapTokens),
+        new StructureAwareChunkingStrategy(tokenCounter, maxTokens, overlapTokens)}) {
+      strategies.put(strategy.getName(), strategy);
+    }
+
+    this.defaultStrategy = named(strategies, defaultStrategy);
+    for (String pair : contentTypes.split(",")) {
+      if (pair.isBlank()) {
+        continue;
+      }
+      int separator = pair.indexOf('=');
+      if (separator < 0) {
+        throw new IllegalArgumentException("Expected type=strategy but got '" + pair.trim()
+            + "'");
+      }
+      byContentType.put(normalize(pair.substring(0, separator)),
+          named(strategies, pair.substring(separator + 1)));
+    }
+  }
+
+  private static ChunkingStrategy named(Map<String, ChunkingStrategy> strategies, String name) {
+    ChunkingStrategy strategy = strategies.get(name.trim().toLowerCase(Locale.ROOT));
+    if (strategy == null) {
+      throw new IllegalArgumentException("Unknown chunking strategy '" + name.trim()
+          + "', expected one of " + strategies.keySet());
+    }
+    return strategy;
+  }
+
+  /**
+   * Returns the strategy for a content type.
+   *
+   * @param contentType the content type, possibly with parameters such as a charset; may be
+   *                    {@code null}.
+   * @return the strategy mapped to the content type or its family, or the default strategy.
+   */
+  public ChunkingStrategy forContentType(String contentType) {
+    if (contentType == null || byContentType.isEmpty()) {
+      return defaultStrategy;
+    }
+    String type = normalize(contentType);
+    ChunkingStrategy strategy = byContentType.get(type);
+    if (strategy == null) {
+      int slash = type.indexOf('/');
+      strategy = slash < 0 ? null : byContentType.get(type.substring(0, slash) + "/*");
+    }
+    return strategy != null ? strategy : defaultStrategy;
+  }
+
+  /**
+   * Returns the strategy of documents whose content type is not mapped.
+   *
+   * @return the default strategy.
+   */
+  public ChunkingStrategy getDefault() {
+    return defaultStrategy;
+  }
+
+  private static String normalize(String contentType) {
+    int parameters = contentType.indexOf(';');
+    String type = parameters < 0 ? contentType : contentType.substring(0, parameters);
+    return type.trim().toLowerCase(Locale.ROOT);
+  }
+}
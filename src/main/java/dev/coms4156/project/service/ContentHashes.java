@@ -0,0 +1,50 @@
+package dev.coms4156.project.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 helpers used to recognise content that was already processed.
+ */
+public final class ContentHashes {
+
+  private ContentHashes() {
+  }
+
+  /**
+   * Returns a new SHA-256 digest.
+   *
+   * @return the digest.
+   */
+  public static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Formats a finished digest as lower-case hex.
+   *
+   * @param digest the digest to finish.
+   * @return the 64-character hex hash.
+   */
+  public static String toHex(MessageDigest digest) {
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Returns the SHA-256 of a string's UTF-8 bytes.
+   *
+   * @param text the text to hash.
+   * @return the 64-character hex hash.
+   */
+  public static String sha256(String text) {
+    MessageDigest digest = newDigest();
+    digest.update(text.getBytes(StandardCharsets.UTF_8));
+    return toHex(digest);
+  }
+}
@@ -0,0 +1,19 @@
+package dev.coms4156.project.service;
+
+/**
+ * Thrown when a document cannot be revised because it is still being processed, or because
+ * another new version of it is.
+ */
+public class DocumentBusyException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructs a new {@code DocumentBusyException}.
+   *
+   * @param message the detail message.
+   */
+  public DocumentBusyException(String message) {
+    super(message);
+  }
+}
@@ -3,36 +3,72 @@ package dev.coms4156.project.service;
 import dev.coms4156.project.model.Document;
 import dev.coms4156.project.model.DocumentChunk;
 import dev.coms4156.project.repository.DocumentChunkRepository;
+import jakarta.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Service responsible for dividing document text into smaller, semantically meaningful chunks.
+ * <p>
+ * Text longer than {@code app.document.chunking.segment-length} characters is cut into
+ * segments at sentence ends, which are chunked independently (see {@link ChunkSplitter}). A
+ * whole text with several segments is chunked on a fork/join pool, one task per segment, and
+ * the chunks are numbered in text order afterwards, so they are the same whatever the number of
+ * cores and the same as those of a splitter from {@link #openSplitter(String)}.
+ * </p>
  */
 @Service
 public class DocumentChunkingService {
 
   private final DocumentChunkRepository documentChunkRepository;
+  private final ChunkTextResolver chunkTextResolver;
+  private final ChunkingStrategySelector strategySelector;
+  private final boolean storeText;
+  private final int segmentLength;
+  private final ForkJoinPool pool;
 
-  // Default chunking parameters
+  // Defaults of chunkDocument(Document, Integer, Integer)
   private static final int DEFAULT_CHUNK_SIZE = 1000;
   private static final int DEFAULT_OVERLAP_SIZE = 200;
-  private static final Pattern SENTENCE_END_PATTERN = Pattern.compile("[.!?]+\\s+");
 
   /**
    * Constructs a new {@code DocumentChunkingService} with the given repository.
    *
    * @param documentChunkRepository the {@link DocumentChunkRepository} instance for database ops.
+   * @param chunkTextResolver       fills in the text of chunks stored as offsets only.
+   * @param strategySelector        picks how each document's text is cut into chunks.
+   * @param storeText               whether new chunks store their text, or only their offsets
+   *                                into the document text.
+   * @param segmentLength           the characters after which a segment ends at the next
+   *                                sentence end, or 0 to chunk every text as one segment.
+   * @param parallelism             the number of cores chunking segments, or 0 for all
+   *                                available cores.
    */
-  public DocumentChunkingService(DocumentChunkRepository documentChunkRepository) {
+  @Autowired
+  public DocumentChunkingService(DocumentChunkRepository documentChunkRepository,
+      ChunkTextResolver chunkTextResolver, ChunkingStrategySelector strategySelector,
+      @Value("${app.document.chunks.store-text:true}") boolean storeText,
+      @Value("${app.document.chunking.segment-length:262144}") int segmentLength,
+      @Value("${app.document.chunking.parallelism:0}") int parallelism) {
     this.documentChunkRepository = documentChunkRepository;
+    this.chunkTextResolver = chunkTextResolver;
+    this.strategySelector = strategySelector;
+    this.storeText = storeText;
+    this.segmentLength = Math.max(0, segmentLength);
+    this.pool = new ForkJoinPool(parallelism > 0 ? parallelism
+        : Runtime.getRuntime().availableProcessors());
   }
 
   /**
-   * Chunk document text into smaller pieces.
+   * Chunk document text into pieces of a given number of characters, whatever strategy its
+   * content type is configured with.
    *
    * @param document    The document to chunk
    * @param chunkSize   Maximum size of each chunk (default: 1000)
@@ -43,112 +79,117 @@ public class DocumentChunkingService {
   @Transactional
   public List<DocumentChunk> chunkDocument(Document document, Integer chunkSize,
                                            Integer overlapSize) {
-    if (document == null || document.getExtractedText() == null
-        || document.getExtractedText().trim().isEmpty()) {
-      throw new IllegalArgumentException("Document or extracted text cannot be null or empty");
-    }
-
-    int actualChunkSize = chunkSize != null ? chunkSize : DEFAULT_CHUNK_SIZE;
-    int actualOverlapSize = overlapSize != null ? overlapSize : DEFAULT_OVERLAP_SIZE;
-
-    String text = document.getExtractedText();
-    List<DocumentChunk> chunks = new ArrayList<>();
+    validate(document);
 
     // Delete existing chunks for this document
     documentChunkRepository.deleteByDocument(document);
 
-    int startIndex = 0;
-    int chunkIndex = 0;
-
-    while (startIndex < text.length()) {
-      int endIndex = Math.min(startIndex + actualChunkSize, text.length());
-
-      // Try to break at sentence boundaries
-      if (endIndex < text.length()) {
-        String chunkText = text.substring(startIndex, endIndex);
-        int lastSentenceEnd = findLastSentenceEnd(chunkText);
+    return split(document, new CharacterChunkingStrategy(
+        chunkSize != null ? chunkSize : DEFAULT_CHUNK_SIZE,
+        overlapSize != null ? overlapSize : DEFAULT_OVERLAP_SIZE));
+  }
 
-        // Only break at sentence if it's not too short
-        if (lastSentenceEnd > actualChunkSize * 0.7) {
-          endIndex = startIndex + lastSentenceEnd;
-        }
-      }
+  /**
+   * Split a document's text into unsaved chunks with the strategy of its content type, leaving
+   * any stored chunks of the document in place.
+   *
+   * @param document The document to split
+   * @return List of unsaved chunks, each with its content hash set
+   */
+  public List<DocumentChunk> splitDocument(Document document) {
+    validate(document);
+    return split(document, strategySelector.forContentType(document.getContentType()));
+  }
 
-      String chunkContent = text.substring(startIndex, endIndex).trim();
-
-      if (!chunkContent.isEmpty()) {
-        DocumentChunk chunk = DocumentChunk.builder()
-            .document(document)
-            .chunkIndex(chunkIndex)
-            .textContent(chunkContent)
-            .chunkSize(chunkContent.length())
-            .startPosition(startIndex)
-            .endPosition(endIndex)
-            .embedding(null)
-            .build();
-
-        chunks.add(chunk); // Don't save yet - will save after embedding generation
-        chunkIndex++;
-      }
+  private static void validate(Document document) {
+    if (document == null || document.getExtractedText() == null
+        || document.getExtractedText().trim().isEmpty()) {
+      throw new IllegalArgumentException("Document or extracted text cannot be null or empty");
+    }
+  }
 
-      // Move start index with overlap
-      startIndex = Math.max(startIndex + actualChunkSize - actualOverlapSize, endIndex);
+  private List<DocumentChunk> split(Document document, ChunkingStrategy strategy) {
+    // Don't save yet - will save after embedding generation
+    String text = document.getExtractedText();
+    int[] bounds = ChunkSplitter.segmentBounds(text, segmentLength);
+    if (bounds.length <= 2) {
+      return new ChunkSplitter(strategy, storeText).append(text).finish(document);
+    }
 
-      // Prevent infinite loop
-      if (startIndex >= endIndex) {
-        startIndex = endIndex;
+    List<ForkJoinTask<List<DocumentChunk>>> segments = new ArrayList<>(bounds.length - 1);
+    for (int i = 0; i + 1 < bounds.length; i++) {
+      segments.add(pool.submit(new Segment(strategy, storeText, text, bounds[i],
+          bounds[i + 1])));
+    }
+    List<DocumentChunk> chunks = new ArrayList<>();
+    try {
+      for (ForkJoinTask<List<DocumentChunk>> segment : segments) {
+        for (DocumentChunk chunk : segment.join()) {
+          chunk.setChunkIndex(chunks.size());
+          chunk.setDocument(document);
+          chunks.add(chunk);
+        }
       }
+    } finally {
+      segments.forEach(segment -> segment.cancel(true));
     }
-
     return chunks;
   }
 
   /**
-   * Chunk document with default parameters.
+   * Open a splitter that chunks text as it is appended, with the strategy of a content type.
+   * <p>
+   * Extraction streams text into it, so a document is chunked while it is being parsed; the
+   * resulting chunks are identical to {@link #splitDocument(Document)} on the whole text.
+   * </p>
    *
-   * @param document The document to chunk
-   * @return List of created document chunks
+   * @param contentType The content type of the document, may be {@code null}
+   * @return A new, empty splitter
    */
-  @Transactional
-  public List<DocumentChunk> chunkDocument(Document document) {
-    return chunkDocument(document, DEFAULT_CHUNK_SIZE, DEFAULT_OVERLAP_SIZE);
+  public ChunkSplitter openSplitter(String contentType) {
+    return new ChunkSplitter(strategySelector.forContentType(contentType), storeText,
+        segmentLength);
   }
 
   /**
-   * Find the last sentence end in the given text.
+   * Chunk document with the strategy of its content type.
    *
-   * @param text The text to search
-   * @return Position of the last sentence end, or -1 if not found
+   * @param document The document to chunk
+   * @return List of created document chunks
    */
-  private int findLastSentenceEnd(String text) {
-    java.util.regex.Matcher matcher = SENTENCE_END_PATTERN.matcher(text);
-    int lastEnd = -1;
+  @Transactional
+  public List<DocumentChunk> chunkDocument(Document document) {
+    validate(document);
 
-    while (matcher.find()) {
-      lastEnd = matcher.end();
-    }
+    // Delete existing chunks for this document
+    documentChunkRepository.deleteByDocument(document);
 
-    return lastEnd;
+    return split(document, strategySelector.forContentType(document.getContentType()));
   }
 
   /**
    * Get chunks for a specific document.
    *
    * @param document The document
-   * @return List of document chunks
+   * @return List of document chunks, each with its text
    */
   public List<DocumentChunk> getChunksForDocument(Document document) {
-    return documentChunkRepository.findByDocumentOrderByChunkIndex(document);
+    List<DocumentChunk> chunks = documentChunkRepository.findByDocumentOrderByChunkIndex(document);
+    chunkTextResolver.resolve(chunks);
+    return chunks;
   }
 
   /**
    * Get chunks for a specific document ID.
    *
    * @param documentId The document ID
-   * @return List of document chunks
+   * @return List of document chunks, each with its text
    */
   public List<DocumentChunk> getChunksForDocument(Long documentId) {
-    return documentChunkRepository.findByDocumentIdOrderByChunkIndex(documentId);
+    List<DocumentChunk> chunks = documentChunkRepository.findByDocumentIdOrderByChunkIndex(
+        documentId);
+    chunkTextResolver.resolve(chunks);
+    return chunks;
   }
 
   /**
@@ -168,7 +209,8 @@ public class DocumentChunkingService {
    * @return Chunk statistics
    */
   public ChunkStatistics getChunkStatistics(Document document) {
-    List<DocumentChunk> chunks = getChunksForDocument(document);
+    // Sizes only, so the chunk texts are never needed
+    List<DocumentChunk> chunks = documentChunkRepository.findByDocumentOrderByChunkIndex(document);
 
     if (chunks.isEmpty()) {
       return new ChunkStatistics(0, 0, 0, 0, 0);
@@ -184,6 +226,39 @@ public class DocumentChunkingService {
         maxChunkSize);
   }
 
+  @PreDestroy
+  void shutdown() {
+    pool.shutdownNow();
+  }
+
+  /**
+   * Chunks one segment of a text with its own splitter, numbering its chunks from 0.
+   */
+  private static final class Segment extends RecursiveTask<List<DocumentChunk>> {
+    private static final long serialVersionUID = 1L;
+
+    private final transient ChunkingStrategy strategy;
+    private final boolean storeText;
+    private final String text;
+    private final int start;
+    private final int end;
+
+    private Segment(ChunkingStrategy strategy, boolean storeText, String text, int start,
+        int end) {
+      this.strategy = strategy;
+      this.storeText = storeText;
+      this.text = text;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected List<DocumentChunk> compute() {
+      return new ChunkSplitter(strategy, storeText).startingAt(start)
+          .append(text, start, end).finish(null);
+    }
+  }
+
   /**
    * Statistics about document chunks.
    */
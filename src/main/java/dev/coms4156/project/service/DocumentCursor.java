@@ -0,0 +1,91 @@
+package dev.coms4156.project.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a keyset-paginated document listing.
+ * <p>
+ * Documents are ordered by {@code (uploadedAt, id)}; a cursor records that pair for the last
+ * document of a page, and the next page starts strictly after it. Cursors are passed to
+ * clients as opaque URL-safe strings.
+ * </p>
+ */
+public final class DocumentCursor {
+
+  private static final LocalDateTime EARLIEST = LocalDateTime.of(1, 1, 1, 0, 0);
+  private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+  private static final char SEPARATOR = '|';
+
+  private final LocalDateTime uploadedAt;
+  private final long id;
+
+  private DocumentCursor(LocalDateTime uploadedAt, long id) {
+    this.uploadedAt = uploadedAt;
+    this.id = id;
+  }
+
+  /**
+   * Returns a cursor positioned before the first document in the given order.
+   *
+   * @param ascending whether the listing is in ascending order.
+   * @return the starting cursor.
+   */
+  public static DocumentCursor start(boolean ascending) {
+    return ascending ? new DocumentCursor(EARLIEST, 0L)
+        : new DocumentCursor(LATEST, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns a cursor positioned at the given document.
+   *
+   * @param uploadedAt the upload time of the document.
+   * @param id         the ID of the document.
+   * @return the cursor.
+   */
+  public static DocumentCursor of(LocalDateTime uploadedAt, long id) {
+    return new DocumentCursor(uploadedAt, id);
+  }
+
+  /**
+   * Decodes a cursor previously produced by {@link #encode()}.
+   *
+   * @param value the encoded cursor.
+   * @return the decoded cursor.
+   * @throws IllegalArgumentException if the value is not a valid cursor.
+   */
+  public static DocumentCursor decode(String value) {
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+      int separator = decoded.indexOf(SEPARATOR);
+      if (separator < 0) {
+        throw new IllegalArgumentException("Invalid cursor");
+      }
+      return new DocumentCursor(LocalDateTime.parse(decoded.substring(0, separator)),
+          Long.parseLong(decoded.substring(separator + 1)));
+    } catch (DateTimeParseException | IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid cursor", e);
+    }
+  }
+
+  /**
+   * Encodes this cursor as an opaque URL-safe string.
+   *
+   * @return the encoded cursor.
+   */
+  public String encode() {
+    String raw = uploadedAt.toString() + SEPARATOR + id;
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public LocalDateTime getUploadedAt() {
+    return uploadedAt;
+  }
+
+  public long getId() {
+    return id;
+  }
+}
@@ -1,19 +1,44 @@
 package dev.coms4156.project.service;
 
+import dev.coms4156.project.dtos.ChunkFilterStats;
+import dev.coms4156.project.dtos.DocumentDto;
+import dev.coms4156.project.dtos.DocumentPageResponse;
+import dev.coms4156.project.dtos.ExtractionStats;
 import dev.coms4156.project.model.Document;
 import dev.coms4156.project.model.DocumentChunk;
 import dev.coms4156.project.model.DocumentRelationship;
 import dev.coms4156.project.repository.DocumentChunkRepository;
 import dev.coms4156.project.repository.DocumentRelationshipRepository;
 import dev.coms4156.project.repository.DocumentRepository;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.apache.tika.exception.TikaException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 /**
@@ -38,6 +63,14 @@ public class DocumentService {
   private final DocumentTextExtractionService textExtractionService;
   private final DocumentChunkingService chunkingService;
   private final SimpleEmbeddingService embeddingService;
+  private final SummarizationQueue summarizationQueue;
+  private final DocumentSummarizationService summarizationService;
+  private final DocumentStatisticsService statisticsService;
+  private final NearDuplicateIndex nearDuplicateIndex;
+  private final ChunkQualityFilter chunkQualityFilter;
+  private final TransactionTemplate transactionTemplate;
+  private final int maxPageSize;
+  private final ExecutorService stageExecutor;
 
   /**
    * Constructs a new {@code DocumentService} instance with all required
@@ -61,26 +94,86 @@ public class DocumentService {
    * @param embeddingService               the {@link SimpleEmbeddingService}
    *                                       responsible for generating
    *                                       vector embeddings for each chunk.
+   * @param summarizationQueue             the {@link SummarizationQueue}
+   *                                       that summarizes documents in the
+   *                                       background once searchable.
+   * @param summarizationService           the
+   *                                       {@link DocumentSummarizationService}
+   *                                       producing extractive summaries
+   *                                       while chunks are related.
+   * @param statisticsService              the {@link DocumentStatisticsService}
+   *                                       notified of status changes and
+   *                                       stored or removed chunks.
+   * @param nearDuplicateIndex             the {@link NearDuplicateIndex}
+   *                                       finding documents whose text
+   *                                       nearly matches an upload.
+   * @param chunkQualityFilter             the {@link ChunkQualityFilter}
+   *                                       skipping or down-weighting
+   *                                       low-value chunks before they are
+   *                                       embedded.
+   * @param transactionManager             the transaction manager used for
+   *                                       stage-scoped transactions.
+   * @param maxPageSize                    the largest page a document listing
+   *                                       may return.
+   * @param stageParallelism               the number of threads running the
+   *                                       stages after embedding, for all
+   *                                       documents together.
    */
   public DocumentService(DocumentRepository documentRepository,
       DocumentChunkRepository documentChunkRepository,
       DocumentRelationshipRepository documentRelationshipRepository,
       DocumentTextExtractionService textExtractionService,
       DocumentChunkingService chunkingService,
-      SimpleEmbeddingService embeddingService) {
+      SimpleEmbeddingService embeddingService,
+      SummarizationQueue summarizationQueue,
+      DocumentSummarizationService summarizationService,
+      DocumentStatisticsService statisticsService,
+      NearDuplicateIndex nearDuplicateIndex,
+      ChunkQualityFilter chunkQualityFilter,
+      PlatformTransactionManager transactionManager,
+      @Value("${app.document.list.max-page-size:200}") int maxPageSize,
+      @Value("${app.pipeline.stage-parallelism:4}") int stageParallelism) {
     this.documentRepository = documentRepository;
     this.documentChunkRepository = documentChunkRepository;
     this.documentRelationshipRepository = documentRelationshipRepository;
     this.textExtractionService = textExtractionService;
     this.chunkingService = chunkingService;
     this.embeddingService = embeddingService;
+    this.summarizationQueue = summarizationQueue;
+    this.summarizationService = summarizationService;
+    this.statisticsService = statisticsService;
+    this.nearDuplicateIndex = nearDuplicateIndex;
+    this.chunkQualityFilter = chunkQualityFilter;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.maxPageSize = maxPageSize;
+    this.stageExecutor = Executors.newFixedThreadPool(Math.max(1, stageParallelism),
+        new StageThreadFactory());
   }
 
   /**
-   * Processes an uploaded document through the complete pipeline.
+   * Processes an uploaded document through the ingestion pipeline.
+   * <p>
+   * The document is searchable once it reaches {@code EMBEDDINGS_GENERATED}. Its chunks are
+   * then related while its extractive summary is ranked, after which it is {@code COMPLETED};
+   * with {@code app.summarization.llm-upgrade-enabled} it stays {@code SUMMARIZED} until the
+   * {@link SummarizationQueue} has replaced the summary by an LLM summary.
+   * </p>
+   * <p>
+   * The method deliberately runs outside a transaction: every stage commits its own short
+   * transaction, so no database connection is held while Tika or Ollama are working. If a
+   * stage fails, the partial chunks and relationships are removed and the document is marked
+   * {@code FAILED} in a single transaction.
+   * </p>
+   * <p>
+   * An upload whose bytes match a document that was already processed is never extracted or
+   * embedded again; it is handled according to {@code duplicatePolicy}. An upload whose text
+   * nearly matches that of a processed document, as found by the {@link NearDuplicateIndex}
+   * once the text is extracted, is handled according to {@code nearDuplicatePolicy} before
+   * anything is chunked or embedded.
+   * </p>
    */
-  @Transactional
-  public Document processDocument(MultipartFile file) throws IOException {
+  public Document processDocument(MultipartFile file, DuplicatePolicy duplicatePolicy,
+      NearDuplicatePolicy nearDuplicatePolicy) throws IOException {
     logger.info("Starting document processing for: {}", file.getOriginalFilename());
 
     // Validate file
@@ -88,64 +181,78 @@ public class DocumentService {
       throw new IllegalArgumentException("File is empty");
     }
 
+    // Read the request once; the copy is deleted when processing ends
+    try (SpooledUpload upload = textExtractionService.spool(file)) {
+      return processUpload(upload, duplicatePolicy, nearDuplicatePolicy);
+    }
+  }
+
+  private Document processUpload(SpooledUpload upload, DuplicatePolicy duplicatePolicy,
+      NearDuplicatePolicy nearDuplicatePolicy) throws IOException {
     // Check if file type is supported
-    String contentType = textExtractionService.detectContentType(file);
+    String contentType = textExtractionService.detectContentType(upload);
     if (!textExtractionService.isSupportedContentType(contentType)) {
       throw new IllegalArgumentException("Unsupported file type: " + contentType);
     }
 
+    // Reuse the work done for identical bytes
+    String contentHash = upload.getContentHash();
+    Optional<Document> existing = documentRepository.findByContentHash(contentHash);
+    if (existing.isPresent()) {
+      return reuseDuplicate(existing.get(), upload, duplicatePolicy);
+    }
+
     // Create document entity
     Document document = new Document();
-    document.setFilename(file.getOriginalFilename());
-    document.setFileSize(file.getSize());
+    document.setFilename(upload.getOriginalFilename());
+    document.setFileSize(upload.getSize());
     document.setContentType(contentType);
+    document.setContentHash(contentHash);
     document.setProcessingStatus(Document.ProcessingStatus.UPLOADED);
 
-    // Save document
-    document = documentRepository.save(document);
+    // Save document; the unique hash index rejects a concurrent identical upload
+    try {
+      document = documentRepository.save(document);
+    } catch (DataIntegrityViolationException e) {
+      existing = documentRepository.findByContentHash(contentHash);
+      if (existing.isEmpty()) {
+        throw e;
+      }
+      return reuseDuplicate(existing.get(), upload, duplicatePolicy);
+    }
+    statisticsService.recordStatusChange(null, Document.ProcessingStatus.UPLOADED);
 
     try {
-      // Step 1: Extract text using Apache Tika
+      // Step 1: Extract text using Apache Tika, chunking it as it arrives
       logger.info("Step 1: Extracting text from document: {}", document.getId());
-      String extractedText = textExtractionService.extractText(file);
+      ChunkSplitter splitter = chunkingService.openSplitter(contentType);
+      String extractedText = textExtractionService.extractText(upload, splitter);
 
       if (extractedText == null || extractedText.isBlank()) {
         throw new IllegalStateException("No text could be extracted from the document");
       }
 
-      document.setExtractedText(extractedText);
-      document.setProcessingStatus(Document.ProcessingStatus.TEXT_EXTRACTED);
-      document = documentRepository.save(document);
-
-      // Step 2: Chunk the document (in memory only)
-      logger.info("Step 2: Chunking document: {}", document.getId());
-      List<DocumentChunk> chunks = chunkingService.chunkDocument(document);
-
-      if (chunks.isEmpty()) {
-        throw new IllegalStateException("No chunks could be created from the document");
+      // Catch near-duplicates before anything is embedded
+      int[] signature = nearDuplicateIndex.signature(extractedText);
+      Optional<Document> similar = findNearDuplicate(signature);
+      if (similar.isPresent()) {
+        Document handled = handleNearDuplicate(document, extractedText, similar.get(),
+            nearDuplicatePolicy);
+        if (handled != null) {
+          return handled;
+        }
       }
 
-      document.setProcessingStatus(Document.ProcessingStatus.CHUNKED);
-      document = documentRepository.save(document);
-
-      // Step 3: Generate embeddings for chunks
-      logger.info("Step 3: Generating embeddings for {} chunks", chunks.size());
-      chunks = embeddingService.generateEmbeddings(chunks);
-
-      document.setProcessingStatus(Document.ProcessingStatus.EMBEDDINGS_GENERATED);
-      document = documentRepository.save(document);
+      document.setExtractedText(extractedText);
+      document = saveWithStatus(document, Document.ProcessingStatus.TEXT_EXTRACTED);
+      nearDuplicateIndex.add(document.getId(), signature);
 
-      // Step 4: Generate summary (optional - can be implemented later)
-      logger.info("Step 4: Generating summary for document: {}", document.getId());
-      String summary = generateSummary(extractedText);
+      // Step 2: Store the chunks, still without embeddings
+      logger.info("Step 2: Storing chunks of document: {}", document.getId());
+      List<DocumentChunk> chunks = storeChunks(document, splitter.finish(document));
 
-      // Step 5: Generate relationships between chunks
-      List<DocumentRelationship> relationships = createRelationshipsForSourceChunks(chunks);
-      logger.info("Created {} document relationships.", relationships.size());
-
-      document.setSummary(summary);
-      document.setProcessingStatus(Document.ProcessingStatus.COMPLETED);
-      document = documentRepository.save(document);
+      // Steps 3-5: Embed the chunks, then relate and summarize them concurrently
+      document = embedAndRelate(document, chunks);
 
       logger.info("Successfully processed document: {} with {} chunks", document.getFilename(),
           chunks.size());
@@ -153,23 +260,595 @@ public class DocumentService {
 
     } catch (IllegalStateException | IllegalArgumentException e) {
       logger.error("Error processing document {}: {}", document.getId(), e.getMessage(), e);
-      document.setProcessingStatus(Document.ProcessingStatus.FAILED);
-      documentRepository.save(document);
+      markFailed(document);
       throw e;
     } catch (IOException e) {
       logger.error("IO error processing document {}: {}", document.getId(), e.getMessage(), e);
-      document.setProcessingStatus(Document.ProcessingStatus.FAILED);
-      documentRepository.save(document);
+      markFailed(document);
       throw e;
     } catch (Exception e) {
       logger.error("Unexpected error processing document {}: {}", document.getId(),
           e.getMessage(), e);
-      document.setProcessingStatus(Document.ProcessingStatus.FAILED);
-      documentRepository.save(document);
+      markFailed(document);
       throw new IllegalStateException("Document processing failed", e);
     }
   }
 
+  /**
+   * Processes an uploaded document, fully processing and flagging near-duplicates.
+   *
+   * @see #processDocument(MultipartFile, DuplicatePolicy, NearDuplicatePolicy)
+   */
+  public Document processDocument(MultipartFile file, DuplicatePolicy duplicatePolicy)
+      throws IOException {
+    return processDocument(file, duplicatePolicy, NearDuplicatePolicy.PROCESS);
+  }
+
+  /**
+   * Processes an uploaded document, returning the existing document for a duplicate upload.
+   *
+   * @see #processDocument(MultipartFile, DuplicatePolicy, NearDuplicatePolicy)
+   */
+  public Document processDocument(MultipartFile file) throws IOException {
+    return processDocument(file, DuplicatePolicy.RETURN_EXISTING);
+  }
+
+  /**
+   * Replaces the content of a document with a new version, re-processing only what changed.
+   * <p>
+   * The new text is split by a {@link ChunkSplitter} while it is extracted, and each chunk is
+   * matched to a stored chunk of the previous version by content hash. Matched chunks keep
+   * their ID, embedding and relationships and are only moved to their new position. Stored
+   * chunks that no longer appear are retired, and stay searchable until the new chunks are
+   * embedded; only then are they deleted together with their relationships. Only the remaining
+   * new chunks are embedded and related. The document keeps its ID, its revision is
+   * incremented and it is summarized again; clones keep sharing its chunks.
+   * </p>
+   * <p>
+   * The document is first claimed by moving it to {@code CHUNKED} with a conditional update, so
+   * of two versions uploaded at once only one is processed. Nothing else is written until the
+   * new text has been extracted and split; if that fails, the claim is released. After that, as in
+   * {@link #processDocument(MultipartFile, DuplicatePolicy, NearDuplicatePolicy)}, each stage
+   * commits its own transaction. A failure restores the previous revision instead of marking
+   * the document {@code FAILED}: the new chunks are deleted, the matched and retired ones are
+   * moved back and the previous text, summary and status are stored again. Retired chunks are
+   * only lost if the failure comes after they were deleted, while relating the new chunks.
+   * </p>
+   *
+   * @param documentId the ID of the document to revise.
+   * @param file       the new version.
+   * @return the revised document.
+   * @throws IllegalArgumentException if the document does not exist or is a clone, or if the
+   *                                  file is empty, unsupported, has no text or is identical
+   *                                  to another document.
+   * @throws DocumentBusyException    if the document has not finished processing or another
+   *                                  version of it is being processed.
+   * @throws IOException              if the file cannot be read.
+   */
+  public Document processNewVersion(Long documentId, MultipartFile file) throws IOException {
+    Document document = documentRepository.findWithContentById(documentId)
+        .orElseThrow(() -> new IllegalArgumentException("Document not found: " + documentId));
+    if (document.getDuplicateOf() != null) {
+      throw new IllegalArgumentException("A cloned document cannot be revised");
+    }
+    Document.ProcessingStatus current = document.getProcessingStatus();
+    if (current != Document.ProcessingStatus.COMPLETED
+        && current != Document.ProcessingStatus.FAILED) {
+      throw new DocumentBusyException("Document is still being processed");
+    }
+    if (file.isEmpty()) {
+      throw new IllegalArgumentException("File is empty");
+    }
+    Revision previous = new Revision(document);
+    claimRevision(document, previous);
+    try {
+      return revise(document, previous, file);
+    } finally {
+      // Hands the document back if the new version was not stored
+      releaseRevision(document, previous);
+    }
+  }
+
+  /**
+   * Processes a new version of a claimed document, see
+   * {@link #processNewVersion(Long, MultipartFile)}.
+   */
+  private Document revise(Document document, Revision previous, MultipartFile file)
+      throws IOException {
+    Long documentId = document.getId();
+    ChunkSplitter splitter;
+    try (SpooledUpload upload = textExtractionService.spool(file)) {
+      String contentType = textExtractionService.detectContentType(upload);
+      if (!textExtractionService.isSupportedContentType(contentType)) {
+        throw new IllegalArgumentException("Unsupported file type: " + contentType);
+      }
+
+      String contentHash = upload.getContentHash();
+      if (contentHash.equals(document.getContentHash())) {
+        logger.info("New version of document {} is identical; nothing to do", documentId);
+        return document;
+      }
+      Optional<Document> identical = documentRepository.findByContentHash(contentHash);
+      if (identical.isPresent()) {
+        throw new IllegalArgumentException(
+            "Content is identical to document " + identical.get().getId());
+      }
+
+      // Extract and split before writing anything, so a bad file leaves the document intact
+      splitter = chunkingService.openSplitter(contentType);
+      String extractedText;
+      try {
+        extractedText = textExtractionService.extractText(upload, splitter);
+      } catch (TikaException e) {
+        throw new IllegalArgumentException("Text could not be extracted from the document", e);
+      }
+      if (extractedText == null || extractedText.isBlank()) {
+        throw new IllegalArgumentException("No text could be extracted from the document");
+      }
+      document.setFilename(upload.getOriginalFilename());
+      document.setFileSize(upload.getSize());
+      document.setContentType(contentType);
+      document.setContentHash(contentHash);
+      document.setExtractedText(extractedText);
+    }
+    int[] signature = nearDuplicateIndex.signature(document.getExtractedText());
+    document.setRevision(document.getRevision() == null ? 2 : document.getRevision() + 1);
+    List<DocumentChunk> chunks = splitter.finish(document);
+    if (chunks.isEmpty()) {
+      throw new IllegalArgumentException("No chunks could be created from the document");
+    }
+    chunks = chunkQualityFilter.filter(document, chunks);
+
+    // Match the new chunks to the stored ones by content hash
+    List<DocumentChunkRepository.ChunkFingerprint> previousChunks =
+        documentChunkRepository.findFingerprintsByDocumentId(documentId);
+    Map<String, Deque<Long>> storedByHash = new HashMap<>();
+    for (DocumentChunkRepository.ChunkFingerprint stored : previousChunks) {
+      String hash = stored.getContentHash() != null ? stored.getContentHash()
+          : ContentHashes.sha256(stored.getTextContent());
+      storedByHash.computeIfAbsent(hash, h -> new ArrayDeque<>()).add(stored.getId());
+    }
+    Map<Long, DocumentChunk> kept = new LinkedHashMap<>();
+    List<DocumentChunk> added = new ArrayList<>();
+    for (DocumentChunk chunk : chunks) {
+      Deque<Long> candidates = storedByHash.get(chunk.getContentHash());
+      Long storedId = candidates == null ? null : candidates.poll();
+      if (storedId != null) {
+        kept.put(storedId, chunk);
+      } else {
+        added.add(chunk);
+      }
+    }
+    List<Long> removed = new ArrayList<>();
+    storedByHash.values().forEach(removed::addAll);
+
+    // Step 1: Retire what disappeared, move what stayed and store the new text and chunks
+    Document revised = document;
+    List<DocumentChunk> stored = transactionTemplate.execute(status -> {
+      Map<Long, DocumentChunkRepository.ChunkFingerprint> previousById = new HashMap<>();
+      previousChunks.forEach(chunk -> previousById.put(chunk.getId(), chunk));
+      for (int i = 0; i < removed.size(); i++) {
+        DocumentChunkRepository.ChunkFingerprint chunk = previousById.get(removed.get(i));
+        documentChunkRepository.updatePosition(chunk.getId(), -1 - i,
+            chunk.getStartPosition(), chunk.getEndPosition(), chunk.getContentHash());
+        if (chunk.getTextContent() == null) {
+          // Its offsets point into the previous text, which is about to be replaced
+          documentChunkRepository.updateStoredText(chunk.getId(),
+              previous.textAt(chunk.getStartPosition(), chunk.getEndPosition()));
+        }
+      }
+      kept.forEach((id, chunk) -> documentChunkRepository.updatePosition(id,
+          chunk.getChunkIndex(), chunk.getStartPosition(), chunk.getEndPosition(),
+          chunk.getContentHash()));
+      List<DocumentChunk> saved = documentChunkRepository.saveAll(added);
+      statisticsService.recordChunksAdded(saved.size(), 0);
+      saveWithStatus(revised, Document.ProcessingStatus.CHUNKED);
+      nearDuplicateIndex.add(documentId, signature);
+      return saved;
+    });
+
+    try {
+      // Steps 2-4: Embed and relate only the new chunks, summarizing the new text meanwhile
+      document = embedAndRelate(document, stored);
+
+      logger.info("Stored revision {} of document {}: {} chunks kept, {} removed, {} added",
+          document.getRevision(), documentId, kept.size(), removed.size(), stored.size());
+      return document;
+
+    } catch (RuntimeException e) {
+      logger.error("Error processing new version of document {}: {}", documentId,
+          e.getMessage(), e);
+      restoreRevision(document, previous, stored, previousChunks, removed);
+      throw e;
+    }
+  }
+
+  /**
+   * Resumes a document whose processing was interrupted, from its last checkpoint.
+   * <p>
+   * Every stage after text extraction leaves a checkpoint: the extracted text is stored at
+   * {@code TEXT_EXTRACTED}, the chunks are stored without embeddings at {@code CHUNKED}, each
+   * chunk is saved as soon as its embedding returns, and {@code EMBEDDINGS_GENERATED} marks a
+   * searchable document whose relationships and summary may still be missing. Resuming
+   * repeats only the work missing from the checkpoint. A document still {@code UPLOADED} cannot
+   * be resumed, because the uploaded file is not kept, and is marked {@code FAILED} so it can
+   * be uploaded again.
+   * </p>
+   *
+   * @param documentId the ID of the document to resume.
+   * @return the resumed document.
+   * @throws IllegalArgumentException if the document does not exist.
+   */
+  public Document resumeProcessing(Long documentId) {
+    Document document = documentRepository.findWithContentById(documentId)
+        .orElseThrow(() -> new IllegalArgumentException("Document not found: " + documentId));
+    Document.ProcessingStatus status = document.getProcessingStatus();
+    logger.info("Resuming processing of document {} from {}", documentId, status);
+
+    try {
+      if (status == Document.ProcessingStatus.UPLOADED) {
+        logger.warn("Document {} was interrupted before its text was extracted; "
+            + "it must be uploaded again", documentId);
+        markFailed(document);
+      } else if (status == Document.ProcessingStatus.TEXT_EXTRACTED) {
+        document = embedAndRelate(document,
+            storeChunks(document, chunkingService.chunkDocument(document)));
+      } else if (status == Document.ProcessingStatus.CHUNKED) {
+        document = embedAndRelate(document,
+            documentChunkRepository.findByDocumentIdAndEmbeddingIsNull(documentId));
+      } else if (status == Document.ProcessingStatus.EMBEDDINGS_GENERATED) {
+        document = relateAndSummarize(document,
+            documentChunkRepository.findUnrelatedChunksByDocumentId(documentId));
+      }
+      return document;
+
+    } catch (RuntimeException e) {
+      logger.error("Error resuming document {}: {}", documentId, e.getMessage(), e);
+      markFailed(document);
+      throw e;
+    }
+  }
+
+  /**
+   * Stores a document's chunks without embeddings, moving the document to {@code CHUNKED} in
+   * the same transaction. Chunks the {@link ChunkQualityFilter} finds of low value are left out
+   * or down-weighted first.
+   *
+   * @param document a document whose text has been extracted.
+   * @param chunks   the unsaved chunks of its text.
+   * @return the stored chunks.
+   * @throws IllegalStateException if no chunks could be created.
+   */
+  private List<DocumentChunk> storeChunks(Document document, List<DocumentChunk> chunks) {
+    return transactionTemplate.execute(status -> {
+      if (chunks.isEmpty()) {
+        throw new IllegalStateException("No chunks could be created from the document");
+      }
+      List<DocumentChunk> stored =
+          documentChunkRepository.saveAll(chunkQualityFilter.filter(document, chunks));
+      statisticsService.recordChunksAdded(stored.size(), 0);
+      saveWithStatus(document, Document.ProcessingStatus.CHUNKED);
+      return stored;
+    });
+  }
+
+  /**
+   * Embeds stored chunks concurrently, then relates and summarizes them.
+   * <p>
+   * Each chunk is saved as soon as its embedding returns, so an interrupted run only has to
+   * embed the chunks that are still missing one. Chunks whose embedding fails are deleted, as
+   * search could never find them.
+   * </p>
+   *
+   * @param document a {@code CHUNKED} document.
+   * @param pending  its stored chunks that have no embedding yet.
+   * @return the document, see {@link #relateAndSummarize(Document, List)}.
+   */
+  private Document embedAndRelate(Document document, List<DocumentChunk> pending) {
+    logger.info("Step 3: Generating embeddings for {} chunks", pending.size());
+    List<DocumentChunk> embedded = embeddingService.generateEmbeddings(pending);
+    statisticsService.recordChunksAdded(0, embedded.size());
+    if (embedded.size() < pending.size()) {
+      int dropped = documentChunkRepository.deleteUnembeddedByDocumentIdNative(document.getId());
+      statisticsService.recordChunksRemoved(dropped, 0);
+    }
+
+    // The chunks a new version dropped are replaced once the new ones are searchable
+    Document current = document;
+    document = transactionTemplate.execute(status -> {
+      List<Long> retired = documentChunkRepository.findRetiredIdsByDocumentId(current.getId());
+      if (!retired.isEmpty()) {
+        deleteChunks(retired);
+      }
+      return saveWithStatus(current, Document.ProcessingStatus.EMBEDDINGS_GENERATED);
+    });
+    return relateAndSummarize(document, embedded);
+  }
+
+  /**
+   * Runs the stages that follow embedding as a {@link StageGraph}.
+   * <p>
+   * Relating the chunks and ranking the extractive summary only need the embedded chunks, so
+   * they run concurrently and the document is done when the slower one is. If relating fails,
+   * the summary is cancelled and the failure propagates, so the document is marked
+   * {@code FAILED}. If summarizing fails, the relationships are kept and the document is left
+   * to the {@link SummarizationQueue}, as it is when an LLM summary is to replace the
+   * extractive one.
+   * </p>
+   * <p>
+   * The stages run on the stage executor, each in its own transactions, so they only see
+   * committed chunks. Ingestion commits every stage itself, but when the caller has opened a
+   * transaction of its own the stages run one after the other on the calling thread instead.
+   * </p>
+   *
+   * @param document an {@code EMBEDDINGS_GENERATED} document.
+   * @param sources  its embedded chunks that have no relationships yet.
+   * @return the document, {@code COMPLETED} unless the queue still has to summarize it.
+   */
+  private Document relateAndSummarize(Document document, List<DocumentChunk> sources) {
+    Long documentId = document.getId();
+    String text = document.getExtractedText();
+    AtomicReference<List<DocumentRelationship>> relationships =
+        new AtomicReference<>(List.of());
+    AtomicReference<String> summary = new AtomicReference<>();
+    StageGraph stages = new StageGraph("document " + documentId)
+        // Step 4: Generate relationships between chunks
+        .stage("relationships",
+            () -> relationships.set(createRelationshipsForSourceChunks(sources)))
+        // Step 5: Rank the extractive summary from the same embeddings
+        .optionalStage("summary",
+            () -> summary.set(summarizationService.extractiveSummary(documentId, text)));
+    // Stage threads could not see chunks stored in a transaction that has not committed
+    stages.run(TransactionSynchronizationManager.isActualTransactionActive()
+        ? Runnable::run : stageExecutor);
+    logger.info("Created {} document relationships.", relationships.get().size());
+
+    if (stages.hasFailed("summary")) {
+      summarizationQueue.enqueue(documentId);
+      return document;
+    }
+    document.setSummary(summary.get());
+    document = saveWithStatus(document, Document.ProcessingStatus.SUMMARIZED);
+    // Clones made before the summary existed share it too
+    documentRepository.updateSummaryOfDuplicates(documentId, summary.get());
+    if (summarizationService.isLlmUpgradeEnabled()) {
+      summarizationQueue.enqueue(documentId);
+      return document;
+    }
+    return saveWithStatus(document, Document.ProcessingStatus.COMPLETED);
+  }
+
+  /**
+   * Handles an upload whose bytes match an already processed document.
+   * <p>
+   * A clone is only made once the existing document is searchable, because until then it has
+   * no chunks to share; before that the existing document is returned whatever the policy.
+   * </p>
+   *
+   * @param existing the document with the same content hash.
+   * @param file     the duplicate upload.
+   * @param policy   how the caller asked duplicates to be handled.
+   * @return the existing document or its new clone.
+   */
+  private Document reuseDuplicate(Document existing, SpooledUpload upload,
+      DuplicatePolicy policy) {
+    if (policy != DuplicatePolicy.CLONE || !isSearchable(existing)) {
+      logger.info("Upload {} is identical to document {}; returning it",
+          upload.getOriginalFilename(), existing.getId());
+      return existing;
+    }
+    // A linked near-duplicate shares the chunks of another document; so does its clone
+    Document owner = existing.getDuplicateOf() != null ? existing.getDuplicateOf() : existing;
+
+    Document clone = Document.builder()
+        .filename(upload.getOriginalFilename())
+        .fileSize(upload.getSize())
+        .contentType(existing.getContentType())
+        .summary(existing.getSummary())
+        .processingStatus(Document.ProcessingStatus.COMPLETED)
+        .duplicateOf(owner)
+        .build();
+    clone = documentRepository.save(clone);
+    statisticsService.recordStatusChange(null, Document.ProcessingStatus.COMPLETED);
+    logger.info("Upload {} is identical to document {}; cloned as document {}",
+        upload.getOriginalFilename(), existing.getId(), clone.getId());
+    return clone;
+  }
+
+  /**
+   * Returns the indexed document whose text is most similar to a new text, if it still exists.
+   *
+   * @param signature the signature of the new text.
+   * @return the near-duplicate document.
+   */
+  private Optional<Document> findNearDuplicate(int[] signature) {
+    Optional<NearDuplicateIndex.Match> match = nearDuplicateIndex.findNearDuplicate(signature);
+    if (match.isEmpty()) {
+      return Optional.empty();
+    }
+    logger.info("Text nearly matches document {} (estimated similarity {})",
+        match.get().getDocumentId(), match.get().getSimilarity());
+    return documentRepository.findById(match.get().getDocumentId());
+  }
+
+  /**
+   * Handles an upload whose text nearly matches a processed document, before it is chunked.
+   * <p>
+   * {@code SKIP} drops the upload and returns the similar document. {@code LINK} stores the
+   * upload with its text, sharing the chunks and summary of the similar document as a clone
+   * does, once that document is searchable; until then the upload is processed. {@code PROCESS}
+   * only records the similar document on the upload, which is then processed as usual.
+   * </p>
+   *
+   * @param document the uploaded document, still {@code UPLOADED}.
+   * @param text     its extracted text.
+   * @param similar  the document its text nearly matches.
+   * @param policy   how the caller asked near-duplicates to be handled.
+   * @return the document to return, or {@code null} if the upload is to be processed.
+   */
+  private Document handleNearDuplicate(Document document, String text, Document similar,
+      NearDuplicatePolicy policy) {
+    if (policy == NearDuplicatePolicy.SKIP) {
+      documentRepository.delete(document);
+      statisticsService.recordStatusChange(document.getProcessingStatus(), null);
+      logger.info("Upload {} nearly matches document {}; skipped", document.getFilename(),
+          similar.getId());
+      return similar;
+    }
+
+    document.setNearDuplicateOf(similar);
+    if (policy != NearDuplicatePolicy.LINK || !isSearchable(similar)) {
+      return null;
+    }
+    // A clone or linked document only shares the chunks of its owner
+    Document owner = similar.getDuplicateOf() != null ? similar.getDuplicateOf() : similar;
+    document.setExtractedText(text);
+    document.setDuplicateOf(owner);
+    document.setSummary(owner.getSummary());
+    document = saveWithStatus(document, Document.ProcessingStatus.COMPLETED);
+    logger.info("Upload {} nearly matches document {}; linked as document {}",
+        document.getFilename(), similar.getId(), document.getId());
+    return document;
+  }
+
+  private static boolean isSearchable(Document document) {
+    Document.ProcessingStatus status = document.getProcessingStatus();
+    return status == Document.ProcessingStatus.EMBEDDINGS_GENERATED
+        || status == Document.ProcessingStatus.SUMMARIZED
+        || status == Document.ProcessingStatus.COMPLETED;
+  }
+
+  /**
+   * Puts back the previous revision of a document whose new version failed, so it stays
+   * searchable as it was. If that fails too, the document is marked {@code FAILED}.
+   *
+   * @param document       the document whose new version failed.
+   * @param previous       its previous revision.
+   * @param added          the chunks stored for the new version.
+   * @param previousChunks the chunks of the previous revision, at their previous positions.
+   * @param retired        the IDs of the chunks the new version dropped.
+   */
+  private void restoreRevision(Document document, Revision previous, List<DocumentChunk> added,
+      List<DocumentChunkRepository.ChunkFingerprint> previousChunks, List<Long> retired) {
+    Long id = document.getId();
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        List<Long> addedIds = added.stream().map(DocumentChunk::getId).toList();
+        if (!addedIds.isEmpty()) {
+          deleteChunks(addedIds);
+        }
+        // Chunks deleted once the new ones were embedded are no longer updated
+        for (DocumentChunkRepository.ChunkFingerprint chunk : previousChunks) {
+          documentChunkRepository.updatePosition(chunk.getId(), chunk.getChunkIndex(),
+              chunk.getStartPosition(), chunk.getEndPosition(), chunk.getContentHash());
+          if (chunk.getTextContent() == null && retired.contains(chunk.getId())) {
+            documentChunkRepository.updateStoredText(chunk.getId(), null);
+          }
+        }
+        previous.restore(document);
+        saveWithStatus(document, previous.status);
+        documentRepository.updateSummaryOfDuplicates(id, previous.summary);
+        if (previous.status == Document.ProcessingStatus.FAILED) {
+          nearDuplicateIndex.remove(id);
+        } else {
+          nearDuplicateIndex.add(id, nearDuplicateIndex.signature(previous.extractedText));
+        }
+      });
+      logger.info("Restored revision {} of document {}", previous.revision, id);
+    } catch (RuntimeException e) {
+      logger.error("Could not restore document {}: {}", id, e.getMessage(), e);
+      markFailed(document);
+    }
+  }
+
+  /**
+   * Claims a document for a new version by moving it to {@code CHUNKED}, provided it still has
+   * the revision and status it was loaded with.
+   *
+   * @param document the document to revise.
+   * @param previous its revision as loaded.
+   * @throws DocumentBusyException if another version claimed it first.
+   */
+  private void claimRevision(Document document, Revision previous) {
+    if (documentRepository.updateStatusIfCurrent(document.getId(), previous.revisionNumber(),
+        List.of(previous.status), Document.ProcessingStatus.CHUNKED) == 0) {
+      throw new DocumentBusyException("Another version of the document is being processed");
+    }
+    document.setProcessingStatus(Document.ProcessingStatus.CHUNKED);
+    statisticsService.recordStatusChange(previous.status, Document.ProcessingStatus.CHUNKED);
+  }
+
+  /**
+   * Moves a claimed document back to its previous status, unless the new version was stored
+   * or the previous revision was restored in the meantime.
+   *
+   * @param document the claimed document.
+   * @param previous its revision as loaded.
+   */
+  private void releaseRevision(Document document, Revision previous) {
+    try {
+      if (documentRepository.updateStatusIfCurrent(document.getId(), previous.revisionNumber(),
+          List.of(Document.ProcessingStatus.CHUNKED), previous.status) > 0) {
+        document.setProcessingStatus(previous.status);
+        statisticsService.recordStatusChange(Document.ProcessingStatus.CHUNKED, previous.status);
+      }
+    } catch (RuntimeException e) {
+      logger.error("Could not release document {}: {}", document.getId(), e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Deletes chunks together with their relationships and updates the statistics.
+   *
+   * @param ids the IDs of the chunks to delete.
+   */
+  private void deleteChunks(List<Long> ids) {
+    documentRelationshipRepository.deleteByChunkIdsNative(ids);
+    long embedded = documentChunkRepository.countEmbeddedByIds(ids);
+    int deleted = documentChunkRepository.deleteByIdsNative(ids);
+    statisticsService.recordChunksRemoved(deleted, embedded);
+  }
+
+  /**
+   * Moves a document to {@code FAILED} and removes whatever chunks and relationships the
+   * failed run had already committed, so a failed document never shows up in search. Its
+   * content hash is cleared so the same bytes are processed afresh if uploaded again.
+   *
+   * @param document the document whose processing failed.
+   */
+  private void markFailed(Document document) {
+    Long id = document.getId();
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        documentRelationshipRepository.deleteByDocumentIdNative(id);
+        // A run can fail before every chunk is embedded
+        long embeddedDeleted = documentChunkRepository.countEmbeddedByDocumentId(id);
+        int chunksDeleted = documentChunkRepository.deleteByDocumentIdNative(id);
+        statisticsService.recordChunksRemoved(chunksDeleted, embeddedDeleted);
+        nearDuplicateIndex.remove(id);
+        document.setContentHash(null);
+        saveWithStatus(document, Document.ProcessingStatus.FAILED);
+      });
+    } catch (RuntimeException e) {
+      logger.error("Could not mark document {} as failed: {}", id, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Moves a document to a new processing status, saves it and updates the statistics.
+   *
+   * @param document the document to update.
+   * @param status   the new processing status.
+   * @return the saved document.
+   */
+  private Document saveWithStatus(Document document, Document.ProcessingStatus status) {
+    Document.ProcessingStatus previous = document.getProcessingStatus();
+    document.setProcessingStatus(status);
+    Document saved = documentRepository.save(document);
+    statisticsService.recordStatusChange(previous, status);
+    return saved;
+  }
+
   /**
    * Retrieves a document by its unique ID.
    */
@@ -178,21 +857,171 @@ public class DocumentService {
   }
 
   /**
-   * Retrieves all stored documents.
+   * Lists one page of documents ordered by upload time, optionally filtered by filename.
+   * <p>
+   * Pages are addressed by keyset: the cursor of the last document of a page is used to seek
+   * directly to the next one, so every page costs the same however deep the client reads.
+   * Filename matching is a case-insensitive substring match. Without a limit a page holds
+   * {@code app.document.list.max-page-size} documents.
+   * </p>
+   *
+   * @param filename  the substring the filename must contain, or {@code null} for all
+   *                  documents.
+   * @param cursor    the cursor returned with the previous page, or {@code null} for the
+   *                  first page.
+   * @param limit     the requested page size, capped at {@code app.document.list.max-page-size},
+   *                  or {@code null} for the largest page.
+   * @param direction the order of upload times.
+   * @return the page, with the cursor of the following page if there is one.
+   * @throws IllegalArgumentException if the limit is not positive or the cursor is invalid.
+   */
+  public DocumentPageResponse listDocumentPage(String filename, String cursor, Integer limit,
+      Sort.Direction direction) {
+    boolean ascending = direction.isAscending();
+    DocumentCursor position = position(cursor, ascending);
+
+    // Fetch one extra row to learn whether another page follows
+    int pageSize = limit == null ? maxPageSize : pageSize(limit);
+    Pageable page = PageRequest.ofSize(pageSize + 1);
+    List<DocumentDto> rows;
+    if (filename == null || filename.isBlank()) {
+      rows = ascending
+          ? documentRepository.findPageAfter(position.getUploadedAt(), position.getId(), page)
+          : documentRepository.findPageBefore(position.getUploadedAt(), position.getId(), page);
+    } else {
+      String pattern = "%" + escapeLikePattern(filename) + "%";
+      rows = ascending
+          ? documentRepository.findPageByFilenameAfter(pattern, position.getUploadedAt(),
+              position.getId(), page)
+          : documentRepository.findPageByFilenameBefore(pattern, position.getUploadedAt(),
+              position.getId(), page);
+    }
+
+    return toPage(rows, pageSize, "Documents retrieved successfully");
+  }
+
+  /**
+   * Lists one page of documents that have a non-blank summary, ordered by upload time.
+   * <p>
+   * Filtering and paging happen in the database, the same way as
+   * {@link #listDocumentPage(String, String, Integer, Sort.Direction)}.
+   * </p>
+   *
+   * @param cursor    the cursor returned with the previous page, or {@code null} for the
+   *                  first page.
+   * @param limit     the requested page size; capped at {@code app.document.list.max-page-size}.
+   * @param direction the order of upload times.
+   * @return the page, with the cursor of the following page if there is one.
+   * @throws IllegalArgumentException if the limit is not positive or the cursor is invalid.
+   */
+  public DocumentPageResponse listSummarizedPage(String cursor, int limit,
+      Sort.Direction direction) {
+    int pageSize = pageSize(limit);
+    boolean ascending = direction.isAscending();
+    DocumentCursor position = position(cursor, ascending);
+    List<DocumentDto> rows = fetchSummarized(position, ascending, pageSize + 1);
+    return toPage(rows, pageSize, "Documents with summaries retrieved successfully");
+  }
+
+  /**
+   * Passes every document with a non-blank summary to {@code action}, oldest first.
+   * <p>
+   * Documents are read one page at a time, so an export of any size holds at most a page in
+   * memory and no database connection is kept open between pages.
+   * </p>
+   *
+   * @param action the callback receiving each document.
+   * @return the number of documents passed to {@code action}.
+   */
+  public long forEachSummarized(Consumer<DocumentDto> action) {
+    DocumentCursor position = DocumentCursor.start(true);
+    long count = 0;
+    List<DocumentDto> rows;
+    do {
+      rows = fetchSummarized(position, true, maxPageSize);
+      for (DocumentDto row : rows) {
+        action.accept(row);
+      }
+      count += rows.size();
+      if (!rows.isEmpty()) {
+        DocumentDto last = rows.get(rows.size() - 1);
+        position = DocumentCursor.of(last.getUploadedAt(), last.getId());
+      }
+    } while (rows.size() == maxPageSize);
+    return count;
+  }
+
+  private List<DocumentDto> fetchSummarized(DocumentCursor position, boolean ascending,
+      int rows) {
+    Pageable page = PageRequest.ofSize(rows);
+    return ascending
+        ? documentRepository.findSummarizedPageAfter(position.getUploadedAt(),
+            position.getId(), page)
+        : documentRepository.findSummarizedPageBefore(position.getUploadedAt(),
+            position.getId(), page);
+  }
+
+  private int pageSize(int limit) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("Limit must be positive");
+    }
+    return Math.min(limit, maxPageSize);
+  }
+
+  private static DocumentCursor position(String cursor, boolean ascending) {
+    return cursor == null || cursor.isBlank()
+        ? DocumentCursor.start(ascending) : DocumentCursor.decode(cursor);
+  }
+
+  /**
+   * Builds a page from rows fetched with one row more than {@code pageSize}; the extra row
+   * only signals that another page follows.
+   */
+  private static DocumentPageResponse toPage(List<DocumentDto> rows, int pageSize,
+      String message) {
+    boolean hasMore = rows.size() > pageSize;
+    List<DocumentDto> documents = hasMore ? rows.subList(0, pageSize) : rows;
+    String nextCursor = null;
+    if (hasMore) {
+      DocumentDto last = documents.get(documents.size() - 1);
+      nextCursor = DocumentCursor.of(last.getUploadedAt(), last.getId()).encode();
+    }
+    return new DocumentPageResponse(documents, (long) documents.size(), nextCursor, hasMore,
+        message);
+  }
+
+  /**
+   * Escapes the LIKE wildcards in user input so it is matched literally.
+   */
+  static String escapeLikePattern(String value) {
+    return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+  }
+
+  /**
+   * Returns the number of documents in each processing status.
+   *
+   * @return a count for every {@link Document.ProcessingStatus}.
+   */
+  public Map<Document.ProcessingStatus, Long> getStatusCounts() {
+    return statisticsService.getStatusCounts();
+  }
+
+  /**
+   * Returns how busy the text extraction parser pool is and how its parses have ended.
    *
-   * @return a list of all {@link Document} entities.
+   * @return the parser pool statistics.
    */
-  public List<Document> getAllDocuments() {
-    return documentRepository.findAll();
+  public ExtractionStats getExtractionStats() {
+    return textExtractionService.getParserStats();
   }
 
   /**
-   * Retrieves all documents matching a given filename.
+   * Returns what the chunk quality filter skipped and down-weighted since startup.
    *
-   * @return a list of all matching {@link Document} entities.
+   * @return the filter statistics.
    */
-  public List<Document> getDocumentsByFilename(String filename) {
-    return documentRepository.findByFilenameContaining(filename);
+  public ChunkFilterStats getChunkFilterStats() {
+    return chunkQualityFilter.getStats();
   }
 
   /**
@@ -214,6 +1043,10 @@ public class DocumentService {
    * 2. Finding and deleting all document chunks associated with the document
    * 3. Finally deleting the document itself
    * </p>
+   * <p>
+   * If other documents were cloned from this one, its chunks, relationships and content hash
+   * pass to the oldest clone instead of being deleted.
+   * </p>
    *
    * @param id the ID of the document to delete.
    */
@@ -226,6 +1059,18 @@ public class DocumentService {
     }
 
     Document document = documentOpt.get();
+    documentRepository.clearNearDuplicateOfNative(id);
+
+    List<Document> duplicates = documentRepository.findByDuplicateOfIdOrderByIdAsc(id);
+    if (!duplicates.isEmpty()) {
+      Document heir = duplicates.get(0);
+      promoteDuplicate(document, heir);
+      documentRepository.delete(document);
+      statisticsService.recordStatusChange(document.getProcessingStatus(), null);
+      logger.info("Deleted document: {}; its chunks now belong to document {}", id,
+          heir.getId());
+      return;
+    }
 
     // Step 1: Delete all relationships associated with this document's chunks using
     // native query
@@ -237,16 +1082,51 @@ public class DocumentService {
 
     // Step 2: Delete all chunks associated with this document using native query
     // This avoids loading entities with embeddings which can cause converter issues
+    long embeddedDeleted = documentChunkRepository.countEmbeddedByDocumentId(id);
     int chunksDeleted = documentChunkRepository.deleteByDocumentIdNative(id);
     if (chunksDeleted > 0) {
       logger.info("Deleted {} chunks for document: {}", chunksDeleted, id);
     }
+    statisticsService.recordChunksRemoved(chunksDeleted, embeddedDeleted);
+    nearDuplicateIndex.remove(id);
 
     // Step 3: Delete the document itself
     documentRepository.delete(document);
+    statisticsService.recordStatusChange(document.getProcessingStatus(), null);
     logger.info("Deleted document: {}", id);
   }
 
+  /**
+   * Makes a clone the owner of the chunks and content of the document it was cloned from.
+   *
+   * @param original the document being deleted.
+   * @param heir     the clone taking its place.
+   */
+  private void promoteDuplicate(Document original, Document heir) {
+    String contentHash = original.getContentHash();
+    heir.setExtractedText(original.getExtractedText());
+    heir.setDuplicateOf(null);
+    heir.setNearDuplicateOf(null);
+
+    // Release the unique hash before the clone takes it
+    original.setContentHash(null);
+    documentRepository.saveAndFlush(original);
+    heir.setContentHash(contentHash);
+    documentRepository.save(heir);
+
+    documentChunkRepository.reassignDocumentNative(original.getId(), heir.getId());
+    documentRepository.reassignDuplicatesNative(original.getId(), heir.getId());
+    nearDuplicateIndex.transfer(original.getId(), heir.getId());
+  }
+
+  /**
+   * Returns the ID of the document whose chunks a document uses: the original for a clone,
+   * and the document itself otherwise.
+   */
+  private Long chunkOwnerId(Long documentId) {
+    return documentRepository.findChunkOwnerId(documentId).orElse(documentId);
+  }
+
   /**
    * Retrieves all {@link DocumentChunk} instances belonging to a given document.
    *
@@ -255,7 +1135,7 @@ public class DocumentService {
    * @throws IllegalArgumentException if the document does not exist.
    */
   public List<DocumentChunk> getDocumentChunks(Long documentId) {
-    return chunkingService.getChunksForDocument(documentId);
+    return chunkingService.getChunksForDocument(chunkOwnerId(documentId));
   }
 
   /**
@@ -272,7 +1152,8 @@ public class DocumentService {
     if (document.isEmpty()) {
       throw new IllegalArgumentException("Document not found: " + documentId);
     }
-    return chunkingService.getChunkStatistics(document.get());
+    Document owner = document.get().getDuplicateOf();
+    return chunkingService.getChunkStatistics(owner != null ? owner : document.get());
   }
 
   /**
@@ -282,9 +1163,8 @@ public class DocumentService {
    * @param documentId the ID of the document to process.
    * @return the number of chunks for which embeddings were generated.
    */
-  @Transactional
   public int generateEmbeddingsForDocument(Long documentId) {
-    return embeddingService.generateEmbeddingsForDocument(documentId);
+    return embeddingService.generateEmbeddingsForDocument(chunkOwnerId(documentId));
   }
 
   /**
@@ -298,35 +1178,6 @@ public class DocumentService {
     return embeddingService.findSimilarChunks(queryText, limit);
   }
 
-  /**
-   * Generates a simple summary of the document’s text content (placeholder for
-   * now).
-   *
-   * @param text the extracted text to summarize.
-   * @return a short summary string, or a placeholder message if text is
-   *         unavailable.
-   */
-  private String generateSummary(String text) {
-    if (text == null || text.isBlank()) {
-      return "No summary available";
-    }
-
-    // Simple truncation-based summary (first 200 characters)
-    String cleanedText = text.replaceAll("\\s+", " ").trim();
-    if (cleanedText.length() <= 200) {
-      return cleanedText;
-    }
-
-    // Try to break at sentence boundary
-    String truncated = cleanedText.substring(0, 200);
-    int lastPeriod = truncated.lastIndexOf('.');
-    if (lastPeriod > 100) {
-      return truncated.substring(0, lastPeriod + 1);
-    }
-
-    return truncated + "...";
-  }
-
   /**
    * Retrieves all document relationships for a given document ID.
    *
@@ -335,7 +1186,7 @@ public class DocumentService {
    * @return List of DocumentRelationship entities
    */
   public List<DocumentRelationship> getRelationshipsForDocument(Long documentId) {
-    return documentRelationshipRepository.findByDocumentId(documentId);
+    return documentRelationshipRepository.findByDocumentId(chunkOwnerId(documentId));
   }
 
   /**
@@ -401,4 +1252,130 @@ public class DocumentService {
       return new ArrayList<>();
     }
   }
+
+  @PreDestroy
+  void shutdown() {
+    stageExecutor.shutdownNow();
+  }
+
+  /**
+   * How to handle an upload whose bytes match a document that was already processed.
+   */
+  public enum DuplicatePolicy {
+    /** Return the existing document. */
+    RETURN_EXISTING,
+    /** Create a document with its own filename that shares the existing chunks. */
+    CLONE;
+
+    /**
+     * Parses the {@code onDuplicate} request parameter.
+     *
+     * @param value {@code existing} or {@code clone}, in any case.
+     * @return the matching policy.
+     * @throws IllegalArgumentException for any other value.
+     */
+    public static DuplicatePolicy fromParameter(String value) {
+      if ("existing".equalsIgnoreCase(value)) {
+        return RETURN_EXISTING;
+      }
+      if ("clone".equalsIgnoreCase(value)) {
+        return CLONE;
+      }
+      throw new IllegalArgumentException("onDuplicate must be 'existing' or 'clone'");
+    }
+  }
+
+  /**
+   * How to handle an upload whose text nearly matches that of a processed document.
+   */
+  public enum NearDuplicatePolicy {
+    /** Process the upload fully, recording the similar document on it. */
+    PROCESS,
+    /** Store the upload sharing the chunks of the similar document, without embedding it. */
+    LINK,
+    /** Drop the upload and return the similar document. */
+    SKIP;
+
+    /**
+     * Parses the {@code onNearDuplicate} request parameter.
+     *
+     * @param value {@code process}, {@code link} or {@code skip}, in any case.
+     * @return the matching policy.
+     * @throws IllegalArgumentException for any other value.
+     */
+    public static NearDuplicatePolicy fromParameter(String value) {
+      for (NearDuplicatePolicy policy : values()) {
+        if (policy.name().equalsIgnoreCase(value)) {
+          return policy;
+        }
+      }
+      throw new IllegalArgumentException(
+          "onNearDuplicate must be 'process', 'link' or 'skip'");
+    }
+  }
+
+  /**
+   * Names the threads running pipeline stages and keeps them from blocking JVM shutdown.
+   */
+  private static final class StageThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "document-stage-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  /**
+   * What a new version of a document overwrites, kept to restore it if the new version fails.
+   */
+  private static final class Revision {
+    private final String filename;
+    private final Long fileSize;
+    private final String contentType;
+    private final String contentHash;
+    private final String extractedText;
+    private final String summary;
+    private final Integer revision;
+    private final Document.ProcessingStatus status;
+
+    private Revision(Document document) {
+      filename = document.getFilename();
+      fileSize = document.getFileSize();
+      contentType = document.getContentType();
+      contentHash = document.getContentHash();
+      extractedText = document.getExtractedText();
+      summary = document.getSummary();
+      revision = document.getRevision();
+      status = document.getProcessingStatus();
+    }
+
+    private int revisionNumber() {
+      return revision == null ? 1 : revision;
+    }
+
+    /**
+     * Returns the text of the previous version between two offsets, as a chunk stored as
+     * offsets only resolves it.
+     */
+    private String textAt(Integer start, Integer end) {
+      if (extractedText == null || start == null || end == null || start < 0 || start > end
+          || end > extractedText.length()) {
+        return null;
+      }
+      return extractedText.substring(start, end).trim();
+    }
+
+    private void restore(Document document) {
+      document.setFilename(filename);
+      document.setFileSize(fileSize);
+      document.setContentType(contentType);
+      document.setContentHash(contentHash);
+      document.setExtractedText(extractedText);
+      document.setSummary(summary);
+      document.setRevision(revision);
+    }
+  }
 }
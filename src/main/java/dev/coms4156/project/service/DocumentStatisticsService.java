@@ -0,0 +1,190 @@
+package dev.coms4156.project.service;
+
+import dev.coms4156.project.model.Document.ProcessingStatus;
+import dev.coms4156.project.repository.DocumentChunkRepository;
+import dev.coms4156.project.repository.DocumentRepository;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Service maintaining document and chunk counts for the statistics endpoints.
+ * <p>
+ * Counts are seeded from aggregate queries on first use and then updated in memory as the
+ * pipeline changes document statuses and stores or removes chunks, so reading them costs no
+ * database work. Changes made inside a transaction are only counted once it commits. The
+ * counters are re-seeded from the database every {@code app.statistics.refresh-interval-ms},
+ * which bounds drift from writes made by other application instances.
+ * </p>
+ */
+@Service
+public class DocumentStatisticsService {
+
+  private static final Logger logger = LoggerFactory.getLogger(DocumentStatisticsService.class);
+
+  private final DocumentRepository documentRepository;
+  private final DocumentChunkRepository documentChunkRepository;
+  private final long refreshIntervalNanos;
+
+  private final Map<ProcessingStatus, Long> statusCounts = new EnumMap<>(ProcessingStatus.class);
+  private long statusCountsSeededAt;
+  private boolean statusCountsSeeded;
+
+  private long totalChunks;
+  private long chunksWithEmbeddings;
+  private long chunkCountsSeededAt;
+  private boolean chunkCountsSeeded;
+
+  /**
+   * Constructs a new {@code DocumentStatisticsService}.
+   *
+   * @param documentRepository      the repository used to seed document status counts.
+   * @param documentChunkRepository the repository used to seed chunk counts.
+   * @param refreshIntervalMs       how long in-memory counts are served before they are
+   *                                re-seeded from the database.
+   */
+  public DocumentStatisticsService(DocumentRepository documentRepository,
+      DocumentChunkRepository documentChunkRepository,
+      @Value("${app.statistics.refresh-interval-ms:300000}") long refreshIntervalMs) {
+    this.documentRepository = documentRepository;
+    this.documentChunkRepository = documentChunkRepository;
+    this.refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(refreshIntervalMs);
+  }
+
+  /**
+   * Returns the number of documents in each processing status.
+   *
+   * @return a count for every {@link ProcessingStatus}, including those with no documents.
+   */
+  public synchronized Map<ProcessingStatus, Long> getStatusCounts() {
+    if (!statusCountsSeeded || isStale(statusCountsSeededAt)) {
+      seedStatusCounts();
+    }
+    return new EnumMap<>(statusCounts);
+  }
+
+  /**
+   * Returns the total number of stored chunks.
+   *
+   * @return the chunk count.
+   */
+  public synchronized long getTotalChunks() {
+    ensureChunkCounts();
+    return totalChunks;
+  }
+
+  /**
+   * Returns the number of stored chunks that have an embedding.
+   *
+   * @return the count of embedded chunks.
+   */
+  public synchronized long getChunksWithEmbeddings() {
+    ensureChunkCounts();
+    return chunksWithEmbeddings;
+  }
+
+  /**
+   * Records that a document moved from one processing status to another.
+   *
+   * @param from the previous status, or {@code null} for a newly created document.
+   * @param to   the new status, or {@code null} for a deleted document.
+   */
+  public void recordStatusChange(ProcessingStatus from, ProcessingStatus to) {
+    if (from == to) {
+      return;
+    }
+    afterCommit(() -> applyStatusChange(from, to));
+  }
+
+  /**
+   * Records that chunks were stored.
+   *
+   * @param total          the number of chunks stored.
+   * @param withEmbeddings how many of them were stored with an embedding.
+   */
+  public void recordChunksAdded(long total, long withEmbeddings) {
+    afterCommit(() -> applyChunkDelta(total, withEmbeddings));
+  }
+
+  /**
+   * Records that chunks were deleted.
+   *
+   * @param total          the number of chunks deleted.
+   * @param withEmbeddings how many of them had an embedding.
+   */
+  public void recordChunksRemoved(long total, long withEmbeddings) {
+    afterCommit(() -> applyChunkDelta(-total, -withEmbeddings));
+  }
+
+  private synchronized void applyStatusChange(ProcessingStatus from, ProcessingStatus to) {
+    // Unseeded counts are read from the database in full, which already includes this change
+    if (!statusCountsSeeded) {
+      return;
+    }
+    if (from != null) {
+      statusCounts.merge(from, -1L, (a, b) -> Math.max(0L, a + b));
+    }
+    if (to != null) {
+      statusCounts.merge(to, 1L, Long::sum);
+    }
+  }
+
+  private synchronized void applyChunkDelta(long total, long withEmbeddings) {
+    if (!chunkCountsSeeded) {
+      return;
+    }
+    totalChunks = Math.max(0L, totalChunks + total);
+    chunksWithEmbeddings = Math.max(0L, chunksWithEmbeddings + withEmbeddings);
+  }
+
+  private void seedStatusCounts() {
+    List<Object[]> rows = documentRepository.countGroupedByProcessingStatus();
+    statusCounts.clear();
+    for (ProcessingStatus status : ProcessingStatus.values()) {
+      statusCounts.put(status, 0L);
+    }
+    for (Object[] row : rows) {
+      statusCounts.put((ProcessingStatus) row[0], ((Number) row[1]).longValue());
+    }
+    statusCountsSeededAt = System.nanoTime();
+    statusCountsSeeded = true;
+    logger.debug("Seeded document status counts: {}", statusCounts);
+  }
+
+  private void ensureChunkCounts() {
+    if (chunkCountsSeeded && !isStale(chunkCountsSeededAt)) {
+      return;
+    }
+    totalChunks = documentChunkRepository.count();
+    Long embedded = documentChunkRepository.countByEmbeddingIsNotNull();
+    chunksWithEmbeddings = embedded != null ? embedded : 0L;
+    chunkCountsSeededAt = System.nanoTime();
+    chunkCountsSeeded = true;
+    logger.debug("Seeded chunk counts: {} total, {} with embeddings", totalChunks,
+        chunksWithEmbeddings);
+  }
+
+  private boolean isStale(long seededAt) {
+    return System.nanoTime() - seededAt > refreshIntervalNanos;
+  }
+
+  private static void afterCommit(Runnable update) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          update.run();
+        }
+      });
+    } else {
+      update.run();
+    }
+  }
+}
@@ -1,12 +1,15 @@
 package dev.coms4156.project.service;
 
 import dev.coms4156.project.model.Document;
+import dev.coms4156.project.model.DocumentChunk;
+import dev.coms4156.project.repository.DocumentChunkRepository;
 import dev.coms4156.project.repository.DocumentRepository;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Service for generating document summarization.
@@ -17,18 +20,56 @@ public class DocumentSummarizationService {
   private static final Logger logger = LoggerFactory.getLogger(DocumentSummarizationService.class);
 
   private final DocumentRepository documentRepository;
+  private final DocumentChunkRepository documentChunkRepository;
+  private final ChunkEmbeddingStore embeddingStore;
   private final ChatClient chatClient;
+  private final ExtractiveSummarizationService extractiveSummarizationService;
+  private final DocumentStatisticsService statisticsService;
+  private final TokenCounter tokenCounter;
+  private final boolean llmUpgradeEnabled;
+  private final int maxPromptTokens;
 
+  /**
+   * Constructs a new {@code DocumentSummarizationService}.
+   *
+   * @param documentRepository             the repository used to load and update documents.
+   * @param documentChunkRepository        the repository used to load chunk embeddings.
+   * @param embeddingStore                 the embeddings the chunks refer to.
+   * @param chatClient                     the chat client used for LLM summaries.
+   * @param extractiveSummarizationService the fast extractive summarizer.
+   * @param statisticsService              the service notified of status changes.
+   * @param tokenCounter                   counts the tokens of text sent to the LLM.
+   * @param llmUpgradeEnabled              whether extractive summaries are replaced by LLM
+   *                                       summaries in the background.
+   * @param maxPromptTokens                the most tokens of document text sent to the LLM,
+   *                                       or 0 for no limit.
+   */
   public DocumentSummarizationService(DocumentRepository documentRepository,
-      ChatClient chatClient) {
+      DocumentChunkRepository documentChunkRepository,
+      ChunkEmbeddingStore embeddingStore,
+      ChatClient chatClient,
+      ExtractiveSummarizationService extractiveSummarizationService,
+      DocumentStatisticsService statisticsService,
+      TokenCounter tokenCounter,
+      @Value("${app.summarization.llm-upgrade-enabled:false}") boolean llmUpgradeEnabled,
+      @Value("${app.summarization.max-prompt-tokens:3000}") int maxPromptTokens) {
     this.documentRepository = documentRepository;
+    this.documentChunkRepository = documentChunkRepository;
+    this.embeddingStore = embeddingStore;
     this.chatClient = chatClient;
+    this.extractiveSummarizationService = extractiveSummarizationService;
+    this.statisticsService = statisticsService;
+    this.tokenCounter = tokenCounter;
+    this.llmUpgradeEnabled = llmUpgradeEnabled;
+    this.maxPromptTokens = Math.max(0, maxPromptTokens);
   }
 
   /**
    * Generate a simple summary for a document.
+   * <p>
+   * Not transactional: the document is saved in a short transaction after the LLM returns.
+   * </p>
    */
-  @Transactional
   public String generateSummary(Document document) {
     logger.info("Generating summary for document: {}", document.getFilename());
 
@@ -55,31 +96,157 @@ public class DocumentSummarizationService {
     }
   }
 
+  /**
+   * Ranks the sentences of a document's text by the stored embeddings of its chunks and
+   * returns the extractive summary, without storing it.
+   *
+   * @param documentId the ID of the document whose chunks are embedded.
+   * @param text       its extracted text.
+   * @return the extractive summary.
+   */
+  public String extractiveSummary(Long documentId, String text) {
+    List<DocumentChunk> chunks = documentChunkRepository
+        .findChunksWithEmbeddingsByDocumentId(documentId);
+    embeddingStore.resolve(chunks);
+    return extractiveSummarizationService.summarize(text, chunks);
+  }
+
+  /**
+   * Returns whether extractive summaries are replaced by LLM summaries in the background.
+   *
+   * @return {@code app.summarization.llm-upgrade-enabled}.
+   */
+  public boolean isLlmUpgradeEnabled() {
+    return llmUpgradeEnabled;
+  }
+
+  /**
+   * Summarizes a document that has finished ingestion and marks it summarized.
+   * <p>
+   * Called by the {@link SummarizationQueue} workers. The extractive summary is ranked from
+   * the stored chunk embeddings and saved first, moving the document to
+   * {@code SUMMARIZED}, unless ingestion already stored it; when
+   * {@code app.summarization.llm-upgrade-enabled} is set, it is then replaced by an LLM summary
+   * if the model produces one. The document ends up {@code COMPLETED}.
+   * </p>
+   * <p>
+   * The LLM call can take a while, so only the summary and status are written, and only if
+   * the document still has the revision and status it was summarized from. A document that was
+   * revised, deleted or failed in the meantime is left as it is.
+   * </p>
+   *
+   * @param documentId the ID of the document to summarize.
+   * @return the stored summary, or {@code null} if the document no longer waits for one.
+   */
+  public String summarizeDocument(Long documentId) {
+    Document document = documentRepository.findWithContentById(documentId).orElse(null);
+    if (document == null) {
+      logger.info("Document {} was removed before it could be summarized", documentId);
+      return null;
+    }
+    Document.ProcessingStatus status = document.getProcessingStatus();
+    if (status != Document.ProcessingStatus.EMBEDDINGS_GENERATED
+        && status != Document.ProcessingStatus.SUMMARIZED) {
+      logger.info("Document {} is {}; not summarizing it", documentId, status);
+      return null;
+    }
+    int revision = document.getRevision() == null ? 1 : document.getRevision();
+
+    String text = document.getExtractedText();
+    String summary = document.getSummary();
+    if (status != Document.ProcessingStatus.SUMMARIZED || summary == null) {
+      summary = extractiveSummary(documentId, text);
+      if (!storeSummary(documentId, revision, summary, Document.ProcessingStatus.SUMMARIZED,
+          Document.ProcessingStatus.EMBEDDINGS_GENERATED,
+          Document.ProcessingStatus.SUMMARIZED)) {
+        return null;
+      }
+      statisticsService.recordStatusChange(status, Document.ProcessingStatus.SUMMARIZED);
+    }
+
+    if (llmUpgradeEnabled && text != null && !text.isBlank()) {
+      String llmSummary = callLlm(text);
+      if (llmSummary != null && !llmSummary.isBlank()) {
+        summary = llmSummary;
+      }
+    }
+
+    if (!storeSummary(documentId, revision, summary, Document.ProcessingStatus.COMPLETED,
+        Document.ProcessingStatus.SUMMARIZED)) {
+      return null;
+    }
+    statisticsService.recordStatusChange(Document.ProcessingStatus.SUMMARIZED,
+        Document.ProcessingStatus.COMPLETED);
+
+    // Clones made before the summary existed share it too
+    documentRepository.updateSummaryOfDuplicates(documentId, summary);
+    logger.info("Summarized document: {}", documentId);
+    return summary;
+  }
+
+  /**
+   * Stores a summary and status if the document still has the given revision and one of the
+   * given statuses.
+   *
+   * @return whether the document was updated.
+   */
+  private boolean storeSummary(Long documentId, int revision, String summary,
+      Document.ProcessingStatus status, Document.ProcessingStatus... expected) {
+    if (documentRepository.updateSummaryIfCurrent(documentId, revision, List.of(expected),
+        summary, status) == 0) {
+      logger.info("Document {} changed while it was summarized; summary discarded", documentId);
+      return false;
+    }
+    return true;
+  }
+
   /**
    * Generate an AI-powered summary using Ollama.
    */
   public String generateAiSummary(String text) {
     logger.debug("Generating AI summary from text of length: {}", text.length());
 
+    String summary = callLlm(text);
+    if (summary == null) {
+      // Fallback to simple summary if AI fails
+      return generateSimpleSummary(text);
+    }
+
+    logger.debug("Generated AI summary of length: {}", summary.length());
+    return summary;
+  }
+
+  /**
+   * Asks the LLM for a summary of the text, cut to the prompt token budget so the model's
+   * context window does not silently drop the instruction.
+   *
+   * @return the summary, or {@code null} if the call failed or returned nothing.
+   */
+  private String callLlm(String text) {
+    String prompted = text;
+    if (maxPromptTokens > 0) {
+      int fitting = tokenCounter.fittingPrefix(text, maxPromptTokens);
+      if (fitting < text.length()) {
+        logger.debug("Summarizing the first {} of {} characters", fitting, text.length());
+        prompted = text.substring(0, fitting);
+      }
+    }
     try {
       // Use Ollama to generate a real AI summary
       String summary = chatClient.prompt()
-          .user("Please provide a concise summary of this document (maximum 200 words): " + text)
+          .user("Please provide a concise summary of this document (maximum 200 words): "
+              + prompted)
           .call()
           .content();
 
       if (summary == null) {
-        logger.warn("AI returned null summary, using fallback");
-        return generateSimpleSummary(text);
+        logger.warn("AI returned null summary");
       }
-
-      logger.debug("Generated AI summary of length: {}", summary.length());
       return summary;
 
     } catch (Exception e) {
       logger.error("Error generating AI summary: {}", e.getMessage(), e);
-      // Fallback to simple summary if AI fails
-      return generateSimpleSummary(text);
+      return null;
     }
   }
 
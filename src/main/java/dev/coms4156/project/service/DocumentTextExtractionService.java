@@ -1,23 +1,147 @@
 package dev.coms4156.project.service;
 
+import dev.coms4156.project.dtos.ExtractionStats;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import org.apache.tika.Tika;
 import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.sax.BodyContentHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.SAXException;
 
 /**
  * Service for extracting text content from various document formats using
  * Apache Tika.
+ * <p>
+ * Uploads are read from the request once, by {@link #spool(MultipartFile)}; detection and
+ * extraction then work from the spooled copy.
+ * </p>
  */
 @Service
 public class DocumentTextExtractionService {
 
+  private static final int DEFAULT_MEMORY_THRESHOLD = 256 * 1024;
+
   private final Tika tika;
+  private final TikaParserPool parserPool;
+  private final ParallelPdfExtractor pdfExtractor;
+  private final int memoryThreshold;
+  private final Path spoolDirectory;
+  private final long maxTextLength;
 
   public DocumentTextExtractionService() {
+    this(new TikaParserPool("in-process", 1, 0L, ""));
+  }
+
+  private DocumentTextExtractionService(TikaParserPool parserPool) {
+    this(parserPool, new ParallelPdfExtractor(parserPool, 0, 1), DEFAULT_MEMORY_THRESHOLD, "",
+        0L);
+  }
+
+  /**
+   * Constructs a new {@code DocumentTextExtractionService}.
+   *
+   * @param parserPool      the pool documents are parsed on.
+   * @param pdfExtractor    extracts large PDFs on several cores.
+   * @param memoryThreshold the largest upload kept in memory; larger ones are spooled to disk.
+   * @param spoolDirectory  where spooled uploads are written, or blank for the system default.
+   * @param maxTextLength   the most characters extracted from one document, or 0 for no limit.
+   */
+  @Autowired
+  public DocumentTextExtractionService(TikaParserPool parserPool,
+      ParallelPdfExtractor pdfExtractor,
+      @Value("${app.document.spool.memory-threshold-bytes:262144}") int memoryThreshold,
+      @Value("${app.document.spool.directory:}") String spoolDirectory,
+      @Value("${app.document.extraction.max-text-length:0}") long maxTextLength) {
     this.tika = new Tika();
+    this.parserPool = parserPool;
+    this.pdfExtractor = pdfExtractor;
+    this.maxTextLength = maxTextLength;
+    this.memoryThreshold = memoryThreshold;
+    this.spoolDirectory = spoolDirectory == null || spoolDirectory.isBlank() ? null
+        : Path.of(spoolDirectory);
+  }
+
+  /**
+   * Copy an upload out of the request, hashing it and keeping its leading bytes on the way.
+   *
+   * @param file The uploaded file
+   * @return The spooled upload, which must be closed to delete any temporary file
+   * @throws IOException if file reading or spooling fails
+   */
+  public SpooledUpload spool(MultipartFile file) throws IOException {
+    return SpooledUpload.spool(file, memoryThreshold, spoolDirectory);
+  }
+
+  /**
+   * Extract text content from a spooled upload.
+   *
+   * @param upload The spooled upload
+   * @return Extracted text content
+   * @throws IOException   if file reading fails
+   * @throws TikaException if text extraction fails
+   */
+  public String extractText(SpooledUpload upload) throws IOException, TikaException {
+    StringBuilder text = new StringBuilder();
+    extract(upload, text);
+    return text.toString();
+  }
+
+  /**
+   * Extract text content from a spooled upload, streaming it to a sink as it is parsed.
+   * <p>
+   * The sink receives the same normalized text that is returned, in pieces, while the parser
+   * is still running; a {@link ChunkSplitter} passed here chunks the document during
+   * extraction.
+   * </p>
+   *
+   * @param upload The spooled upload
+   * @param sink   Receives the extracted text as it arrives
+   * @return Extracted text content
+   * @throws IOException   if file reading or writing to the sink fails
+   * @throws TikaException if text extraction fails
+   */
+  public String extractText(SpooledUpload upload, Appendable sink)
+      throws IOException, TikaException {
+    StringBuilder text = new StringBuilder();
+    extract(upload, text, sink);
+    return text.toString();
+  }
+
+  /**
+   * Large PDFs are extracted page range by page range on several cores; everything else is
+   * parsed by Tika on the parser pool. Either way the text reaches the sinks normalized and in
+   * document order.
+   */
+  private void extract(SpooledUpload upload, Appendable... sinks)
+      throws IOException, TikaException {
+    try (TikaInputStream inputStream = upload.openStream()) {
+      if (pdfExtractor.isEnabled() && "application/pdf".equals(detectContentType(upload))
+          && extractPdf(inputStream, sinks)) {
+        return;
+      }
+      parse(inputStream, metadataFor(upload), sinks);
+    }
+  }
+
+  private boolean extractPdf(TikaInputStream inputStream, Appendable... sinks)
+      throws IOException, TikaException {
+    try {
+      return pdfExtractor.extract(inputStream.getPath(),
+          new NormalizingTextHandler(maxTextLength, sinks));
+    } catch (SAXException e) {
+      if (e.getCause() instanceof IOException io) {
+        throw io;
+      }
+      throw new TikaException(e.getMessage(), e);
+    }
   }
 
   /**
@@ -33,12 +157,8 @@ public class DocumentTextExtractionService {
       throw new IllegalArgumentException("File cannot be null or empty");
     }
 
-    try (InputStream inputStream = file.getInputStream()) {
-      // Extract text content
-      String extractedText = tika.parseToString(inputStream);
-
-      // Clean up the text (remove excessive whitespace, normalize line breaks)
-      return cleanExtractedText(extractedText);
+    try (SpooledUpload upload = spool(file)) {
+      return extractText(upload);
     }
   }
 
@@ -55,12 +175,60 @@ public class DocumentTextExtractionService {
       throw new IllegalArgumentException("Input stream cannot be null");
     }
 
-    String extractedText = tika.parseToString(inputStream);
-    return cleanExtractedText(extractedText);
+    StringBuilder text = new StringBuilder();
+    parse(inputStream, new Metadata(), text);
+    return text.toString();
+  }
+
+  private static Metadata metadataFor(SpooledUpload upload) {
+    Metadata metadata = new Metadata();
+    if (upload.getOriginalFilename() != null) {
+      metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, upload.getOriginalFilename());
+    }
+    return metadata;
+  }
+
+  /**
+   * Parse a document with SAX on the parser pool, normalizing its body text in one pass and
+   * writing it to the sinks as the parser emits it. Unlike
+   * {@link Tika#parseToString(InputStream)}, the text is only limited by
+   * {@code app.document.extraction.max-text-length}, and exceeding it fails the extraction
+   * instead of truncating the text.
+   */
+  private void parse(InputStream inputStream, Metadata metadata, Appendable... sinks)
+      throws IOException, TikaException {
+    try {
+      parserPool.parse(inputStream,
+          new BodyContentHandler(new NormalizingTextHandler(maxTextLength, sinks)), metadata);
+    } catch (SAXException e) {
+      if (e.getCause() instanceof IOException io) {
+        throw io;
+      }
+      throw new TikaException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Returns statistics about the parser pool.
+   *
+   * @return the parser pool statistics.
+   */
+  public ExtractionStats getParserStats() {
+    return parserPool.getStats();
+  }
+
+  /**
+   * Detect the content type of a spooled upload from its leading bytes and filename.
+   *
+   * @param upload The spooled upload
+   * @return Detected content type
+   */
+  public String detectContentType(SpooledUpload upload) {
+    return tika.detect(upload.getHead(), upload.getOriginalFilename());
   }
 
   /**
-   * Detect the content type of a file.
+   * Detect the content type of a file, reading only its leading bytes.
    *
    * @param file The uploaded file
    * @return Detected content type
@@ -72,28 +240,9 @@ public class DocumentTextExtractionService {
     }
 
     try (InputStream inputStream = file.getInputStream()) {
-      return tika.detect(inputStream, file.getOriginalFilename());
-    }
-  }
-
-  /**
-   * Clean and normalize extracted text.
-   *
-   * @param rawText The raw extracted text
-   * @return Cleaned text
-   */
-  private String cleanExtractedText(String rawText) {
-    if (rawText == null || rawText.isBlank()) {
-      return "";
+      return tika.detect(inputStream.readNBytes(SpooledUpload.HEAD_LENGTH),
+          file.getOriginalFilename());
     }
-
-    // Remove excessive whitespace and normalize line breaks
-    return rawText
-        .replaceAll("\\r\\n", "\n") // Normalize Windows line endings
-        .replaceAll("\\r", "\n") // Normalize Mac line endings
-        .replaceAll("\\n{3,}", "\n\n") // Replace multiple newlines with double newlines
-        .replaceAll("[ \\t]+", " ") // Replace multiple spaces/tabs with single space
-        .trim();
   }
 
   /**
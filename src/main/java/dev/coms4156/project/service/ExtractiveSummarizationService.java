@@ -0,0 +1,287 @@
+package dev.coms4156.project.service;
+
+import dev.coms4156.project.model.DocumentChunk;
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service for generating extractive summaries without calling the LLM.
+ * <p>
+ * Chunks are ranked by centrality using TextRank over a cosine-similarity graph built from
+ * the embeddings computed during ingestion. The leading sentence of each top-ranked chunk is
+ * then emitted in document order until the configured summary length is reached.
+ * </p>
+ */
+@Service
+public class ExtractiveSummarizationService {
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(ExtractiveSummarizationService.class);
+
+  private static final double DAMPING_FACTOR = 0.85;
+  private static final double CONVERGENCE_THRESHOLD = 1e-6;
+  private static final int MAX_ITERATIONS = 50;
+
+  private final int maxSummaryLength;
+  private final int maxGraphSize;
+
+  /**
+   * Constructs a new {@code ExtractiveSummarizationService}.
+   *
+   * @param maxSummaryLength the maximum summary length in characters.
+   * @param maxGraphSize     the maximum number of chunks placed in the similarity graph; larger
+   *                         documents are sampled evenly so ranking stays in the millisecond
+   *                         range.
+   */
+  public ExtractiveSummarizationService(
+      @Value("${app.summarization.max-summary-length:500}") int maxSummaryLength,
+      @Value("${app.summarization.extractive.max-graph-size:200}") int maxGraphSize) {
+    this.maxSummaryLength = maxSummaryLength;
+    this.maxGraphSize = maxGraphSize;
+  }
+
+  /**
+   * Generates an extractive summary of a document.
+   *
+   * @param text   the full extracted text of the document.
+   * @param chunks the chunks of the document, ideally with embeddings populated.
+   * @return the summary, or a placeholder message if the text is unavailable.
+   */
+  public String summarize(String text, List<DocumentChunk> chunks) {
+    if (text == null || text.isBlank()) {
+      return "No summary available";
+    }
+
+    List<DocumentChunk> candidates = selectCandidates(chunks);
+    if (candidates.size() < 2) {
+      return leadSummary(text);
+    }
+
+    long start = System.nanoTime();
+    double[] scores = rank(candidates);
+
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < candidates.size(); i++) {
+      order.add(i);
+    }
+    order.sort(Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+
+    List<Integer> selected = new ArrayList<>();
+    int length = 0;
+    for (int index : order) {
+      String sentence = leadingSentence(text, candidates.get(index));
+      if (sentence.isEmpty()) {
+        continue;
+      }
+      int added = length == 0 ? sentence.length() : sentence.length() + 1;
+      if (length + added > maxSummaryLength) {
+        continue;
+      }
+      selected.add(index);
+      length += added;
+    }
+
+    if (selected.isEmpty()) {
+      return leadSummary(text);
+    }
+
+    // Emit in document order so the summary reads naturally
+    selected.sort(Comparator.comparing(i -> candidates.get(i).getChunkIndex(),
+        Comparator.nullsLast(Comparator.naturalOrder())));
+    StringBuilder summary = new StringBuilder(length);
+    for (int index : selected) {
+      if (summary.length() > 0) {
+        summary.append(' ');
+      }
+      summary.append(leadingSentence(text, candidates.get(index)));
+    }
+
+    logger.debug("Ranked {} chunks for extractive summary in {} ms", candidates.size(),
+        (System.nanoTime() - start) / 1_000_000);
+    return summary.toString();
+  }
+
+  /**
+   * Ranks chunks by TextRank centrality over their cosine-similarity graph.
+   *
+   * @param chunks the chunks to rank; each must carry an embedding of equal dimension.
+   * @return a score per chunk, in the same order as the input.
+   */
+  double[] rank(List<DocumentChunk> chunks) {
+    int n = chunks.size();
+    double[][] weights = new double[n][n];
+    double[] norms = new double[n];
+    for (int i = 0; i < n; i++) {
+      norms[i] = norm(chunks.get(i).getEmbedding());
+    }
+
+    double[] outWeight = new double[n];
+    for (int i = 0; i < n; i++) {
+      float[] a = chunks.get(i).getEmbedding();
+      for (int j = i + 1; j < n; j++) {
+        double similarity = cosine(a, norms[i], chunks.get(j).getEmbedding(), norms[j]);
+        // Negative similarities carry no endorsement in the graph
+        double weight = Math.max(0.0, similarity);
+        weights[i][j] = weight;
+        weights[j][i] = weight;
+        outWeight[i] += weight;
+        outWeight[j] += weight;
+      }
+    }
+
+    double[] scores = new double[n];
+    Arrays.fill(scores, 1.0 / n);
+    double base = (1.0 - DAMPING_FACTOR) / n;
+
+    for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+      double[] next = new double[n];
+      double delta = 0.0;
+      for (int i = 0; i < n; i++) {
+        double sum = 0.0;
+        for (int j = 0; j < n; j++) {
+          if (weights[j][i] > 0.0 && outWeight[j] > 0.0) {
+            sum += weights[j][i] / outWeight[j] * scores[j];
+          }
+        }
+        next[i] = base + DAMPING_FACTOR * sum;
+        delta += Math.abs(next[i] - scores[i]);
+      }
+      scores = next;
+      if (delta < CONVERGENCE_THRESHOLD) {
+        break;
+      }
+    }
+
+    return scores;
+  }
+
+  /**
+   * Keeps the chunks usable for ranking and samples them evenly down to the graph size limit.
+   */
+  private List<DocumentChunk> selectCandidates(List<DocumentChunk> chunks) {
+    List<DocumentChunk> usable = new ArrayList<>();
+    if (chunks == null) {
+      return usable;
+    }
+
+    int dimensions = -1;
+    for (DocumentChunk chunk : chunks) {
+      float[] embedding = chunk.getEmbedding();
+      if (embedding == null || embedding.length == 0 || chunk.getStartPosition() == null
+          || chunk.getEndPosition() == null) {
+        continue;
+      }
+      if (dimensions == -1) {
+        dimensions = embedding.length;
+      }
+      if (embedding.length == dimensions) {
+        usable.add(chunk);
+      }
+    }
+
+    if (usable.size() <= maxGraphSize) {
+      return usable;
+    }
+
+    List<DocumentChunk> sampled = new ArrayList<>(maxGraphSize);
+    double step = (double) usable.size() / maxGraphSize;
+    for (int i = 0; i < maxGraphSize; i++) {
+      sampled.add(usable.get((int) (i * step)));
+    }
+    return sampled;
+  }
+
+  /**
+   * Returns the first complete sentence that starts inside the chunk's span of the text.
+   */
+  private String leadingSentence(String text, DocumentChunk chunk) {
+    int start = Math.max(0, Math.min(chunk.getStartPosition(), text.length()));
+    int end = Math.max(start, Math.min(chunk.getEndPosition(), text.length()));
+
+    BreakIterator iterator = BreakIterator.getSentenceInstance(Locale.ROOT);
+    iterator.setText(text.substring(start, end));
+
+    int sentenceStart = iterator.first();
+    int sentenceEnd = iterator.next();
+    // Chunks usually begin mid-sentence because of the overlap; skip that fragment
+    if (!startsSentence(text, start) && sentenceEnd != BreakIterator.DONE) {
+      sentenceStart = sentenceEnd;
+      sentenceEnd = iterator.next();
+    }
+    if (sentenceEnd == BreakIterator.DONE) {
+      return "";
+    }
+
+    String sentence = text.substring(start + sentenceStart, start + sentenceEnd)
+        .replaceAll("\\s+", " ")
+        .trim();
+    // A sentence running past the chunk end would be cut off mid-way
+    boolean cutOff = start + sentenceEnd == end && end < text.length()
+        && !sentence.isEmpty() && !startsSentence(text, end);
+    return cutOff ? "" : sentence;
+  }
+
+  private boolean startsSentence(String text, int position) {
+    int i = position - 1;
+    while (i >= 0 && Character.isWhitespace(text.charAt(i))) {
+      i--;
+    }
+    if (i < 0) {
+      return true;
+    }
+    char previous = text.charAt(i);
+    return previous == '.' || previous == '!' || previous == '?';
+  }
+
+  /**
+   * Builds a summary from the leading sentences of the text, used when no embeddings are
+   * available to rank.
+   */
+  private String leadSummary(String text) {
+    String cleanedText = text.replaceAll("\\s+", " ").trim();
+    if (cleanedText.length() <= maxSummaryLength) {
+      return cleanedText;
+    }
+
+    BreakIterator iterator = BreakIterator.getSentenceInstance(Locale.ROOT);
+    iterator.setText(cleanedText);
+    int lastFit = iterator.preceding(maxSummaryLength + 1);
+    if (lastFit > 0) {
+      return cleanedText.substring(0, lastFit).trim();
+    }
+
+    String truncated = cleanedText.substring(0, maxSummaryLength);
+    int lastSpace = truncated.lastIndexOf(' ');
+    if (lastSpace > maxSummaryLength / 2) {
+      truncated = truncated.substring(0, lastSpace);
+    }
+    return truncated + "...";
+  }
+
+  private static double norm(float[] vector) {
+    double sum = 0.0;
+    for (float v : vector) {
+      sum += (double) v * v;
+    }
+    return Math.sqrt(sum);
+  }
+
+  private static double cosine(float[] a, double normA, float[] b, double normB) {
+    if (normA == 0.0 || normB == 0.0) {
+      return 0.0;
+    }
+    double dot = 0.0;
+    for (int i = 0; i < a.length; i++) {
+      dot += (double) a[i] * b[i];
+    }
+    return dot / (normA * normB);
+  }
+}
@@ -0,0 +1,191 @@
+package dev.coms4156.project.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Admission control in front of document ingestion.
+ * <p>
+ * At most {@code app.ingestion.admission.max-concurrent} uploads are processed at once, and
+ * together they may not exceed {@code max-in-flight-bytes} (a single larger upload is still
+ * admitted when nothing else is running). Up to {@code max-queued} further uploads wait, in
+ * arrival order, for at most {@code queue-timeout-ms}; anything beyond that is rejected at once
+ * with a retry delay estimated from how fast uploads have recently been completing. Keeping
+ * both numbers small bounds the heap, Ollama load and request threads ingestion can take, so
+ * search and other reads keep being served while uploads are saturated.
+ * </p>
+ */
+@Service
+public class IngestionAdmissionService {
+
+  private static final Logger logger = LoggerFactory.getLogger(IngestionAdmissionService.class);
+
+  /**
+   * Assumed processing time of one upload until the first one completes.
+   */
+  private static final double DEFAULT_UPLOAD_SECONDS = 10.0;
+
+  /**
+   * Weight of the latest upload in the moving average of processing times.
+   */
+  private static final double SMOOTHING = 0.2;
+
+  private static final long MAX_RETRY_AFTER_SECONDS = 600;
+
+  private final int maxConcurrent;
+  private final long maxInFlightBytes;
+  private final int maxQueued;
+  private final long queueTimeoutNanos;
+
+  private final Deque<Long> waiting = new ArrayDeque<>();
+  private long nextTicket;
+  private int inFlight;
+  private long inFlightBytes;
+  private double averageUploadSeconds;
+
+  /**
+   * Constructs a new {@code IngestionAdmissionService}.
+   *
+   * @param maxConcurrent    the maximum number of uploads processed at once.
+   * @param maxInFlightBytes the maximum combined size of the uploads being processed.
+   * @param maxQueued        the maximum number of uploads waiting to be processed.
+   * @param queueTimeoutMs   how long an upload may wait before it is rejected.
+   */
+  public IngestionAdmissionService(
+      @Value("${app.ingestion.admission.max-concurrent:2}") int maxConcurrent,
+      @Value("${app.ingestion.admission.max-in-flight-bytes:104857600}") long maxInFlightBytes,
+      @Value("${app.ingestion.admission.max-queued:4}") int maxQueued,
+      @Value("${app.ingestion.admission.queue-timeout-ms:30000}") long queueTimeoutMs) {
+    if (maxConcurrent < 1) {
+      throw new IllegalArgumentException("max-concurrent must be at least 1");
+    }
+    this.maxConcurrent = maxConcurrent;
+    this.maxInFlightBytes = maxInFlightBytes;
+    this.maxQueued = Math.max(0, maxQueued);
+    this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+  }
+
+  /**
+   * Admits an upload for processing, waiting in line if ingestion is busy.
+   *
+   * @param bytes the size of the upload.
+   * @return a permit that must be closed once the upload has been processed.
+   * @throws IngestionRejectedException if the queue is full or the wait times out.
+   */
+  public synchronized Permit admit(long bytes) {
+    long size = Math.max(0L, bytes);
+    if (waiting.isEmpty() && canStart(size)) {
+      return start(size);
+    }
+    if (waiting.size() >= maxQueued) {
+      throw reject("Too many documents are being processed; retry later");
+    }
+
+    long ticket = nextTicket++;
+    waiting.addLast(ticket);
+    long deadline = System.nanoTime() + queueTimeoutNanos;
+    try {
+      while (waiting.peekFirst() != ticket || !canStart(size)) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw reject("Timed out waiting for ingestion capacity; retry later");
+        }
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+      return start(size);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw reject("Interrupted while waiting for ingestion capacity");
+    } finally {
+      // Whether admitted or not, let the next upload in line check again
+      waiting.remove(ticket);
+      notifyAll();
+    }
+  }
+
+  /**
+   * Returns the number of uploads being processed.
+   *
+   * @return the number of admitted uploads.
+   */
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * Returns the number of uploads waiting to be admitted.
+   *
+   * @return the queue length.
+   */
+  public synchronized int getQueued() {
+    return waiting.size();
+  }
+
+  private boolean canStart(long size) {
+    return inFlight < maxConcurrent
+        && (inFlight == 0 || inFlightBytes + size <= maxInFlightBytes);
+  }
+
+  private Permit start(long size) {
+    inFlight++;
+    inFlightBytes += size;
+    return new Permit(size, System.nanoTime());
+  }
+
+  private synchronized void release(Permit permit) {
+    inFlight--;
+    inFlightBytes -= permit.bytes;
+    double seconds = (System.nanoTime() - permit.startedAt) / 1e9;
+    averageUploadSeconds = averageUploadSeconds == 0.0 ? seconds
+        : averageUploadSeconds + SMOOTHING * (seconds - averageUploadSeconds);
+    notifyAll();
+  }
+
+  private IngestionRejectedException reject(String message) {
+    long retryAfter = retryAfterSeconds();
+    logger.warn("Rejecting upload: {} ({} in flight, {} queued, retry after {}s)", message,
+        inFlight, waiting.size(), retryAfter);
+    return new IngestionRejectedException(message, retryAfter);
+  }
+
+  /**
+   * Estimates when capacity frees up: the uploads ahead, drained {@code maxConcurrent} at a
+   * time at the recent average processing time.
+   */
+  private long retryAfterSeconds() {
+    double perUpload = averageUploadSeconds > 0.0 ? averageUploadSeconds
+        : DEFAULT_UPLOAD_SECONDS;
+    double seconds = (inFlight + waiting.size()) * perUpload / maxConcurrent;
+    return Math.min(MAX_RETRY_AFTER_SECONDS, Math.max(1L, (long) Math.ceil(seconds)));
+  }
+
+  /**
+   * A slot held by an admitted upload, released on {@link #close()}.
+   */
+  public final class Permit implements AutoCloseable {
+    private final long bytes;
+    private final long startedAt;
+    private boolean released;
+
+    private Permit(long bytes, long startedAt) {
+      this.bytes = bytes;
+      this.startedAt = startedAt;
+    }
+
+    @Override
+    public void close() {
+      synchronized (IngestionAdmissionService.this) {
+        if (released) {
+          return;
+        }
+        released = true;
+        release(this);
+      }
+    }
+  }
+}
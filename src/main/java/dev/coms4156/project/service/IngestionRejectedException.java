@@ -0,0 +1,31 @@
+package dev.coms4156.project.service;
+
+/**
+ * Thrown when an upload cannot be admitted for processing because ingestion is saturated.
+ */
+public class IngestionRejectedException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long retryAfterSeconds;
+
+  /**
+   * Constructs a new {@code IngestionRejectedException}.
+   *
+   * @param message           the detail message.
+   * @param retryAfterSeconds how long the client should wait before retrying.
+   */
+  public IngestionRejectedException(String message, long retryAfterSeconds) {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * Returns how long the client should wait before retrying, in seconds.
+   *
+   * @return the suggested delay.
+   */
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
@@ -0,0 +1,165 @@
+package dev.coms4156.project.service;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Computes MinHash signatures over the word shingles of a text.
+ * <p>
+ * Words are runs of letters and digits, compared in lower case, so punctuation, whitespace and
+ * case do not matter. Every run of {@code shingleSize} consecutive words is hashed once to 64
+ * bits and then by each of the hash functions, which are multiply-shift functions of that hash;
+ * the signature keeps the smallest value of every function. The share of positions at which
+ * two signatures agree estimates the Jaccard similarity of the two shingle sets.
+ * </p>
+ * <p>
+ * The hash functions are derived from a fixed seed, so signatures stay comparable across
+ * restarts as long as the number of functions and the shingle size do not change.
+ * </p>
+ */
+final class MinHasher {
+
+  private static final long SEED = 0x5DEECE66DL;
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final int shingleSize;
+  private final long[] multipliers;
+  private final long[] increments;
+
+  /**
+   * Creates a hasher.
+   *
+   * @param hashCount   the number of hash functions, the length of every signature.
+   * @param shingleSize the number of words per shingle.
+   */
+  MinHasher(int hashCount, int shingleSize) {
+    if (hashCount < 1) {
+      throw new IllegalArgumentException("The number of hash functions must be at least 1");
+    }
+    if (shingleSize < 1) {
+      throw new IllegalArgumentException("The shingle size must be at least 1");
+    }
+    this.shingleSize = shingleSize;
+    this.multipliers = new long[hashCount];
+    this.increments = new long[hashCount];
+    SplittableRandom random = new SplittableRandom(SEED);
+    for (int i = 0; i < hashCount; i++) {
+      multipliers[i] = random.nextLong() | 1;
+      increments[i] = random.nextLong();
+    }
+  }
+
+  /**
+   * Computes the signature of a text. A text with fewer words than a shingle is one shingle.
+   *
+   * @param text the text.
+   * @return the minimum of every hash function as an unsigned 32-bit value, or an empty array
+   *         if the text has no words.
+   */
+  int[] signature(CharSequence text) {
+    long[] minimums = new long[multipliers.length];
+    Arrays.fill(minimums, Long.MAX_VALUE);
+    long[] window = new long[shingleSize];
+    long words = 0;
+    long word = FNV_OFFSET;
+    boolean inWord = false;
+    int length = text.length();
+    for (int i = 0; i <= length; ) {
+      int c = i < length ? Character.codePointAt(text, i) : ' ';
+      i += i < length ? Character.charCount(c) : 1;
+      if (Character.isLetterOrDigit(c)) {
+        word = (word ^ Character.toLowerCase(c)) * FNV_PRIME;
+        inWord = true;
+      } else if (inWord) {
+        window[(int) (words % shingleSize)] = word;
+        words++;
+        if (words >= shingleSize) {
+          update(minimums, shingle(window, words, shingleSize));
+        }
+        word = FNV_OFFSET;
+        inWord = false;
+      }
+    }
+    if (words == 0) {
+      return new int[0];
+    }
+    if (words < shingleSize) {
+      update(minimums, shingle(window, words, (int) words));
+    }
+    int[] signature = new int[minimums.length];
+    for (int i = 0; i < signature.length; i++) {
+      signature[i] = (int) minimums[i];
+    }
+    return signature;
+  }
+
+  /**
+   * Hashes the last {@code count} words of the window, in text order.
+   */
+  private long shingle(long[] window, long words, int count) {
+    long hash = 0;
+    for (long w = words - count; w < words; w++) {
+      hash = hash * 31 + window[(int) (w % shingleSize)];
+    }
+    return mix(hash);
+  }
+
+  private void update(long[] minimums, long shingle) {
+    for (int i = 0; i < minimums.length; i++) {
+      long value = (multipliers[i] * shingle + increments[i]) >>> 32;
+      if (value < minimums[i]) {
+        minimums[i] = value;
+      }
+    }
+  }
+
+  /**
+   * The finalizer of MurmurHash3, spreading every input bit over the whole hash.
+   */
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    return hash ^ (hash >>> 33);
+  }
+
+  /**
+   * Estimates the Jaccard similarity of the shingle sets of two signatures.
+   *
+   * @param first  a signature.
+   * @param second a signature of the same length.
+   * @return the share of positions at which they agree, 0 if either is empty.
+   */
+  static double similarity(int[] first, int[] second) {
+    if (first.length == 0 || first.length != second.length) {
+      return 0;
+    }
+    int equal = 0;
+    for (int i = 0; i < first.length; i++) {
+      if (first[i] == second[i]) {
+        equal++;
+      }
+    }
+    return (double) equal / first.length;
+  }
+
+  /**
+   * Returns the number of hash functions.
+   *
+   * @return the length of every non-empty signature.
+   */
+  int getHashCount() {
+    return multipliers.length;
+  }
+
+  /**
+   * Returns the number of words per shingle.
+   *
+   * @return the shingle size.
+   */
+  int getShingleSize() {
+    return shingleSize;
+  }
+}
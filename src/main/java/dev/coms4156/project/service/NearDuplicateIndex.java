@@ -0,0 +1,290 @@
+package dev.coms4156.project.service;
+
+import dev.coms4156.project.model.DocumentSignature;
+import dev.coms4156.project.repository.DocumentSignatureRepository;
+import jakarta.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+/**
+ * Locality-sensitive hashing index of the MinHash signatures of all processed documents, used
+ * to recognise near-duplicate uploads before they are embedded.
+ * <p>
+ * A signature is cut into bands of equal length, and documents whose signatures agree on a
+ * whole band land in the same bucket. Only documents sharing a bucket with a new text are
+ * compared with it, so the cost of a lookup does not grow with the corpus. With {@code b} bands
+ * of {@code r} rows, a document of Jaccard similarity {@code s} is a candidate with probability
+ * {@code 1 - (1 - s^r)^b}; candidates are then checked against the similarity threshold.
+ * </p>
+ * <p>
+ * The index is kept in memory and every signature is also stored in
+ * {@code document_signatures}, from which the index is rebuilt on a background thread at
+ * startup. Detection is advisory: documents not loaded yet are not found.
+ * </p>
+ */
+@Service
+public class NearDuplicateIndex implements ApplicationRunner {
+
+  private static final Logger logger = LoggerFactory.getLogger(NearDuplicateIndex.class);
+
+  private static final int LOAD_PAGE_SIZE = 1000;
+
+  private final DocumentSignatureRepository signatureRepository;
+  private final boolean enabled;
+  private final MinHasher hasher;
+  private final int bands;
+  private final int rows;
+  private final double threshold;
+  private final Map<Long, int[]> signatures = new ConcurrentHashMap<>();
+  private final Map<Long, Set<Long>> buckets = new ConcurrentHashMap<>();
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "near-duplicate-index");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * A stored document similar to a new text.
+   */
+  public static class Match {
+    private final Long documentId;
+    private final double similarity;
+
+    Match(Long documentId, double similarity) {
+      this.documentId = documentId;
+      this.similarity = similarity;
+    }
+
+    public Long getDocumentId() {
+      return documentId;
+    }
+
+    /**
+     * Returns the estimated Jaccard similarity of the word shingles of the two texts.
+     */
+    public double getSimilarity() {
+      return similarity;
+    }
+  }
+
+  /**
+   * Constructs a new {@code NearDuplicateIndex}.
+   *
+   * @param signatureRepository the repository the signatures are stored in.
+   * @param enabled             whether near-duplicates are looked for at all.
+   * @param hashCount           the length of a signature; a multiple of {@code bands}.
+   * @param bands               the number of bands a signature is cut into.
+   * @param shingleSize         the number of words per shingle.
+   * @param threshold           the estimated Jaccard similarity from which a document is a
+   *                            near-duplicate.
+   */
+  public NearDuplicateIndex(DocumentSignatureRepository signatureRepository,
+      @Value("${app.ingestion.near-duplicates.enabled:true}") boolean enabled,
+      @Value("${app.ingestion.near-duplicates.hash-count:128}") int hashCount,
+      @Value("${app.ingestion.near-duplicates.bands:16}") int bands,
+      @Value("${app.ingestion.near-duplicates.shingle-size:5}") int shingleSize,
+      @Value("${app.ingestion.near-duplicates.threshold:0.8}") double threshold) {
+    if (bands < 1 || hashCount % bands != 0) {
+      throw new IllegalArgumentException("The hash count must be a multiple of the bands");
+    }
+    this.signatureRepository = signatureRepository;
+    this.enabled = enabled;
+    this.hasher = new MinHasher(hashCount, shingleSize);
+    this.bands = bands;
+    this.rows = hashCount / bands;
+    this.threshold = threshold;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (enabled) {
+      executor.submit(this::load);
+    }
+  }
+
+  /**
+   * Indexes every stored signature computed with the current settings.
+   */
+  void load() {
+    try {
+      long count = 0;
+      long afterId = 0;
+      List<DocumentSignature> page;
+      do {
+        page = signatureRepository.findPageAfter(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+        for (DocumentSignature stored : page) {
+          int[] signature = decode(stored.getMinHashes());
+          if (stored.getShingleSize() == hasher.getShingleSize()
+              && signature.length == hasher.getHashCount()) {
+            index(stored.getDocumentId(), signature);
+            count++;
+          }
+          afterId = stored.getDocumentId();
+        }
+      } while (page.size() == LOAD_PAGE_SIZE);
+      logger.info("Loaded {} document signatures into the near-duplicate index", count);
+    } catch (RuntimeException e) {
+      logger.error("Could not load document signatures; near-duplicates of older documents "
+          + "are not detected: {}", e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Computes the signature of a document text.
+   *
+   * @param text the extracted text.
+   * @return its signature, empty if the text has no words or detection is disabled.
+   */
+  public int[] signature(String text) {
+    return enabled ? hasher.signature(text) : new int[0];
+  }
+
+  /**
+   * Finds the indexed document most similar to a text, if any is similar enough.
+   *
+   * @param signature the signature of the text.
+   * @return the most similar document at or above the threshold.
+   */
+  public Optional<Match> findNearDuplicate(int[] signature) {
+    if (signature.length == 0) {
+      return Optional.empty();
+    }
+    Set<Long> candidates = new HashSet<>();
+    for (int band = 0; band < bands; band++) {
+      Set<Long> bucket = buckets.get(bucketKey(signature, band));
+      if (bucket != null) {
+        candidates.addAll(bucket);
+      }
+    }
+    Match best = null;
+    for (Long candidate : candidates) {
+      int[] other = signatures.get(candidate);
+      double similarity = other == null ? 0 : MinHasher.similarity(signature, other);
+      if (similarity >= threshold && (best == null || similarity > best.getSimilarity())) {
+        best = new Match(candidate, similarity);
+      }
+    }
+    return Optional.ofNullable(best);
+  }
+
+  /**
+   * Stores and indexes the signature of a document, replacing the one it had.
+   *
+   * @param documentId the document ID.
+   * @param signature  the signature of its text; nothing is stored if it is empty.
+   */
+  public void add(Long documentId, int[] signature) {
+    if (signature.length == 0) {
+      return;
+    }
+    signatureRepository.save(DocumentSignature.builder()
+        .documentId(documentId)
+        .shingleSize(hasher.getShingleSize())
+        .minHashes(encode(signature))
+        .build());
+    unindex(documentId);
+    index(documentId, signature);
+  }
+
+  /**
+   * Removes the signature of a document, for example because it was deleted.
+   *
+   * @param documentId the document ID.
+   */
+  public void remove(Long documentId) {
+    signatureRepository.deleteByDocumentIdNative(documentId);
+    unindex(documentId);
+  }
+
+  /**
+   * Moves the signature of a document to another one that takes over its text.
+   *
+   * @param fromId the document the signature belongs to.
+   * @param toId   the document taking it over.
+   */
+  public void transfer(Long fromId, Long toId) {
+    signatureRepository.deleteByDocumentIdNative(toId);
+    signatureRepository.reassignNative(fromId, toId);
+    unindex(toId);
+    int[] signature = unindex(fromId);
+    if (signature != null) {
+      index(toId, signature);
+    }
+  }
+
+  /**
+   * Returns the number of indexed documents.
+   *
+   * @return the index size.
+   */
+  public int size() {
+    return signatures.size();
+  }
+
+  private void index(Long documentId, int[] signature) {
+    signatures.put(documentId, signature);
+    for (int band = 0; band < bands; band++) {
+      buckets.compute(bucketKey(signature, band), (key, bucket) -> {
+        Set<Long> ids = bucket == null ? ConcurrentHashMap.newKeySet() : bucket;
+        ids.add(documentId);
+        return ids;
+      });
+    }
+  }
+
+  private int[] unindex(Long documentId) {
+    int[] signature = signatures.remove(documentId);
+    if (signature != null) {
+      for (int band = 0; band < bands; band++) {
+        buckets.computeIfPresent(bucketKey(signature, band), (key, bucket) -> {
+          bucket.remove(documentId);
+          return bucket.isEmpty() ? null : bucket;
+        });
+      }
+    }
+    return signature;
+  }
+
+  /**
+   * Hashes one band of a signature together with the band number, so equal values in
+   * different bands fall into different buckets.
+   */
+  private long bucketKey(int[] signature, int band) {
+    long key = band;
+    for (int i = band * rows; i < (band + 1) * rows; i++) {
+      key = key * 0x9E3779B97F4A7C15L + signature[i];
+    }
+    return key;
+  }
+
+  private static byte[] encode(int[] signature) {
+    ByteBuffer buffer = ByteBuffer.allocate(signature.length * Integer.BYTES);
+    buffer.asIntBuffer().put(signature);
+    return buffer.array();
+  }
+
+  private static int[] decode(byte[] bytes) {
+    int[] signature = new int[bytes.length / Integer.BYTES];
+    ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+    return signature;
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+}
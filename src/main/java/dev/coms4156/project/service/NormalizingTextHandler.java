@@ -0,0 +1,71 @@
+package dev.coms4156.project.service;
+
+import java.io.IOException;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * SAX handler that normalizes whitespace with a {@link TextNormalizer} as the parser emits
+ * text, and forwards the result to one or more sinks. The normalizer keeps its state between
+ * {@code characters} calls, so the rules apply across their boundaries.
+ * <p>
+ * Parsing is aborted once the text exceeds an optional length limit, or when the parsing
+ * thread is interrupted, for example because the parse timed out.
+ * </p>
+ */
+final class NormalizingTextHandler extends DefaultHandler {
+
+  private final long maxLength;
+  private final Appendable[] sinks;
+  private final TextNormalizer normalizer = new TextNormalizer();
+  private final StringBuilder out = new StringBuilder();
+  private long written;
+
+  NormalizingTextHandler(Appendable... sinks) {
+    this(0L, sinks);
+  }
+
+  /**
+   * Creates a handler that stops parsing once more than {@code maxLength} characters were
+   * written.
+   *
+   * @param maxLength the largest text accepted, or 0 for no limit.
+   * @param sinks     receive the normalized text.
+   */
+  NormalizingTextHandler(long maxLength, Appendable... sinks) {
+    this.maxLength = maxLength;
+    this.sinks = sinks.clone();
+  }
+
+  @Override
+  public void characters(char[] ch, int start, int length) throws SAXException {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new SAXException("Parsing was cancelled");
+    }
+    normalizer.append(ch, start, length, out);
+    flush();
+  }
+
+  @Override
+  public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+    characters(ch, start, length);
+  }
+
+  private void flush() throws SAXException {
+    if (out.length() == 0) {
+      return;
+    }
+    written += out.length();
+    if (maxLength > 0 && written > maxLength) {
+      throw new SAXException("Extracted text exceeds " + maxLength + " characters");
+    }
+    try {
+      for (Appendable sink : sinks) {
+        sink.append(out);
+      }
+    } catch (IOException e) {
+      throw new SAXException("Could not write extracted text", e);
+    }
+    out.setLength(0);
+  }
+}
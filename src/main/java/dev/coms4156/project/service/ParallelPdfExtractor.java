@@ -0,0 +1,161 @@
+package dev.coms4156.project.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.tika.exception.TikaException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * Extracts the text of large PDFs on several cores.
+ * <p>
+ * A PDF with at least {@code app.document.extraction.pdf.parallel-min-pages} pages is split
+ * into ranges of {@code pages-per-task} pages, and each range is extracted by PDFBox on the
+ * {@link TikaParserPool} with its own {@link PDDocument}, as PDFBox documents are not
+ * thread-safe. Each range counts as a parse there and gets the parse timeout, and at most
+ * {@code pool-size} ranges are in flight at once, so a large PDF never holds more copies of
+ * itself than the pool has threads. PDFBox buffers what it parses in a temporary file rather
+ * than keeping it all on the heap. The ranges are handed to the content handler strictly in
+ * page order, each as soon as it and all ranges before it are done, so the handler sees the
+ * same single stream of text a sequential parse would produce and the character offsets it
+ * computes stay exact.
+ * </p>
+ * <p>
+ * In {@code fork} mode PDFs are parsed in child JVMs like every other document, as ranges
+ * would run in the API's JVM.
+ * </p>
+ */
+@Service
+public class ParallelPdfExtractor {
+
+  private static final Logger logger = LoggerFactory.getLogger(ParallelPdfExtractor.class);
+
+  private static final char[] RANGE_SEPARATOR = {'\n', '\n'};
+
+  /** Heap one range may use for buffering before PDFBox moves to a temporary file. */
+  private static final long RANGE_MEMORY_BYTES = 8L * 1024 * 1024;
+
+  private final TikaParserPool parserPool;
+  private final int minPages;
+  private final int pagesPerTask;
+
+  /**
+   * Constructs a new {@code ParallelPdfExtractor}.
+   *
+   * @param parserPool   the pool page ranges are extracted on.
+   * @param minPages     the fewest pages a PDF needs to be extracted in parallel, or 0 to never
+   *                     extract in parallel.
+   * @param pagesPerTask the number of pages extracted by one task.
+   */
+  public ParallelPdfExtractor(TikaParserPool parserPool,
+      @Value("${app.document.extraction.pdf.parallel-min-pages:200}") int minPages,
+      @Value("${app.document.extraction.pdf.pages-per-task:25}") int pagesPerTask) {
+    this.parserPool = parserPool;
+    this.minPages = Math.max(0, minPages);
+    this.pagesPerTask = Math.max(1, pagesPerTask);
+  }
+
+  /**
+   * Returns whether parallel extraction is enabled at all.
+   *
+   * @return {@code false} if every PDF is parsed sequentially.
+   */
+  public boolean isEnabled() {
+    return minPages > 0 && parserPool.getMode() == TikaParserPool.Mode.IN_PROCESS;
+  }
+
+  /**
+   * Extracts a PDF in parallel if it is large enough.
+   *
+   * @param pdf     the PDF file.
+   * @param handler receives the text of every page, in order.
+   * @return {@code false}, without touching the handler, if the PDF is too small, encrypted or
+   *         cannot be opened by PDFBox; it should then be parsed sequentially.
+   * @throws IOException   if a page range cannot be read.
+   * @throws SAXException  if the handler fails.
+   * @throws TikaException if a page range fails or times out.
+   */
+  public boolean extract(Path pdf, ContentHandler handler)
+      throws IOException, SAXException, TikaException {
+    if (!isEnabled()) {
+      return false;
+    }
+
+    int pages;
+    try (PDDocument document = PDDocument.load(pdf.toFile(),
+        MemoryUsageSetting.setupTempFileOnly())) {
+      if (document.isEncrypted()) {
+        return false;
+      }
+      pages = document.getNumberOfPages();
+    } catch (IOException e) {
+      logger.debug("PDFBox could not open {}, parsing it sequentially: {}", pdf,
+          e.getMessage());
+      return false;
+    }
+    if (pages < minPages) {
+      return false;
+    }
+
+    int maxInFlight = parserPool.getPoolSize();
+    logger.info("Extracting {} pages in ranges of {}, {} at a time", pages, pagesPerTask,
+        maxInFlight);
+    Deque<TikaParserPool.PooledTask<String>> inFlight = new ArrayDeque<>();
+    int nextPage = 1;
+    try {
+      for (int range = 0; nextPage <= pages || !inFlight.isEmpty(); range++) {
+        // Later ranges keep running while the earliest is handed over
+        while (nextPage <= pages && inFlight.size() < maxInFlight) {
+          int lastPage = Math.min(nextPage + pagesPerTask - 1, pages);
+          inFlight.add(parserPool.submit(new PageRange(pdf, nextPage, lastPage),
+              "pages " + nextPage + "-" + lastPage + " of " + pdf.getFileName()));
+          nextPage = lastPage + 1;
+        }
+        char[] text = inFlight.remove().await().toCharArray();
+        if (range > 0) {
+          handler.characters(RANGE_SEPARATOR, 0, RANGE_SEPARATOR.length);
+        }
+        handler.characters(text, 0, text.length);
+      }
+    } finally {
+      inFlight.forEach(TikaParserPool.PooledTask::cancel);
+    }
+    return true;
+  }
+
+  /**
+   * Extracts the text of an inclusive range of pages from its own copy of the document.
+   */
+  private static final class PageRange implements Callable<String> {
+    private final Path pdf;
+    private final int firstPage;
+    private final int lastPage;
+
+    private PageRange(Path pdf, int firstPage, int lastPage) {
+      this.pdf = pdf;
+      this.firstPage = firstPage;
+      this.lastPage = lastPage;
+    }
+
+    @Override
+    public String call() throws IOException {
+      try (PDDocument document = PDDocument.load(pdf.toFile(),
+          MemoryUsageSetting.setupMixed(RANGE_MEMORY_BYTES))) {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setStartPage(firstPage);
+        stripper.setEndPage(lastPage);
+        return stripper.getText(document);
+      }
+    }
+  }
+}
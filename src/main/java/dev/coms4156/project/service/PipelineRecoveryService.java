@@ -0,0 +1,120 @@
+package dev.coms4156.project.service;
+
+import dev.coms4156.project.model.Document.ProcessingStatus;
+import dev.coms4156.project.repository.DocumentRepository;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resumes documents whose processing was interrupted by a crash or restart.
+ * <p>
+ * Runs once at startup on a background thread, so the application starts serving requests
+ * immediately. Documents left in an intermediate status are resumed one at a time from their
+ * last checkpoint by {@link DocumentService#resumeProcessing(Long)}. Only documents not updated
+ * for {@code app.pipeline.recovery.stale-after-ms} are picked up; when several instances share
+ * the database, set it above the longest expected ingestion so documents another instance is
+ * still processing are left alone.
+ * </p>
+ */
+@Service
+public class PipelineRecoveryService implements ApplicationRunner {
+
+  private static final Logger logger = LoggerFactory.getLogger(PipelineRecoveryService.class);
+
+  /**
+   * Statuses a document only holds while an ingestion is in progress.
+   */
+  static final Set<ProcessingStatus> INTERRUPTIBLE = EnumSet.of(
+      ProcessingStatus.UPLOADED,
+      ProcessingStatus.TEXT_EXTRACTED,
+      ProcessingStatus.CHUNKED,
+      ProcessingStatus.EMBEDDINGS_GENERATED);
+
+  private final DocumentRepository documentRepository;
+  private final DocumentService documentService;
+  private final boolean enabled;
+  private final long staleAfterMs;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "pipeline-recovery");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Constructs a new {@code PipelineRecoveryService}.
+   *
+   * @param documentRepository the repository used to find interrupted documents.
+   * @param documentService    the service resuming them.
+   * @param enabled            whether interrupted documents are resumed at startup.
+   * @param staleAfterMs       how long a document must have gone without an update before it
+   *                           is considered interrupted.
+   */
+  public PipelineRecoveryService(DocumentRepository documentRepository,
+      DocumentService documentService,
+      @Value("${app.pipeline.recovery.enabled:true}") boolean enabled,
+      @Value("${app.pipeline.recovery.stale-after-ms:0}") long staleAfterMs) {
+    this.documentRepository = documentRepository;
+    this.documentService = documentService;
+    this.enabled = enabled;
+    this.staleAfterMs = staleAfterMs;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (!enabled) {
+      logger.info("Pipeline recovery is disabled");
+      return;
+    }
+
+    LocalDateTime cutoff = LocalDateTime.now().minusNanos(staleAfterMs * 1_000_000L);
+    executor.execute(() -> recover(cutoff));
+  }
+
+  /**
+   * Resumes every interrupted document not updated since the cutoff.
+   *
+   * @param cutoff documents updated after this time are left alone.
+   * @return the number of documents resumed successfully.
+   */
+  int recover(LocalDateTime cutoff) {
+    List<Long> documentIds;
+    try {
+      documentIds = documentRepository.findIdsByStatusNotUpdatedSince(INTERRUPTIBLE, cutoff);
+    } catch (RuntimeException e) {
+      logger.warn("Could not look for interrupted documents: {}", e.getMessage());
+      return 0;
+    }
+    if (documentIds.isEmpty()) {
+      return 0;
+    }
+
+    logger.info("Resuming {} interrupted documents", documentIds.size());
+    int resumed = 0;
+    for (Long documentId : documentIds) {
+      try {
+        documentService.resumeProcessing(documentId);
+        resumed++;
+      } catch (RuntimeException e) {
+        logger.error("Could not resume document {}: {}", documentId, e.getMessage());
+      }
+    }
+    logger.info("Resumed {} of {} interrupted documents", resumed, documentIds.size());
+    return resumed;
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+}
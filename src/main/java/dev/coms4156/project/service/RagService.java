@@ -1,12 +1,11 @@
 package dev.coms4156.project.service;
 
 import dev.coms4156.project.model.DocumentChunk;
-import dev.coms4156.project.repository.DocumentChunkRepository;
 import java.util.List;
 import java.util.Map;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
@@ -14,13 +13,33 @@ import org.springframework.stereotype.Service;
  * Uses existing document_chunks table for vector storage and retrieval.
  */
 @Slf4j
-@RequiredArgsConstructor
 @Service
 public class RagService {
 
-  private final DocumentChunkRepository documentChunkRepository;
   private final ChatClient chatClient;
   private final SimpleEmbeddingService embeddingService;
+  private final DocumentStatisticsService statisticsService;
+  private final TokenCounter tokenCounter;
+  private final int maxContextTokens;
+
+  /**
+   * Constructs a new {@code RagService}.
+   *
+   * @param chatClient        the chat client answering questions.
+   * @param embeddingService  the service finding chunks similar to a question.
+   * @param statisticsService the service counting chunks and embeddings.
+   * @param tokenCounter      counts the tokens of retrieved chunks.
+   * @param maxContextTokens  the most tokens of chunks sent as context, or 0 for no limit.
+   */
+  public RagService(ChatClient chatClient, SimpleEmbeddingService embeddingService,
+      DocumentStatisticsService statisticsService, TokenCounter tokenCounter,
+      @Value("${app.rag.max-context-tokens:2048}") int maxContextTokens) {
+    this.chatClient = chatClient;
+    this.embeddingService = embeddingService;
+    this.statisticsService = statisticsService;
+    this.tokenCounter = tokenCounter;
+    this.maxContextTokens = Math.max(0, maxContextTokens);
+  }
 
   /**
    * Query the LLM with RAG context retrieval from document_chunks table.
@@ -34,10 +53,24 @@ public class RagService {
     // Search for relevant chunks using embedding service
     List<DocumentChunk> relevantChunks = embeddingService.findSimilarChunks(question, 5);
 
-    // Build context from relevant chunks
+    // Build context from the most relevant chunks that fit the token budget
     StringBuilder context = new StringBuilder();
+    int contextTokens = 0;
     for (DocumentChunk chunk : relevantChunks) {
-      context.append(chunk.getTextContent()).append("\n\n");
+      String text = chunk.getTextContent();
+      int tokens = tokenCounter.countTokens(text);
+      if (maxContextTokens > 0 && contextTokens + tokens > maxContextTokens) {
+        if (contextTokens == 0) {
+          // The best match alone is too long; keep as much of it as fits
+          context.append(text, 0, tokenCounter.fittingPrefix(text, maxContextTokens))
+              .append("\n\n");
+          contextTokens = maxContextTokens;
+        }
+        log.debug("Chunk {} of {} tokens does not fit the RAG context", chunk.getId(), tokens);
+        continue;
+      }
+      contextTokens += tokens;
+      context.append(text).append("\n\n");
     }
 
     // Query with context
@@ -84,13 +117,13 @@ public class RagService {
     Map<String, Object> stats = new java.util.HashMap<>();
 
     try {
-      long totalChunks = documentChunkRepository.count();
-      long chunksWithEmbeddings = documentChunkRepository.countByEmbeddingIsNotNull();
+      long totalChunks = statisticsService.getTotalChunks();
+      long chunksWithEmbeddings = statisticsService.getChunksWithEmbeddings();
 
       stats.put("status", "active");
       stats.put("provider", "DocumentChunks");
-      stats.put("model", "llama3.2");
-      stats.put("dimensions", 3072);
+      stats.put("model", embeddingService.getModelName());
+      stats.put("dimensions", embeddingService.getDimensions());
       stats.put("totalChunks", totalChunks);
       stats.put("chunksWithEmbeddings", chunksWithEmbeddings);
       stats.put("embeddingCoverage",
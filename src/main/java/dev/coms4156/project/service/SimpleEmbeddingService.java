@@ -1,23 +1,43 @@
 package dev.coms4156.project.service;
 
+import dev.coms4156.project.model.ChunkEmbedding;
 import dev.coms4156.project.model.DocumentChunk;
 import dev.coms4156.project.repository.DocumentChunkRepository;
+import jakarta.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.embedding.EmbeddingRequest;
 import org.springframework.ai.embedding.EmbeddingResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 /**
- * Embedding service using Spring AI with Ollama for local embedding generation
- * Uses llama3.2 model for 4096-dimensional embeddings.
+ * Embedding service using Spring AI with Ollama for local embedding generation.
+ * The model and its dimensions are taken from the configuration.
+ * <p>
+ * The chunks of a document are embedded concurrently: at most
+ * {@code app.embedding.concurrency.per-document} requests of one document are in flight, and
+ * at most {@code app.embedding.concurrency.global} requests of all documents together, as
+ * they share one pool of that many threads.
+ * </p>
+ * <p>
+ * Chunks with the same normalized text share one embedding from the
+ * {@link ChunkEmbeddingStore}, so text seen in any document before is not embedded again.
+ * </p>
  */
 @Service
 public class SimpleEmbeddingService {
@@ -25,18 +45,74 @@ public class SimpleEmbeddingService {
   private static final Logger logger = LoggerFactory.getLogger(SimpleEmbeddingService.class);
 
   private final DocumentChunkRepository documentChunkRepository;
+  private final ChunkTextResolver chunkTextResolver;
+  private final ChunkEmbeddingStore embeddingStore;
   private final EmbeddingModel embeddingModel;
+  private final DocumentStatisticsService statisticsService;
+  private final String modelName;
+  private final int dimensions;
+  private final int perDocumentConcurrency;
+  private final ExecutorService executor;
 
+  /**
+   * Constructs a new {@code SimpleEmbeddingService}.
+   *
+   * @param documentChunkRepository the repository used to store and search chunks.
+   * @param chunkTextResolver       fills in the text of chunks stored as offsets only.
+   * @param embeddingStore          the embeddings shared by chunks of the same text.
+   * @param embeddingModel          the model producing the embeddings.
+   * @param statisticsService       the service providing chunk counts.
+   * @param modelName               the name of the configured embedding model.
+   * @param dimensions              the number of dimensions the model produces.
+   * @param perDocumentConcurrency  the most embedding requests of one document in flight at
+   *                                once; 1 embeds a document's chunks one at a time on the
+   *                                calling thread.
+   * @param globalConcurrency       the most embedding requests in flight at once over all
+   *                                documents.
+   */
   @Autowired
   public SimpleEmbeddingService(DocumentChunkRepository documentChunkRepository,
-      EmbeddingModel embeddingModel) {
+      ChunkTextResolver chunkTextResolver,
+      ChunkEmbeddingStore embeddingStore,
+      EmbeddingModel embeddingModel,
+      DocumentStatisticsService statisticsService,
+      @Value("${spring.ai.ollama.embedding.options.model:llama3.2}") String modelName,
+      @Value("${app.vector.dimensions:3072}") int dimensions,
+      @Value("${app.embedding.concurrency.per-document:4}") int perDocumentConcurrency,
+      @Value("${app.embedding.concurrency.global:8}") int globalConcurrency) {
     this.documentChunkRepository = documentChunkRepository;
+    this.chunkTextResolver = chunkTextResolver;
+    this.embeddingStore = embeddingStore;
     this.embeddingModel = embeddingModel;
+    this.statisticsService = statisticsService;
+    this.modelName = modelName;
+    this.dimensions = dimensions;
+    this.perDocumentConcurrency = Math.max(1, perDocumentConcurrency);
+    this.executor = Executors.newFixedThreadPool(Math.max(1, globalConcurrency),
+        new EmbeddingThreadFactory());
+  }
+
+  /**
+   * Returns the name of the configured embedding model.
+   *
+   * @return the model name.
+   */
+  public String getModelName() {
+    return modelName;
+  }
+
+  /**
+   * Returns the number of dimensions of the configured embedding model.
+   *
+   * @return the embedding dimensions.
+   */
+  public int getDimensions() {
+    return dimensions;
   }
 
   /**
    * Generates an embedding for a given {@link DocumentChunk} using the Ollama
-   * embedding model.
+   * embedding model, unless a chunk with the same text was embedded before.
    *
    * @param chunk the {@link DocumentChunk} containing text content to embed.
    * @return the same {@link DocumentChunk} with its embedding field populated.
@@ -45,7 +121,6 @@ public class SimpleEmbeddingService {
    * @throws RuntimeException         if embedding generation or database
    *                                  insertion fails.
    */
-  @Transactional
   public DocumentChunk generateEmbedding(DocumentChunk chunk) {
     if (chunk == null || chunk.getTextContent() == null
         || chunk.getTextContent().isBlank()) {
@@ -53,24 +128,22 @@ public class SimpleEmbeddingService {
     }
 
     try {
-      String text = chunk.getTextContent();
-      float[] embeddingArray = generateOllamaEmbeddingArray(text);
-
-      // Convert to string format for native SQL
-      String embeddingString = convertFloatArrayToVectorString(embeddingArray);
-
-      // Use native SQL to insert with proper vector casting
-      documentChunkRepository.insertChunkWithEmbedding(
-          chunk.getChunkIndex(),
-          chunk.getChunkSize(),
-          chunk.getDocument().getId(),
-          embeddingString,
-          chunk.getEndPosition(),
-          chunk.getStartPosition(),
-          chunk.getTextContent());
+      ChunkEmbedding shared = embeddingStore.obtain(chunk.getTextContent(),
+          this::generateOllamaEmbeddingArray);
+
+      Long embeddingId = shared.getId();
+      try {
+        insertChunkWithEmbedding(chunk, embeddingId);
+      } catch (DataIntegrityViolationException e) {
+        // The last chunk sharing the embedding was deleted meanwhile, and the embedding with it
+        embeddingId = embeddingStore.store(shared.getContentHash(), shared.getEmbedding())
+            .getId();
+        insertChunkWithEmbedding(chunk, embeddingId);
+      }
 
       // Set embedding on chunk for return value
-      chunk.setEmbedding(embeddingArray);
+      chunk.setEmbeddingId(embeddingId);
+      chunk.setEmbedding(shared.getEmbedding());
       return chunk;
     } catch (IllegalArgumentException e) {
       throw e;
@@ -81,40 +154,117 @@ public class SimpleEmbeddingService {
     }
   }
 
+  /**
+   * Uses native SQL to insert a chunk referring to a shared embedding.
+   */
+  private void insertChunkWithEmbedding(DocumentChunk chunk, Long embeddingId) {
+    documentChunkRepository.insertChunkWithEmbedding(
+        chunk.getChunkIndex(),
+        chunk.getChunkSize(),
+        chunk.getDocument().getId(),
+        embeddingId,
+        chunk.getEndPosition(),
+        chunk.getStartPosition(),
+        chunk.isOffsetsOnly() ? null : chunk.getTextContent());
+  }
+
   /**
    * Generates embeddings for a list of {@link DocumentChunk} objects.
+   * <p>
+   * Not transactional on purpose: each chunk is saved in its own short transaction after its
+   * embedding returns, so no database connection is held while waiting on Ollama. Up to
+   * {@code app.embedding.concurrency.per-document} chunks are embedded at once; the calling
+   * thread waits for a free slot before sending the next one.
+   * </p>
    *
    * @param chunks the list of {@link DocumentChunk} objects to process.
-   * @return a list of successfully processed chunks with embeddings generated.
+   * @return a list of successfully processed chunks with embeddings generated, in the order
+   *         of {@code chunks}.
+   * @throws IllegalStateException if the calling thread is interrupted while waiting; chunks
+   *                               already embedded stay saved.
    */
-  @Transactional
   public List<DocumentChunk> generateEmbeddings(List<DocumentChunk> chunks) {
     if (chunks == null || chunks.isEmpty()) {
       return new ArrayList<>();
     }
 
+    // Chunks resumed from the database may be stored as offsets only
+    chunkTextResolver.resolve(chunks);
+    List<DocumentChunk> embeddable = chunks.stream()
+        .filter(chunk -> chunk.getTextContent() != null && !chunk.getTextContent().isBlank())
+        .toList();
     List<DocumentChunk> processedChunks = new ArrayList<>();
 
-    for (DocumentChunk chunk : chunks) {
-      if (chunk.getTextContent() != null && !chunk.getTextContent().isBlank()) {
-        try {
-          float[] embeddingArray = generateOllamaEmbeddingArray(chunk.getTextContent());
-
-          // Set embedding on chunk for return value
-          chunk.setEmbedding(embeddingArray);
-          chunk = documentChunkRepository.save(chunk);
-          processedChunks.add(chunk);
-        } catch (Exception e) {
-          logger.error("Failed to generate embedding for chunk {}: {}", chunk.getId(),
-              e.getMessage(), e);
-          // Continue processing other chunks
+    if (perDocumentConcurrency == 1 || embeddable.size() == 1) {
+      for (DocumentChunk chunk : embeddable) {
+        DocumentChunk saved = embedAndSave(chunk);
+        if (saved != null) {
+          processedChunks.add(saved);
         }
       }
+      return processedChunks;
     }
 
+    Semaphore slots = new Semaphore(perDocumentConcurrency);
+    List<Future<DocumentChunk>> pending = new ArrayList<>(embeddable.size());
+    try {
+      for (DocumentChunk chunk : embeddable) {
+        slots.acquire();
+        pending.add(executor.submit(() -> {
+          try {
+            return embedAndSave(chunk);
+          } finally {
+            slots.release();
+          }
+        }));
+      }
+      for (Future<DocumentChunk> future : pending) {
+        DocumentChunk saved = future.get();
+        if (saved != null) {
+          processedChunks.add(saved);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      pending.forEach(future -> future.cancel(true));
+      throw new IllegalStateException("Interrupted while generating embeddings", e);
+    } catch (ExecutionException e) {
+      // embedAndSave handles its own failures
+      pending.forEach(future -> future.cancel(true));
+      throw new IllegalStateException("Failed to generate embeddings: " + e.getMessage(), e);
+    }
     return processedChunks;
   }
 
+  /**
+   * Embeds one chunk, or finds the embedding of its text, and saves it.
+   *
+   * @return the saved chunk, or {@code null} if it failed, which is logged.
+   */
+  private DocumentChunk embedAndSave(DocumentChunk chunk) {
+    try {
+      ChunkEmbedding shared = embeddingStore.obtain(chunk.getTextContent(),
+          this::generateOllamaEmbeddingArray);
+
+      // Set embedding on chunk for return value
+      chunk.setEmbedding(shared.getEmbedding());
+      chunk.setEmbeddingId(shared.getId());
+      try {
+        return documentChunkRepository.save(chunk);
+      } catch (DataIntegrityViolationException e) {
+        // The last chunk sharing the embedding was deleted meanwhile, and the embedding with it
+        chunk.setEmbeddingId(embeddingStore.store(shared.getContentHash(),
+            shared.getEmbedding()).getId());
+        return documentChunkRepository.save(chunk);
+      }
+    } catch (Exception e) {
+      logger.error("Failed to generate embedding for chunk {}: {}", chunk.getId(),
+          e.getMessage(), e);
+      // Continue processing other chunks
+      return null;
+    }
+  }
+
   /**
    * Generates a float array embedding for the given text using the Ollama
    * embedding model.
@@ -195,6 +345,7 @@ public class SimpleEmbeddingService {
       // Use PostgreSQL vector similarity search
       List<DocumentChunk> results = documentChunkRepository
           .findSimilarChunks(queryEmbedding, limit);
+      chunkTextResolver.resolve(results);
       logger.debug("Found {} similar chunks", results.size());
       return results;
     } catch (Exception e) {
@@ -211,6 +362,10 @@ public class SimpleEmbeddingService {
    * @return a list of related {@link DocumentChunk} results, or an empty list
    */
   public List<DocumentChunk> findRelatedChunks(DocumentChunk chunk, int limit) {
+    if (chunk != null) {
+      // Chunks loaded from the database only refer to their embedding
+      embeddingStore.resolve(List.of(chunk));
+    }
     if (chunk == null || chunk.getEmbedding() == null
         || chunk.getEmbedding().length == 0) {
       return new ArrayList<>();
@@ -233,6 +388,7 @@ public class SimpleEmbeddingService {
       // Use PostgreSQL vector similarity search
       List<DocumentChunk> results = documentChunkRepository.findRelatedChunks(
           chunk.getDocument().getId(), queryEmbedding, limit);
+      embeddingStore.resolve(results);
       logger.debug("Found {} related chunks", results.size());
       return results;
     } catch (Exception e) {
@@ -303,16 +459,17 @@ public class SimpleEmbeddingService {
     Map<String, Object> stats = new HashMap<>();
 
     try {
-      long totalChunks = documentChunkRepository.count();
-      long chunksWithEmbeddings = documentChunkRepository.countByEmbeddingIsNotNull();
+      long totalChunks = statisticsService.getTotalChunks();
+      long chunksWithEmbeddings = statisticsService.getChunksWithEmbeddings();
 
       stats.put("totalChunks", totalChunks);
       stats.put("chunksWithEmbeddings", chunksWithEmbeddings);
       stats.put("embeddingCoverage",
           totalChunks > 0 ? (double) chunksWithEmbeddings / totalChunks : 0.0);
-      stats.put("model", "llama3.2");
-      stats.put("dimensions", 4096);
+      stats.put("model", modelName);
+      stats.put("dimensions", dimensions);
       stats.put("provider", "Ollama");
+      stats.putAll(embeddingStore.getStatistics());
 
     } catch (Exception e) {
       stats.put("error", "Failed to get embedding statistics: " + e.getMessage());
@@ -328,7 +485,6 @@ public class SimpleEmbeddingService {
    * @param documentId the ID of the document whose chunks should be embedded.
    * @return the number of chunks successfully processed.
    */
-  @Transactional
   public int generateEmbeddingsForDocument(Long documentId) {
     List<DocumentChunk> chunks = documentChunkRepository
         .findByDocumentIdAndEmbeddingIsNull(documentId);
@@ -365,4 +521,23 @@ public class SimpleEmbeddingService {
 
     return result;
   }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Names embedding threads and keeps them from blocking JVM shutdown.
+   */
+  private static final class EmbeddingThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "embedding-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
 }
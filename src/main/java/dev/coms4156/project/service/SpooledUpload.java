@@ -0,0 +1,172 @@
+package dev.coms4156.project.service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import org.apache.tika.io.TikaInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * An upload copied out of the request exactly once, so it can be hashed, sniffed and parsed
+ * without reading the request again.
+ * <p>
+ * Uploads up to a small threshold are kept in memory; larger ones are written to a temporary
+ * file, deleted on {@link #close()}, and parsed from that file so the heap never holds a copy
+ * of them. The SHA-256 of the content and its leading bytes, which are all content type
+ * detection needs, are captured while copying.
+ * </p>
+ */
+public final class SpooledUpload implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(SpooledUpload.class);
+
+  /**
+   * Number of leading bytes kept for content type detection, matching how far Tika's magic
+   * byte detection reads.
+   */
+  static final int HEAD_LENGTH = 64 * 1024;
+
+  private final String originalFilename;
+  private final long size;
+  private final String contentHash;
+  private final byte[] head;
+  private final byte[] content;
+  private final Path file;
+
+  SpooledUpload(String originalFilename, long size, String contentHash, byte[] head,
+      byte[] content, Path file) {
+    this.originalFilename = originalFilename;
+    this.size = size;
+    this.contentHash = contentHash;
+    this.head = head;
+    this.content = content;
+    this.file = file;
+  }
+
+  /**
+   * Copies an upload into memory, or into a temporary file once it exceeds the threshold.
+   *
+   * @param upload          the uploaded file.
+   * @param memoryThreshold the largest upload kept in memory, in bytes.
+   * @param directory       where temporary files are created, or {@code null} for the system
+   *                        default.
+   * @return the spooled upload.
+   * @throws IOException if the upload cannot be read or the temporary file written.
+   */
+  static SpooledUpload spool(MultipartFile upload, int memoryThreshold, Path directory)
+      throws IOException {
+    MessageDigest digest = ContentHashes.newDigest();
+    byte[] head = new byte[HEAD_LENGTH];
+    int headLength = 0;
+    ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    Path file = null;
+    OutputStream spill = null;
+    long size = 0;
+    boolean complete = false;
+
+    try (InputStream in = upload.getInputStream()) {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+        if (headLength < HEAD_LENGTH) {
+          int copied = Math.min(read, HEAD_LENGTH - headLength);
+          System.arraycopy(buffer, 0, head, headLength, copied);
+          headLength += copied;
+        }
+        if (spill == null && size + read > memoryThreshold) {
+          file = directory != null ? Files.createTempFile(directory, "upload-", ".tmp")
+              : Files.createTempFile("upload-", ".tmp");
+          spill = new BufferedOutputStream(Files.newOutputStream(file));
+          memory.writeTo(spill);
+          memory = null;
+        }
+        if (spill != null) {
+          spill.write(buffer, 0, read);
+        } else {
+          memory.write(buffer, 0, read);
+        }
+        size += read;
+      }
+      if (spill != null) {
+        spill.close();
+        spill = null;
+      }
+      complete = true;
+    } finally {
+      if (spill != null) {
+        spill.close();
+      }
+      if (!complete && file != null) {
+        Files.deleteIfExists(file);
+      }
+    }
+
+    return new SpooledUpload(upload.getOriginalFilename(), size, ContentHashes.toHex(digest),
+        Arrays.copyOf(head, headLength), memory != null ? memory.toByteArray() : null, file);
+  }
+
+  /**
+   * Opens the content for parsing. A spooled file is handed to Tika by path, so parsers that
+   * need random access read it from disk instead of buffering it.
+   *
+   * @return a new stream over the content.
+   * @throws IOException if the temporary file cannot be opened.
+   */
+  public TikaInputStream openStream() throws IOException {
+    return file != null ? TikaInputStream.get(file) : TikaInputStream.get(content);
+  }
+
+  public String getOriginalFilename() {
+    return originalFilename;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public String getContentHash() {
+    return contentHash;
+  }
+
+  /**
+   * Returns the leading bytes of the content, enough to detect its type.
+   *
+   * @return a copy of up to {@value #HEAD_LENGTH} leading bytes.
+   */
+  public byte[] getHead() {
+    return head.clone();
+  }
+
+  /**
+   * Returns whether the content was small enough to be kept in memory.
+   *
+   * @return {@code true} if no temporary file was written.
+   */
+  public boolean isInMemory() {
+    return file == null;
+  }
+
+  /**
+   * Deletes the temporary file, if any.
+   */
+  @Override
+  public void close() {
+    if (file == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      logger.warn("Could not delete spooled upload {}: {}", file, e.getMessage());
+    }
+  }
+}
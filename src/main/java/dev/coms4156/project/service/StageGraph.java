@@ -0,0 +1,282 @@
+package dev.coms4156.project.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small dependency graph of pipeline stages, run concurrently within one call.
+ * <p>
+ * Each stage is declared after the stages it depends on, so the graph has no cycles.
+ * {@link #run(Executor)} starts every stage as soon as its dependencies have finished
+ * and only returns once no stage is running any more, so, as with structured concurrency, no
+ * stage outlives the call and the graph takes as long as its slowest path.
+ * </p>
+ * <p>
+ * When a required stage fails, or the calling thread is interrupted, the running stages are
+ * interrupted and the stages not started yet are dropped; the failure is rethrown once the
+ * interrupted stages have stopped. An optional stage may fail without affecting the other
+ * branches: the failure is logged and only the stages depending on it are skipped, which
+ * {@link #hasFailed(String)} reports. A graph runs once.
+ * </p>
+ */
+final class StageGraph {
+
+  private static final Logger logger = LoggerFactory.getLogger(StageGraph.class);
+
+  private final String name;
+  private final Map<String, Stage> stages = new LinkedHashMap<>();
+  private final Set<String> failed = new HashSet<>();
+  private final BlockingQueue<Stage> finished = new LinkedBlockingQueue<>();
+  private boolean ran;
+
+  /**
+   * Creates an empty graph.
+   *
+   * @param name what the graph works on, for logging.
+   */
+  StageGraph(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Adds a stage whose failure fails the whole graph.
+   *
+   * @param stageName the unique stage name.
+   * @param action    the work of the stage.
+   * @param dependsOn the names of stages declared before that must finish first.
+   * @return this graph.
+   * @throws IllegalArgumentException if the name is taken or a dependency is unknown.
+   */
+  StageGraph stage(String stageName, Runnable action, String... dependsOn) {
+    return add(stageName, action, false, dependsOn);
+  }
+
+  /**
+   * Adds a stage whose failure only skips the stages depending on it.
+   *
+   * @param stageName the unique stage name.
+   * @param action    the work of the stage.
+   * @param dependsOn the names of stages declared before that must finish first.
+   * @return this graph.
+   * @throws IllegalArgumentException if the name is taken or a dependency is unknown.
+   */
+  StageGraph optionalStage(String stageName, Runnable action, String... dependsOn) {
+    return add(stageName, action, true, dependsOn);
+  }
+
+  private StageGraph add(String stageName, Runnable action, boolean optional,
+      String... dependsOn) {
+    if (stages.containsKey(stageName)) {
+      throw new IllegalArgumentException("Duplicate stage: " + stageName);
+    }
+    Stage stage = new Stage(stageName, action, optional);
+    for (String dependency : dependsOn) {
+      Stage before = stages.get(dependency);
+      if (before == null) {
+        throw new IllegalArgumentException("Stage " + stageName
+            + " depends on a stage not declared before it: " + dependency);
+      }
+      stage.dependencies++;
+      before.dependents.add(stage);
+    }
+    stages.put(stageName, stage);
+    return this;
+  }
+
+  /**
+   * Runs every stage on an executor and waits until none is running.
+   * <p>
+   * An executor running each task on the calling thread runs the stages one after the other,
+   * in declaration order as far as the dependencies allow.
+   * </p>
+   *
+   * @param executor the executor the stages run on.
+   * @throws RuntimeException the failure of the first required stage that failed, or an
+   *                          {@link IllegalStateException} if the calling thread was
+   *                          interrupted or a stage could not be started.
+   */
+  void run(Executor executor) {
+    if (ran) {
+      throw new IllegalStateException("A stage graph runs once");
+    }
+    ran = true;
+    long start = System.nanoTime();
+    Map<Stage, Integer> unmet = new HashMap<>();
+    Set<Stage> pending = new HashSet<>();
+    Throwable failure = null;
+    try {
+      for (Stage stage : stages.values()) {
+        unmet.put(stage, stage.dependencies);
+        if (stage.dependencies == 0) {
+          submit(stage, executor, pending);
+        }
+      }
+      while (!pending.isEmpty()) {
+        Stage stage = finished.take();
+        pending.remove(stage);
+        if (stage.failure != null && !stage.optional) {
+          failure = stage.failure;
+          break;
+        }
+        if (stage.failure != null) {
+          logger.warn("Optional stage {} of {} failed; skipping the stages depending on it: {}",
+              stage.name, name, stage.failure.getMessage(), stage.failure);
+          skip(stage);
+        } else {
+          logger.debug("Stage {} of {} took {} ms", stage.name, name,
+              TimeUnit.NANOSECONDS.toMillis(stage.elapsedNanos));
+        }
+        for (Stage dependent : stage.dependents) {
+          if (unmet.merge(dependent, -1, Integer::sum) == 0 && !failed.contains(dependent.name)) {
+            submit(dependent, executor, pending);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure = new IllegalStateException("Interrupted while running the stages of " + name, e);
+    } catch (RejectedExecutionException e) {
+      failure = new IllegalStateException("Could not start the stages of " + name, e);
+    }
+
+    if (failure != null) {
+      cancel(pending);
+      if (failure instanceof RuntimeException runtime) {
+        throw runtime;
+      }
+      if (failure instanceof Error error) {
+        throw error;
+      }
+      throw new IllegalStateException("Stage of " + name + " failed", failure);
+    }
+    logger.debug("Ran {} stages of {} in {} ms", stages.size(), name,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  /**
+   * Returns whether an optional stage failed or was skipped because a stage it depends on
+   * failed.
+   *
+   * @param stageName the stage name.
+   * @return {@code true} if the stage did not complete.
+   */
+  boolean hasFailed(String stageName) {
+    return failed.contains(stageName);
+  }
+
+  private void submit(Stage stage, Executor executor, Set<Stage> pending) {
+    executor.execute(stage);
+    pending.add(stage);
+  }
+
+  private void skip(Stage stage) {
+    if (failed.add(stage.name)) {
+      stage.dependents.forEach(this::skip);
+    }
+  }
+
+  /**
+   * Interrupts the running stages, drops those not started, and waits for the interrupted
+   * ones to stop.
+   */
+  private void cancel(Set<Stage> pending) {
+    List<Stage> running = new ArrayList<>();
+    for (Stage stage : pending) {
+      if (stage.cancel()) {
+        running.add(stage);
+      }
+    }
+    boolean interrupted = false;
+    int remaining = running.size();
+    while (remaining > 0) {
+      try {
+        if (running.contains(finished.take())) {
+          remaining--;
+        }
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    logger.info("Cancelled {} running and {} waiting stages of {}", running.size(),
+        pending.size() - running.size(), name);
+  }
+
+  /**
+   * One stage: its work, its place in the graph and how its run went.
+   */
+  private final class Stage implements Runnable {
+    private final String name;
+    private final Runnable action;
+    private final boolean optional;
+    private final List<Stage> dependents = new ArrayList<>();
+    private int dependencies;
+    private Thread runner;
+    private boolean started;
+    private boolean cancelled;
+    private boolean done;
+    private volatile Throwable failure;
+    private volatile long elapsedNanos;
+
+    private Stage(String name, Runnable action, boolean optional) {
+      this.name = name;
+      this.action = action;
+      this.optional = optional;
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        if (cancelled) {
+          return;
+        }
+        started = true;
+        runner = Thread.currentThread();
+      }
+      long start = System.nanoTime();
+      try {
+        action.run();
+      } catch (RuntimeException | Error e) {
+        failure = e;
+      } finally {
+        elapsedNanos = System.nanoTime() - start;
+        synchronized (this) {
+          done = true;
+          runner = null;
+          if (cancelled) {
+            // An interrupt meant for this stage must not reach the next task of the thread
+            Thread.interrupted();
+          }
+        }
+        finished.add(this);
+      }
+    }
+
+    /**
+     * Keeps the stage from starting, or interrupts it if it is running.
+     *
+     * @return whether it started, so that it will still report finishing.
+     */
+    private synchronized boolean cancel() {
+      cancelled = true;
+      if (started && !done) {
+        runner.interrupt();
+      }
+      return started;
+    }
+  }
+}
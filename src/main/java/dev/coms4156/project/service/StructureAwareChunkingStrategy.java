@@ -0,0 +1,49 @@
+package dev.coms4156.project.service;
+
+/**
+ * A {@link TokenBudgetChunkingStrategy} that ends chunks at the document's own structure, so
+ * sections, paragraphs and list items of formats such as Markdown, HTML and Word documents are
+ * kept together.
+ * <p>
+ * Extracted text separates paragraphs and headings by a blank line and lines by a line break.
+ * A chunk that fills its token budget ends after the last blank line in its second half, or
+ * else after the last line break in its last 30%, and only then at a sentence end.
+ * </p>
+ */
+public class StructureAwareChunkingStrategy extends TokenBudgetChunkingStrategy {
+
+  /**
+   * Constructs a new {@code StructureAwareChunkingStrategy}.
+   *
+   * @param tokenCounter  counts the tokens of the text.
+   * @param maxTokens     the most tokens in a chunk.
+   * @param overlapTokens the tokens a chunk repeats from the end of the previous one.
+   */
+  public StructureAwareChunkingStrategy(TokenCounter tokenCounter, int maxTokens,
+      int overlapTokens) {
+    super(tokenCounter, maxTokens, overlapTokens);
+  }
+
+  @Override
+  public String getName() {
+    return "structure";
+  }
+
+  @Override
+  protected int preferredEnd(Window window, int end) {
+    CharSequence text = window.getText();
+    int lineBreak = -1;
+    for (int i = end - 1; i > end / 2; i--) {
+      if (text.charAt(i) != '\n') {
+        continue;
+      }
+      if (text.charAt(i - 1) == '\n') {
+        return i + 1;
+      }
+      if (lineBreak < 0) {
+        lineBreak = i + 1;
+      }
+    }
+    return lineBreak > end * 0.7 ? lineBreak : super.preferredEnd(window, end);
+  }
+}
@@ -0,0 +1,170 @@
+package dev.coms4156.project.service;
+
+import jakarta.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Background queue that summarizes documents after they become searchable.
+ * <p>
+ * Ingestion ranks the extractive summary itself; documents arrive here when that failed, or
+ * when an LLM summary is to replace it. Summaries are produced by a dedicated worker pool
+ * with its own concurrency limit, so summarization never delays ingestion. Pending documents
+ * are ordered by how often users have opened them, then by arrival, so documents people are
+ * actually looking at are summarized first.
+ * </p>
+ */
+@Service
+public class SummarizationQueue {
+
+  private static final Logger logger = LoggerFactory.getLogger(SummarizationQueue.class);
+
+  private final DocumentSummarizationService summarizationService;
+  private final ThreadPoolExecutor executor;
+  private final Map<Long, SummaryTask> pending = new ConcurrentHashMap<>();
+  private final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * Constructs a new {@code SummarizationQueue}.
+   *
+   * @param summarizationService the service performing the actual summarization.
+   * @param concurrency          the maximum number of documents summarized at once.
+   */
+  public SummarizationQueue(DocumentSummarizationService summarizationService,
+      @Value("${app.summarization.queue.concurrency:2}") int concurrency) {
+    this.summarizationService = summarizationService;
+    this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+        new PriorityBlockingQueue<>(), new SummarizerThreadFactory());
+  }
+
+  /**
+   * Schedules a document for background summarization.
+   * <p>
+   * When called inside a transaction the document is only queued once that transaction
+   * commits, so workers never look for a document that is not yet visible.
+   * </p>
+   *
+   * @param documentId the ID of the document to summarize.
+   */
+  public void enqueue(Long documentId) {
+    if (documentId == null) {
+      return;
+    }
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          submit(documentId);
+        }
+      });
+    } else {
+      submit(documentId);
+    }
+  }
+
+  /**
+   * Records that a user opened a document, moving it ahead in the queue if it is still
+   * waiting for its summary.
+   *
+   * @param documentId the ID of the opened document.
+   */
+  public void recordAccess(Long documentId) {
+    if (documentId == null) {
+      return;
+    }
+
+    SummaryTask task = pending.get(documentId);
+    if (task == null) {
+      return;
+    }
+
+    // Re-insert so the priority queue re-orders the task with its new access count
+    if (executor.getQueue().remove(task)) {
+      task.accesses.incrementAndGet();
+      executor.execute(task);
+    }
+  }
+
+  /**
+   * Returns the number of documents waiting for or undergoing summarization.
+   *
+   * @return the number of pending documents.
+   */
+  public int getPendingCount() {
+    return pending.size();
+  }
+
+  private void submit(Long documentId) {
+    SummaryTask task = new SummaryTask(documentId, sequence.incrementAndGet());
+    if (pending.putIfAbsent(documentId, task) != null) {
+      return;
+    }
+    executor.execute(task);
+    logger.debug("Queued document {} for summarization ({} pending)", documentId,
+        pending.size());
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * A queued summarization, ordered by access count (descending) and then arrival order.
+   */
+  private final class SummaryTask implements Runnable, Comparable<SummaryTask> {
+    private final Long documentId;
+    private final long order;
+    private final AtomicInteger accesses = new AtomicInteger();
+
+    private SummaryTask(Long documentId, long order) {
+      this.documentId = documentId;
+      this.order = order;
+    }
+
+    @Override
+    public void run() {
+      try {
+        summarizationService.summarizeDocument(documentId);
+      } catch (Exception e) {
+        logger.error("Background summarization failed for document {}: {}", documentId,
+            e.getMessage(), e);
+      } finally {
+        pending.remove(documentId, this);
+      }
+    }
+
+    @Override
+    public int compareTo(SummaryTask other) {
+      int byAccess = Integer.compare(other.accesses.get(), accesses.get());
+      return byAccess != 0 ? byAccess : Long.compare(order, other.order);
+    }
+  }
+
+  /**
+   * Names summarizer threads and keeps them from blocking JVM shutdown.
+   */
+  private static final class SummarizerThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "summarizer-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
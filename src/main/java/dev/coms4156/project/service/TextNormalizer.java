@@ -0,0 +1,87 @@
+package dev.coms4156.project.service;
+
+/**
+ * Single-pass whitespace normalizer for extracted text.
+ * <p>
+ * Line endings become {@code \n}, more than two consecutive line breaks become two, runs of
+ * spaces and tabs become one space, and leading and trailing whitespace is dropped, exactly as
+ * the former chain of {@code replaceAll} calls followed by {@code trim()} did. Every character
+ * is looked at once and only whitespace that turns out to sit between visible characters is
+ * buffered, so normalizing a document costs one scan and one output buffer.
+ * </p>
+ * <p>
+ * An instance keeps its state between calls to {@link #append(char[], int, int, StringBuilder)}
+ * so text can be normalized piece by piece as a parser emits it; it is not thread-safe.
+ * </p>
+ */
+final class TextNormalizer {
+
+  private final StringBuilder pending = new StringBuilder();
+  private int pendingNewlines;
+  private boolean started;
+  private boolean afterCarriageReturn;
+
+  /**
+   * Normalizes a whole text at once.
+   *
+   * @param text the raw text, may be {@code null}.
+   * @return the normalized text, empty if the text is {@code null} or blank.
+   */
+  static String normalize(CharSequence text) {
+    if (text == null) {
+      return "";
+    }
+    StringBuilder out = new StringBuilder(text.length());
+    TextNormalizer normalizer = new TextNormalizer();
+    for (int i = 0; i < text.length(); i++) {
+      normalizer.accept(text.charAt(i), out);
+    }
+    return out.toString();
+  }
+
+  /**
+   * Normalizes the next piece of a text. Whitespace at the end of the piece is held back until
+   * a visible character follows it, so it is never written if the text ends there.
+   *
+   * @param ch     the characters.
+   * @param start  the first character of the piece.
+   * @param length the length of the piece.
+   * @param out    receives the normalized text.
+   */
+  void append(char[] ch, int start, int length, StringBuilder out) {
+    for (int i = start; i < start + length; i++) {
+      accept(ch[i], out);
+    }
+  }
+
+  private void accept(char c, StringBuilder out) {
+    if (c == '\n' && afterCarriageReturn) {
+      // Second half of a Windows line ending
+      afterCarriageReturn = false;
+      return;
+    }
+    afterCarriageReturn = c == '\r';
+    if (c == '\r' || c == '\n') {
+      if (pendingNewlines < 2) {
+        pending.append('\n');
+        pendingNewlines++;
+      }
+    } else if (c == ' ' || c == '\t') {
+      if (pending.length() == 0 || pending.charAt(pending.length() - 1) != ' ') {
+        pending.append(' ');
+      }
+      pendingNewlines = 0;
+    } else if (c <= ' ') {
+      pending.append(c);
+      pendingNewlines = 0;
+    } else {
+      if (started) {
+        out.append(pending);
+      }
+      pending.setLength(0);
+      pendingNewlines = 0;
+      out.append(c);
+      started = true;
+    }
+  }
+}
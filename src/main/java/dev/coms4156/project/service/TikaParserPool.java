@@ -0,0 +1,344 @@
+package dev.coms4156.project.service;
+
+import dev.coms4156.project.dtos.ExtractionStats;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.fork.ForkParser;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * A bounded pool of Tika parsers with a per-document parse timeout.
+ * <p>
+ * Documents are parsed on {@code app.document.extraction.pool-size} dedicated threads, so a
+ * slow parse never runs on a request thread beyond its timeout. {@code in-process} mode gives
+ * no memory or CPU isolation: parsers share the API's heap and cores, and a pathological
+ * document can exhaust either. A parse that times out is interrupted, which stops it the next
+ * time it emits text; a parser stuck without emitting anything keeps its thread until it
+ * finishes, so the pool starts a replacement thread and retires one once the stuck parse
+ * ends. Use {@code fork} mode where isolation is needed: every parse runs in a pool of child
+ * JVMs started with {@code app.document.extraction.fork.java-options} (by default a 512 MB
+ * heap), and Tika kills a child whose parse runs past the timeout or that runs out of memory,
+ * without affecting the API.
+ * </p>
+ */
+@Service
+public class TikaParserPool {
+
+  private static final Logger logger = LoggerFactory.getLogger(TikaParserPool.class);
+
+  private static final int QUEUED = 0;
+  private static final int RUNNING = 1;
+  private static final int FINISHED = 2;
+  private static final int ABANDONED = 3;
+
+  /**
+   * Where documents are parsed.
+   */
+  public enum Mode {
+    IN_PROCESS,
+    FORK;
+
+    /**
+     * Parses a configured mode such as {@code in-process} or {@code fork}.
+     *
+     * @param value the configured value.
+     * @return the matching mode.
+     * @throws IllegalArgumentException if the value names no mode.
+     */
+    public static Mode fromProperty(String value) {
+      return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+  }
+
+  private final Mode mode;
+  private final int poolSize;
+  private final long timeoutMs;
+  private final Parser parser;
+  private final ThreadPoolExecutor executor;
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong timedOut = new AtomicLong();
+  private int stuckParses;
+
+  /**
+   * Constructs a new {@code TikaParserPool}.
+   *
+   * @param mode            {@code in-process} or {@code fork}.
+   * @param poolSize        the maximum number of documents parsed at once.
+   * @param timeoutMs       how long a parse may take, including waiting for a free parser, or
+   *                        0 for no limit.
+   * @param forkJavaOptions JVM options for forked parser processes, such as their heap limit.
+   */
+  public TikaParserPool(
+      @Value("${app.document.extraction.mode:in-process}") String mode,
+      @Value("${app.document.extraction.pool-size:2}") int poolSize,
+      @Value("${app.document.extraction.timeout-ms:120000}") long timeoutMs,
+      @Value("${app.document.extraction.fork.java-options:-Xmx512m}") String forkJavaOptions) {
+    if (poolSize < 1) {
+      throw new IllegalArgumentException("pool-size must be at least 1");
+    }
+    this.mode = Mode.fromProperty(mode);
+    this.poolSize = poolSize;
+    this.timeoutMs = Math.max(0L, timeoutMs);
+    this.parser = this.mode == Mode.FORK ? forkParser(forkJavaOptions) : new AutoDetectParser();
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(), new ParserThreadFactory());
+  }
+
+  private ForkParser forkParser(String javaOptions) {
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    for (String option : javaOptions.trim().split("\\s+")) {
+      if (!option.isEmpty()) {
+        command.add(option);
+      }
+    }
+
+    ForkParser forkParser = new ForkParser(TikaParserPool.class.getClassLoader(),
+        new AutoDetectParser());
+    forkParser.setJavaCommand(command);
+    forkParser.setPoolSize(poolSize);
+    if (timeoutMs > 0) {
+      forkParser.setServerParseTimeoutMillis(timeoutMs);
+    }
+    return forkParser;
+  }
+
+  /**
+   * Parses a document on a pooled parser, waiting at most the configured timeout.
+   *
+   * @param stream   the document.
+   * @param handler  receives the parsed content.
+   * @param metadata the document metadata.
+   * @throws IOException   if the document cannot be read.
+   * @throws SAXException  if the handler fails.
+   * @throws TikaException if the document cannot be parsed or the parse times out.
+   */
+  public void parse(InputStream stream, ContentHandler handler, Metadata metadata)
+      throws IOException, SAXException, TikaException {
+    ParseContext context = new ParseContext();
+    if (mode == Mode.IN_PROCESS) {
+      context.set(Parser.class, parser);
+    }
+
+    submit(() -> {
+      parser.parse(stream, handler, metadata, context);
+      return null;
+    }, metadata.get(Metadata.CONTENT_TYPE)).await();
+  }
+
+  /**
+   * Starts other extraction work, such as a range of a document's pages, on a pooled parser
+   * thread. It counts as a parse in the statistics and gets the same timeout. The work always
+   * runs in this JVM, whatever the mode.
+   *
+   * @param task        the work.
+   * @param description what is parsed, for logging.
+   * @param <T>         the result of the work.
+   * @return the running work.
+   */
+  <T> PooledTask<T> submit(Callable<T> task, String description) {
+    return new PooledTask<>(task, description);
+  }
+
+  /**
+   * Returns where documents are parsed.
+   *
+   * @return the configured mode.
+   */
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * Returns the maximum number of documents parsed at once.
+   *
+   * @return the pool size.
+   */
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  /**
+   * Adds a thread in place of one held by an abandoned parse, unless it has stopped.
+   *
+   * @param state the state of the abandoned parse.
+   */
+  private synchronized void replaceThread(AtomicInteger state) {
+    if (!state.compareAndSet(RUNNING, ABANDONED)) {
+      return;
+    }
+    stuckParses++;
+    executor.setMaximumPoolSize(poolSize + stuckParses);
+    executor.setCorePoolSize(poolSize + stuckParses);
+    logger.warn("An abandoned parse is still running; {} parser threads are stuck", stuckParses);
+  }
+
+  /**
+   * Removes the thread added for an abandoned parse once that parse has stopped.
+   */
+  private synchronized void retireThread() {
+    stuckParses--;
+    executor.setCorePoolSize(poolSize + stuckParses);
+    executor.setMaximumPoolSize(poolSize + stuckParses);
+  }
+
+  /**
+   * Returns how busy the pool is and how parses have ended so far.
+   *
+   * @return the pool statistics.
+   */
+  public ExtractionStats getStats() {
+    int stuck;
+    synchronized (this) {
+      stuck = stuckParses;
+    }
+    int active = Math.max(0, executor.getActiveCount() - stuck);
+    return ExtractionStats.builder()
+        .mode(mode.name().toLowerCase(Locale.ROOT).replace('_', '-'))
+        .poolSize(poolSize)
+        .activeParses(active)
+        .queuedParses(executor.getQueue().size())
+        .utilization((double) active / poolSize)
+        .completed(completed.get())
+        .failed(failed.get())
+        .timedOut(timedOut.get())
+        .stuckParses(stuck)
+        .build();
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+    if (parser instanceof ForkParser forkParser) {
+      forkParser.close();
+    }
+  }
+
+  /**
+   * Work running on a pooled parser thread.
+   *
+   * @param <T> the result of the work.
+   */
+  final class PooledTask<T> {
+    private final AtomicInteger state = new AtomicInteger(QUEUED);
+    private final String description;
+    private final long deadline;
+    private final Future<T> future;
+
+    private PooledTask(Callable<T> task, String description) {
+      this.description = description;
+      this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+      this.future = executor.submit(() -> {
+        if (!state.compareAndSet(QUEUED, RUNNING)) {
+          return null;
+        }
+        try {
+          return task.call();
+        } finally {
+          if (!state.compareAndSet(RUNNING, FINISHED)) {
+            // Abandoned, and a replacement thread took its place
+            retireThread();
+          }
+        }
+      });
+    }
+
+    /**
+     * Waits for the work until the configured timeout, counted from when it was submitted.
+     *
+     * @return the result of the work.
+     * @throws IOException   if the document cannot be read.
+     * @throws SAXException  if the handler fails.
+     * @throws TikaException if the work fails or times out.
+     */
+    T await() throws IOException, SAXException, TikaException {
+      try {
+        T result;
+        if (timeoutMs > 0) {
+          result = future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } else {
+          result = future.get();
+        }
+        completed.incrementAndGet();
+        return result;
+      } catch (TimeoutException e) {
+        cancel();
+        timedOut.incrementAndGet();
+        failed.incrementAndGet();
+        logger.warn("Parsing {} timed out after {} ms", description, timeoutMs);
+        throw new TikaException("Parsing timed out after " + timeoutMs + " ms");
+      } catch (InterruptedException e) {
+        cancel();
+        Thread.currentThread().interrupt();
+        throw new TikaException("Interrupted while parsing", e);
+      } catch (CancellationException e) {
+        throw new TikaException("Parsing was cancelled", e);
+      } catch (ExecutionException e) {
+        failed.incrementAndGet();
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException io) {
+          throw io;
+        } else if (cause instanceof SAXException sax) {
+          throw sax;
+        } else if (cause instanceof TikaException tika) {
+          throw tika;
+        } else if (cause instanceof RuntimeException runtime) {
+          throw runtime;
+        }
+        // Typically an OutOfMemoryError or StackOverflowError from a pathological document
+        throw new TikaException("Parser failed: " + cause, cause);
+      }
+    }
+
+    /**
+     * Interrupts the work, replacing its thread if the work keeps running anyway.
+     */
+    void cancel() {
+      future.cancel(true);
+      if (!state.compareAndSet(QUEUED, FINISHED)) {
+        replaceThread(state);
+      }
+    }
+  }
+
+  /**
+   * Names parser threads and keeps them from blocking JVM shutdown.
+   */
+  private static final class ParserThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "tika-parser-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package dev.coms4156.project.service;
+
+/**
+ * Cuts chunks that hold as many words as fit in a token budget, so every chunk fills the
+ * embedding model's input without being truncated by it.
+ * <p>
+ * Words, each with the whitespace before the next one, are counted with a local
+ * {@link TokenCounter} and added until the next would exceed
+ * {@code app.document.chunking.max-tokens}. The chunk then ends at the last sentence end if one
+ * falls in its last 30%, and the next chunk starts up to
+ * {@code app.document.chunking.overlap-tokens} tokens of whole words before its end. A single
+ * word longer than the budget is cut where the budget runs out.
+ * </p>
+ */
+public class TokenBudgetChunkingStrategy implements ChunkingStrategy {
+
+  private final TokenCounter tokenCounter;
+  private final int maxTokens;
+  private final int overlapTokens;
+
+  /**
+   * Constructs a new {@code TokenBudgetChunkingStrategy}.
+   *
+   * @param tokenCounter  counts the tokens of the text.
+   * @param maxTokens     the most tokens in a chunk.
+   * @param overlapTokens the tokens a chunk repeats from the end of the previous one.
+   */
+  public TokenBudgetChunkingStrategy(TokenCounter tokenCounter, int maxTokens,
+      int overlapTokens) {
+    if (maxTokens < 1) {
+      throw new IllegalArgumentException("max-tokens must be at least 1");
+    }
+    this.tokenCounter = tokenCounter;
+    this.maxTokens = maxTokens;
+    this.overlapTokens = Math.max(0, Math.min(overlapTokens, maxTokens / 2));
+  }
+
+  @Override
+  public String getName() {
+    return "token";
+  }
+
+  @Override
+  public Cut cut(Window window) {
+    CharSequence text = window.getText();
+    int length = text.length();
+    int end = budgetEnd(text, window.isComplete());
+    if (end < 0) {
+      return null;
+    }
+    if (end < length) {
+      end = preferredEnd(window, end);
+    }
+    return new Cut(end, end < length ? overlapStart(text, end) : end);
+  }
+
+  /**
+   * Moves a chunk end that exhausted the budget back to a better boundary.
+   *
+   * @param window the window.
+   * @param end    the end of the longest chunk that fits the budget.
+   * @return the end to cut at, between 1 and {@code end}.
+   */
+  protected int preferredEnd(Window window, int end) {
+    int lastSentenceEnd = window.lastSentenceEnd(end);
+    return lastSentenceEnd > end * 0.7 ? lastSentenceEnd : end;
+  }
+
+  /**
+   * Returns the end of the longest run of whole words that fits the budget, or -1 if the
+   * window ends before that is known.
+   */
+  private int budgetEnd(CharSequence text, boolean complete) {
+    int length = text.length();
+    int tokens = 0;
+    int start = 0;
+    while (start < length) {
+      int end = nextWord(text, start);
+      if (end == length && !complete) {
+        return -1;
+      }
+      tokens += tokenCounter.countTokens(text, start, end);
+      if (tokens > maxTokens) {
+        return start > 0 ? start : splitWord(text, end);
+      }
+      start = end;
+    }
+    return length;
+  }
+
+  /**
+   * Returns the longest prefix of a single word that fits the budget, at least one character.
+   */
+  private int splitWord(CharSequence text, int wordEnd) {
+    int low = 1;
+    int high = wordEnd;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (tokenCounter.countTokens(text, 0, mid) <= maxTokens) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns where the next chunk starts: at the earliest word boundary whose words up to
+   * {@code end} hold no more than the overlap budget.
+   */
+  private int overlapStart(CharSequence text, int end) {
+    int start = end;
+    int tokens = 0;
+    while (start > 0) {
+      int wordStart = previousWord(text, start);
+      tokens += tokenCounter.countTokens(text, wordStart, start);
+      if (tokens > overlapTokens || wordStart == 0) {
+        break;
+      }
+      start = wordStart;
+    }
+    return start;
+  }
+
+  /**
+   * Returns the end of the word starting at {@code start}, including the whitespace after it.
+   */
+  static int nextWord(CharSequence text, int start) {
+    int i = start;
+    while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+      i++;
+    }
+    while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+      i++;
+    }
+    while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Returns the start of the word ending at {@code end}, as {@link #nextWord} would find it.
+   */
+  static int previousWord(CharSequence text, int end) {
+    int i = end;
+    while (i > 0 && Character.isWhitespace(text.charAt(i - 1))) {
+      i--;
+    }
+    while (i > 0 && !Character.isWhitespace(text.charAt(i - 1))) {
+      i--;
+    }
+    return i;
+  }
+}
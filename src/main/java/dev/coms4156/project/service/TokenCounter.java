@@ -0,0 +1,52 @@
+package dev.coms4156.project.service;
+
+/**
+ * Counts the tokens a language model would see in a text, without calling the model.
+ */
+public interface TokenCounter {
+
+  /**
+   * Counts the tokens of part of a text.
+   *
+   * @param text  the text.
+   * @param start the first character counted.
+   * @param end   the end of the characters counted, exclusive.
+   * @return the number of tokens.
+   */
+  int countTokens(CharSequence text, int start, int end);
+
+  /**
+   * Counts the tokens of a whole text.
+   *
+   * @param text the text, may be {@code null}.
+   * @return the number of tokens, 0 for {@code null}.
+   */
+  default int countTokens(CharSequence text) {
+    return text == null ? 0 : countTokens(text, 0, text.length());
+  }
+
+  /**
+   * Returns how much of the start of a text fits in a token budget.
+   * <p>
+   * The default searches for the longest prefix whose count fits, which assumes counts never
+   * shrink as the prefix grows.
+   * </p>
+   *
+   * @param text      the text.
+   * @param maxTokens the budget.
+   * @return the length of the longest prefix of at most {@code maxTokens} tokens.
+   */
+  default int fittingPrefix(CharSequence text, int maxTokens) {
+    int low = 0;
+    int high = text.length();
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (countTokens(text, 0, mid) <= maxTokens) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+}
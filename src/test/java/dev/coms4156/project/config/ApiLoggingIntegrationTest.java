@@ -7,7 +7,9 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import dev.coms4156.project.service.ApiLoggingService;
 import dev.coms4156.project.service.DocumentService;
 import dev.coms4156.project.service.DocumentSummarizationService;
+import dev.coms4156.project.service.IngestionAdmissionService;
 import dev.coms4156.project.service.RagService;
+import dev.coms4156.project.service.SummarizationQueue;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
@@ -42,9 +44,15 @@ class ApiLoggingIntegrationTest {
   @MockBean
   private RagService ragService;
 
+  @MockBean
+  private SummarizationQueue summarizationQueue;
+
   @MockBean
   private ApiLoggingService apiLoggingService;
 
+  @MockBean
+  private IngestionAdmissionService admissionService;
+
   // Mock security-related beans to prevent SecurityConfig from failing
   @MockBean
   private dev.coms4156.project.config.JwtAuthenticationFilter jwtAuthenticationFilter;
@@ -0,0 +1,66 @@
+package dev.coms4156.project.config;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class DatabaseSchemaInitializerTest {
+
+  @Mock
+  private JdbcTemplate jdbcTemplate;
+
+  private DatabaseSchemaInitializer initializer;
+
+  @BeforeEach
+  void setUp() {
+    initializer = new DatabaseSchemaInitializer(jdbcTemplate);
+    when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+  }
+
+  @Test
+  void testRun_ContinuesWhenOptionalStatementFails() {
+    failWhen(sql -> sql.contains("pg_trgm"));
+
+    initializer.afterSingletonsInstantiated();
+
+    // Every statement after the extension still runs
+    List<DatabaseSchemaInitializer.SchemaStatement> statements = initializer.statements();
+    verify(jdbcTemplate).execute(statements.get(statements.size() - 1).getSql());
+  }
+
+  @Test
+  void testRun_FailsStartupWhenTriggerCannotBeInstalled() {
+    failWhen(sql -> sql.contains("CREATE TRIGGER document_chunks_embedding_refs"));
+
+    assertThrows(IllegalStateException.class, () -> initializer.afterSingletonsInstantiated());
+
+    // Unreferenced embeddings are not cleaned up while ref counts are not maintained
+    List<DatabaseSchemaInitializer.SchemaStatement> statements = initializer.statements();
+    verify(jdbcTemplate, never()).execute(statements.get(statements.size() - 1).getSql());
+  }
+
+  private void failWhen(Predicate<String> failing) {
+    doAnswer(invocation -> {
+      if (failing.test(invocation.getArgument(0))) {
+        throw new DataAccessResourceFailureException("permission denied");
+      }
+      return null;
+    }).when(jdbcTemplate).execute(anyString());
+  }
+}
@@ -12,28 +12,38 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.coms4156.project.dtos.DocumentDto;
+import dev.coms4156.project.dtos.DocumentPageResponse;
 import dev.coms4156.project.model.Document;
 import dev.coms4156.project.model.DocumentChunk;
 import dev.coms4156.project.service.ApiLoggingService;
 import dev.coms4156.project.service.DocumentService;
 import dev.coms4156.project.service.DocumentSummarizationService;
+import dev.coms4156.project.service.IngestionAdmissionService;
+import dev.coms4156.project.service.IngestionRejectedException;
 import dev.coms4156.project.service.RagService;
+import dev.coms4156.project.service.SummarizationQueue;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -45,9 +55,11 @@ import org.springframework.boot.autoconfigure.security.servlet.SecurityFilterAut
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 /**
  * Comprehensive API Integration Tests using MockMvc.
@@ -61,6 +73,9 @@ class DocumentApiTest {
   @Autowired
   private MockMvc mockMvc;
 
+  @Autowired
+  private ObjectMapper objectMapper;
+
   @MockBean
   private DocumentService documentService;
 
@@ -70,9 +85,15 @@ class DocumentApiTest {
   @MockBean
   private RagService ragService;
 
+  @MockBean
+  private SummarizationQueue summarizationQueue;
+
   @MockBean
   private ApiLoggingService apiLoggingService;
 
+  @MockBean
+  private IngestionAdmissionService admissionService;
+
   // Mock security-related beans to prevent SecurityConfig from failing
   @MockBean
   private dev.coms4156.project.config.JwtAuthenticationFilter jwtAuthenticationFilter;
@@ -108,6 +129,16 @@ class DocumentApiTest {
     });
   }
 
+  private List<DocumentDto> toDtos(List<Document> documents) {
+    return documents.stream().map(DocumentDto::fromDocument).toList();
+  }
+
+  private DocumentPageResponse toPage(List<Document> documents, String nextCursor,
+      boolean hasMore) {
+    return new DocumentPageResponse(toDtos(documents), (long) documents.size(), nextCursor,
+        hasMore, "Documents retrieved successfully");
+  }
+
   @Nested
   @DisplayName("GET /api - Welcome Endpoint")
   class WelcomeEndpointTests {
@@ -162,7 +193,7 @@ class DocumentApiTest {
           .build();
 
       // Mock the service to return our expected document
-      when(documentService.processDocument(any())).thenReturn(document);
+      when(documentService.processDocument(any(), any(), any())).thenReturn(document);
 
       // Make the actual HTTP POST request using MockMvc
       mockMvc.perform(multipart("/api/v1/documents")
@@ -176,7 +207,7 @@ class DocumentApiTest {
           .andExpect(jsonPath("$.message").exists());
 
       // Verify the service was called exactly once
-      verify(documentService, times(1)).processDocument(any());
+      verify(documentService, times(1)).processDocument(any(), any(), any());
     }
 
     @Test
@@ -196,7 +227,7 @@ class DocumentApiTest {
           .processingStatus(Document.ProcessingStatus.COMPLETED)
           .build();
 
-      when(documentService.processDocument(any())).thenReturn(document);
+      when(documentService.processDocument(any(), any(), any())).thenReturn(document);
 
       mockMvc.perform(multipart("/api/v1/documents")
           .file(file)
@@ -205,7 +236,7 @@ class DocumentApiTest {
           .andExpect(jsonPath("$.documentId").value(2L))
           .andExpect(jsonPath("$.filename").value("large-file-émoji.txt"));
 
-      verify(documentService, times(1)).processDocument(any());
+      verify(documentService, times(1)).processDocument(any(), any(), any());
     }
 
     @Test
@@ -216,7 +247,7 @@ class DocumentApiTest {
           "file", "empty.txt", "text/plain", new byte[0]);
 
       // Service should throw exception for empty file
-      when(documentService.processDocument(any()))
+      when(documentService.processDocument(any(), any(), any()))
           .thenThrow(new IllegalArgumentException("File is empty"));
 
       // Make request and verify it returns 400 Bad Request
@@ -226,7 +257,104 @@ class DocumentApiTest {
           .andExpect(status().isBadRequest())
           .andExpect(jsonPath("$.error").value("File is empty"));
 
-      verify(documentService, times(1)).processDocument(any());
+      verify(documentService, times(1)).processDocument(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Atypical valid: Clone an identical upload")
+    void testUploadDocument_AtypicalValid_CloneDuplicate() throws Exception {
+      MockMultipartFile file = new MockMultipartFile(
+          "file", "copy.txt", "text/plain", "same bytes".getBytes());
+      Document clone = Document.builder()
+          .id(3L)
+          .filename("copy.txt")
+          .processingStatus(Document.ProcessingStatus.COMPLETED)
+          .build();
+
+      when(documentService.processDocument(any(), eq(DocumentService.DuplicatePolicy.CLONE),
+          any()))
+          .thenReturn(clone);
+
+      mockMvc.perform(multipart("/api/v1/documents")
+          .file(file)
+          .param("onDuplicate", "clone")
+          .header("X-Client-ID", "client-1"))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.documentId").value(3L));
+    }
+
+    @Test
+    @DisplayName("Invalid: Unknown duplicate policy")
+    void testUploadDocument_Invalid_DuplicatePolicy() throws Exception {
+      MockMultipartFile file = new MockMultipartFile(
+          "file", "copy.txt", "text/plain", "same bytes".getBytes());
+
+      mockMvc.perform(multipart("/api/v1/documents")
+          .file(file)
+          .param("onDuplicate", "merge")
+          .header("X-Client-ID", "client-1"))
+          .andExpect(status().isBadRequest());
+
+      verify(documentService, never()).processDocument(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Atypical valid: Link a near-duplicate upload")
+    void testUploadDocument_AtypicalValid_LinkNearDuplicate() throws Exception {
+      MockMultipartFile file = new MockMultipartFile(
+          "file", "report-v2.txt", "text/plain", "nearly the same text".getBytes());
+      Document original = Document.builder().id(4L).build();
+      Document linked = Document.builder()
+          .id(5L)
+          .filename("report-v2.txt")
+          .processingStatus(Document.ProcessingStatus.COMPLETED)
+          .nearDuplicateOf(original)
+          .build();
+
+      when(documentService.processDocument(any(), any(),
+          eq(DocumentService.NearDuplicatePolicy.LINK))).thenReturn(linked);
+
+      mockMvc.perform(multipart("/api/v1/documents")
+          .file(file)
+          .param("onNearDuplicate", "link")
+          .header("X-Client-ID", "client-1"))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.documentId").value(5L))
+          .andExpect(jsonPath("$.nearDuplicateOf").value(4L));
+    }
+
+    @Test
+    @DisplayName("Invalid: Unknown near-duplicate policy")
+    void testUploadDocument_Invalid_NearDuplicatePolicy() throws Exception {
+      MockMultipartFile file = new MockMultipartFile(
+          "file", "report-v2.txt", "text/plain", "nearly the same text".getBytes());
+
+      mockMvc.perform(multipart("/api/v1/documents")
+          .file(file)
+          .param("onNearDuplicate", "merge")
+          .header("X-Client-ID", "client-1"))
+          .andExpect(status().isBadRequest());
+
+      verify(documentService, never()).processDocument(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Invalid: Ingestion saturated")
+    void testUploadDocument_Invalid_Saturated() throws Exception {
+      MockMultipartFile file = new MockMultipartFile(
+          "file", "test.pdf", "application/pdf", "content".getBytes());
+
+      when(admissionService.admit(anyLong()))
+          .thenThrow(new IngestionRejectedException("Too many documents", 12));
+
+      mockMvc.perform(multipart("/api/v1/documents")
+          .file(file)
+          .header("X-Client-ID", "client-1"))
+          .andExpect(status().isTooManyRequests())
+          .andExpect(header().string("Retry-After", "12"))
+          .andExpect(jsonPath("$.error").value("Too many documents"));
+
+      verify(documentService, never()).processDocument(any(), any(), any());
     }
 
     @Test
@@ -243,7 +371,7 @@ class DocumentApiTest {
       MockMultipartFile file = new MockMultipartFile(
           "file", "test.pdf", "application/pdf", "content".getBytes());
 
-      when(documentService.processDocument(any()))
+      when(documentService.processDocument(any(), any(), any()))
           .thenThrow(new RuntimeException("Processing failed"));
 
       mockMvc.perform(multipart("/api/v1/documents")
@@ -254,6 +382,64 @@ class DocumentApiTest {
     }
   }
 
+  @Nested
+  @DisplayName("POST /api/v1/documents/{id}/versions - Upload Document Version")
+  class UploadDocumentVersionTests {
+
+    @Test
+    @DisplayName("Typical valid: Upload a new version of a document")
+    void testUploadDocumentVersion_TypicalValid() throws Exception {
+      MockMultipartFile file = new MockMultipartFile(
+          "file", "report-v2.txt", "text/plain", "Revised content".getBytes());
+      Document document = Document.builder()
+          .id(1L)
+          .filename("report-v2.txt")
+          .revision(2)
+          .processingStatus(Document.ProcessingStatus.EMBEDDINGS_GENERATED)
+          .build();
+
+      when(documentService.getDocumentById(1L)).thenReturn(Optional.of(document));
+      when(documentService.processNewVersion(eq(1L), any())).thenReturn(document);
+
+      mockMvc.perform(multipart("/api/v1/documents/1/versions")
+          .file(file))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.documentId").value(1L))
+          .andExpect(jsonPath("$.filename").value("report-v2.txt"));
+    }
+
+    @Test
+    @DisplayName("Invalid: New version identical to another document")
+    void testUploadDocumentVersion_Invalid_IdenticalToOther() throws Exception {
+      MockMultipartFile file = new MockMultipartFile(
+          "file", "copy.txt", "text/plain", "same bytes".getBytes());
+
+      when(documentService.getDocumentById(1L)).thenReturn(Optional.of(new Document()));
+      when(documentService.processNewVersion(eq(1L), any()))
+          .thenThrow(new IllegalArgumentException("Content is identical to document 2"));
+
+      mockMvc.perform(multipart("/api/v1/documents/1/versions")
+          .file(file))
+          .andExpect(status().isBadRequest())
+          .andExpect(jsonPath("$.error").value("Content is identical to document 2"));
+    }
+
+    @Test
+    @DisplayName("Invalid: Document does not exist")
+    void testUploadDocumentVersion_Invalid_NotFound() throws Exception {
+      MockMultipartFile file = new MockMultipartFile(
+          "file", "report.txt", "text/plain", "content".getBytes());
+
+      when(documentService.getDocumentById(99L)).thenReturn(Optional.empty());
+
+      mockMvc.perform(multipart("/api/v1/documents/99/versions")
+          .file(file))
+          .andExpect(status().isNotFound());
+
+      verify(documentService, never()).processNewVersion(any(), any());
+    }
+  }
+
   @Nested
   @DisplayName("GET /api/v1/documents/{id} - Get Document")
   class GetDocumentTests {
@@ -338,16 +524,20 @@ class DocumentApiTest {
           Document.builder().id(1L).filename("doc1.pdf").build(),
           Document.builder().id(2L).filename("doc2.pdf").build());
 
-      when(documentService.getAllDocuments()).thenReturn(documents);
+      // Without a limit the service serves its default page size, not the whole table
+      when(documentService.listDocumentPage(null, null, null, Sort.Direction.DESC))
+          .thenReturn(toPage(documents, "next", true));
 
       mockMvc.perform(get("/api/v1/documents")
           .header("X-Client-ID", "client-1"))
           .andExpect(status().isOk())
           .andExpect(jsonPath("$.count").value(2))
           .andExpect(jsonPath("$.documents").isArray())
+          .andExpect(jsonPath("$.nextCursor").value("next"))
+          .andExpect(jsonPath("$.hasMore").value(true))
           .andExpect(jsonPath("$.message").value("Documents retrieved successfully"));
 
-      verify(documentService, times(1)).getAllDocuments();
+      verify(documentService, times(1)).listDocumentPage(null, null, null, Sort.Direction.DESC);
     }
 
     @Test
@@ -356,28 +546,44 @@ class DocumentApiTest {
       List<Document> documents = Arrays.asList(
           Document.builder().id(1L).filename("test-doc.pdf").build());
 
-      when(documentService.getDocumentsByFilename("test")).thenReturn(documents);
+      when(documentService.listDocumentPage("test", "abc", 10, Sort.Direction.ASC))
+          .thenReturn(toPage(documents, null, false));
 
       mockMvc.perform(get("/api/v1/documents")
           .param("filename", "test")
+          .param("cursor", "abc")
+          .param("limit", "10")
+          .param("direction", "asc")
           .header("X-Client-ID", "client-1"))
           .andExpect(status().isOk())
           .andExpect(jsonPath("$.count").value(1))
+          .andExpect(jsonPath("$.hasMore").value(false))
           .andExpect(jsonPath("$.documents[0].filename").value("test-doc.pdf"));
-
-      verify(documentService, times(1)).getDocumentsByFilename("test");
     }
 
     @Test
     @DisplayName("Invalid: Service exception")
     void testGetAllDocuments_Invalid_ServiceException() throws Exception {
-      when(documentService.getAllDocuments())
+      when(documentService.listDocumentPage(null, null, null, Sort.Direction.DESC))
           .thenThrow(new RuntimeException("Database error"));
 
       mockMvc.perform(get("/api/v1/documents")
           .header("X-Client-ID", "client-1"))
           .andExpect(status().isInternalServerError());
     }
+
+    @Test
+    @DisplayName("Invalid: Malformed cursor")
+    void testGetAllDocuments_Invalid_Cursor() throws Exception {
+      when(documentService.listDocumentPage(null, "bogus", null, Sort.Direction.DESC))
+          .thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+      mockMvc.perform(get("/api/v1/documents")
+          .param("cursor", "bogus")
+          .header("X-Client-ID", "client-1"))
+          .andExpect(status().isBadRequest())
+          .andExpect(jsonPath("$.error").value("Invalid cursor"));
+    }
   }
 
   @Nested
@@ -511,11 +717,9 @@ class DocumentApiTest {
     @Test
     @DisplayName("Typical valid: Get statistics with various statuses")
     void testGetProcessingStatistics_TypicalValid() throws Exception {
-      List<Document> docs = Arrays.asList(
-          Document.builder().processingStatus(Document.ProcessingStatus.COMPLETED).build(),
-          Document.builder().processingStatus(Document.ProcessingStatus.FAILED).build());
-
-      when(documentService.getAllDocuments()).thenReturn(docs);
+      when(documentService.getStatusCounts()).thenReturn(Map.of(
+          Document.ProcessingStatus.COMPLETED, 1L,
+          Document.ProcessingStatus.FAILED, 1L));
 
       mockMvc.perform(get("/api/v1/documents/stats")
           .header("X-Client-ID", "client-1"))
@@ -529,7 +733,7 @@ class DocumentApiTest {
     @Test
     @DisplayName("Atypical valid: Get statistics with zero documents")
     void testGetProcessingStatistics_AtypicalValid_Empty() throws Exception {
-      when(documentService.getAllDocuments()).thenReturn(Arrays.asList());
+      when(documentService.getStatusCounts()).thenReturn(Map.of());
 
       mockMvc.perform(get("/api/v1/documents/stats")
           .header("X-Client-ID", "client-1"))
@@ -542,7 +746,7 @@ class DocumentApiTest {
     @Test
     @DisplayName("Invalid: Service exception")
     void testGetProcessingStatistics_Invalid_ServiceException() throws Exception {
-      when(documentService.getAllDocuments())
+      when(documentService.getStatusCounts())
           .thenThrow(new RuntimeException("Database error"));
 
       // Controller doesn't catch exceptions - RuntimeException propagates
@@ -620,22 +824,25 @@ class DocumentApiTest {
     void testGetDocumentsWithSummaries_TypicalValid() throws Exception {
       List<Document> allDocs = Arrays.asList(
           Document.builder().id(1L).summary("Summary 1").build(),
-          Document.builder().id(2L).summary("Summary 2").build(),
-          Document.builder().id(3L).summary(null).build());
+          Document.builder().id(2L).summary("Summary 2").build());
 
-      when(documentService.getAllDocuments()).thenReturn(allDocs);
+      when(documentService.listSummarizedPage(null, 2, Sort.Direction.DESC))
+          .thenReturn(toPage(allDocs, "next", true));
 
       mockMvc.perform(get("/api/v1/documents/summaries")
+          .param("limit", "2")
           .header("X-Client-ID", "client-1"))
           .andExpect(status().isOk())
           .andExpect(jsonPath("$.count").value(2))
+          .andExpect(jsonPath("$.hasMore").value(true))
           .andExpect(jsonPath("$.documents").isArray());
     }
 
     @Test
     @DisplayName("Atypical valid: Get documents with empty summaries list")
     void testGetDocumentsWithSummaries_AtypicalValid_Empty() throws Exception {
-      when(documentService.getAllDocuments()).thenReturn(Arrays.asList());
+      when(documentService.listSummarizedPage(null, 50, Sort.Direction.DESC))
+          .thenReturn(toPage(List.of(), null, false));
 
       mockMvc.perform(get("/api/v1/documents/summaries")
           .header("X-Client-ID", "client-1"))
@@ -646,7 +853,7 @@ class DocumentApiTest {
     @Test
     @DisplayName("Invalid: Service exception")
     void testGetDocumentsWithSummaries_Invalid_ServiceException() throws Exception {
-      when(documentService.getAllDocuments())
+      when(documentService.listSummarizedPage(null, 50, Sort.Direction.DESC))
           .thenThrow(new RuntimeException("Database error"));
 
       // Controller doesn't catch exceptions - RuntimeException propagates
@@ -664,6 +871,32 @@ class DocumentApiTest {
         assertEquals("Database error", e.getCause().getMessage());
       }
     }
+
+    @Test
+    @DisplayName("Typical valid: Export streams newline-delimited JSON")
+    void testExportDocumentsWithSummaries_TypicalValid() throws Exception {
+      when(documentService.forEachSummarized(any())).thenAnswer(invocation -> {
+        Consumer<DocumentDto> action = invocation.getArgument(0);
+        action.accept(DocumentDto.builder().id(1L).summary("Summary 1").build());
+        action.accept(DocumentDto.builder().id(2L).summary("Summary 2").build());
+        return 2L;
+      });
+
+      MvcResult result = mockMvc.perform(get("/api/v1/documents/summaries/export")
+          .header("X-Client-ID", "client-1"))
+          .andExpect(request().asyncStarted())
+          .andReturn();
+
+      String body = mockMvc.perform(asyncDispatch(result))
+          .andExpect(status().isOk())
+          .andExpect(content().contentType("application/x-ndjson"))
+          .andReturn().getResponse().getContentAsString();
+
+      String[] lines = body.split("\n");
+      assertEquals(2, lines.length);
+      assertEquals(1L, objectMapper.readTree(lines[0]).get("id").asLong());
+      assertEquals("Summary 2", objectMapper.readTree(lines[1]).get("summary").asText());
+    }
   }
 
   @Nested
@@ -716,7 +949,7 @@ class DocumentApiTest {
           .processingStatus(Document.ProcessingStatus.COMPLETED)
           .build();
 
-      when(documentService.processDocument(any())).thenReturn(document);
+      when(documentService.processDocument(any(), any(), any())).thenReturn(document);
       when(apiLoggingService.getClientId("client-backend-1", "127.0.0.1"))
           .thenReturn("client-backend-1");
 
@@ -739,7 +972,7 @@ class DocumentApiTest {
           .processingStatus(Document.ProcessingStatus.COMPLETED)
           .build();
 
-      when(documentService.processDocument(any())).thenReturn(document);
+      when(documentService.processDocument(any(), any(), any())).thenReturn(document);
       when(apiLoggingService.getClientId("client-backend-2", "127.0.0.1"))
           .thenReturn("client-backend-2");
 
@@ -779,7 +1012,7 @@ class DocumentApiTest {
           .processingStatus(Document.ProcessingStatus.COMPLETED)
           .build();
 
-      when(documentService.processDocument(any())).thenReturn(document);
+      when(documentService.processDocument(any(), any(), any())).thenReturn(document);
       when(apiLoggingService.getClientId(null, "127.0.0.1"))
           .thenReturn("client-127-0-0-1");
 
@@ -815,7 +1048,7 @@ class DocumentApiTest {
           .updatedAt(LocalDateTime.now())
           .build();
 
-      when(documentService.processDocument(any())).thenReturn(uploadedDoc);
+      when(documentService.processDocument(any(), any(), any())).thenReturn(uploadedDoc);
 
       mockMvc.perform(multipart("/api/v1/documents")
           .file(file)
@@ -833,7 +1066,7 @@ class DocumentApiTest {
           .andExpect(jsonPath("$.filename").value("persistence-test.pdf"))
           .andExpect(jsonPath("$.processingStatus").value("COMPLETED"));
 
-      verify(documentService, times(1)).processDocument(any());
+      verify(documentService, times(1)).processDocument(any(), any(), any());
       verify(documentService, times(1)).getDocumentById(100L);
     }
 
@@ -850,7 +1083,7 @@ class DocumentApiTest {
           .processingStatus(Document.ProcessingStatus.COMPLETED)
           .build();
 
-      when(documentService.processDocument(any())).thenReturn(uploadedDoc);
+      when(documentService.processDocument(any(), any(), any())).thenReturn(uploadedDoc);
 
       mockMvc.perform(multipart("/api/v1/documents")
           .file(file)
@@ -867,7 +1100,7 @@ class DocumentApiTest {
           .andExpect(jsonPath("$.documentId").value(200L))
           .andExpect(jsonPath("$.summary").value("Summary of uploaded document"));
 
-      verify(documentService, times(1)).processDocument(any());
+      verify(documentService, times(1)).processDocument(any(), any(), any());
       verify(summarizationService, times(1)).getDocumentSummary(200L);
     }
 
@@ -884,7 +1117,7 @@ class DocumentApiTest {
           .processingStatus(Document.ProcessingStatus.COMPLETED)
           .build();
 
-      when(documentService.processDocument(any())).thenReturn(uploadedDoc);
+      when(documentService.processDocument(any(), any(), any())).thenReturn(uploadedDoc);
 
       mockMvc.perform(multipart("/api/v1/documents")
           .file(file)
@@ -907,7 +1140,7 @@ class DocumentApiTest {
           .andExpect(jsonPath("$.count").value(1))
           .andExpect(jsonPath("$.results[0].textContent").value("machine learning content"));
 
-      verify(documentService, times(1)).processDocument(any());
+      verify(documentService, times(1)).processDocument(any(), any(), any());
       verify(documentService, times(1)).findSimilarChunks("machine learning", 3);
     }
   }
@@ -928,7 +1161,7 @@ class DocumentApiTest {
           .processingStatus(Document.ProcessingStatus.COMPLETED)
           .build();
 
-      when(documentService.processDocument(any())).thenReturn(document);
+      when(documentService.processDocument(any(), any(), any())).thenReturn(document);
       when(apiLoggingService.generateRequestId()).thenReturn("req-123");
 
       mockMvc.perform(multipart("/api/v1/documents")
@@ -969,7 +1202,8 @@ class DocumentApiTest {
           .header("X-Client-ID", "client-1"));
 
       // GET all endpoint
-      when(documentService.getAllDocuments()).thenReturn(Arrays.asList());
+      when(documentService.listDocumentPage(null, null, null, Sort.Direction.DESC))
+          .thenReturn(toPage(List.of(), null, false));
       mockMvc.perform(get("/api/v1/documents")
           .header("X-Client-ID", "client-1"));
 
@@ -13,8 +13,10 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.coms4156.project.dtos.ChunkFilterStats;
 import dev.coms4156.project.dtos.DocumentDto;
-import dev.coms4156.project.dtos.DocumentListResponse;
+import dev.coms4156.project.dtos.DocumentPageResponse;
 import dev.coms4156.project.dtos.DocumentRelationshipDto;
 import dev.coms4156.project.dtos.DocumentRelationshipInfoResponse;
 import dev.coms4156.project.dtos.DocumentSearchResponse;
@@ -23,33 +25,47 @@ import dev.coms4156.project.dtos.DocumentStatusCounts;
 import dev.coms4156.project.dtos.DocumentSummaryResponse;
 import dev.coms4156.project.dtos.DocumentUploadResponse;
 import dev.coms4156.project.dtos.ErrorResponse;
+import dev.coms4156.project.dtos.ExtractionStats;
 import dev.coms4156.project.model.Document;
 import dev.coms4156.project.model.DocumentChunk;
 import dev.coms4156.project.model.DocumentRelationship;
 import dev.coms4156.project.service.ApiLoggingService;
+import dev.coms4156.project.service.DocumentBusyException;
 import dev.coms4156.project.service.DocumentService;
 import dev.coms4156.project.service.DocumentSummarizationService;
+import dev.coms4156.project.service.IngestionAdmissionService;
 import dev.coms4156.project.service.RagService;
+import dev.coms4156.project.service.SummarizationQueue;
 import jakarta.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 class DocumentControllerTest {
 
   private DocumentService documentService;
   private DocumentSummarizationService summarizationService;
   private RagService ragService;
+  private SummarizationQueue summarizationQueue;
   private ApiLoggingService apiLoggingService;
+  private IngestionAdmissionService admissionService;
   private DocumentApiController controller;
 
   @BeforeEach
@@ -57,8 +73,12 @@ class DocumentControllerTest {
     documentService = mock(DocumentService.class);
     summarizationService = mock(DocumentSummarizationService.class);
     ragService = mock(RagService.class);
+    summarizationQueue = mock(SummarizationQueue.class);
     apiLoggingService = mock(ApiLoggingService.class);
-    controller = new DocumentApiController(documentService, summarizationService, ragService);
+    // Two uploads at a time and no queue, so saturation is immediate
+    admissionService = new IngestionAdmissionService(2, 104857600L, 0, 0L);
+    controller = new DocumentApiController(documentService, summarizationService, ragService,
+        summarizationQueue, new ObjectMapper().findAndRegisterModules(), admissionService);
 
     // Inject the mocked ApiLoggingService using reflection
     Field apiLoggingServiceField = DocumentApiController.class
@@ -85,6 +105,15 @@ class DocumentControllerTest {
     return d;
   }
 
+  private List<DocumentDto> toDtos(List<Document> documents) {
+    return documents.stream().map(DocumentDto::fromDocument).toList();
+  }
+
+  private DocumentPageResponse toPage(List<Document> documents) {
+    List<DocumentDto> dtos = toDtos(documents);
+    return new DocumentPageResponse(dtos, (long) dtos.size(), null, false, "ok");
+  }
+
   @Test
   void testUploadDocument_Success() throws Exception {
     // Given
@@ -101,10 +130,12 @@ class DocumentControllerTest {
     document.setFilename("test.pdf");
     document.setProcessingStatus(Document.ProcessingStatus.COMPLETED);
 
-    when(documentService.processDocument(file)).thenReturn(document);
+    when(documentService.processDocument(file,
+        DocumentService.DuplicatePolicy.RETURN_EXISTING,
+        DocumentService.NearDuplicatePolicy.PROCESS)).thenReturn(document);
 
     // When
-    ResponseEntity<?> response = controller.uploadDocument(file, request);
+    ResponseEntity<?> response = controller.uploadDocument(file, "existing", "process", request);
 
     // Then
     assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -123,11 +154,13 @@ class DocumentControllerTest {
     when(file.isEmpty()).thenReturn(true);
     when(request.getHeader("X-Client-ID")).thenReturn(null);
     when(request.getRemoteAddr()).thenReturn("127.0.0.1");
-    when(documentService.processDocument(file)).thenThrow(
+    when(documentService.processDocument(file,
+        DocumentService.DuplicatePolicy.RETURN_EXISTING,
+        DocumentService.NearDuplicatePolicy.PROCESS)).thenThrow(
         new IllegalArgumentException("File is empty"));
 
     // When
-    ResponseEntity<?> response = controller.uploadDocument(file, request);
+    ResponseEntity<?> response = controller.uploadDocument(file, "existing", "process", request);
 
     // Then
     assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
@@ -142,10 +175,86 @@ class DocumentControllerTest {
     HttpServletRequest request = mock(HttpServletRequest.class);
     when(request.getHeader("X-Client-ID")).thenReturn(null);
     when(request.getRemoteAddr()).thenReturn("127.0.0.1");
-    when(documentService.processDocument(file)).thenThrow(
+    when(documentService.processDocument(file,
+        DocumentService.DuplicatePolicy.RETURN_EXISTING,
+        DocumentService.NearDuplicatePolicy.PROCESS)).thenThrow(
         new RuntimeException("Processing failed"));
 
-    ResponseEntity<?> response = controller.uploadDocument(file, request);
+    ResponseEntity<?> response = controller.uploadDocument(file, "existing", "process", request);
+    assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+  }
+
+  @Test
+  void testUploadDocument_RejectedWhenSaturated() throws Exception {
+    MultipartFile file = mock(MultipartFile.class);
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(file.getSize()).thenReturn(1024L);
+    when(request.getHeader("X-Client-ID")).thenReturn(null);
+    when(request.getRemoteAddr()).thenReturn("127.0.0.1");
+
+    try (IngestionAdmissionService.Permit first = admissionService.admit(1024L);
+        IngestionAdmissionService.Permit second = admissionService.admit(1024L)) {
+      ResponseEntity<?> response = controller.uploadDocument(file, "existing", "process", request);
+
+      assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+      assertNotNull(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+      verify(documentService, never()).processDocument(any(), any(), any());
+    }
+
+    // Capacity is back once the uploads in flight finish
+    assertEquals(0, admissionService.getInFlight());
+  }
+
+  @Test
+  void testUploadDocumentVersion_Success() throws Exception {
+    MultipartFile file = mock(MultipartFile.class);
+    Document document = makeDoc(1L, "v2.pdf", "application/pdf",
+        2048L, Document.ProcessingStatus.EMBEDDINGS_GENERATED, null);
+    when(documentService.getDocumentById(1L)).thenReturn(Optional.of(document));
+    when(documentService.processNewVersion(1L, file)).thenReturn(document);
+
+    ResponseEntity<?> response = controller.uploadDocumentVersion(1L, file);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    DocumentUploadResponse responseBody = (DocumentUploadResponse) response.getBody();
+    assertEquals(1L, responseBody.getDocumentId());
+    assertEquals("v2.pdf", responseBody.getFilename());
+  }
+
+  @Test
+  void testUploadDocumentVersion_NotFound() throws Exception {
+    MultipartFile file = mock(MultipartFile.class);
+    when(documentService.getDocumentById(9L)).thenReturn(Optional.empty());
+
+    ResponseEntity<?> response = controller.uploadDocumentVersion(9L, file);
+
+    assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    verify(documentService, never()).processNewVersion(9L, file);
+  }
+
+  @Test
+  void testUploadDocumentVersion_StillProcessing() throws Exception {
+    MultipartFile file = mock(MultipartFile.class);
+    when(documentService.getDocumentById(1L)).thenReturn(Optional.of(new Document()));
+    when(documentService.processNewVersion(1L, file))
+        .thenThrow(new DocumentBusyException("Document is still being processed"));
+
+    ResponseEntity<?> response = controller.uploadDocumentVersion(1L, file);
+
+    assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    assertEquals("Document is still being processed",
+        ((ErrorResponse) response.getBody()).getError());
+  }
+
+  @Test
+  void testUploadDocumentVersion_EmbeddingFailure() throws Exception {
+    MultipartFile file = mock(MultipartFile.class);
+    when(documentService.getDocumentById(1L)).thenReturn(Optional.of(new Document()));
+    when(documentService.processNewVersion(1L, file))
+        .thenThrow(new IllegalStateException("Embedding service unavailable"));
+
+    ResponseEntity<?> response = controller.uploadDocumentVersion(1L, file);
+
     assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
   }
 
@@ -353,10 +462,11 @@ class DocumentControllerTest {
             Document.ProcessingStatus.UPLOADED, null),
         makeDoc(2L, "b.pdf", "application/pdf", 2,
             Document.ProcessingStatus.COMPLETED, "sum"));
-    when(documentService.getAllDocuments()).thenReturn(docs);
-    ResponseEntity<?> response = controller.getAllDocuments("");
+    when(documentService.listDocumentPage("", null, 50, Sort.Direction.DESC))
+        .thenReturn(toPage(docs));
+    ResponseEntity<?> response = controller.getAllDocuments("", null, 50, "desc");
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    DocumentListResponse body = (DocumentListResponse) response.getBody();
+    DocumentPageResponse body = (DocumentPageResponse) response.getBody();
     assertEquals(2L, body.getCount());
     assertEquals(2, body.getDocuments().size());
   }
@@ -369,43 +479,59 @@ class DocumentControllerTest {
         makeDoc(2L, "doc2.pdf", "application/pdf", 2,
             Document.ProcessingStatus.UPLOADED, null));
     String queryString = "doc";
-    when(documentService.getDocumentsByFilename(queryString)).thenReturn(docs);
-    ResponseEntity<?> response = controller.getAllDocuments(queryString);
+    when(documentService.listDocumentPage(queryString, null, 50, Sort.Direction.DESC))
+        .thenReturn(toPage(docs));
+    ResponseEntity<?> response = controller.getAllDocuments(queryString, null, 50, "desc");
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    DocumentListResponse body = (DocumentListResponse) response.getBody();
+    DocumentPageResponse body = (DocumentPageResponse) response.getBody();
     assertEquals(2L, body.getCount());
     assertEquals(2, body.getDocuments().size());
   }
 
   @Test
   void testGetAllDocuments_ServiceException() {
-    when(documentService.getAllDocuments()).thenThrow(new RuntimeException("Database error"));
-    ResponseEntity<?> response = controller.getAllDocuments("");
+    when(documentService.listDocumentPage("", null, 50, Sort.Direction.DESC))
+        .thenThrow(new RuntimeException("Database error"));
+    ResponseEntity<?> response = controller.getAllDocuments("", null, 50, "desc");
     assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
   }
 
+  @Test
+  void testGetAllDocuments_InvalidDirection() {
+    ResponseEntity<?> response = controller.getAllDocuments("", null, 50, "sideways");
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+  }
+
+  @Test
+  void testGetAllDocuments_InvalidCursor() {
+    when(documentService.listDocumentPage(null, "bogus", 50, Sort.Direction.ASC))
+        .thenThrow(new IllegalArgumentException("Invalid cursor"));
+    ResponseEntity<?> response = controller.getAllDocuments(null, "bogus", 50, "asc");
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    assertEquals("Invalid cursor", ((ErrorResponse) response.getBody()).getError());
+  }
+
   @Test
   void testGetProcessingStatistics_AllStatuses() {
-    List<Document> all = List.of(makeDoc(1L, "a", "t", 1,
-        Document.ProcessingStatus.UPLOADED, null),
-        makeDoc(2L, "b", "t", 1,
-            Document.ProcessingStatus.TEXT_EXTRACTED, null),
-        makeDoc(3L, "c", "t", 1,
-            Document.ProcessingStatus.CHUNKED, null),
-        makeDoc(4L, "d", "t", 1,
-            Document.ProcessingStatus.EMBEDDINGS_GENERATED, null),
-        makeDoc(5L, "e", "t", 1,
-            Document.ProcessingStatus.SUMMARIZED, null),
-        makeDoc(6L, "f", "t", 1,
-            Document.ProcessingStatus.COMPLETED, null),
-        makeDoc(7L, "g", "t", 1,
-            Document.ProcessingStatus.FAILED, null));
-    when(documentService.getAllDocuments()).thenReturn(all);
+    Map<Document.ProcessingStatus, Long> counts = new EnumMap<>(Document.ProcessingStatus.class);
+    for (Document.ProcessingStatus status : Document.ProcessingStatus.values()) {
+      counts.put(status, 1L);
+    }
+    when(documentService.getStatusCounts()).thenReturn(counts);
+    ExtractionStats extraction = ExtractionStats.builder().mode("in-process").poolSize(2)
+        .activeParses(1).queuedParses(0).utilization(0.5).completed(4L).failed(1L)
+        .timedOut(1L).build();
+    when(documentService.getExtractionStats()).thenReturn(extraction);
+    ChunkFilterStats chunkFilter = ChunkFilterStats.builder().mode("skip").minScore(0.3)
+        .scored(10L).skipped(3L).downWeighted(0L).embeddingCallsSaved(2L).build();
+    when(documentService.getChunkFilterStats()).thenReturn(chunkFilter);
 
     ResponseEntity<?> response = controller.getProcessingStatistics();
     assertEquals(HttpStatus.OK, response.getStatusCode());
     DocumentStatsResponse body = (DocumentStatsResponse) response.getBody();
     assertEquals(7L, body.getTotal());
+    assertEquals(extraction, body.getExtraction());
+    assertEquals(chunkFilter, body.getChunkFilter());
     DocumentStatusCounts byStatus = body.getByStatus();
     assertEquals(1L, byStatus.getUploaded());
     assertEquals(1L, byStatus.getTextExtracted());
@@ -422,7 +548,7 @@ class DocumentControllerTest {
 
   @Test
   void testGetProcessingStatistics_Zero() {
-    when(documentService.getAllDocuments()).thenReturn(List.of());
+    when(documentService.getStatusCounts()).thenReturn(Map.of());
     ResponseEntity<?> response = controller.getProcessingStatistics();
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -434,7 +560,7 @@ class DocumentControllerTest {
 
   @Test
   void testGetProcessingStatistics_ServiceException() {
-    when(documentService.getAllDocuments()).thenThrow(new RuntimeException("Database error"));
+    when(documentService.getStatusCounts()).thenThrow(new RuntimeException("Database error"));
     try {
       controller.getProcessingStatistics();
     } catch (RuntimeException e) {
@@ -479,11 +605,12 @@ class DocumentControllerTest {
 
   @Test
   void testGetDocumentsWithSummaries_EmptyList() {
-    when(documentService.getAllDocuments()).thenReturn(java.util.List.of());
-    ResponseEntity<?> response = controller.getDocumentsWithSummaries();
+    when(documentService.listSummarizedPage(null, 50, Sort.Direction.DESC))
+        .thenReturn(toPage(java.util.List.of()));
+    ResponseEntity<?> response = controller.getDocumentsWithSummaries(null, 50, "desc");
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    DocumentListResponse body = (DocumentListResponse) response.getBody();
+    DocumentPageResponse body = (DocumentPageResponse) response.getBody();
     assertNotNull(body);
 
     assertEquals(0L, body.getCount());
@@ -500,13 +627,12 @@ class DocumentControllerTest {
         Document.ProcessingStatus.SUMMARIZED, "yes"));
     all.add(makeDoc(3L, "28", "t", 1L,
         Document.ProcessingStatus.SUMMARIZED, "282828"));
-    all.add(makeDoc(4L, "a", "t", 1L,
-        Document.ProcessingStatus.COMPLETED, null));
-    when(documentService.getAllDocuments()).thenReturn(all);
+    when(documentService.listSummarizedPage("abc", 3, Sort.Direction.ASC))
+        .thenReturn(toPage(all));
 
-    ResponseEntity<?> response = controller.getDocumentsWithSummaries();
+    ResponseEntity<?> response = controller.getDocumentsWithSummaries("abc", 3, "asc");
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    DocumentListResponse body = (DocumentListResponse) response.getBody();
+    DocumentPageResponse body = (DocumentPageResponse) response.getBody();
     assertNotNull(body);
 
     assertEquals(3L, body.getCount());
@@ -521,11 +647,20 @@ class DocumentControllerTest {
     assertFalse(ids.contains(4L));
   }
 
+  @Test
+  void testGetDocumentsWithSummaries_InvalidCursor() {
+    when(documentService.listSummarizedPage("bogus", 50, Sort.Direction.DESC))
+        .thenThrow(new IllegalArgumentException("Invalid cursor"));
+    ResponseEntity<?> response = controller.getDocumentsWithSummaries("bogus", 50, "desc");
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+  }
+
   @Test
   void testGetDocumentsWithSummaries_ServiceException() {
-    when(documentService.getAllDocuments()).thenThrow(new RuntimeException("Database error"));
+    when(documentService.listSummarizedPage(null, 50, Sort.Direction.DESC))
+        .thenThrow(new RuntimeException("Database error"));
     try {
-      controller.getDocumentsWithSummaries();
+      controller.getDocumentsWithSummaries(null, 50, "desc");
     } catch (RuntimeException e) {
       assertEquals("Database error", e.getMessage());
     }
@@ -543,10 +678,12 @@ class DocumentControllerTest {
     when(request.getHeader("X-Client-ID")).thenReturn(null);
     when(request.getRemoteAddr()).thenReturn("127.0.0.1");
 
-    when(documentService.processDocument(file))
+    when(documentService.processDocument(file,
+        DocumentService.DuplicatePolicy.RETURN_EXISTING,
+        DocumentService.NearDuplicatePolicy.PROCESS))
         .thenThrow(new IllegalArgumentException("File too large"));
 
-    ResponseEntity<?> response = controller.uploadDocument(file, request);
+    ResponseEntity<?> response = controller.uploadDocument(file, "existing", "process", request);
     assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
   }
 
@@ -560,10 +697,12 @@ class DocumentControllerTest {
     when(request.getHeader("X-Client-ID")).thenReturn(null);
     when(request.getRemoteAddr()).thenReturn("127.0.0.1");
 
-    when(documentService.processDocument(file))
+    when(documentService.processDocument(file,
+        DocumentService.DuplicatePolicy.RETURN_EXISTING,
+        DocumentService.NearDuplicatePolicy.PROCESS))
         .thenThrow(new IllegalArgumentException("Unsupported file type"));
 
-    ResponseEntity<?> response = controller.uploadDocument(file, request);
+    ResponseEntity<?> response = controller.uploadDocument(file, "existing", "process", request);
     assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
   }
 
@@ -576,10 +715,12 @@ class DocumentControllerTest {
     when(request.getHeader("X-Client-ID")).thenReturn(null);
     when(request.getRemoteAddr()).thenReturn("127.0.0.1");
 
-    when(documentService.processDocument(file))
+    when(documentService.processDocument(file,
+        DocumentService.DuplicatePolicy.RETURN_EXISTING,
+        DocumentService.NearDuplicatePolicy.PROCESS))
         .thenThrow(new IllegalArgumentException("Filename cannot be null"));
 
-    ResponseEntity<?> response = controller.uploadDocument(file, request);
+    ResponseEntity<?> response = controller.uploadDocument(file, "existing", "process", request);
     assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
   }
 
@@ -661,16 +802,18 @@ class DocumentControllerTest {
   // Boundary analysis for filename filter - null filename
   @Test
   void testGetAllDocuments_NullFilename() {
-    when(documentService.getAllDocuments()).thenReturn(List.of());
-    ResponseEntity<?> response = controller.getAllDocuments(null);
+    when(documentService.listDocumentPage(null, null, 50, Sort.Direction.DESC))
+        .thenReturn(toPage(List.of()));
+    ResponseEntity<?> response = controller.getAllDocuments(null, null, 50, "desc");
     assertEquals(HttpStatus.OK, response.getStatusCode());
   }
 
   // Boundary analysis for filename filter - whitespace-only filename
   @Test
   void testGetAllDocuments_WhitespaceFilename() {
-    when(documentService.getAllDocuments()).thenReturn(List.of());
-    ResponseEntity<?> response = controller.getAllDocuments("   ");
+    when(documentService.listDocumentPage("   ", null, 50, Sort.Direction.DESC))
+        .thenReturn(toPage(List.of()));
+    ResponseEntity<?> response = controller.getAllDocuments("   ", null, 50, "desc");
     assertEquals(HttpStatus.OK, response.getStatusCode());
   }
 
@@ -678,8 +821,9 @@ class DocumentControllerTest {
   @Test
   void testGetAllDocuments_VeryLongFilename() {
     String longFilename = "a".repeat(1000) + ".pdf";
-    when(documentService.getDocumentsByFilename(longFilename)).thenReturn(List.of());
-    ResponseEntity<?> response = controller.getAllDocuments(longFilename);
+    when(documentService.listDocumentPage(longFilename, null, 50, Sort.Direction.DESC))
+        .thenReturn(toPage(List.of()));
+    ResponseEntity<?> response = controller.getAllDocuments(longFilename, null, 50, "desc");
     assertEquals(HttpStatus.OK, response.getStatusCode());
   }
 
@@ -743,20 +887,27 @@ class DocumentControllerTest {
     assertEquals(0L, responseBody.getDocumentId());
   }
 
-  // Valid equivalence partition - documents with blank summaries
   @Test
-  void testGetDocumentsWithSummaries_BlankSummaries() {
-    List<Document> all = List.of(
-        makeDoc(1L, "doc1", "t", 1L, Document.ProcessingStatus.COMPLETED, "valid summary"),
-        makeDoc(2L, "doc2", "t", 1L, Document.ProcessingStatus.COMPLETED, ""),
-        makeDoc(3L, "doc3", "t", 1L, Document.ProcessingStatus.COMPLETED, "   "),
-        makeDoc(4L, "doc4", "t", 1L, Document.ProcessingStatus.COMPLETED, null));
-    when(documentService.getAllDocuments()).thenReturn(all);
+  void testExportDocumentsWithSummaries_WritesOneJsonLinePerDocument() throws Exception {
+    List<DocumentDto> docs = toDtos(List.of(
+        makeDoc(1L, "doc1", "t", 1L, Document.ProcessingStatus.COMPLETED, "first"),
+        makeDoc(2L, "doc2", "t", 1L, Document.ProcessingStatus.COMPLETED, "second")));
+    when(documentService.forEachSummarized(any())).thenAnswer(invocation -> {
+      Consumer<DocumentDto> action = invocation.getArgument(0);
+      docs.forEach(action);
+      return (long) docs.size();
+    });
+
+    ResponseEntity<StreamingResponseBody> response =
+        controller.exportDocumentsWithSummaries();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    response.getBody().writeTo(out);
 
-    ResponseEntity<?> response = controller.getDocumentsWithSummaries();
+    String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    DocumentListResponse body = (DocumentListResponse) response.getBody();
-    assertEquals(1L, body.getCount()); // Only doc1 has non-blank summary
+    assertEquals(2, lines.length);
+    assertTrue(lines[0].contains("\"summary\":\"first\""));
+    assertTrue(lines[1].contains("\"id\":2"));
   }
 
 }
@@ -1,8 +1,10 @@
 package dev.coms4156.project.model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
@@ -31,6 +33,33 @@ class DocumentChunkTest {
     assertEquals(chunk1, chunk1);
   }
 
+  @Test
+  void testStoreText_OffsetsOnlyStoresNoText() {
+    DocumentChunk stored = DocumentChunk.builder().textContent("text").build();
+    DocumentChunk offsets = DocumentChunk.builder().textContent("text").offsetsOnly(true).build();
+
+    stored.storeText();
+    offsets.storeText();
+
+    assertEquals("text", stored.getStoredText());
+    assertNull(offsets.getStoredText());
+    assertEquals("text", offsets.getTextContent());
+  }
+
+  @Test
+  void testLoadText_RecognizesChunksStoredAsOffsets() {
+    DocumentChunk stored = DocumentChunk.builder().storedText("text").build();
+    DocumentChunk offsets = DocumentChunk.builder().build();
+
+    stored.loadText();
+    offsets.loadText();
+
+    assertEquals("text", stored.getTextContent());
+    assertFalse(stored.isOffsetsOnly());
+    assertNull(offsets.getTextContent());
+    assertTrue(offsets.isOffsetsOnly());
+  }
+
   @Test
   void testToString() {
     DocumentChunk chunk = new DocumentChunk();
@@ -1,8 +1,10 @@
 package dev.coms4156.project.model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
@@ -484,4 +486,19 @@ class DocumentTest {
     
     assertEquals(doc1.hashCode(), doc2.hashCode());
   }
-}
\ No newline at end of file
+
+  @Test
+  void testExtractedText_StoredInSeparateContent() {
+    Document doc = new Document();
+    assertNull(doc.getContent());
+
+    doc.setExtractedText(null);
+    assertNull(doc.getContent());
+
+    doc.setExtractedText("Body text");
+    assertNotNull(doc.getContent());
+    assertEquals("Body text", doc.getContent().getExtractedText());
+    assertEquals("Body text", doc.getExtractedText());
+    assertFalse(doc.toString().contains("Body text"));
+  }
+}
@@ -309,8 +309,9 @@ class DocumentChunkRepositoryIntegrationTest {
     entityManager.flush();
     entityManager.clear();
 
-    // Verify chunks exist
+    // Verify chunks exist, neither of them embedded
     assertTrue(chunkRepository.findByDocumentId(savedDoc.getId()).size() >= 2);
+    assertEquals(0L, chunkRepository.countEmbeddedByDocumentId(savedDoc.getId()));
 
     // When - Delete by document ID using native query
     int deleted = chunkRepository.deleteByDocumentIdNative(savedDoc.getId());
@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import dev.coms4156.project.dtos.DocumentDto;
 import dev.coms4156.project.model.Document;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -15,6 +16,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.TestPropertySource;
 
 /**
@@ -149,81 +151,6 @@ class DocumentRepositoryIntegrationTest {
     assertTrue(txtDocs.stream().allMatch(d -> d.getContentType().equals("text/plain")));
   }
 
-  @Test
-  void testFindByFilenameContaining() {
-    // Given - Create documents with different filenames
-    Document doc1 = new Document();
-    doc1.setFilename("research-paper.pdf");
-    doc1.setContentType("application/pdf");
-    doc1.setUploadedAt(LocalDateTime.now());
-
-    Document doc2 = new Document();
-    doc2.setFilename("research-summary.pdf");
-    doc2.setContentType("application/pdf");
-    doc2.setUploadedAt(LocalDateTime.now());
-
-    Document doc3 = new Document();
-    doc3.setFilename("unrelated-doc.pdf");
-    doc3.setContentType("application/pdf");
-    doc3.setUploadedAt(LocalDateTime.now());
-
-    documentRepository.save(doc1);
-    documentRepository.save(doc2);
-    documentRepository.save(doc3);
-    entityManager.flush();
-    entityManager.clear();
-
-    // When - Find by filename containing
-    List<Document> researchDocs = documentRepository.findByFilenameContaining("research");
-
-    // Then
-    assertTrue(researchDocs.size() >= 2);
-    assertTrue(researchDocs.stream().allMatch(
-        d -> d.getFilename().contains("research")));
-  }
-
-  @Test
-  void testFindDocumentsWithSummaries() {
-    // Given - Create documents with and without summaries
-    Document withSummary = new Document();
-    withSummary.setFilename("doc1.pdf");
-    withSummary.setContentType("application/pdf");
-    withSummary.setSummary("This document has a summary");
-    withSummary.setUploadedAt(LocalDateTime.now());
-
-    Document withoutSummary = new Document();
-    withoutSummary.setFilename("doc2.pdf");
-    withoutSummary.setContentType("application/pdf");
-    withoutSummary.setSummary(null);
-    withoutSummary.setUploadedAt(LocalDateTime.now());
-
-    Document withEmptySummary = new Document();
-    withEmptySummary.setFilename("doc3.pdf");
-    withEmptySummary.setContentType("application/pdf");
-    withEmptySummary.setSummary("");
-    withEmptySummary.setUploadedAt(LocalDateTime.now());
-
-    documentRepository.save(withSummary);
-    documentRepository.save(withoutSummary);
-    documentRepository.save(withEmptySummary);
-    entityManager.flush();
-    entityManager.clear();
-
-    // When - Find documents with summaries
-    List<Document> docsWithSummaries = documentRepository.findDocumentsWithSummaries();
-
-    // Then - Should include documents with non-null summaries (including empty strings)
-    // The query returns documents where summary IS NOT NULL, which includes empty strings
-    assertTrue(docsWithSummaries.size() >= 2, 
-        "Expected at least 2 documents (withSummary and withEmptySummary)");
-    // Verify the document with actual summary is included
-    assertTrue(docsWithSummaries.stream().anyMatch(
-        d -> "This document has a summary".equals(d.getSummary())));
-    // All returned documents should have non-null summaries
-    assertTrue(docsWithSummaries.stream().allMatch(
-        d -> d.getSummary() != null));
-  }
-
   @Test
   void testCountByProcessingStatus() {
     // Given - Create documents with different statuses
@@ -332,5 +259,119 @@ class DocumentRepositoryIntegrationTest {
     assertEquals("updated-filename.pdf", retrieved.get().getFilename());
     assertEquals("Updated summary", retrieved.get().getSummary());
   }
-}
 
+  @Test
+  void testFindWithContentById_LoadsExtractedText() {
+    // Given - Save a document with extracted text
+    Document saved = documentRepository.save(testDocument);
+    entityManager.flush();
+    entityManager.clear();
+
+    // When - Load it with its content and detach it
+    Optional<Document> found = documentRepository.findWithContentById(saved.getId());
+    entityManager.clear();
+
+    // Then - The text is available outside the persistence context
+    assertTrue(found.isPresent());
+    assertEquals("This is test content for integration testing.",
+        found.get().getExtractedText());
+  }
+
+  @Test
+  void testFindPageAfter_WalksAllDocumentsInOrder() {
+    // Given - testDocument plus two more
+    documentRepository.save(testDocument);
+    for (String name : List.of("second.pdf", "third.pdf")) {
+      Document doc = new Document();
+      doc.setFilename(name);
+      doc.setContentType("application/pdf");
+      documentRepository.save(doc);
+    }
+    entityManager.flush();
+    entityManager.clear();
+
+    // When - read two pages of two
+    List<DocumentDto> first = documentRepository.findPageAfter(
+        LocalDateTime.of(1, 1, 1, 0, 0), 0L, PageRequest.ofSize(2));
+    DocumentDto last = first.get(first.size() - 1);
+    List<DocumentDto> second = documentRepository.findPageAfter(
+        last.getUploadedAt(), last.getId(), PageRequest.ofSize(2));
+
+    // Then
+    assertEquals(2, first.size());
+    assertEquals(1, second.size());
+    assertFalse(first.stream().anyMatch(d -> d.getId().equals(second.get(0).getId())));
+    assertTrue(first.get(0).getUploadedAt().compareTo(first.get(1).getUploadedAt()) <= 0);
+  }
+
+  @Test
+  void testFindPageByFilenameBefore_MatchesCaseInsensitively() {
+    // Given - Create documents with different filenames
+    Document doc1 = new Document();
+    doc1.setFilename("Research_Paper.pdf");
+    doc1.setContentType("application/pdf");
+
+    Document doc2 = new Document();
+    doc2.setFilename("researchXpaper.pdf");
+    doc2.setContentType("application/pdf");
+
+    documentRepository.save(doc1);
+    documentRepository.save(doc2);
+    entityManager.flush();
+    entityManager.clear();
+
+    // When - underscore is escaped so it only matches itself
+    List<DocumentDto> researchDocs = documentRepository.findPageByFilenameBefore(
+        "%research\\_paper%", LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE,
+        PageRequest.ofSize(10));
+
+    // Then
+    assertEquals(1, researchDocs.size());
+    assertEquals("Research_Paper.pdf", researchDocs.get(0).getFilename());
+  }
+
+  @Test
+  void testFindSummarizedPageAfter_SkipsBlankSummaries() {
+    // Given - testDocument has a summary; add blank and missing ones
+    documentRepository.save(testDocument);
+    for (String summary : new String[] {"", "   ", null}) {
+      Document doc = new Document();
+      doc.setFilename("unsummarized.pdf");
+      doc.setContentType("application/pdf");
+      doc.setSummary(summary);
+      documentRepository.save(doc);
+    }
+    entityManager.flush();
+    entityManager.clear();
+
+    // When
+    List<DocumentDto> summarized = documentRepository.findSummarizedPageAfter(
+        LocalDateTime.of(1, 1, 1, 0, 0), 0L, PageRequest.ofSize(10));
+
+    // Then
+    assertEquals(1, summarized.size());
+    assertEquals("Test summary", summarized.get(0).getSummary());
+  }
+
+  @Test
+  void testFindChunkOwnerId_ResolvesClonesToOriginal() {
+    // Given - a processed document and a clone of it
+    testDocument.setContentHash("a".repeat(64));
+    Document original = documentRepository.save(testDocument);
+    Document clone = new Document();
+    clone.setFilename("copy.pdf");
+    clone.setContentType("application/pdf");
+    clone.setDuplicateOf(original);
+    clone = documentRepository.save(clone);
+    entityManager.flush();
+    entityManager.clear();
+
+    // When / Then
+    assertEquals(original.getId(),
+        documentRepository.findByContentHash("a".repeat(64)).orElseThrow().getId());
+    assertEquals(original.getId(), documentRepository.findChunkOwnerId(clone.getId()).get());
+    assertEquals(original.getId(),
+        documentRepository.findChunkOwnerId(original.getId()).get());
+    assertEquals(1, documentRepository.findByDuplicateOfIdOrderByIdAsc(original.getId()).size());
+  }
+}
@@ -0,0 +1,54 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+  @Test
+  void testMightContain_NoFalseNegatives() {
+    BloomFilter filter = new BloomFilter(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      filter.add(ContentHashes.sha256("chunk " + i));
+    }
+
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(filter.mightContain(ContentHashes.sha256("chunk " + i)));
+    }
+  }
+
+  @Test
+  void testMightContain_FalsePositiveRateNearTarget() {
+    BloomFilter filter = new BloomFilter(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      filter.add(ContentHashes.sha256("chunk " + i));
+    }
+
+    int falsePositives = 0;
+    for (int i = 0; i < 100000; i++) {
+      if (filter.mightContain(ContentHashes.sha256("other " + i))) {
+        falsePositives++;
+      }
+    }
+
+    assertTrue(falsePositives < 2000, "false positives: " + falsePositives);
+    assertTrue(filter.getHashCount() >= 6 && filter.getHashCount() <= 8);
+  }
+
+  @Test
+  void testMightContain_EmptyFilter() {
+    BloomFilter filter = new BloomFilter(1, 0.5);
+
+    assertFalse(filter.mightContain(ContentHashes.sha256("anything")));
+  }
+
+  @Test
+  void testConstructor_RejectsInvalidSizes() {
+    assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+    assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 0));
+    assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1));
+  }
+}
@@ -0,0 +1,253 @@
+package dev.coms4156.project.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of {@link BpeTokenizer} on 1 MB of prose: counting and encoding tokens, against
+ * a straightforward tokenizer that splits with the llama3 regex and merges byte lists, and
+ * against {@link ApproximateTokenCounter}. It uses the vocabulary file named by the
+ * {@code bpe.vocabulary} system property, such as llama3.2's {@code tokenizer.model}, or
+ * otherwise a vocabulary built from the sample text. Run it like
+ * {@link TextNormalizerBenchmark}, with
+ * {@code -Dexec.mainClass=dev.coms4156.project.service.BpeTokenizerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BpeTokenizerBenchmark {
+
+  /**
+   * The llama3 pre-tokenization pattern.
+   */
+  static final Pattern LLAMA3_PATTERN = Pattern.compile(
+      "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}"
+          + "| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+",
+      Pattern.UNICODE_CHARACTER_CLASS);
+
+  private static final String[] WORDS = {
+      "the", "of", "and", "to", "in", "document", "retrieval", "embedding", "tokenizer",
+      "summarization", "is", "a", "chunk", "vector", "search", "model", "context", "window",
+      "It's", "don't", "we'll", "they're", "PostgreSQL", "llama3.2", "2024", "1,048,576",
+      "3.14159", "caf\u00e9", "na\u00efve", "\u65e5\u672c\u8a9e", "\u00fcber", "e-mail",
+      "(see", "above)", "\"quoted\"", "C++", "x86_64", "#1", "\ud83d\ude00"
+  };
+
+  private static final String[] SEPARATORS = {
+      " ", " ", " ", " ", " ", " ", ", ", ". ", ".\n", "\n\n", "  ", "\t", "; ", "! ", "? "
+  };
+
+  @Param({"1048576"})
+  public int size;
+
+  private String text;
+  private BpeTokenizer tokenizer;
+  private Map<ByteBuffer, Integer> ranks;
+  private final ApproximateTokenCounter approximate = new ApproximateTokenCounter();
+
+  /**
+   * Loads the vocabulary and builds the input text once per benchmark run.
+   *
+   * @throws IOException if the configured vocabulary file cannot be read.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    text = sampleProse(size, new Random(42));
+    String vocabulary = System.getProperty("bpe.vocabulary");
+    List<byte[]> tokens;
+    if (vocabulary != null) {
+      tokenizer = BpeTokenizer.load(Path.of(vocabulary));
+      tokens = new ArrayList<>();
+      for (int rank = 0; rank < tokenizer.getVocabularySize(); rank++) {
+        tokens.add(tokenizer.tokenBytes(rank));
+      }
+    } else {
+      tokens = sampleVocabulary(sampleProse(65536, new Random(7)), 12);
+      tokenizer = BpeTokenizer.fromTokens(tokens);
+    }
+    ranks = ranks(tokens);
+  }
+
+  @Benchmark
+  public int countTokens() {
+    return tokenizer.countTokens(text);
+  }
+
+  @Benchmark
+  public int[] encode() {
+    return tokenizer.encode(text);
+  }
+
+  @Benchmark
+  public List<Integer> regexAndByteLists() {
+    return referenceEncode(text, ranks);
+  }
+
+  @Benchmark
+  public int approximateCount() {
+    return approximate.countTokens(text);
+  }
+
+  /**
+   * Encodes text the straightforward way: split with {@link #LLAMA3_PATTERN}, then merge lists
+   * of byte arrays lowest rank first. The baseline of the benchmark, and the reference the
+   * tokenizer is checked against.
+   *
+   * @param text  the text, without unpaired surrogates.
+   * @param ranks the rank of every token.
+   * @return the token ranks.
+   */
+  static List<Integer> referenceEncode(String text, Map<ByteBuffer, Integer> ranks) {
+    List<Integer> tokens = new ArrayList<>();
+    Matcher matcher = LLAMA3_PATTERN.matcher(text);
+    while (matcher.find()) {
+      byte[] piece = matcher.group().getBytes(StandardCharsets.UTF_8);
+      Integer whole = ranks.get(ByteBuffer.wrap(piece));
+      if (whole != null) {
+        tokens.add(whole);
+        continue;
+      }
+      List<byte[]> parts = new ArrayList<>();
+      for (byte b : piece) {
+        parts.add(new byte[] {b});
+      }
+      while (true) {
+        int best = -1;
+        int bestRank = Integer.MAX_VALUE;
+        for (int i = 0; i + 1 < parts.size(); i++) {
+          Integer rank = ranks.get(ByteBuffer.wrap(concat(parts.get(i), parts.get(i + 1))));
+          if (rank != null && rank < bestRank) {
+            best = i;
+            bestRank = rank;
+          }
+        }
+        if (best < 0) {
+          break;
+        }
+        parts.set(best, concat(parts.get(best), parts.remove(best + 1)));
+      }
+      for (byte[] part : parts) {
+        tokens.add(ranks.get(ByteBuffer.wrap(part)));
+      }
+    }
+    return tokens;
+  }
+
+  private static byte[] concat(byte[] first, byte[] second) {
+    byte[] joined = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, joined, first.length, second.length);
+    return joined;
+  }
+
+  /**
+   * Maps every token to its rank.
+   *
+   * @param tokens the tokens in rank order.
+   * @return the ranks by token bytes.
+   */
+  static Map<ByteBuffer, Integer> ranks(List<byte[]> tokens) {
+    Map<ByteBuffer, Integer> ranks = new HashMap<>();
+    for (int rank = 0; rank < tokens.size(); rank++) {
+      ranks.put(ByteBuffer.wrap(tokens.get(rank)), rank);
+    }
+    return ranks;
+  }
+
+  /**
+   * Builds a vocabulary of every byte and every substring of up to {@code maxLength} bytes of
+   * the pre-tokenized pieces of a text, shorter substrings ranked first.
+   *
+   * @param corpus    the text the vocabulary is built from.
+   * @param maxLength the longest token.
+   * @return the tokens in rank order.
+   */
+  static List<byte[]> sampleVocabulary(String corpus, int maxLength) {
+    Set<ByteBuffer> seen = new LinkedHashSet<>();
+    for (int b = 0; b < 256; b++) {
+      seen.add(ByteBuffer.wrap(new byte[] {(byte) b}));
+    }
+    Matcher matcher = LLAMA3_PATTERN.matcher(corpus);
+    while (matcher.find()) {
+      byte[] piece = matcher.group().getBytes(StandardCharsets.UTF_8);
+      for (int length = 2; length <= Math.min(maxLength, piece.length); length++) {
+        for (int start = 0; start + length <= piece.length; start++) {
+          seen.add(ByteBuffer.wrap(Arrays.copyOfRange(piece, start, start + length)));
+        }
+      }
+    }
+    List<byte[]> tokens = new ArrayList<>();
+    seen.stream()
+        .sorted(Comparator.comparingInt(ByteBuffer::remaining))
+        .forEach(token -> tokens.add(token.array()));
+    return tokens;
+  }
+
+  /**
+   * Generates prose of the given length from common words, numbers, contractions, accented
+   * and CJK words and punctuation.
+   *
+   * @param length the length of the text.
+   * @param random the source of randomness.
+   * @return the text.
+   */
+  static String sampleProse(int length, Random random) {
+    StringBuilder text = new StringBuilder(length + 32);
+    while (text.length() < length) {
+      text.append(WORDS[random.nextInt(WORDS.length)])
+          .append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+    }
+    text.setLength(length);
+    if (Character.isHighSurrogate(text.charAt(length - 1))) {
+      text.setCharAt(length - 1, ' ');
+    }
+    return text.toString();
+  }
+
+  /**
+   * Runs the benchmark, passing the {@code bpe.vocabulary} property on to the forked JVM.
+   *
+   * @param args unused.
+   * @throws RunnerException if the benchmark cannot be run.
+   */
+  public static void main(String[] args) throws RunnerException {
+    OptionsBuilder options = new OptionsBuilder();
+    String vocabulary = System.getProperty("bpe.vocabulary");
+    if (vocabulary != null) {
+      options.jvmArgsAppend("-Dbpe.vocabulary=" + vocabulary);
+    }
+    new Runner(options
+        .include(BpeTokenizerBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
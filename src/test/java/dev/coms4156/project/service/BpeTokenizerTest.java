@@ -0,0 +1,127 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BpeTokenizerTest {
+
+  private static final List<byte[]> VOCABULARY = BpeTokenizerBenchmark.sampleVocabulary(
+      BpeTokenizerBenchmark.sampleProse(20000, new Random(3)), 4);
+
+  private final BpeTokenizer tokenizer = BpeTokenizer.fromTokens(VOCABULARY);
+
+  @Test
+  void testNextPiece_MatchesLlama3Pattern() {
+    String alphabet = "aZ'sStTrReEvVmMlLdD\u017f 1234\t\n\r.,!?-_\u00e9\u65e5\u00a0\u2003"
+        + "\u3000\u0663\u2167\u00bd\ud83d\ude00\u000b";
+    Random random = new Random(17);
+    for (int run = 0; run < 5000; run++) {
+      StringBuilder text = new StringBuilder();
+      for (int i = random.nextInt(40); i > 0; i--) {
+        char c = alphabet.charAt(random.nextInt(alphabet.length()));
+        if (Character.isHighSurrogate(c)) {
+          text.append("\ud83d\ude00");
+        } else if (!Character.isLowSurrogate(c)) {
+          text.append(c);
+        }
+      }
+      List<String> expected = new ArrayList<>();
+      Matcher matcher = BpeTokenizerBenchmark.LLAMA3_PATTERN.matcher(text);
+      while (matcher.find()) {
+        expected.add(matcher.group());
+      }
+      List<String> pieces = new ArrayList<>();
+      for (int i = 0; i < text.length(); ) {
+        int end = BpeTokenizer.nextPiece(text, i, text.length());
+        pieces.add(text.substring(i, end));
+        i = end;
+      }
+      assertEquals(expected, pieces, text.toString());
+    }
+  }
+
+  @Test
+  void testEncode_MatchesReferenceMerges() {
+    Map<ByteBuffer, Integer> ranks = BpeTokenizerBenchmark.ranks(VOCABULARY);
+    Random random = new Random(23);
+    for (int run = 0; run < 200; run++) {
+      String text = BpeTokenizerBenchmark.sampleProse(random.nextInt(2000) + 1, random);
+
+      int[] tokens = tokenizer.encode(text);
+
+      assertArrayEquals(BpeTokenizerBenchmark.referenceEncode(text, ranks).stream()
+          .mapToInt(Integer::intValue).toArray(), tokens, text);
+      assertEquals(tokens.length, tokenizer.countTokens(text));
+      assertEquals(text, tokenizer.decode(tokens));
+    }
+  }
+
+  @Test
+  void testFittingPrefix_EndsAtAPiece() {
+    String text = BpeTokenizerBenchmark.sampleProse(5000, new Random(9));
+    int total = tokenizer.countTokens(text);
+
+    int prefix = tokenizer.fittingPrefix(text, total / 2);
+
+    assertTrue(prefix > 0 && prefix < text.length());
+    assertTrue(prefix <= tokenizer.fittingPrefix(text, total / 2 + 10));
+    int piece = 0;
+    while (piece < prefix) {
+      piece = BpeTokenizer.nextPiece(text, piece, text.length());
+    }
+    assertEquals(prefix, piece);
+    assertEquals(text.length(), tokenizer.fittingPrefix(text, total));
+    assertEquals(0, tokenizer.countTokens(""));
+  }
+
+  @Test
+  void testEncode_ReplacesUnpairedSurrogates() {
+    assertArrayEquals(tokenizer.encode("a\ufffd"), tokenizer.encode("a\ud83d"));
+  }
+
+  @Test
+  void testLoad_ReadsTiktokenFiles(@TempDir Path directory) throws IOException {
+    StringBuilder file = new StringBuilder();
+    for (int rank = 0; rank < VOCABULARY.size(); rank++) {
+      file.append(Base64.getEncoder().encodeToString(VOCABULARY.get(rank))).append(' ')
+          .append(rank).append('\n');
+    }
+    Path path = directory.resolve("tokenizer.model");
+    Files.writeString(path, file, StandardCharsets.US_ASCII);
+
+    BpeTokenizer loaded = BpeTokenizer.load(path);
+
+    assertEquals(VOCABULARY.size(), loaded.getVocabularySize());
+    String text = "It's the tokenizer's context window.";
+    assertArrayEquals(tokenizer.encode(text), loaded.encode(text));
+
+    Files.writeString(path, "YQ== 0\nYg== 2\n", StandardCharsets.US_ASCII);
+    assertThrows(IllegalArgumentException.class, () -> BpeTokenizer.load(path));
+  }
+
+  @Test
+  void testFromTokens_RequiresEveryByte() {
+    List<byte[]> tokens = new ArrayList<>(VOCABULARY.subList(1, VOCABULARY.size()));
+    assertThrows(IllegalArgumentException.class, () -> BpeTokenizer.fromTokens(tokens));
+
+    tokens.add(VOCABULARY.get(0));
+    tokens.add(VOCABULARY.get(0));
+    assertThrows(IllegalArgumentException.class, () -> BpeTokenizer.fromTokens(tokens));
+  }
+}
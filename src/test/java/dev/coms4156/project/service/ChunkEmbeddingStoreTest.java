@@ -0,0 +1,120 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.coms4156.project.model.ChunkEmbedding;
+import dev.coms4156.project.model.DocumentChunk;
+import dev.coms4156.project.repository.ChunkEmbeddingRepository;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkEmbeddingStoreTest {
+
+  @Mock
+  private ChunkEmbeddingRepository chunkEmbeddingRepository;
+
+  private ChunkEmbeddingStore store;
+
+  @BeforeEach
+  void setUp() {
+    store = new ChunkEmbeddingStore(chunkEmbeddingRepository, 1000, 0.01);
+  }
+
+  @Test
+  void testContentKey_IgnoresWhitespaceDifferences() {
+    String key = ChunkEmbeddingStore.contentKey("Terms and conditions apply.");
+
+    assertEquals(key, ChunkEmbeddingStore.contentKey(" Terms\tand\r\n conditions  apply.\n"));
+    assertEquals(ContentHashes.sha256("Terms and conditions apply."), key);
+    assertNotEquals(key, ChunkEmbeddingStore.contentKey("Terms and conditions apply!"));
+  }
+
+  @Test
+  void testObtain_ReusesStoredEmbedding() {
+    float[] stored = {0.1f, 0.2f};
+    when(chunkEmbeddingRepository.findByContentHash(ChunkEmbeddingStore.contentKey("text")))
+        .thenReturn(Optional.of(ChunkEmbedding.builder().id(3L).embedding(stored).build()));
+
+    ChunkEmbedding result = store.obtain("text", text -> {
+      throw new AssertionError("embedded again");
+    });
+
+    assertEquals(3L, result.getId());
+    assertSame(stored, result.getEmbedding());
+    assertEquals(1L, store.getStatistics().get("embeddingsReused"));
+  }
+
+  @Test
+  void testObtain_StoresNewEmbedding() {
+    String key = ChunkEmbeddingStore.contentKey("new text");
+    when(chunkEmbeddingRepository.findByContentHash(key)).thenReturn(Optional.empty());
+    when(chunkEmbeddingRepository.insertIfAbsent(key, "[0.5,0.25]")).thenReturn(9L);
+
+    ChunkEmbedding result = store.obtain("new text", text -> new float[] {0.5f, 0.25f});
+
+    assertEquals(9L, result.getId());
+    assertEquals(key, result.getContentHash());
+    assertArrayEquals(new float[] {0.5f, 0.25f}, result.getEmbedding());
+  }
+
+  @Test
+  void testObtain_SkipsLookupOfHashesNeverStored() {
+    ChunkEmbeddingRepository.ContentHashRow row = new ChunkEmbeddingRepository.ContentHashRow() {
+      @Override
+      public Long getId() {
+        return 1L;
+      }
+
+      @Override
+      public String getContentHash() {
+        return ChunkEmbeddingStore.contentKey("known");
+      }
+    };
+    when(chunkEmbeddingRepository.findContentHashesAfter(eq(0L), any()))
+        .thenReturn(List.of(row));
+    when(chunkEmbeddingRepository.insertIfAbsent(anyString(), anyString())).thenReturn(2L);
+    store.loadFilter();
+
+    store.obtain("unknown", text -> new float[] {1f});
+
+    verify(chunkEmbeddingRepository, never()).findByContentHash(anyString());
+    assertEquals(1L, store.getStatistics().get("lookupsSkipped"));
+    assertEquals(true, store.getStatistics().get("filterLoaded"));
+  }
+
+  @Test
+  void testResolve_LoadsEachEmbeddingOnce() {
+    float[] shared = {0.3f};
+    DocumentChunk first = DocumentChunk.builder().embeddingId(4L).build();
+    DocumentChunk second = DocumentChunk.builder().embeddingId(4L).build();
+    DocumentChunk loaded = DocumentChunk.builder().embeddingId(5L).embedding(new float[] {1f})
+        .build();
+    DocumentChunk unembedded = DocumentChunk.builder().build();
+    when(chunkEmbeddingRepository.findAllById(Set.of(4L)))
+        .thenReturn(List.of(ChunkEmbedding.builder().id(4L).embedding(shared).build()));
+
+    store.resolve(List.of(first, second, loaded, unembedded));
+
+    assertSame(shared, first.getEmbedding());
+    assertSame(shared, second.getEmbedding());
+    assertArrayEquals(new float[] {1f}, loaded.getEmbedding());
+    assertNull(unembedded.getEmbedding());
+  }
+}
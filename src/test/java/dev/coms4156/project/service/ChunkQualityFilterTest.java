@@ -0,0 +1,121 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.coms4156.project.dtos.ChunkFilterStats;
+import dev.coms4156.project.model.Document;
+import dev.coms4156.project.model.DocumentChunk;
+import dev.coms4156.project.repository.ChunkEmbeddingRepository;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkQualityFilterTest {
+
+  private static final String PROSE = "Spreadsheets and slide decks yield many chunks that are "
+      + "mostly numbers, whitespace or page furniture, and each one costs an embedding request.";
+  private static final String NUMBERS = "1\t2\t3\t4\n5\t6\t7\t8\n9\t10\t11\t12\n";
+  private static final String SEPARATOR = "==========================";
+
+  @Mock
+  private ChunkEmbeddingRepository chunkEmbeddingRepository;
+
+  private ChunkEmbeddingStore store;
+
+  private final Document document = Document.builder().id(1L).build();
+
+  @BeforeEach
+  void setUp() {
+    store = new ChunkEmbeddingStore(chunkEmbeddingRepository, 1000, 0.01);
+  }
+
+  @Test
+  void testScore_SeparatesProseFromFurniture() {
+    ChunkQualityFilter filter = new ChunkQualityFilter(store, true, "skip", 0.3);
+
+    assertTrue(filter.score(PROSE) > 0.9);
+    assertTrue(filter.score("Quarterly revenue grew in every region") > 0.9);
+    assertTrue(filter.score("Region\tQ1\tQ2\nNorth\t120\t130\nSouth\t98\t102\n") > 0.3);
+    assertEquals(0, filter.score(NUMBERS));
+    assertEquals(0, filter.score(SEPARATOR));
+    assertEquals(0, filter.score(" \n\t "));
+    assertTrue(filter.score("Page 3 of 12 Confidential ".repeat(10)) < 0.3);
+    assertTrue(filter.score("      x      \n\n\n\n        y        ") < 0.3);
+  }
+
+  @Test
+  void testFilter_SkipsLowValueChunksAndCountsSavedRequests() {
+    ChunkQualityFilter filter = new ChunkQualityFilter(store, true, "skip", 0.3);
+    store.loadFilter();
+    DocumentChunk prose = chunk(0, PROSE);
+    List<DocumentChunk> chunks = List.of(prose, chunk(1, SEPARATOR), chunk(2, NUMBERS),
+        chunk(3, SEPARATOR));
+
+    List<DocumentChunk> kept = filter.filter(document, chunks);
+
+    assertEquals(List.of(prose), kept);
+    ChunkFilterStats stats = filter.getStats();
+    assertEquals("skip", stats.getMode());
+    assertEquals(4L, stats.getScored());
+    assertEquals(3L, stats.getSkipped());
+    // The repeated separator would have been embedded once
+    assertEquals(2L, stats.getEmbeddingCallsSaved());
+  }
+
+  @Test
+  void testFilter_DownWeightsLowValueChunks() {
+    ChunkQualityFilter filter = new ChunkQualityFilter(store, true, "down-weight", 0.3);
+    DocumentChunk prose = chunk(0, PROSE);
+    DocumentChunk page = chunk(1, "Page 3 of 12 Confidential ".repeat(10));
+    DocumentChunk separator = chunk(2, SEPARATOR);
+
+    List<DocumentChunk> kept = filter.filter(document, List.of(prose, page, separator));
+
+    assertEquals(3, kept.size());
+    assertNull(prose.getSearchWeight());
+    assertTrue(page.getSearchWeight() > 0.5f && page.getSearchWeight() < 1f);
+    assertEquals(0.1f, separator.getSearchWeight());
+    assertEquals(2L, filter.getStats().getDownWeighted());
+    assertEquals(0L, filter.getStats().getEmbeddingCallsSaved());
+  }
+
+  @Test
+  void testFilter_DownWeightsWhenEveryChunkIsLowValue() {
+    ChunkQualityFilter filter = new ChunkQualityFilter(store, true, "skip", 0.3);
+    List<DocumentChunk> chunks = List.of(chunk(0, NUMBERS), chunk(1, SEPARATOR));
+
+    assertEquals(chunks, filter.filter(document, chunks));
+    assertEquals(0L, filter.getStats().getSkipped());
+    assertEquals(2L, filter.getStats().getDownWeighted());
+  }
+
+  @Test
+  void testFilter_DisabledKeepsEverything() {
+    ChunkQualityFilter filter = new ChunkQualityFilter(store, false, "skip", 0.3);
+    List<DocumentChunk> chunks = List.of(chunk(0, PROSE), chunk(1, SEPARATOR));
+
+    assertSame(chunks, filter.filter(document, chunks));
+    assertEquals("disabled", filter.getStats().getMode());
+    assertEquals(0L, filter.getStats().getScored());
+  }
+
+  @Test
+  void testConstructor_RejectsInvalidSettings() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new ChunkQualityFilter(store, true, "drop", 0.3));
+    assertThrows(IllegalArgumentException.class,
+        () -> new ChunkQualityFilter(store, true, "skip", 1.5));
+  }
+
+  private static DocumentChunk chunk(int index, String text) {
+    return DocumentChunk.builder().chunkIndex(index).textContent(text).build();
+  }
+}
@@ -0,0 +1,142 @@
+package dev.coms4156.project.service;
+
+import dev.coms4156.project.model.Document;
+import dev.coms4156.project.model.DocumentChunk;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark comparing {@link ChunkSplitter} with the chunker it replaced, which cut a
+ * substring per window and searched it for sentence ends with a regex, on 1 MB and 10 MB of
+ * normalized text, and with {@link DocumentChunkingService} chunking segments of 256K characters
+ * on all cores. Run it like {@link TextNormalizerBenchmark}, with
+ * {@code -Dexec.mainClass=dev.coms4156.project.service.ChunkSplitterBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkSplitterBenchmark {
+
+  private static final Pattern SENTENCE_END_PATTERN = Pattern.compile("[.!?]+\\s+");
+  private static final int CHUNK_SIZE = 1000;
+  private static final int OVERLAP_SIZE = 200;
+
+  @Param({"1048576", "10485760"})
+  public int size;
+
+  private String text;
+  private Document document;
+  private DocumentChunkingService segmented;
+
+  /**
+   * Builds the input text once per benchmark run.
+   */
+  @Setup
+  public void setUp() {
+    text = TextNormalizer.normalize(TextNormalizerBenchmark.sampleText(size, new Random(42)));
+    document = new Document();
+    document.setExtractedText(text);
+    segmented = new DocumentChunkingService(null, null, new ChunkingStrategySelector(
+        new ApproximateTokenCounter(), CHUNK_SIZE, OVERLAP_SIZE, 512, 64, "character", ""),
+        true, 262144, 0);
+  }
+
+  @TearDown
+  public void tearDown() {
+    segmented.shutdown();
+  }
+
+  @Benchmark
+  public List<DocumentChunk> regexWindows() {
+    return regexChunks(text, CHUNK_SIZE, OVERLAP_SIZE);
+  }
+
+  @Benchmark
+  public List<DocumentChunk> boundaryIndex() {
+    return new ChunkSplitter(CHUNK_SIZE, OVERLAP_SIZE).append(text).finish(null);
+  }
+
+  @Benchmark
+  public List<DocumentChunk> parallelSegments() {
+    return segmented.splitDocument(document);
+  }
+
+  /**
+   * Chunks text the way {@link DocumentChunkingService} did before {@link ChunkSplitter}, with
+   * the overlap of {@link CharacterChunkingStrategy}: the baseline of the benchmark, and the
+   * reference its chunks are checked against.
+   *
+   * @param text        the text to chunk.
+   * @param chunkSize   the maximum size of a chunk.
+   * @param overlapSize the overlap between chunks.
+   * @return the chunks, without a document.
+   */
+  static List<DocumentChunk> regexChunks(String text, int chunkSize, int overlapSize) {
+    List<DocumentChunk> chunks = new ArrayList<>();
+    int startIndex = 0;
+    while (startIndex < text.length()) {
+      int endIndex = Math.min(startIndex + chunkSize, text.length());
+      if (endIndex < text.length()) {
+        Matcher matcher = SENTENCE_END_PATTERN.matcher(text.substring(startIndex, endIndex));
+        int lastSentenceEnd = -1;
+        while (matcher.find()) {
+          lastSentenceEnd = matcher.end();
+        }
+        if (lastSentenceEnd > chunkSize * 0.7) {
+          endIndex = startIndex + lastSentenceEnd;
+        }
+      }
+
+      String chunkContent = text.substring(startIndex, endIndex).trim();
+      if (!chunkContent.isEmpty()) {
+        chunks.add(DocumentChunk.builder()
+            .chunkIndex(chunks.size())
+            .textContent(chunkContent)
+            .contentHash(ContentHashes.sha256(chunkContent))
+            .chunkSize(chunkContent.length())
+            .startPosition(startIndex)
+            .endPosition(endIndex)
+            .build());
+      }
+
+      // The overlap rule of CharacterChunkingStrategy; the old chunker never overlapped
+      startIndex = endIndex < text.length() && endIndex - overlapSize > startIndex
+          ? endIndex - overlapSize : endIndex;
+    }
+    return chunks;
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused.
+   * @throws RunnerException if the benchmark cannot be run.
+   */
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(ChunkSplitterBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
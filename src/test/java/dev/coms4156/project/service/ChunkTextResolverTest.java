@@ -0,0 +1,60 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.coms4156.project.model.DocumentChunk;
+import dev.coms4156.project.repository.DocumentRepository;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkTextResolverTest {
+
+  private static final String TEXT = "First sentence here. Second one follows.  ";
+
+  @Mock
+  private DocumentRepository documentRepository;
+
+  @Test
+  void testResolve_CutsTextFromDocumentOncePerDocument() {
+    DocumentChunk first = offsets(1L, 0, 21);
+    DocumentChunk second = offsets(1L, 21, TEXT.length());
+    DocumentChunk stored = offsets(2L, 0, 5);
+    stored.setTextContent("Kept.");
+    when(documentRepository.findExtractedTextById(1L)).thenReturn(Optional.of(TEXT));
+
+    new ChunkTextResolver(documentRepository).resolve(List.of(first, second, stored));
+
+    assertEquals("First sentence here.", first.getTextContent());
+    assertEquals("Second one follows.", second.getTextContent());
+    assertEquals("Kept.", stored.getTextContent());
+    verify(documentRepository, times(1)).findExtractedTextById(1L);
+  }
+
+  @Test
+  void testResolve_LeavesChunkOutsideTextEmpty() {
+    DocumentChunk chunk = offsets(1L, 10, 500);
+    when(documentRepository.findExtractedTextById(1L)).thenReturn(Optional.of(TEXT));
+
+    new ChunkTextResolver(documentRepository).resolve(List.of(chunk));
+
+    assertNull(chunk.getTextContent());
+  }
+
+  private static DocumentChunk offsets(Long documentId, int start, int end) {
+    return DocumentChunk.builder()
+        .documentId(documentId)
+        .startPosition(start)
+        .endPosition(end)
+        .offsetsOnly(true)
+        .build();
+  }
+}
@@ -0,0 +1,37 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class ChunkingStrategySelectorTest {
+
+  private static ChunkingStrategySelector selector(String defaultStrategy, String contentTypes) {
+    return new ChunkingStrategySelector(new ApproximateTokenCounter(), 1000, 200, 512, 0,
+        defaultStrategy, contentTypes);
+  }
+
+  @Test
+  void testForContentType_MapsTypesAndFamilies() {
+    ChunkingStrategySelector selector = selector("token",
+        "text/markdown=structure, text/*=character, application/pdf = Token");
+
+    assertEquals("structure", selector.forContentType("text/markdown").getName());
+    assertEquals("structure",
+        selector.forContentType("Text/Markdown; charset=UTF-8").getName());
+    assertEquals("character", selector.forContentType("text/plain").getName());
+    assertEquals("token", selector.forContentType("application/pdf").getName());
+    assertEquals("token", selector.forContentType("application/msword").getName());
+    assertEquals("token", selector.forContentType(null).getName());
+    assertEquals("token", selector.getDefault().getName());
+  }
+
+  @Test
+  void testConstructor_RejectsUnknownStrategies() {
+    assertThrows(IllegalArgumentException.class, () -> selector("semantic", ""));
+    assertThrows(IllegalArgumentException.class,
+        () -> selector("character", "text/html=semantic"));
+    assertThrows(IllegalArgumentException.class, () -> selector("character", "text/html"));
+  }
+}
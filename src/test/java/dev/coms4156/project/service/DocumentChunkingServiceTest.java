@@ -1,10 +1,12 @@
 package dev.coms4156.project.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import dev.coms4156.project.model.Document;
@@ -13,6 +15,7 @@ import dev.coms4156.project.repository.DocumentChunkRepository;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -25,11 +28,20 @@ class DocumentChunkingServiceTest {
   @Mock
   private DocumentChunkRepository documentChunkRepository;
 
+  @Mock
+  private ChunkTextResolver chunkTextResolver;
+
   private DocumentChunkingService chunkingService;
 
   @BeforeEach
   void setUp() {
-    chunkingService = new DocumentChunkingService(documentChunkRepository);
+    chunkingService = new DocumentChunkingService(documentChunkRepository,
+        chunkTextResolver, selector("character"), true, 0, 1);
+  }
+
+  private static ChunkingStrategySelector selector(String defaultStrategy) {
+    return new ChunkingStrategySelector(new ApproximateTokenCounter(), 1000, 200, 64, 8,
+        defaultStrategy, "text/markdown=structure");
   }
 
   @Test
@@ -78,6 +90,174 @@ class DocumentChunkingServiceTest {
     verify(documentChunkRepository).deleteByDocument(document);
   }
 
+  @Test
+  void testSplitDocument_KeepsStoredChunksAndHashesContent() {
+    Document document = new Document();
+    document.setId(1L);
+    document.setExtractedText("Same paragraph. ".repeat(200));
+
+    List<DocumentChunk> first = chunkingService.splitDocument(document);
+    List<DocumentChunk> second = chunkingService.splitDocument(document);
+
+    assertEquals(first.size(), second.size());
+    assertEquals(64, first.get(0).getContentHash().length());
+    assertEquals(first.get(0).getContentHash(), second.get(0).getContentHash());
+    assertEquals(ContentHashes.sha256(first.get(0).getTextContent()),
+        first.get(0).getContentHash());
+    verifyNoInteractions(documentChunkRepository);
+  }
+
+  @Test
+  void testOpenSplitter_StreamedTextMatchesWholeText() {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 120; i++) {
+      text.append("Sentence number ").append(i).append(" is here! ");
+    }
+    Document document = new Document();
+    document.setId(1L);
+    document.setExtractedText(text.toString());
+
+    ChunkSplitter splitter = chunkingService.openSplitter(null);
+    for (int start = 0; start < text.length(); start += 7) {
+      splitter.append(text, start, Math.min(start + 7, text.length()));
+    }
+    List<DocumentChunk> streamed = splitter.finish(document);
+    List<DocumentChunk> whole = chunkingService.splitDocument(document);
+
+    assertTrue(streamed.size() > 1);
+    assertEquals(whole.size(), streamed.size());
+    for (int i = 0; i < whole.size(); i++) {
+      assertEquals(whole.get(i).getTextContent(), streamed.get(i).getTextContent());
+      assertEquals(whole.get(i).getStartPosition(), streamed.get(i).getStartPosition());
+      assertEquals(whole.get(i).getEndPosition(), streamed.get(i).getEndPosition());
+      assertEquals(document, streamed.get(i).getDocument());
+    }
+  }
+
+  @Test
+  void testOpenSplitter_OffsetsOnlyKeepsTextInMemory() {
+    DocumentChunkingService offsets = new DocumentChunkingService(documentChunkRepository,
+        chunkTextResolver, selector("character"), false, 0, 1);
+
+    List<DocumentChunk> chunks = offsets.openSplitter("text/plain")
+        .append("Only the offsets are stored.").finish(new Document());
+
+    assertEquals(1, chunks.size());
+    assertTrue(chunks.get(0).isOffsetsOnly());
+    assertEquals("Only the offsets are stored.", chunks.get(0).getTextContent());
+    assertFalse(chunkingService.openSplitter("text/plain").append("Text is stored.")
+        .finish(new Document()).get(0).isOffsetsOnly());
+  }
+
+  @Test
+  void testOpenSplitter_TokenStrategiesMatchWholeText() {
+    Random random = new Random(5);
+    String[] words = {"word", "a", "tokenization", "12345", "end.", "Stop!", "\n", "\n\n",
+        "# Heading\n", "- item\n"};
+    DocumentChunkingService tokens = new DocumentChunkingService(documentChunkRepository,
+        chunkTextResolver, selector("token"), true, 0, 1);
+    for (int run = 0; run < 300; run++) {
+      StringBuilder text = new StringBuilder();
+      for (int i = random.nextInt(400); i > 0; i--) {
+        text.append(words[random.nextInt(words.length)])
+            .append(random.nextInt(4) == 0 ? "" : " ");
+      }
+      Document document = new Document();
+      document.setContentType(random.nextBoolean() ? "text/markdown" : "text/plain");
+      document.setExtractedText(text.toString());
+      int piece = 1 + random.nextInt(50);
+
+      ChunkSplitter splitter = tokens.openSplitter(document.getContentType());
+      for (int start = 0; start < text.length(); start += piece) {
+        splitter.append(text, start, Math.min(start + piece, text.length()));
+      }
+      List<DocumentChunk> streamed = splitter.finish(document);
+      List<DocumentChunk> whole = text.toString().isBlank() ? List.of()
+          : tokens.splitDocument(document);
+
+      assertEquals(whole.size(), streamed.size(), text.toString());
+      for (int i = 0; i < whole.size(); i++) {
+        assertEquals(whole.get(i).getStartPosition(), streamed.get(i).getStartPosition());
+        assertEquals(whole.get(i).getEndPosition(), streamed.get(i).getEndPosition());
+      }
+    }
+  }
+
+  @Test
+  void testSplitDocument_ParallelSegmentsMatchStreamedText() {
+    Random random = new Random(29);
+    String[] words = {"word", "a", "tokenization", "12345", "end.", "Stop!", "Why?", "\n",
+        "\n\n", "# Heading\n"};
+    for (String strategy : new String[] {"character", "token"}) {
+      DocumentChunkingService segmented = new DocumentChunkingService(documentChunkRepository,
+          chunkTextResolver, selector(strategy), true, 300, 4);
+      for (int run = 0; run < 100; run++) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 500 + random.nextInt(1500); i > 0; i--) {
+          text.append(words[random.nextInt(words.length)])
+              .append(random.nextInt(4) == 0 ? "" : " ");
+        }
+        Document document = new Document();
+        document.setExtractedText(text.toString());
+        int piece = 1 + random.nextInt(200);
+
+        ChunkSplitter splitter = segmented.openSplitter(null);
+        for (int start = 0; start < text.length(); start += piece) {
+          splitter.append(text, start, Math.min(start + piece, text.length()));
+        }
+        List<DocumentChunk> streamed = splitter.finish(document);
+        List<DocumentChunk> whole = segmented.splitDocument(document);
+
+        int[] bounds = ChunkSplitter.segmentBounds(text, 300);
+        assertTrue(bounds.length > 2);
+        assertEquals(whole.size(), streamed.size(), text.toString());
+        for (int i = 0; i < whole.size(); i++) {
+          DocumentChunk chunk = whole.get(i);
+          assertEquals(i, chunk.getChunkIndex());
+          assertEquals(i, streamed.get(i).getChunkIndex());
+          assertEquals(chunk.getStartPosition(), streamed.get(i).getStartPosition());
+          assertEquals(chunk.getEndPosition(), streamed.get(i).getEndPosition());
+          assertEquals(chunk.getTextContent(), streamed.get(i).getTextContent());
+          assertEquals(document, chunk.getDocument());
+          for (int bound : bounds) {
+            assertFalse(chunk.getStartPosition() < bound && bound < chunk.getEndPosition());
+          }
+        }
+      }
+      segmented.shutdown();
+    }
+  }
+
+  @Test
+  void testChunkSplitter_MatchesRegexChunker() {
+    Random random = new Random(11);
+    String alphabet = "aaaab .!?\t\n\f\r";
+    for (int run = 0; run < 2000; run++) {
+      StringBuilder raw = new StringBuilder();
+      for (int i = random.nextInt(300); i > 0; i--) {
+        raw.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      String text = raw.toString();
+      int chunkSize = 1 + random.nextInt(40);
+      int overlapSize = random.nextInt(chunkSize + 5);
+
+      ChunkSplitter splitter = new ChunkSplitter(chunkSize, overlapSize);
+      for (int start = 0; start < text.length(); start += 13) {
+        splitter.append(text, start, Math.min(start + 13, text.length()));
+      }
+      List<DocumentChunk> chunks = splitter.finish(null);
+      List<DocumentChunk> expected =
+          ChunkSplitterBenchmark.regexChunks(text, chunkSize, overlapSize);
+
+      assertEquals(expected.size(), chunks.size(), text);
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(expected.get(i).getTextContent(), chunks.get(i).getTextContent());
+        assertEquals(expected.get(i).getStartPosition(), chunks.get(i).getStartPosition());
+        assertEquals(expected.get(i).getEndPosition(), chunks.get(i).getEndPosition());
+      }
+    }
+  }
+
   // Boundary analysis - exactly at chunk size limit
   @Test
   void testChunkDocument_ExactChunkSize() {
@@ -173,6 +353,7 @@ class DocumentChunkingServiceTest {
     assertEquals(2, result.size());
     assertEquals("Chunk 1", result.get(0).getTextContent());
     assertEquals("Chunk 2", result.get(1).getTextContent());
+    verify(chunkTextResolver).resolve(result);
   }
 
   @Test
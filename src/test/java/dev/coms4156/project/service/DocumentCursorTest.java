@@ -0,0 +1,36 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+
+class DocumentCursorTest {
+
+  @Test
+  void testEncodeDecode_RoundTrip() {
+    LocalDateTime time = LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_000_000);
+    String encoded = DocumentCursor.of(time, 42L).encode();
+
+    DocumentCursor decoded = DocumentCursor.decode(encoded);
+
+    assertEquals(time, decoded.getUploadedAt());
+    assertEquals(42L, decoded.getId());
+    assertFalse(encoded.contains("="));
+  }
+
+  @Test
+  void testStart_BoundsBothDirections() {
+    assertEquals(0L, DocumentCursor.start(true).getId());
+    assertEquals(Long.MAX_VALUE, DocumentCursor.start(false).getId());
+  }
+
+  @Test
+  void testDecode_RejectsMalformedValues() {
+    assertThrows(IllegalArgumentException.class, () -> DocumentCursor.decode("!!!"));
+    assertThrows(IllegalArgumentException.class, () -> DocumentCursor.decode("bm9zZXA"));
+    assertThrows(IllegalArgumentException.class, () -> DocumentCursor.decode("eHx5"));
+  }
+}
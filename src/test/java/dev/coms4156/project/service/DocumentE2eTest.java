@@ -8,9 +8,11 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import dev.coms4156.project.dtos.DocumentPageResponse;
 import dev.coms4156.project.model.Document;
 import dev.coms4156.project.model.DocumentChunk;
 import dev.coms4156.project.model.DocumentRelationship;
@@ -21,12 +23,15 @@ import jakarta.persistence.EntityManager;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Sort;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -87,10 +92,13 @@ class DocumentE2eTest {
         "application/pdf",
         mockContent);
 
-    // Mock text extraction service
-    when(textExtractionService.detectContentType(mockFile)).thenReturn("application/pdf");
+    // Mock text extraction service, spooling the upload for real
+    spoolUploads();
+    when(textExtractionService.detectContentType(any(SpooledUpload.class)))
+        .thenReturn("application/pdf");
     when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
-    when(textExtractionService.extractText(mockFile)).thenReturn(mockExtractedText);
+    when(textExtractionService.extractText(any(SpooledUpload.class), any()))
+        .thenReturn(mockExtractedText);
 
     // Mock chunking service
     DocumentChunk chunk1 = DocumentChunk.builder()
@@ -107,20 +115,14 @@ class DocumentE2eTest {
         .build();
 
     List<DocumentChunk> mockChunks = Arrays.asList(chunk1, chunk2, chunk3);
-    when(chunkingService.chunkDocument(any(Document.class))).thenReturn(mockChunks);
+    splitInto(mockChunks);
 
     // Mock embedding service
-    when(embeddingService.generateEmbeddings(anyList())).thenReturn(mockChunks);
+    when(embeddingService.generateEmbeddings(anyList())).thenAnswer(inv -> inv.getArgument(0));
     when(embeddingService.calculateSimilarity(any(float[].class), any(float[].class)))
         .thenReturn(0.9);
-
-    // Note: DocumentService uses its own generateSummary() method, not
-    // DocumentSummarizationService
-    // The actual summary will be the first 200 characters of the extracted text
-    final String expectedSummary = "This is a test document about machine learning"
-        + " and artificial intelligence. "
-        + "It contains multiple sentences to "
-        + "test the chunking and summarization functionality.";
+    when(summarizationService.extractiveSummary(any(), any()))
+        .thenReturn("A test document about machine learning.");
 
     // When - Step 1: Upload and process document (WRITE)
     Document savedDocument = documentService.processDocument(mockFile);
@@ -132,17 +134,14 @@ class DocumentE2eTest {
     assertEquals("application/pdf", savedDocument.getContentType());
     assertEquals((long) mockContent.length, savedDocument.getFileSize());
     assertEquals(mockExtractedText, savedDocument.getExtractedText());
-    assertEquals(expectedSummary, savedDocument.getSummary());
-    assertEquals(Document.ProcessingStatus.COMPLETED,
-        savedDocument.getProcessingStatus());
+    // The extractive summary is ranked while the chunks are related
+    assertEquals("A test document about machine learning.", savedDocument.getSummary());
+    assertEquals(Document.ProcessingStatus.COMPLETED, savedDocument.getProcessingStatus());
 
-    // Note: DocumentService.processDocument() creates chunks but doesn't save them
-    // to database
-    // The chunks are only used for embedding generation, not persisted
+    // Chunks are stored before embedding, so an interrupted run can resume from them
     List<DocumentChunk> savedChunks = documentChunkRepository
         .findByDocumentId(savedDocument.getId());
-    assertEquals(0,
-        savedChunks.size()); // No chunks are saved to database in current implementation
+    assertEquals(3, savedChunks.size());
 
     // When - Step 2: Retrieve the document (READ)
     Optional<Document> retrievedDocument = documentService
@@ -164,10 +163,10 @@ class DocumentE2eTest {
     assertEquals(savedDocument.getUpdatedAt(), doc.getUpdatedAt());
 
     // Verify AI services were called correctly
-    verify(textExtractionService).detectContentType(mockFile);
+    verify(textExtractionService).detectContentType(any(SpooledUpload.class));
     verify(textExtractionService).isSupportedContentType("application/pdf");
-    verify(textExtractionService).extractText(mockFile);
-    verify(chunkingService).chunkDocument(any(Document.class));
+    verify(textExtractionService).extractText(any(SpooledUpload.class), any());
+    verify(chunkingService).openSplitter(any());
     verify(embeddingService).generateEmbeddings(anyList());
   }
 
@@ -183,18 +182,23 @@ class DocumentE2eTest {
 
     // Mock services for multiple documents
     for (int i = 0; i < filenames.length; i++) {
+      // Distinct bytes, so no upload is taken for a duplicate of another
       MultipartFile mockFile = new MockMultipartFile(
-          "file", filenames[i], "application/pdf", "Mock content".getBytes());
+          "file", filenames[i], "application/pdf", ("Mock content " + i).getBytes());
 
-      when(textExtractionService.detectContentType(mockFile)).thenReturn("application/pdf");
+      spoolUploads();
+      when(textExtractionService.detectContentType(any(SpooledUpload.class)))
+          .thenReturn("application/pdf");
       when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
-      when(textExtractionService.extractText(mockFile)).thenReturn(extractedTexts[i]);
+      when(textExtractionService.extractText(any(SpooledUpload.class), any()))
+          .thenReturn(extractedTexts[i]);
 
       DocumentChunk mockChunk = DocumentChunk.builder()
           .textContent(extractedTexts[i])
           .build();
-      when(chunkingService.chunkDocument(any(Document.class))).thenReturn(Arrays.asList(mockChunk));
-      when(embeddingService.generateEmbeddings(anyList())).thenReturn(Arrays.asList(mockChunk));
+      splitInto(List.of(mockChunk));
+      when(embeddingService.generateEmbeddings(anyList()))
+          .thenAnswer(inv -> inv.getArgument(0));
       when(summarizationService.generateSummary(any(Document.class)))
           .thenReturn("Summary for " + filenames[i]);
 
@@ -216,13 +220,15 @@ class DocumentE2eTest {
       assertEquals(savedDoc.getExtractedText(), retrievedDoc.get().getExtractedText());
     }
 
-    // Verify all documents are retrievable via getAllDocuments
-    List<Document> allDocuments = documentService.getAllDocuments();
-    assertEquals(3, allDocuments.size());
+    // Verify all documents are listed
+    DocumentPageResponse allDocuments = documentService.listDocumentPage(null, null, null,
+        Sort.Direction.ASC);
+    assertEquals(3, allDocuments.getDocuments().size());
 
     // Verify we can find documents by filename
-    List<Document> docsByFilename = documentService.getDocumentsByFilename("doc");
-    assertEquals(3, docsByFilename.size());
+    DocumentPageResponse docsByFilename = documentService.listDocumentPage("doc", null, null,
+        Sort.Direction.ASC);
+    assertEquals(3, docsByFilename.getDocuments().size());
   }
 
   @Test
@@ -243,16 +249,19 @@ class DocumentE2eTest {
     MultipartFile mockFile = new MockMultipartFile(
         "file", "test.pdf", "application/pdf", "Mock content".getBytes());
 
-    when(textExtractionService.detectContentType(mockFile)).thenReturn("application/pdf");
+    spoolUploads();
+    when(textExtractionService.detectContentType(any(SpooledUpload.class)))
+        .thenReturn("application/pdf");
     when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
-    when(textExtractionService.extractText(mockFile)).thenReturn("Test content");
+    when(textExtractionService.extractText(any(SpooledUpload.class), any()))
+        .thenReturn("Test content");
 
     DocumentChunk mockChunk = DocumentChunk.builder()
         .textContent("Test content")
         .build();
-    when(chunkingService.chunkDocument(any(Document.class))).thenReturn(Arrays.asList(mockChunk));
-    when(embeddingService.generateEmbeddings(anyList())).thenReturn(Arrays.asList(mockChunk));
-    when(summarizationService.generateSummary(any(Document.class))).thenReturn("Test summary");
+    splitInto(List.of(mockChunk));
+    when(embeddingService.generateEmbeddings(anyList())).thenAnswer(inv -> inv.getArgument(0));
+    when(summarizationService.extractiveSummary(any(), any())).thenReturn("Test summary");
     List<DocumentRelationship> mockRelationships = Arrays.asList(
         DocumentRelationship.builder()
             .sourceChunk(mockChunk)
@@ -265,17 +274,95 @@ class DocumentE2eTest {
             .similarityScore(0.8)
             .build());
 
-    // When - Upload document (should be COMPLETED after processing)
+    // When - Upload document (related and summarized during processing)
     Document savedDoc = documentService.processDocument(mockFile);
 
     // Then - Verify status filtering works
     List<Document> completedDocs = documentService
         .getDocumentsByStatus(Document.ProcessingStatus.COMPLETED);
     assertTrue(completedDocs.stream().anyMatch(doc -> doc.getId().equals(savedDoc.getId())));
+    assertEquals("Test summary", savedDoc.getSummary());
 
     List<Document> uploadedDocs = documentService
         .getDocumentsByStatus(Document.ProcessingStatus.UPLOADED);
     assertFalse(uploadedDocs.stream().anyMatch(doc -> doc.getId().equals(savedDoc.getId())));
   }
 
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void testProcessDocument_StageThreadsRelateCommittedChunks() throws Exception {
+    // Given - no surrounding transaction, so every ingestion stage commits on its own
+    MultipartFile mockFile = new MockMultipartFile(
+        "file", "stages.pdf", "application/pdf", "Stage graph content".getBytes());
+    spoolUploads();
+    when(textExtractionService.detectContentType(any(SpooledUpload.class)))
+        .thenReturn("application/pdf");
+    when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
+    when(textExtractionService.extractText(any(SpooledUpload.class), any()))
+        .thenReturn("Relationships are created on stage threads. They read committed chunks.");
+    splitInto(List.of(
+        DocumentChunk.builder().textContent("Relationships are created on stage threads.")
+            .build(),
+        DocumentChunk.builder().textContent("They read committed chunks.").build()));
+    when(embeddingService.generateEmbeddings(anyList())).thenAnswer(inv -> inv.getArgument(0));
+    // Each chunk is related to the other chunks of its document, as read by the stage thread
+    List<String> relatingThreads = new CopyOnWriteArrayList<>();
+    when(embeddingService.findRelatedChunks(any(DocumentChunk.class), anyInt()))
+        .thenAnswer(inv -> {
+          DocumentChunk source = inv.getArgument(0);
+          relatingThreads.add(Thread.currentThread().getName());
+          return documentChunkRepository.findByDocumentId(source.getDocument().getId())
+              .stream()
+              .filter(chunk -> !chunk.getId().equals(source.getId()))
+              .toList();
+        });
+    when(summarizationService.extractiveSummary(any(), any()))
+        .thenReturn("Relationships are created on stage threads.");
+
+    Document savedDoc = documentService.processDocument(mockFile);
+    try {
+      // Then - the relationships were stored from a stage thread and are visible afterwards
+      assertEquals(Document.ProcessingStatus.COMPLETED, savedDoc.getProcessingStatus());
+      assertEquals(2, relatingThreads.size());
+      assertTrue(relatingThreads.stream().allMatch(name -> name.startsWith("document-stage-")));
+      assertEquals(2, documentService.getRelationshipsForDocument(savedDoc.getId()).size());
+      assertEquals("Relationships are created on stage threads.",
+          documentRepository.findById(savedDoc.getId()).orElseThrow().getSummary());
+    } finally {
+      documentService.deleteDocument(savedDoc.getId());
+    }
+  }
+
+  /**
+   * Binds mock chunks to the document being chunked, as the real chunking service does.
+   */
+  private static List<DocumentChunk> attach(Document document, List<DocumentChunk> chunks) {
+    for (int i = 0; i < chunks.size(); i++) {
+      DocumentChunk chunk = chunks.get(i);
+      chunk.setId(null);
+      chunk.setDocument(document);
+      chunk.setChunkIndex(i);
+      chunk.setChunkSize(chunk.getTextContent().length());
+    }
+    return chunks;
+  }
+
+  /**
+   * Makes the chunking service split the next document into the given chunks.
+   */
+  private void splitInto(List<DocumentChunk> chunks) {
+    ChunkSplitter splitter = mock(ChunkSplitter.class);
+    when(splitter.finish(any(Document.class)))
+        .thenAnswer(inv -> attach(inv.getArgument(0), chunks));
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+  }
+
+  /**
+   * Spools uploads with the real implementation, so documents get their actual size and hash.
+   */
+  private void spoolUploads() throws Exception {
+    when(textExtractionService.spool(any(MultipartFile.class)))
+        .thenAnswer(inv -> SpooledUpload.spool(inv.getArgument(0), Integer.MAX_VALUE, null));
+  }
+
 }
@@ -1,31 +1,46 @@
 package dev.coms4156.project.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import dev.coms4156.project.dtos.DocumentDto;
+import dev.coms4156.project.dtos.DocumentPageResponse;
+import dev.coms4156.project.dtos.ExtractionStats;
 import dev.coms4156.project.model.Document;
 import dev.coms4156.project.model.DocumentChunk;
 import dev.coms4156.project.model.DocumentRelationship;
+import dev.coms4156.project.repository.ChunkEmbeddingRepository;
 import dev.coms4156.project.repository.DocumentChunkRepository;
 import dev.coms4156.project.repository.DocumentRelationshipRepository;
 import dev.coms4156.project.repository.DocumentRepository;
+import dev.coms4156.project.repository.DocumentSignatureRepository;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.multipart.MultipartFile;
 
 @ExtendWith(MockitoExtension.class)
@@ -49,31 +64,69 @@ class DocumentServiceTest {
   @Mock
   private SimpleEmbeddingService embeddingService;
 
+  @Mock
+  private SummarizationQueue summarizationQueue;
+
+  @Mock
+  private DocumentSummarizationService summarizationService;
+
+  @Mock
+  private DocumentStatisticsService statisticsService;
+
+  @Mock
+  private DocumentSignatureRepository signatureRepository;
+
+  @Mock
+  private ChunkEmbeddingRepository chunkEmbeddingRepository;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
   @Mock
   private MultipartFile multipartFile;
 
+  @Mock
+  private ChunkSplitter splitter;
+
+  private NearDuplicateIndex nearDuplicateIndex;
+
   private DocumentService documentService;
 
   @BeforeEach
   void setUp() {
+    nearDuplicateIndex = new NearDuplicateIndex(signatureRepository, true, 128, 16, 5, 0.8);
     documentService = new DocumentService(
         documentRepository,
         documentChunkRepository,
         documentRelationshipRepository,
         textExtractionService,
         chunkingService,
-        embeddingService);
+        embeddingService,
+        summarizationQueue,
+        summarizationService,
+        statisticsService,
+        nearDuplicateIndex,
+        new ChunkQualityFilter(new ChunkEmbeddingStore(chunkEmbeddingRepository, 1000, 0.01),
+            true, "skip", 0.3),
+        transactionManager,
+        200,
+        2);
+  }
+
+  @AfterEach
+  void tearDown() {
+    documentService.shutdown();
   }
 
   @Test
   void testProcessDocument_Success() throws Exception {
     // Given
     when(multipartFile.isEmpty()).thenReturn(false);
-    when(multipartFile.getOriginalFilename()).thenReturn("test.pdf");
-    when(multipartFile.getSize()).thenReturn(1024L);
-    when(textExtractionService.detectContentType(multipartFile)).thenReturn("application/pdf");
+    SpooledUpload upload = spooled("test.pdf", 1024L, "hash");
+    when(textExtractionService.detectContentType(upload)).thenReturn("application/pdf");
     when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
-    when(textExtractionService.extractText(multipartFile)).thenReturn("Sample text content");
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn("Sample text content");
 
     Document savedDocument = new Document();
     savedDocument.setId(1L);
@@ -86,7 +139,8 @@ class DocumentServiceTest {
         .id(1L)
         .textContent("Sample text content")
         .build();
-    when(chunkingService.chunkDocument(any(Document.class))).thenReturn(Arrays.asList(chunk));
+    when(splitter.finish(any(Document.class))).thenReturn(Arrays.asList(chunk));
+    when(documentChunkRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
     when(embeddingService.generateEmbeddings(anyList())).thenReturn(Arrays.asList(chunk));
     DocumentRelationship relationship = DocumentRelationship.builder()
         .id(1L)
@@ -96,21 +150,68 @@ class DocumentServiceTest {
         .build();
     when(documentService.createRelationshipsForSourceChunks(anyList()))
         .thenReturn(List.of(relationship));
+    when(summarizationService.extractiveSummary(1L, "Sample text content"))
+        .thenReturn("Sample text content");
 
     // When
     Document result = documentService.processDocument(multipartFile);
 
-    // Then
+    // Then - the summary was ranked while the chunks were related
     assertNotNull(result);
     assertEquals("test.pdf", result.getFilename());
-    verify(documentRepository, times(5)).save(any(Document.class));
+    assertEquals("Sample text content", result.getSummary());
+    assertEquals(Document.ProcessingStatus.COMPLETED, result.getProcessingStatus());
+    verify(documentRepository, times(6)).save(any(Document.class));
+    verify(documentRepository).updateSummaryOfDuplicates(1L, "Sample text content");
+    verify(summarizationQueue, never()).enqueue(any());
+    verify(statisticsService).recordStatusChange(null, Document.ProcessingStatus.UPLOADED);
+    // Chunks are stored before they are embedded, then counted again once embedded
+    verify(documentChunkRepository).saveAll(List.of(chunk));
+    verify(statisticsService).recordChunksAdded(1, 0);
+    verify(statisticsService).recordChunksAdded(0, 1);
+    verify(statisticsService).recordStatusChange(Document.ProcessingStatus.CHUNKED,
+        Document.ProcessingStatus.EMBEDDINGS_GENERATED);
+  }
+
+  @Test
+  void testProcessDocument_LowValueChunksSkippedBeforeStoring() throws Exception {
+    when(multipartFile.isEmpty()).thenReturn(false);
+    SpooledUpload upload = spooled("sheet.xlsx", 1024L, "hash");
+    when(textExtractionService.detectContentType(upload)).thenReturn("application/pdf");
+    when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter))
+        .thenReturn("Quarterly revenue grew in every region");
+    Document savedDocument = Document.builder().id(1L).filename("sheet.xlsx")
+        .processingStatus(Document.ProcessingStatus.UPLOADED).build();
+    when(documentRepository.save(any(Document.class))).thenReturn(savedDocument);
+
+    DocumentChunk prose = DocumentChunk.builder().chunkIndex(0)
+        .textContent("Quarterly revenue grew in every region").build();
+    DocumentChunk numbers = DocumentChunk.builder().chunkIndex(1)
+        .textContent("1\t2\t3\t4\n5\t6\t7\t8\n9\t10\t11\t12\n").build();
+    DocumentChunk separator = DocumentChunk.builder().chunkIndex(2)
+        .textContent("==========================").build();
+    when(splitter.finish(any(Document.class))).thenReturn(List.of(prose, numbers, separator));
+    when(documentChunkRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+    when(embeddingService.generateEmbeddings(anyList())).thenReturn(List.of(prose));
+
+    documentService.processDocument(multipartFile);
+
+    // Only the prose is stored and embedded
+    verify(documentChunkRepository).saveAll(List.of(prose));
+    verify(embeddingService).generateEmbeddings(List.of(prose));
+    verify(statisticsService).recordChunksAdded(1, 0);
+    assertEquals(2L, documentService.getChunkFilterStats().getSkipped());
+    assertEquals(3L, documentService.getChunkFilterStats().getScored());
   }
 
   @Test
   void testProcessDocument_UnsupportedFileType() throws Exception {
     // Given
     when(multipartFile.isEmpty()).thenReturn(false);
-    when(textExtractionService.detectContentType(multipartFile)).thenReturn("application/unknown");
+    SpooledUpload upload = spooled("test.pdf", 1024L, "hash");
+    when(textExtractionService.detectContentType(upload)).thenReturn("application/unknown");
     when(textExtractionService.isSupportedContentType("application/unknown")).thenReturn(false);
 
     // When & Then
@@ -119,6 +220,476 @@ class DocumentServiceTest {
     });
   }
 
+  @Test
+  void testProcessDocument_DuplicateReturnsExisting() throws Exception {
+    // Given - the same bytes were processed before
+    when(multipartFile.isEmpty()).thenReturn(false);
+    SpooledUpload upload = spooled("copy.pdf", 1024L, "abc");
+    when(textExtractionService.detectContentType(upload)).thenReturn("application/pdf");
+    when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
+    Document existing = Document.builder().id(7L).filename("original.pdf")
+        .processingStatus(Document.ProcessingStatus.COMPLETED).build();
+    when(documentRepository.findByContentHash("abc")).thenReturn(Optional.of(existing));
+
+    // When
+    Document result = documentService.processDocument(multipartFile);
+
+    // Then - no extraction, chunking or embedding
+    assertEquals(existing, result);
+    verify(textExtractionService, never()).extractText(eq(upload), any());
+    verify(embeddingService, never()).generateEmbeddings(anyList());
+    verify(documentRepository, never()).save(any(Document.class));
+  }
+
+  @Test
+  void testProcessDocument_DuplicateClonedSharingChunks() throws Exception {
+    // Given
+    when(multipartFile.isEmpty()).thenReturn(false);
+    SpooledUpload upload = spooled("copy.pdf", 2048L, "abc");
+    when(textExtractionService.detectContentType(upload)).thenReturn("application/pdf");
+    when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
+    Document existing = Document.builder().id(7L).filename("original.pdf")
+        .contentType("application/pdf").summary("Summary")
+        .processingStatus(Document.ProcessingStatus.EMBEDDINGS_GENERATED).build();
+    when(documentRepository.findByContentHash("abc")).thenReturn(Optional.of(existing));
+    when(documentRepository.save(any(Document.class))).thenAnswer(inv -> inv.getArgument(0));
+
+    // When
+    Document clone = documentService.processDocument(multipartFile,
+        DocumentService.DuplicatePolicy.CLONE);
+
+    // Then
+    assertEquals("copy.pdf", clone.getFilename());
+    assertEquals("Summary", clone.getSummary());
+    assertEquals(existing, clone.getDuplicateOf());
+    assertNull(clone.getContentHash());
+    assertEquals(Document.ProcessingStatus.COMPLETED, clone.getProcessingStatus());
+    verify(textExtractionService, never()).extractText(eq(upload), any());
+    verify(statisticsService).recordStatusChange(null, Document.ProcessingStatus.COMPLETED);
+  }
+
+  @Test
+  void testProcessDocument_DuplicateInProgressIsNotCloned() throws Exception {
+    when(multipartFile.isEmpty()).thenReturn(false);
+    SpooledUpload upload = spooled("copy.pdf", 1024L, "abc");
+    when(textExtractionService.detectContentType(upload)).thenReturn("application/pdf");
+    when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
+    Document existing = Document.builder().id(7L)
+        .processingStatus(Document.ProcessingStatus.CHUNKED).build();
+    when(documentRepository.findByContentHash("abc")).thenReturn(Optional.of(existing));
+
+    Document result = documentService.processDocument(multipartFile,
+        DocumentService.DuplicatePolicy.CLONE);
+
+    assertEquals(existing, result);
+    verify(documentRepository, never()).save(any(Document.class));
+  }
+
+  @Test
+  void testProcessDocument_NearDuplicateSkippedBeforeEmbedding() throws Exception {
+    Document original = Document.builder().id(7L).filename("report.txt")
+        .processingStatus(Document.ProcessingStatus.COMPLETED).build();
+    nearDuplicateIndex.add(7L, nearDuplicateIndex.signature(report("2024-01-01")));
+    when(documentRepository.findById(7L)).thenReturn(Optional.of(original));
+    when(multipartFile.isEmpty()).thenReturn(false);
+    SpooledUpload upload = spooled("report-v2.txt", 1024L, "other");
+    when(textExtractionService.detectContentType(upload)).thenReturn("text/plain");
+    when(textExtractionService.isSupportedContentType("text/plain")).thenReturn(true);
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn(report("2024-02-01"));
+    Document uploaded = Document.builder().id(8L).filename("report-v2.txt").build();
+    when(documentRepository.save(any(Document.class))).thenReturn(uploaded);
+
+    Document result = documentService.processDocument(multipartFile,
+        DocumentService.DuplicatePolicy.RETURN_EXISTING, DocumentService.NearDuplicatePolicy.SKIP);
+
+    assertEquals(original, result);
+    verify(documentRepository).delete(uploaded);
+    verify(statisticsService).recordStatusChange(Document.ProcessingStatus.UPLOADED, null);
+    verify(splitter, never()).finish(any());
+    verify(embeddingService, never()).generateEmbeddings(anyList());
+  }
+
+  @Test
+  void testProcessDocument_NearDuplicateLinkedSharingChunks() throws Exception {
+    Document original = Document.builder().id(7L).filename("report.txt").summary("Summary")
+        .processingStatus(Document.ProcessingStatus.COMPLETED).build();
+    nearDuplicateIndex.add(7L, nearDuplicateIndex.signature(report("2024-01-01")));
+    when(documentRepository.findById(7L)).thenReturn(Optional.of(original));
+    when(multipartFile.isEmpty()).thenReturn(false);
+    SpooledUpload upload = spooled("report-v2.txt", 1024L, "other");
+    when(textExtractionService.detectContentType(upload)).thenReturn("text/plain");
+    when(textExtractionService.isSupportedContentType("text/plain")).thenReturn(true);
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn(report("2024-02-01"));
+    when(documentRepository.save(any(Document.class))).thenAnswer(inv -> {
+      Document saved = inv.getArgument(0);
+      saved.setId(8L);
+      return saved;
+    });
+
+    Document result = documentService.processDocument(multipartFile,
+        DocumentService.DuplicatePolicy.RETURN_EXISTING, DocumentService.NearDuplicatePolicy.LINK);
+
+    assertEquals(8L, result.getId());
+    assertEquals(original, result.getNearDuplicateOf());
+    assertEquals(original, result.getDuplicateOf());
+    assertEquals("Summary", result.getSummary());
+    assertEquals(report("2024-02-01"), result.getExtractedText());
+    assertEquals(Document.ProcessingStatus.COMPLETED, result.getProcessingStatus());
+    verify(embeddingService, never()).generateEmbeddings(anyList());
+    // Only documents that are processed are indexed
+    assertEquals(1, nearDuplicateIndex.size());
+  }
+
+  @Test
+  void testProcessDocument_NearDuplicateOfLinkedDocumentSharesOwnerChunks() throws Exception {
+    Document owner = Document.builder().id(5L).filename("report.txt").summary("Summary")
+        .processingStatus(Document.ProcessingStatus.COMPLETED).build();
+    Document linked = Document.builder().id(7L).filename("report-copy.txt").summary("Summary")
+        .duplicateOf(owner).processingStatus(Document.ProcessingStatus.COMPLETED).build();
+    nearDuplicateIndex.add(7L, nearDuplicateIndex.signature(report("2024-01-01")));
+    when(documentRepository.findById(7L)).thenReturn(Optional.of(linked));
+    when(multipartFile.isEmpty()).thenReturn(false);
+    SpooledUpload upload = spooled("report-v2.txt", 1024L, "other");
+    when(textExtractionService.detectContentType(upload)).thenReturn("text/plain");
+    when(textExtractionService.isSupportedContentType("text/plain")).thenReturn(true);
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn(report("2024-02-01"));
+    when(documentRepository.save(any(Document.class))).thenAnswer(inv -> {
+      Document saved = inv.getArgument(0);
+      saved.setId(8L);
+      return saved;
+    });
+
+    Document result = documentService.processDocument(multipartFile,
+        DocumentService.DuplicatePolicy.RETURN_EXISTING, DocumentService.NearDuplicatePolicy.LINK);
+
+    // The chunks belong to the owner, so the new document must not point at the linked one
+    assertEquals(linked, result.getNearDuplicateOf());
+    assertEquals(owner, result.getDuplicateOf());
+    assertEquals("Summary", result.getSummary());
+  }
+
+  /**
+   * Returns a report of a few hundred words that differs between dates only in the date.
+   */
+  private static String report(String date) {
+    StringBuilder text = new StringBuilder("Quarterly report dated ").append(date).append(". ");
+    for (int i = 1; i <= 40; i++) {
+      text.append("Region ").append(i).append(" sold ").append(i * 37)
+          .append(" units, and its margin changed by ").append(i % 7).append(" percent. ");
+    }
+    return text.toString();
+  }
+
+  @Test
+  void testProcessNewVersion_EmbedsOnlyChangedChunks() throws Exception {
+    // Given
+    Document document = Document.builder().id(1L).filename("v1.txt").contentHash("old")
+        .revision(1).processingStatus(Document.ProcessingStatus.COMPLETED).build();
+    when(documentRepository.findWithContentById(1L)).thenReturn(Optional.of(document));
+    when(multipartFile.isEmpty()).thenReturn(false);
+    // Claimed, then nothing left to release
+    when(documentRepository.updateStatusIfCurrent(eq(1L), eq(1), any(), any()))
+        .thenReturn(1, 0);
+    SpooledUpload upload = spooled("v2.txt", 1024L, "new");
+    when(textExtractionService.detectContentType(upload)).thenReturn("text/plain");
+    when(textExtractionService.isSupportedContentType("text/plain")).thenReturn(true);
+    when(documentRepository.findByContentHash("new")).thenReturn(Optional.empty());
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn("Kept. Added.");
+    DocumentChunk keptChunk = DocumentChunk.builder().chunkIndex(0).startPosition(0)
+        .endPosition(5).contentHash("kept").build();
+    DocumentChunk addedChunk = DocumentChunk.builder().chunkIndex(1).startPosition(6)
+        .endPosition(12).contentHash("added").build();
+    when(splitter.finish(document)).thenReturn(List.of(keptChunk, addedChunk));
+    when(documentChunkRepository.findFingerprintsByDocumentId(1L)).thenReturn(List.of(
+        fingerprint(10L, 0, 0, 5, "kept"), fingerprint(11L, 1, 6, 14, "removed")));
+    when(documentRepository.save(any(Document.class))).thenAnswer(inv -> inv.getArgument(0));
+    when(documentChunkRepository.saveAll(List.of(addedChunk))).thenReturn(List.of(addedChunk));
+    when(embeddingService.generateEmbeddings(List.of(addedChunk)))
+        .thenReturn(List.of(addedChunk));
+    when(documentChunkRepository.findRetiredIdsByDocumentId(1L)).thenReturn(List.of(11L));
+    when(summarizationService.extractiveSummary(1L, "Kept. Added.")).thenReturn("Added.");
+
+    // When
+    Document revised = documentService.processNewVersion(1L, multipartFile);
+
+    // Then
+    assertEquals(2, revised.getRevision());
+    assertEquals("v2.txt", revised.getFilename());
+    assertEquals("new", revised.getContentHash());
+    assertEquals("Added.", revised.getSummary());
+    assertEquals(Document.ProcessingStatus.COMPLETED, revised.getProcessingStatus());
+    // The removed chunk is retired until the added one is embedded, then deleted
+    verify(documentChunkRepository).updatePosition(11L, -1, 6, 14, "removed");
+    verify(documentRelationshipRepository).deleteByChunkIdsNative(List.of(11L));
+    verify(documentChunkRepository).deleteByIdsNative(List.of(11L));
+    verify(documentChunkRepository).updatePosition(10L, 0, 0, 5, "kept");
+    verify(embeddingService).generateEmbeddings(List.of(addedChunk));
+    verify(chunkingService, never()).chunkDocument(any(Document.class));
+    verify(summarizationQueue, never()).enqueue(any());
+  }
+
+  @Test
+  void testProcessNewVersion_EmbeddingFailureRestoresPreviousRevision() throws Exception {
+    // Given
+    Document document = Document.builder().id(1L).filename("v1.txt").contentHash("old")
+        .summary("Old.").revision(1).processingStatus(Document.ProcessingStatus.COMPLETED)
+        .build();
+    document.setExtractedText("Kept. Removed.");
+    when(documentRepository.findWithContentById(1L)).thenReturn(Optional.of(document));
+    when(multipartFile.isEmpty()).thenReturn(false);
+    // Claimed, then nothing left to release
+    when(documentRepository.updateStatusIfCurrent(eq(1L), eq(1), any(), any()))
+        .thenReturn(1, 0);
+    SpooledUpload upload = spooled("v2.txt", 1024L, "new");
+    when(textExtractionService.detectContentType(upload)).thenReturn("text/plain");
+    when(textExtractionService.isSupportedContentType("text/plain")).thenReturn(true);
+    when(documentRepository.findByContentHash("new")).thenReturn(Optional.empty());
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn("Added. Kept.");
+    DocumentChunk addedChunk = DocumentChunk.builder().id(12L).chunkIndex(0).startPosition(0)
+        .endPosition(6).contentHash("added").build();
+    DocumentChunk keptChunk = DocumentChunk.builder().chunkIndex(1).startPosition(7)
+        .endPosition(12).contentHash("kept").build();
+    when(splitter.finish(document)).thenReturn(List.of(addedChunk, keptChunk));
+    when(documentChunkRepository.findFingerprintsByDocumentId(1L)).thenReturn(List.of(
+        fingerprint(10L, 0, 0, 5, "kept"), fingerprint(11L, 1, 6, 14, "removed")));
+    when(documentRepository.save(any(Document.class))).thenAnswer(inv -> inv.getArgument(0));
+    when(documentChunkRepository.saveAll(List.of(addedChunk))).thenReturn(List.of(addedChunk));
+    when(embeddingService.generateEmbeddings(List.of(addedChunk)))
+        .thenThrow(new IllegalStateException("Embedding service unavailable"));
+
+    // When
+    assertThrows(IllegalStateException.class,
+        () -> documentService.processNewVersion(1L, multipartFile));
+
+    // Then
+    assertEquals(Document.ProcessingStatus.COMPLETED, document.getProcessingStatus());
+    assertEquals(1, document.getRevision());
+    assertEquals("v1.txt", document.getFilename());
+    assertEquals("old", document.getContentHash());
+    assertEquals("Kept. Removed.", document.getExtractedText());
+    assertEquals("Old.", document.getSummary());
+    // Only the added chunk is deleted; the others are moved back
+    verify(documentChunkRepository).deleteByIdsNative(List.of(12L));
+    verify(documentChunkRepository, never()).deleteByIdsNative(List.of(11L));
+    verify(documentChunkRepository, never()).deleteByDocumentIdNative(1L);
+    verify(documentChunkRepository).updatePosition(10L, 1, 7, 12, "kept");
+    verify(documentChunkRepository).updatePosition(10L, 0, 0, 5, "kept");
+    verify(documentChunkRepository).updatePosition(11L, -1, 6, 14, "removed");
+    verify(documentChunkRepository).updatePosition(11L, 1, 6, 14, "removed");
+    // The retired chunk keeps the previous text while the new one is stored
+    verify(documentChunkRepository).updateStoredText(11L, "Removed.");
+    verify(documentChunkRepository).updateStoredText(11L, null);
+    verify(documentChunkRepository, never()).updateStoredText(eq(10L), any());
+    verify(documentRepository).updateSummaryOfDuplicates(1L, "Old.");
+  }
+
+  @Test
+  void testProcessNewVersion_IdenticalContentIsNoOp() throws Exception {
+    Document document = Document.builder().id(1L).contentHash("same")
+        .processingStatus(Document.ProcessingStatus.COMPLETED).build();
+    when(documentRepository.findWithContentById(1L)).thenReturn(Optional.of(document));
+    when(multipartFile.isEmpty()).thenReturn(false);
+    when(documentRepository.updateStatusIfCurrent(eq(1L), eq(1), any(), any())).thenReturn(1);
+    SpooledUpload upload = spooled("test.pdf", 1024L, "same");
+    when(textExtractionService.detectContentType(upload)).thenReturn("text/plain");
+    when(textExtractionService.isSupportedContentType("text/plain")).thenReturn(true);
+
+    Document result = documentService.processNewVersion(1L, multipartFile);
+
+    assertEquals(document, result);
+    assertEquals(Document.ProcessingStatus.COMPLETED, result.getProcessingStatus());
+    verify(documentRepository).updateStatusIfCurrent(1L, 1,
+        List.of(Document.ProcessingStatus.CHUNKED), Document.ProcessingStatus.COMPLETED);
+    verify(textExtractionService, never()).extractText(eq(upload), any());
+    verify(documentRepository, never()).save(any(Document.class));
+  }
+
+  @Test
+  void testProcessNewVersion_RejectedWhileProcessing() {
+    Document document = Document.builder().id(1L)
+        .processingStatus(Document.ProcessingStatus.CHUNKED).build();
+    when(documentRepository.findWithContentById(1L)).thenReturn(Optional.of(document));
+
+    assertThrows(DocumentBusyException.class,
+        () -> documentService.processNewVersion(1L, multipartFile));
+    verify(documentRepository, never()).save(any(Document.class));
+  }
+
+  @Test
+  void testProcessNewVersion_RejectedWhileAnotherVersionIsProcessed() throws Exception {
+    Document document = Document.builder().id(1L).revision(3)
+        .processingStatus(Document.ProcessingStatus.COMPLETED).build();
+    when(documentRepository.findWithContentById(1L)).thenReturn(Optional.of(document));
+    when(multipartFile.isEmpty()).thenReturn(false);
+    when(documentRepository.updateStatusIfCurrent(1L, 3,
+        List.of(Document.ProcessingStatus.COMPLETED), Document.ProcessingStatus.CHUNKED))
+        .thenReturn(0);
+
+    assertThrows(DocumentBusyException.class,
+        () -> documentService.processNewVersion(1L, multipartFile));
+    verify(textExtractionService, never()).spool(any());
+    verify(documentRepository, never()).save(any(Document.class));
+    verify(statisticsService, never()).recordStatusChange(any(), any());
+  }
+
+  @Test
+  void testProcessNewVersion_RejectsClone() {
+    Document original = Document.builder().id(1L).build();
+    Document clone = Document.builder().id(2L).duplicateOf(original)
+        .processingStatus(Document.ProcessingStatus.COMPLETED).build();
+    when(documentRepository.findWithContentById(2L)).thenReturn(Optional.of(clone));
+
+    assertThrows(IllegalArgumentException.class,
+        () -> documentService.processNewVersion(2L, multipartFile));
+  }
+
+  @Test
+  void testResumeProcessing_ChunkedEmbedsOnlyPendingChunks() {
+    // Given
+    Document document = Document.builder().id(1L)
+        .processingStatus(Document.ProcessingStatus.CHUNKED).build();
+    when(documentRepository.findWithContentById(1L)).thenReturn(Optional.of(document));
+    DocumentChunk embedded = DocumentChunk.builder().id(10L).textContent("a").build();
+    DocumentChunk failing = DocumentChunk.builder().id(11L).textContent("b").build();
+    when(documentChunkRepository.findByDocumentIdAndEmbeddingIsNull(1L))
+        .thenReturn(List.of(embedded, failing));
+    when(embeddingService.generateEmbeddings(List.of(embedded, failing)))
+        .thenReturn(List.of(embedded));
+    when(documentChunkRepository.deleteUnembeddedByDocumentIdNative(1L)).thenReturn(1);
+    when(documentRepository.save(any(Document.class))).thenAnswer(inv -> inv.getArgument(0));
+
+    // When
+    Document result = documentService.resumeProcessing(1L);
+
+    // Then
+    assertEquals(Document.ProcessingStatus.COMPLETED, result.getProcessingStatus());
+    verify(chunkingService, never()).chunkDocument(any(Document.class));
+    verify(statisticsService).recordChunksAdded(0, 1);
+    verify(statisticsService).recordChunksRemoved(1, 0);
+    verify(statisticsService).recordStatusChange(Document.ProcessingStatus.CHUNKED,
+        Document.ProcessingStatus.EMBEDDINGS_GENERATED);
+  }
+
+  @Test
+  void testResumeProcessing_EmbeddedRelatesRemainingChunks() {
+    Document document = Document.builder().id(1L)
+        .processingStatus(Document.ProcessingStatus.EMBEDDINGS_GENERATED).build();
+    when(documentRepository.findWithContentById(1L)).thenReturn(Optional.of(document));
+    when(documentChunkRepository.findUnrelatedChunksByDocumentId(1L)).thenReturn(List.of());
+    when(summarizationService.extractiveSummary(any(), any()))
+        .thenThrow(new IllegalStateException("No chunks with embeddings"));
+
+    Document result = documentService.resumeProcessing(1L);
+
+    // A failed summary leaves the document searchable and to the background queue
+    assertEquals(Document.ProcessingStatus.EMBEDDINGS_GENERATED, result.getProcessingStatus());
+    verify(embeddingService, never()).generateEmbeddings(anyList());
+    verify(documentRepository, never()).save(any(Document.class));
+    verify(summarizationQueue).enqueue(1L);
+  }
+
+  @Test
+  void testProcessDocument_RelationshipFailureMarksFailed() throws Exception {
+    when(multipartFile.isEmpty()).thenReturn(false);
+    SpooledUpload upload = spooled("test.txt", 1024L, "hash");
+    when(textExtractionService.detectContentType(upload)).thenReturn("text/plain");
+    when(textExtractionService.isSupportedContentType("text/plain")).thenReturn(true);
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn("Sample text content");
+    when(documentRepository.save(any(Document.class))).thenAnswer(inv -> {
+      Document saved = inv.getArgument(0);
+      saved.setId(1L);
+      return saved;
+    });
+    DocumentChunk chunk = DocumentChunk.builder().id(1L).textContent("Sample text content")
+        .build();
+    when(splitter.finish(any(Document.class))).thenReturn(List.of(chunk));
+    when(documentChunkRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+    when(embeddingService.generateEmbeddings(anyList())).thenReturn(List.of(chunk));
+    when(documentRelationshipRepository.saveAll(anyList()))
+        .thenThrow(new IllegalStateException("Connection reset"));
+
+    IllegalStateException thrown = assertThrows(IllegalStateException.class,
+        () -> documentService.processDocument(multipartFile));
+
+    assertEquals("Connection reset", thrown.getMessage());
+    verify(documentRepository, never()).updateSummaryOfDuplicates(any(), any());
+    verify(summarizationQueue, never()).enqueue(any());
+    verify(statisticsService).recordStatusChange(Document.ProcessingStatus.EMBEDDINGS_GENERATED,
+        Document.ProcessingStatus.FAILED);
+  }
+
+  @Test
+  void testResumeProcessing_UploadedIsMarkedFailed() {
+    Document document = Document.builder().id(1L).contentHash("abc")
+        .processingStatus(Document.ProcessingStatus.UPLOADED).build();
+    when(documentRepository.findWithContentById(1L)).thenReturn(Optional.of(document));
+    when(documentRepository.save(any(Document.class))).thenAnswer(inv -> inv.getArgument(0));
+
+    Document result = documentService.resumeProcessing(1L);
+
+    assertEquals(Document.ProcessingStatus.FAILED, result.getProcessingStatus());
+    assertNull(result.getContentHash());
+    verify(summarizationQueue, never()).enqueue(1L);
+  }
+
+  private SpooledUpload spooled(String filename, long size, String contentHash) throws Exception {
+    SpooledUpload upload = new SpooledUpload(filename, size, contentHash, new byte[0],
+        new byte[0], null);
+    when(textExtractionService.spool(multipartFile)).thenReturn(upload);
+    return upload;
+  }
+
+  private static DocumentChunkRepository.ChunkFingerprint fingerprint(Long id, int chunkIndex,
+      int startPosition, int endPosition, String hash) {
+    return new DocumentChunkRepository.ChunkFingerprint() {
+      @Override
+      public Long getId() {
+        return id;
+      }
+
+      @Override
+      public Integer getChunkIndex() {
+        return chunkIndex;
+      }
+
+      @Override
+      public Integer getStartPosition() {
+        return startPosition;
+      }
+
+      @Override
+      public Integer getEndPosition() {
+        return endPosition;
+      }
+
+      @Override
+      public String getContentHash() {
+        return hash;
+      }
+
+      @Override
+      public String getTextContent() {
+        return null;
+      }
+    };
+  }
+
+  @Test
+  void testDuplicatePolicy_FromParameter() {
+    assertEquals(DocumentService.DuplicatePolicy.CLONE,
+        DocumentService.DuplicatePolicy.fromParameter("Clone"));
+    assertEquals(DocumentService.DuplicatePolicy.RETURN_EXISTING,
+        DocumentService.DuplicatePolicy.fromParameter("existing"));
+    assertThrows(IllegalArgumentException.class,
+        () -> DocumentService.DuplicatePolicy.fromParameter("merge"));
+  }
+
   @Test
   void testGetDocumentById_Found() {
     // Given
@@ -135,22 +706,138 @@ class DocumentServiceTest {
   }
 
   @Test
-  void testGetAllDocuments() {
+  void testListDocumentPage_ReturnsCursorWhenMoreRowsExist() {
+    // Given
+    LocalDateTime time = LocalDateTime.of(2024, 5, 1, 12, 0);
+    DocumentDto first = DocumentDto.builder().id(3L).uploadedAt(time).build();
+    DocumentDto second = DocumentDto.builder().id(2L).uploadedAt(time).build();
+    DocumentDto extra = DocumentDto.builder().id(1L).uploadedAt(time).build();
+    when(documentRepository.findPageBefore(any(LocalDateTime.class), eq(Long.MAX_VALUE),
+        eq(PageRequest.ofSize(3)))).thenReturn(List.of(first, second, extra));
+
+    // When
+    DocumentPageResponse page = documentService.listDocumentPage(null, null, 2,
+        Sort.Direction.DESC);
+
+    // Then
+    assertEquals(List.of(first, second), page.getDocuments());
+    assertTrue(page.isHasMore());
+    DocumentCursor next = DocumentCursor.decode(page.getNextCursor());
+    assertEquals(time, next.getUploadedAt());
+    assertEquals(2L, next.getId());
+  }
+
+  @Test
+  void testListDocumentPage_FilenameResumesAfterCursor() {
     // Given
-    Document doc1 = new Document();
-    doc1.setId(1L);
-    Document doc2 = new Document();
-    doc2.setId(2L);
-    List<Document> documents = Arrays.asList(doc1, doc2);
-    when(documentRepository.findAll()).thenReturn(documents);
+    LocalDateTime time = LocalDateTime.of(2024, 5, 1, 12, 0);
+    String cursor = DocumentCursor.of(time, 7L).encode();
+    DocumentDto dto = DocumentDto.builder().id(8L).filename("q1_100%.pdf").build();
+    when(documentRepository.findPageByFilenameAfter("%q1\\_100\\%%", time, 7L,
+        PageRequest.ofSize(51))).thenReturn(List.of(dto));
+
+    // When
+    DocumentPageResponse page = documentService.listDocumentPage("q1_100%", cursor, 50,
+        Sort.Direction.ASC);
+
+    // Then
+    assertEquals(List.of(dto), page.getDocuments());
+    assertFalse(page.isHasMore());
+    assertNull(page.getNextCursor());
+  }
+
+  @Test
+  void testListDocumentPage_DefaultsToLargestPageWithoutLimit() {
+    // Given
+    DocumentDto first = DocumentDto.builder().id(3L).build();
+    DocumentDto second = DocumentDto.builder().id(2L).build();
+    when(documentRepository.findPageBefore(any(LocalDateTime.class), eq(Long.MAX_VALUE),
+        eq(PageRequest.ofSize(201)))).thenReturn(List.of(first, second));
+
+    // When
+    DocumentPageResponse page = documentService.listDocumentPage(null, null, null,
+        Sort.Direction.DESC);
+
+    // Then
+    assertEquals(List.of(first, second), page.getDocuments());
+    assertFalse(page.isHasMore());
+    assertNull(page.getNextCursor());
+  }
+
+  @Test
+  void testListDocumentPage_CapsPageSize() {
+    when(documentRepository.findPageBefore(any(LocalDateTime.class), eq(Long.MAX_VALUE),
+        eq(PageRequest.ofSize(201)))).thenReturn(List.of());
+
+    DocumentPageResponse page = documentService.listDocumentPage("  ", null, 10_000,
+        Sort.Direction.DESC);
+
+    assertEquals(0L, page.getCount());
+  }
+
+  @Test
+  void testListDocumentPage_RejectsInvalidInput() {
+    assertThrows(IllegalArgumentException.class,
+        () -> documentService.listDocumentPage(null, null, 0, Sort.Direction.DESC));
+    assertThrows(IllegalArgumentException.class,
+        () -> documentService.listDocumentPage(null, "not a cursor", 10, Sort.Direction.DESC));
+  }
+
+  @Test
+  void testListSummarizedPage_QueriesSummarizedDocuments() {
+    DocumentDto dto = DocumentDto.builder().id(1L).summary("s").build();
+    when(documentRepository.findSummarizedPageBefore(any(LocalDateTime.class),
+        eq(Long.MAX_VALUE), eq(PageRequest.ofSize(11)))).thenReturn(List.of(dto));
+
+    DocumentPageResponse page = documentService.listSummarizedPage(null, 10,
+        Sort.Direction.DESC);
+
+    assertEquals(List.of(dto), page.getDocuments());
+    assertFalse(page.isHasMore());
+  }
+
+  @Test
+  void testForEachSummarized_WalksPagesUntilShortPage() {
+    // Given - a full page of 200 followed by a short page
+    LocalDateTime time = LocalDateTime.of(2024, 5, 1, 12, 0);
+    List<DocumentDto> full = new java.util.ArrayList<>();
+    for (long id = 1; id <= 200; id++) {
+      full.add(DocumentDto.builder().id(id).uploadedAt(time).build());
+    }
+    DocumentDto tail = DocumentDto.builder().id(201L).uploadedAt(time).build();
+    when(documentRepository.findSummarizedPageAfter(any(LocalDateTime.class), eq(0L),
+        eq(PageRequest.ofSize(200)))).thenReturn(full);
+    when(documentRepository.findSummarizedPageAfter(time, 200L, PageRequest.ofSize(200)))
+        .thenReturn(List.of(tail));
 
     // When
-    List<Document> result = documentService.getAllDocuments();
+    List<Long> seen = new java.util.ArrayList<>();
+    long count = documentService.forEachSummarized(dto -> seen.add(dto.getId()));
 
     // Then
-    assertEquals(2, result.size());
-    assertEquals(1L, result.get(0).getId());
-    assertEquals(2L, result.get(1).getId());
+    assertEquals(201L, count);
+    assertEquals(201L, seen.get(seen.size() - 1));
+  }
+
+  @Test
+  void testEscapeLikePattern() {
+    assertEquals("a\\\\b\\%c\\_d", DocumentService.escapeLikePattern("a\\b%c_d"));
+  }
+
+  @Test
+  void testGetStatusCounts_DelegatesToStatistics() {
+    Map<Document.ProcessingStatus, Long> counts = Map.of(Document.ProcessingStatus.COMPLETED, 3L);
+    when(statisticsService.getStatusCounts()).thenReturn(counts);
+
+    assertEquals(counts, documentService.getStatusCounts());
+  }
+
+  @Test
+  void testGetExtractionStats_DelegatesToExtraction() {
+    ExtractionStats stats = ExtractionStats.builder().mode("fork").timedOut(2L).build();
+    when(textExtractionService.getParserStats()).thenReturn(stats);
+
+    assertEquals(stats, documentService.getExtractionStats());
   }
 
   @Test
@@ -202,6 +889,7 @@ class DocumentServiceTest {
     // New implementation uses native queries to avoid loading entities with
     // embeddings
     when(documentRelationshipRepository.deleteByDocumentIdNative(1L)).thenReturn(1);
+    when(documentChunkRepository.countEmbeddedByDocumentId(1L)).thenReturn(1L);
     when(documentChunkRepository.deleteByDocumentIdNative(1L)).thenReturn(2);
     doNothing().when(documentRepository).delete(any(Document.class));
 
@@ -213,6 +901,45 @@ class DocumentServiceTest {
     verify(documentRelationshipRepository).deleteByDocumentIdNative(1L);
     verify(documentChunkRepository).deleteByDocumentIdNative(1L);
     verify(documentRepository).delete(document);
+    // Only the chunk that had an embedding lowers the embedded count
+    verify(statisticsService).recordChunksRemoved(2, 1);
+    verify(statisticsService).recordStatusChange(document.getProcessingStatus(), null);
+  }
+
+  @Test
+  void testDeleteDocument_PromotesOldestClone() {
+    // Given - document 1 was cloned as 2 and 3
+    Document original = new Document();
+    original.setId(1L);
+    original.setContentHash("abc");
+    original.setExtractedText("text");
+    Document heir = Document.builder().id(2L).duplicateOf(original).build();
+    Document other = Document.builder().id(3L).duplicateOf(original).build();
+    when(documentRepository.findById(1L)).thenReturn(Optional.of(original));
+    when(documentRepository.findByDuplicateOfIdOrderByIdAsc(1L))
+        .thenReturn(List.of(heir, other));
+
+    // When
+    documentService.deleteDocument(1L);
+
+    // Then - the heir owns the chunks, content and hash; nothing is deleted but the original
+    assertNull(heir.getDuplicateOf());
+    assertEquals("abc", heir.getContentHash());
+    assertEquals("text", heir.getExtractedText());
+    assertNull(original.getContentHash());
+    verify(documentChunkRepository).reassignDocumentNative(1L, 2L);
+    verify(documentRepository).reassignDuplicatesNative(1L, 2L);
+    verify(documentChunkRepository, never()).deleteByDocumentIdNative(1L);
+    verify(documentRepository).delete(original);
+  }
+
+  @Test
+  void testGetDocumentChunks_CloneReadsOriginalChunks() {
+    when(documentRepository.findChunkOwnerId(2L)).thenReturn(Optional.of(1L));
+    List<DocumentChunk> chunks = List.of(DocumentChunk.builder().id(5L).build());
+    when(chunkingService.getChunksForDocument(1L)).thenReturn(chunks);
+
+    assertEquals(chunks, documentService.getDocumentChunks(2L));
   }
 
   @Test
@@ -313,36 +1040,76 @@ class DocumentServiceTest {
   @Test
   void testProcessDocument_TextExtractionFails() throws Exception {
     when(multipartFile.isEmpty()).thenReturn(false);
-    when(multipartFile.getOriginalFilename()).thenReturn("test.pdf");
-    when(multipartFile.getSize()).thenReturn(1024L);
-    when(textExtractionService.detectContentType(multipartFile)).thenReturn("application/pdf");
+    SpooledUpload upload = spooled("test.pdf", 1024L, "hash");
+    when(textExtractionService.detectContentType(upload)).thenReturn("application/pdf");
     when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
-    when(textExtractionService.extractText(multipartFile)).thenReturn("");
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn("");
 
     Document savedDocument = new Document();
     savedDocument.setId(1L);
+    savedDocument.setContentHash("abc");
     when(documentRepository.save(any(Document.class))).thenReturn(savedDocument);
 
     // When & Then - should throw RuntimeException
     assertThrows(RuntimeException.class, () -> {
       documentService.processDocument(multipartFile);
     });
+
+    // The failed document is cleaned up and marked FAILED in its own transaction
+    verify(documentRelationshipRepository).deleteByDocumentIdNative(1L);
+    verify(documentChunkRepository).deleteByDocumentIdNative(1L);
+    verify(transactionManager).commit(any());
+    assertEquals(Document.ProcessingStatus.FAILED, savedDocument.getProcessingStatus());
+    // The same bytes are processed again if re-uploaded
+    assertNull(savedDocument.getContentHash());
+  }
+
+  @Test
+  void testProcessDocument_EmbeddingFailureCountsOnlyEmbeddedChunks() throws Exception {
+    when(multipartFile.isEmpty()).thenReturn(false);
+    SpooledUpload upload = spooled("test.txt", 1024L, "hash");
+    when(textExtractionService.detectContentType(upload)).thenReturn("text/plain");
+    when(textExtractionService.isSupportedContentType("text/plain")).thenReturn(true);
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn("Sample text content");
+    when(documentRepository.save(any(Document.class))).thenAnswer(inv -> {
+      Document saved = inv.getArgument(0);
+      saved.setId(1L);
+      return saved;
+    });
+    DocumentChunk chunk = DocumentChunk.builder().id(1L).textContent("Sample text content")
+        .build();
+    when(splitter.finish(any(Document.class))).thenReturn(List.of(chunk));
+    when(documentChunkRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+    when(embeddingService.generateEmbeddings(anyList()))
+        .thenThrow(new IllegalStateException("Interrupted while generating embeddings"));
+    when(documentChunkRepository.deleteByDocumentIdNative(1L)).thenReturn(1);
+
+    assertThrows(IllegalStateException.class,
+        () -> documentService.processDocument(multipartFile));
+
+    // The stored chunk was never embedded, so the embedded count is left alone
+    verify(documentChunkRepository).countEmbeddedByDocumentId(1L);
+    verify(statisticsService).recordChunksRemoved(1, 0);
+    verify(statisticsService).recordStatusChange(Document.ProcessingStatus.CHUNKED,
+        Document.ProcessingStatus.FAILED);
   }
 
   @Test
   void testProcessDocument_EmptyChunks() throws Exception {
     // Given - chunking returns empty list
     when(multipartFile.isEmpty()).thenReturn(false);
-    when(multipartFile.getOriginalFilename()).thenReturn("test.pdf");
-    when(multipartFile.getSize()).thenReturn(1024L);
-    when(textExtractionService.detectContentType(multipartFile)).thenReturn("application/pdf");
+    SpooledUpload upload = spooled("test.pdf", 1024L, "hash");
+    when(textExtractionService.detectContentType(upload)).thenReturn("application/pdf");
     when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
-    when(textExtractionService.extractText(multipartFile)).thenReturn("Sample text");
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn("Sample text");
 
     Document savedDocument = new Document();
     savedDocument.setId(1L);
     when(documentRepository.save(any(Document.class))).thenReturn(savedDocument);
-    when(chunkingService.chunkDocument(any(Document.class))).thenReturn(Collections.emptyList());
+    when(splitter.finish(any(Document.class))).thenReturn(Collections.emptyList());
 
     // When & Then - should throw RuntimeException
     assertThrows(RuntimeException.class, () -> {
@@ -353,16 +1120,16 @@ class DocumentServiceTest {
   @Test
   void testProcessDocument_ChunkingFails() throws Exception {
     when(multipartFile.isEmpty()).thenReturn(false);
-    when(multipartFile.getOriginalFilename()).thenReturn("test.pdf");
-    when(multipartFile.getSize()).thenReturn(1024L);
-    when(textExtractionService.detectContentType(multipartFile)).thenReturn("application/pdf");
+    SpooledUpload upload = spooled("test.pdf", 1024L, "hash");
+    when(textExtractionService.detectContentType(upload)).thenReturn("application/pdf");
     when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
-    when(textExtractionService.extractText(multipartFile)).thenReturn("Sample text content");
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn("Sample text content");
 
     Document savedDocument = new Document();
     savedDocument.setId(1L);
     when(documentRepository.save(any(Document.class))).thenReturn(savedDocument);
-    when(chunkingService.chunkDocument(any(Document.class))).thenReturn(List.of());
+    when(splitter.finish(any(Document.class))).thenReturn(List.of());
 
     assertThrows(RuntimeException.class, () -> {
       documentService.processDocument(multipartFile);
@@ -381,11 +1148,11 @@ class DocumentServiceTest {
   @Test
   void testGenerateSummary_EmptyText() throws Exception {
     when(multipartFile.isEmpty()).thenReturn(false);
-    when(multipartFile.getOriginalFilename()).thenReturn("test.pdf");
-    when(multipartFile.getSize()).thenReturn(1024L);
-    when(textExtractionService.detectContentType(multipartFile)).thenReturn("application/pdf");
+    SpooledUpload upload = spooled("test.pdf", 1024L, "hash");
+    when(textExtractionService.detectContentType(upload)).thenReturn("application/pdf");
     when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
-    when(textExtractionService.extractText(multipartFile)).thenReturn("   ");
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn("   ");
 
     Document savedDocument = new Document();
     savedDocument.setId(1L);
@@ -399,26 +1166,30 @@ class DocumentServiceTest {
   @Test
   void testGenerateSummary_ShortText() throws Exception {
     when(multipartFile.isEmpty()).thenReturn(false);
-    when(multipartFile.getOriginalFilename()).thenReturn("test.pdf");
-    when(multipartFile.getSize()).thenReturn(1024L);
-    when(textExtractionService.detectContentType(multipartFile)).thenReturn("application/pdf");
+    SpooledUpload upload = spooled("test.pdf", 1024L, "hash");
+    when(textExtractionService.detectContentType(upload)).thenReturn("application/pdf");
     when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
-    when(textExtractionService.extractText(multipartFile)).thenReturn("Short text");
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn("Short text");
 
     Document savedDocument = new Document();
     savedDocument.setId(1L);
     when(documentRepository.save(any(Document.class))).thenReturn(savedDocument);
 
     DocumentChunk chunk = new DocumentChunk();
-    when(chunkingService.chunkDocument(any(Document.class))).thenReturn(Arrays.asList(chunk));
+    when(splitter.finish(any(Document.class))).thenReturn(Arrays.asList(chunk));
     when(embeddingService.generateEmbeddings(anyList())).thenReturn(Arrays.asList(chunk));
 
+    when(summarizationService.extractiveSummary(1L, "Short text")).thenReturn("Short text");
+    when(summarizationService.isLlmUpgradeEnabled()).thenReturn(true);
+
     // When
     Document result = documentService.processDocument(multipartFile);
 
-    // Then - summary should be the cleaned text (no truncation for short text)
-    assertNotNull(result.getSummary());
-    assertTrue(result.getSummary().contains("Short text"));
+    // Then - the extractive summary is kept until the queue replaces it by an LLM summary
+    assertEquals("Short text", result.getSummary());
+    assertEquals(Document.ProcessingStatus.SUMMARIZED, result.getProcessingStatus());
+    verify(summarizationQueue).enqueue(1L);
   }
 
   @Test
@@ -427,11 +1198,11 @@ class DocumentServiceTest {
     String longText = "a".repeat(100) + ". " + "b".repeat(100);
 
     when(multipartFile.isEmpty()).thenReturn(false);
-    when(multipartFile.getOriginalFilename()).thenReturn("test.pdf");
-    when(multipartFile.getSize()).thenReturn(1024L);
-    when(textExtractionService.detectContentType(multipartFile)).thenReturn("application/pdf");
+    SpooledUpload upload = spooled("test.pdf", 1024L, "hash");
+    when(textExtractionService.detectContentType(upload)).thenReturn("application/pdf");
     when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
-    when(textExtractionService.extractText(multipartFile)).thenReturn(longText);
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn(longText);
 
     Document savedDocument = new Document();
     savedDocument.setId(1L);
@@ -441,7 +1212,7 @@ class DocumentServiceTest {
         .id(1L)
         .textContent(longText)
         .build();
-    when(chunkingService.chunkDocument(any(Document.class))).thenReturn(List.of(chunk));
+    when(splitter.finish(any(Document.class))).thenReturn(List.of(chunk));
     when(embeddingService.generateEmbeddings(anyList())).thenReturn(List.of(chunk));
 
     Document result = documentService.processDocument(multipartFile);
@@ -455,11 +1226,11 @@ class DocumentServiceTest {
         + " sentence boundary because there is no suitable break point";
 
     when(multipartFile.isEmpty()).thenReturn(false);
-    when(multipartFile.getOriginalFilename()).thenReturn("test.pdf");
-    when(multipartFile.getSize()).thenReturn(1024L);
-    when(textExtractionService.detectContentType(multipartFile)).thenReturn("application/pdf");
+    SpooledUpload upload = spooled("test.pdf", 1024L, "hash");
+    when(textExtractionService.detectContentType(upload)).thenReturn("application/pdf");
     when(textExtractionService.isSupportedContentType("application/pdf")).thenReturn(true);
-    when(textExtractionService.extractText(multipartFile)).thenReturn(longText);
+    when(chunkingService.openSplitter(any())).thenReturn(splitter);
+    when(textExtractionService.extractText(upload, splitter)).thenReturn(longText);
 
     Document savedDocument = new Document();
     savedDocument.setId(1L);
@@ -469,7 +1240,7 @@ class DocumentServiceTest {
         .id(1L)
         .textContent(longText)
         .build();
-    when(chunkingService.chunkDocument(any(Document.class))).thenReturn(List.of(chunk));
+    when(splitter.finish(any(Document.class))).thenReturn(List.of(chunk));
     when(embeddingService.generateEmbeddings(anyList())).thenReturn(List.of(chunk));
 
     Document result = documentService.processDocument(multipartFile);
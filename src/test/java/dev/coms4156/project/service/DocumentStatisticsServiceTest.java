@@ -0,0 +1,117 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.coms4156.project.model.Document.ProcessingStatus;
+import dev.coms4156.project.repository.DocumentChunkRepository;
+import dev.coms4156.project.repository.DocumentRepository;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentStatisticsServiceTest {
+
+  @Mock
+  private DocumentRepository documentRepository;
+
+  @Mock
+  private DocumentChunkRepository documentChunkRepository;
+
+  private DocumentStatisticsService statisticsService;
+
+  @BeforeEach
+  void setUp() {
+    statisticsService =
+        new DocumentStatisticsService(documentRepository, documentChunkRepository, 300000);
+  }
+
+  @Test
+  void testGetStatusCounts_SeedsFromGroupedQueryOnce() {
+    when(documentRepository.countGroupedByProcessingStatus()).thenReturn(List.of(
+        new Object[] {ProcessingStatus.COMPLETED, 3L},
+        new Object[] {ProcessingStatus.FAILED, 1L}));
+
+    Map<ProcessingStatus, Long> counts = statisticsService.getStatusCounts();
+    statisticsService.getStatusCounts();
+
+    assertEquals(3L, counts.get(ProcessingStatus.COMPLETED));
+    assertEquals(1L, counts.get(ProcessingStatus.FAILED));
+    assertEquals(0L, counts.get(ProcessingStatus.UPLOADED));
+    verify(documentRepository, times(1)).countGroupedByProcessingStatus();
+  }
+
+  @Test
+  void testRecordStatusChange_UpdatesCountsInMemory() {
+    when(documentRepository.countGroupedByProcessingStatus()).thenReturn(List.of());
+    statisticsService.getStatusCounts();
+
+    statisticsService.recordStatusChange(null, ProcessingStatus.UPLOADED);
+    statisticsService.recordStatusChange(ProcessingStatus.UPLOADED,
+        ProcessingStatus.TEXT_EXTRACTED);
+    statisticsService.recordStatusChange(null, ProcessingStatus.UPLOADED);
+    statisticsService.recordStatusChange(ProcessingStatus.UPLOADED, null);
+
+    Map<ProcessingStatus, Long> counts = statisticsService.getStatusCounts();
+    assertEquals(0L, counts.get(ProcessingStatus.UPLOADED));
+    assertEquals(1L, counts.get(ProcessingStatus.TEXT_EXTRACTED));
+    verify(documentRepository, times(1)).countGroupedByProcessingStatus();
+  }
+
+  @Test
+  void testRecordStatusChange_DeferredUntilCommit() {
+    when(documentRepository.countGroupedByProcessingStatus()).thenReturn(List.of());
+    statisticsService.getStatusCounts();
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      statisticsService.recordStatusChange(null, ProcessingStatus.UPLOADED);
+      assertEquals(0L, statisticsService.getStatusCounts().get(ProcessingStatus.UPLOADED));
+
+      for (TransactionSynchronization sync :
+          TransactionSynchronizationManager.getSynchronizations()) {
+        sync.afterCommit();
+      }
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    assertEquals(1L, statisticsService.getStatusCounts().get(ProcessingStatus.UPLOADED));
+  }
+
+  @Test
+  void testGetStatusCounts_ReseedsWhenStale() {
+    DocumentStatisticsService alwaysStale =
+        new DocumentStatisticsService(documentRepository, documentChunkRepository, 0);
+    when(documentRepository.countGroupedByProcessingStatus()).thenReturn(List.of());
+
+    alwaysStale.getStatusCounts();
+    alwaysStale.getStatusCounts();
+
+    verify(documentRepository, times(2)).countGroupedByProcessingStatus();
+  }
+
+  @Test
+  void testChunkCounts_SeededAndUpdated() {
+    when(documentChunkRepository.count()).thenReturn(10L);
+    when(documentChunkRepository.countByEmbeddingIsNotNull()).thenReturn(8L);
+
+    assertEquals(10L, statisticsService.getTotalChunks());
+
+    statisticsService.recordChunksAdded(5, 5);
+    statisticsService.recordChunksRemoved(3, 3);
+
+    assertEquals(12L, statisticsService.getTotalChunks());
+    assertEquals(10L, statisticsService.getChunksWithEmbeddings());
+    verify(documentChunkRepository, times(1)).count();
+  }
+}
@@ -1,21 +1,30 @@
 package dev.coms4156.project.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import dev.coms4156.project.model.Document;
+import dev.coms4156.project.repository.ChunkEmbeddingRepository;
+import dev.coms4156.project.repository.DocumentChunkRepository;
 import dev.coms4156.project.repository.DocumentRepository;
+import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.chat.client.ChatClient;
@@ -26,14 +35,49 @@ class DocumentSummarizationServiceTest {
   @Mock
   private DocumentRepository documentRepository;
 
+  @Mock
+  private DocumentChunkRepository documentChunkRepository;
+
+  @Mock
+  private ChunkEmbeddingRepository chunkEmbeddingRepository;
+
   private DocumentSummarizationService summarizationService;
 
   @Mock
   private ChatClient chatClient;
 
+  @Mock
+  private DocumentStatisticsService statisticsService;
+
   @BeforeEach
   void setUp() {
-    summarizationService = new DocumentSummarizationService(documentRepository, chatClient);
+    summarizationService = new DocumentSummarizationService(documentRepository,
+        documentChunkRepository, new ChunkEmbeddingStore(chunkEmbeddingRepository, 1000, 0.01),
+        chatClient, new ExtractiveSummarizationService(500, 200),
+        statisticsService, new ApproximateTokenCounter(), false, 3000);
+  }
+
+  @Test
+  void testGenerateAiSummary_CutsTextToPromptBudget() {
+    DocumentSummarizationService limited = new DocumentSummarizationService(documentRepository,
+        documentChunkRepository, new ChunkEmbeddingStore(chunkEmbeddingRepository, 1000, 0.01),
+        chatClient, new ExtractiveSummarizationService(500, 200),
+        statisticsService, new ApproximateTokenCounter(), false, 10);
+    ChatClient.ChatClientRequestSpec requestSpec = mock(ChatClient.ChatClientRequestSpec.class);
+    ChatClient.CallResponseSpec responseSpec = mock(ChatClient.CallResponseSpec.class);
+    when(chatClient.prompt()).thenReturn(requestSpec);
+    when(requestSpec.user(anyString())).thenReturn(requestSpec);
+    when(requestSpec.call()).thenReturn(responseSpec);
+    when(responseSpec.content()).thenReturn("Summary");
+
+    String result = limited.generateAiSummary("one two three four five six seven eight nine "
+        + "ten eleven twelve thirteen fourteen");
+
+    assertEquals("Summary", result);
+    ArgumentCaptor<String> prompt = ArgumentCaptor.forClass(String.class);
+    verify(requestSpec).user(prompt.capture());
+    assertTrue(prompt.getValue().contains(": one two three four five six seven eight nine ten"));
+    assertFalse(prompt.getValue().contains("eleven"));
   }
 
   @Test
@@ -300,4 +344,101 @@ class DocumentSummarizationServiceTest {
     });
   }
 
+  @Test
+  void testSummarizeDocument_StoresSummaryAndCompletes() {
+    Document document = new Document();
+    document.setId(1L);
+    document.setExtractedText("Short text");
+    document.setProcessingStatus(Document.ProcessingStatus.EMBEDDINGS_GENERATED);
+    when(documentRepository.findWithContentById(1L)).thenReturn(Optional.of(document));
+    when(documentChunkRepository.findChunksWithEmbeddingsByDocumentId(1L)).thenReturn(List.of());
+    when(documentRepository.updateSummaryIfCurrent(eq(1L), eq(1), any(), eq("Short text"),
+        any())).thenReturn(1);
+
+    String result = summarizationService.summarizeDocument(1L);
+
+    assertEquals("Short text", result);
+    verify(documentRepository).updateSummaryIfCurrent(1L, 1,
+        List.of(Document.ProcessingStatus.EMBEDDINGS_GENERATED,
+            Document.ProcessingStatus.SUMMARIZED),
+        "Short text", Document.ProcessingStatus.SUMMARIZED);
+    verify(documentRepository).updateSummaryIfCurrent(1L, 1,
+        List.of(Document.ProcessingStatus.SUMMARIZED), "Short text",
+        Document.ProcessingStatus.COMPLETED);
+    verify(documentRepository, never()).save(any(Document.class));
+    verify(chatClient, never()).prompt();
+    verify(statisticsService).recordStatusChange(
+        Document.ProcessingStatus.EMBEDDINGS_GENERATED, Document.ProcessingStatus.SUMMARIZED);
+    verify(statisticsService).recordStatusChange(Document.ProcessingStatus.SUMMARIZED,
+        Document.ProcessingStatus.COMPLETED);
+    verify(documentRepository).updateSummaryOfDuplicates(1L, "Short text");
+  }
+
+  @Test
+  void testSummarizeDocument_KeepsSummaryStoredDuringIngestion() {
+    Document document = new Document();
+    document.setId(1L);
+    document.setExtractedText("Short text");
+    document.setSummary("Stored summary");
+    document.setRevision(2);
+    document.setProcessingStatus(Document.ProcessingStatus.SUMMARIZED);
+    when(documentRepository.findWithContentById(1L)).thenReturn(Optional.of(document));
+    when(documentRepository.updateSummaryIfCurrent(1L, 2,
+        List.of(Document.ProcessingStatus.SUMMARIZED), "Stored summary",
+        Document.ProcessingStatus.COMPLETED)).thenReturn(1);
+
+    String result = summarizationService.summarizeDocument(1L);
+
+    assertEquals("Stored summary", result);
+    verify(documentChunkRepository, never()).findChunksWithEmbeddingsByDocumentId(1L);
+    verify(statisticsService, never()).recordStatusChange(
+        Document.ProcessingStatus.SUMMARIZED, Document.ProcessingStatus.SUMMARIZED);
+  }
+
+  @Test
+  void testSummarizeDocument_DiscardsSummaryOfRevisedDocument() {
+    Document document = new Document();
+    document.setId(1L);
+    document.setExtractedText("Short text");
+    document.setSummary("Stored summary");
+    document.setProcessingStatus(Document.ProcessingStatus.SUMMARIZED);
+    when(documentRepository.findWithContentById(1L)).thenReturn(Optional.of(document));
+    // A new version was stored while the summary was being made
+    when(documentRepository.updateSummaryIfCurrent(1L, 1,
+        List.of(Document.ProcessingStatus.SUMMARIZED), "Stored summary",
+        Document.ProcessingStatus.COMPLETED)).thenReturn(0);
+
+    String result = summarizationService.summarizeDocument(1L);
+
+    assertNull(result);
+    verify(statisticsService, never()).recordStatusChange(any(), any());
+    verify(documentRepository, never()).updateSummaryOfDuplicates(any(), any());
+    verify(documentRepository, never()).save(any(Document.class));
+  }
+
+  @Test
+  void testSummarizeDocument_SkipsDocumentNoLongerWaiting() {
+    Document document = new Document();
+    document.setId(1L);
+    document.setProcessingStatus(Document.ProcessingStatus.FAILED);
+    when(documentRepository.findWithContentById(1L)).thenReturn(Optional.of(document));
+
+    String result = summarizationService.summarizeDocument(1L);
+
+    assertNull(result);
+    verify(documentRepository, never()).updateSummaryIfCurrent(any(), anyInt(),
+        any(), any(), any());
+    verify(documentChunkRepository, never()).findChunksWithEmbeddingsByDocumentId(1L);
+  }
+
+  @Test
+  void testSummarizeDocument_DocumentDeleted() {
+    when(documentRepository.findWithContentById(1L)).thenReturn(Optional.empty());
+
+    String result = summarizationService.summarizeDocument(1L);
+
+    assertNull(result);
+    verify(documentRepository, never()).save(any(Document.class));
+  }
+
 }
@@ -5,11 +5,14 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import org.apache.tika.exception.TikaException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -42,6 +45,84 @@ class DocumentTextExtractionServiceTest {
     });
   }
 
+  @Test
+  void testSpool_SmallUploadStaysInMemoryAndIsHashed() throws IOException {
+    when(multipartFile.getInputStream())
+        .thenReturn(new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)));
+
+    try (SpooledUpload upload = textExtractionService.spool(multipartFile)) {
+      assertTrue(upload.isInMemory());
+      assertEquals(3L, upload.getSize());
+      assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+          upload.getContentHash());
+    }
+  }
+
+  @Test
+  void testSpool_LargeUploadIsReadOnceAndParsedFromDisk() throws Exception {
+    TikaParserPool pool = new TikaParserPool("in-process", 1, 0L, "");
+    DocumentTextExtractionService smallThreshold = new DocumentTextExtractionService(pool,
+        new ParallelPdfExtractor(pool, 0, 1), 16, "", 0L);
+    String text = "Spooled text that is longer than the sixteen byte threshold.";
+    when(multipartFile.getOriginalFilename()).thenReturn("spooled.txt");
+    when(multipartFile.getInputStream())
+        .thenReturn(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+
+    SpooledUpload upload = smallThreshold.spool(multipartFile);
+    try (upload) {
+      assertFalse(upload.isInMemory());
+      assertEquals(text.length(), upload.getHead().length);
+      assertEquals("text/plain", smallThreshold.detectContentType(upload));
+      assertEquals(text, smallThreshold.extractText(upload));
+    }
+    verify(multipartFile, times(1)).getInputStream();
+  }
+
+  @Test
+  void testExtractText_StreamsToSinkWithoutTruncating() throws Exception {
+    // Longer than the 100,000 characters Tika#parseToString stops at
+    String text = "Streamed line of text.\n".repeat(10_000);
+    when(multipartFile.getOriginalFilename()).thenReturn("long.txt");
+    when(multipartFile.getInputStream())
+        .thenReturn(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    StringBuilder sink = new StringBuilder();
+
+    try (SpooledUpload upload = textExtractionService.spool(multipartFile)) {
+      String result = textExtractionService.extractText(upload, sink);
+
+      assertEquals(text.trim(), result);
+      assertEquals(result, sink.toString());
+    }
+  }
+
+  @Test
+  void testExtractText_FailsInsteadOfTruncatingPastMaxLength() throws Exception {
+    TikaParserPool pool = new TikaParserPool("in-process", 1, 0L, "");
+    DocumentTextExtractionService limited = new DocumentTextExtractionService(pool,
+        new ParallelPdfExtractor(pool, 0, 1), 262144, "", 100L);
+    when(multipartFile.getOriginalFilename()).thenReturn("long.txt");
+    when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(
+        "Too long. ".repeat(50).getBytes(StandardCharsets.UTF_8)));
+
+    try (SpooledUpload upload = limited.spool(multipartFile)) {
+      TikaException e = assertThrows(TikaException.class, () -> limited.extractText(upload));
+      assertTrue(e.getMessage().contains("exceeds 100 characters"));
+    }
+    assertEquals(1L, limited.getParserStats().getFailed());
+  }
+
+  @Test
+  void testNormalizingTextHandler_NormalizesAcrossCalls() throws Exception {
+    StringBuilder sink = new StringBuilder();
+    NormalizingTextHandler handler = new NormalizingTextHandler(sink);
+
+    for (String piece : new String[] {"  \n Hello \t", "  world\r", "\n\r\n\n", "\nBye  \n"}) {
+      handler.characters(piece.toCharArray(), 0, piece.length());
+    }
+
+    assertEquals("Hello world\n\nBye", sink.toString());
+  }
+
   // Invalid equivalence partition - null multipart file
   @Test
   void testExtractText_NullFile() {
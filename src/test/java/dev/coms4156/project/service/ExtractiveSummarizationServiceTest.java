@@ -0,0 +1,97 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.coms4156.project.model.DocumentChunk;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ExtractiveSummarizationServiceTest {
+
+  private static final String TEXT =
+      "Alpha sentence one. Beta sentence two. Gamma sentence three.";
+
+  private ExtractiveSummarizationService summarizationService;
+
+  @BeforeEach
+  void setUp() {
+    summarizationService = new ExtractiveSummarizationService(500, 200);
+  }
+
+  private List<DocumentChunk> chunks() {
+    return List.of(
+        chunk(0, 0, 20, new float[] {1f, 0f, 0f}),
+        chunk(1, 20, 39, new float[] {1f, 1f, 0f}),
+        chunk(2, 39, TEXT.length(), new float[] {0f, 1f, 0f}));
+  }
+
+  private DocumentChunk chunk(int index, int start, int end, float[] embedding) {
+    return DocumentChunk.builder()
+        .chunkIndex(index)
+        .startPosition(start)
+        .endPosition(end)
+        .textContent(TEXT.substring(start, end).trim())
+        .embedding(embedding)
+        .build();
+  }
+
+  @Test
+  void testSummarize_NullText() {
+    assertEquals("No summary available", summarizationService.summarize(null, List.of()));
+  }
+
+  @Test
+  void testSummarize_NoEmbeddingsFallsBackToLeadSentences() {
+    String result = summarizationService.summarize("Short text", List.of(new DocumentChunk()));
+
+    assertEquals("Short text", result);
+  }
+
+  @Test
+  void testSummarize_LongTextWithoutEmbeddingsStaysWithinLimit() {
+    String longText = "This is a very long document. ".repeat(100);
+
+    String result = summarizationService.summarize(longText, null);
+
+    assertTrue(result.length() <= 500);
+    assertTrue(result.endsWith("."));
+  }
+
+  @Test
+  void testRank_CentralChunkScoresHighest() {
+    double[] scores = summarizationService.rank(chunks());
+
+    assertTrue(scores[1] > scores[0]);
+    assertTrue(scores[1] > scores[2]);
+  }
+
+  @Test
+  void testSummarize_PicksMostCentralSentenceWithinBudget() {
+    ExtractiveSummarizationService shortSummaries = new ExtractiveSummarizationService(20, 200);
+
+    String result = shortSummaries.summarize(TEXT, chunks());
+
+    assertEquals("Beta sentence two.", result);
+  }
+
+  @Test
+  void testSummarize_EmitsSentencesInDocumentOrder() {
+    String result = summarizationService.summarize(TEXT, chunks());
+
+    assertEquals(TEXT, result);
+  }
+
+  @Test
+  void testSummarize_SkipsFragmentAtChunkStart() {
+    // The second chunk starts mid-sentence, so its leading fragment is not used
+    List<DocumentChunk> chunks = List.of(
+        chunk(0, 0, 20, new float[] {1f, 0f}),
+        chunk(1, 25, TEXT.length(), new float[] {1f, 0.1f}));
+
+    String result = summarizationService.summarize(TEXT, chunks);
+
+    assertEquals("Alpha sentence one. Gamma sentence three.", result);
+  }
+}
@@ -0,0 +1,78 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class IngestionAdmissionServiceTest {
+
+  @Test
+  void testAdmit_QueuedUploadStartsWhenSlotFrees() throws Exception {
+    IngestionAdmissionService admission = new IngestionAdmissionService(1, 1000L, 1, 5000L);
+    IngestionAdmissionService.Permit first = admission.admit(100L);
+
+    CompletableFuture<IngestionAdmissionService.Permit> second =
+        CompletableFuture.supplyAsync(() -> admission.admit(100L));
+    while (admission.getQueued() == 0) {
+      Thread.onSpinWait();
+    }
+    first.close();
+
+    try (IngestionAdmissionService.Permit permit = second.get(5, TimeUnit.SECONDS)) {
+      assertEquals(1, admission.getInFlight());
+      assertEquals(0, admission.getQueued());
+    }
+    assertEquals(0, admission.getInFlight());
+  }
+
+  @Test
+  void testAdmit_RejectsWhenQueueIsFull() {
+    IngestionAdmissionService admission = new IngestionAdmissionService(1, 1000L, 0, 5000L);
+
+    try (IngestionAdmissionService.Permit permit = admission.admit(100L)) {
+      IngestionRejectedException e =
+          assertThrows(IngestionRejectedException.class, () -> admission.admit(100L));
+      assertTrue(e.getRetryAfterSeconds() >= 1);
+    }
+  }
+
+  @Test
+  void testAdmit_LimitsInFlightBytes() {
+    IngestionAdmissionService admission = new IngestionAdmissionService(4, 1000L, 0, 5000L);
+
+    // A single upload over the byte limit still runs on its own
+    try (IngestionAdmissionService.Permit large = admission.admit(5000L)) {
+      assertThrows(IngestionRejectedException.class, () -> admission.admit(1L));
+    }
+    try (IngestionAdmissionService.Permit first = admission.admit(600L);
+        IngestionAdmissionService.Permit second = admission.admit(400L)) {
+      assertEquals(2, admission.getInFlight());
+      assertThrows(IngestionRejectedException.class, () -> admission.admit(1L));
+    }
+  }
+
+  @Test
+  void testAdmit_QueuedUploadTimesOut() {
+    IngestionAdmissionService admission = new IngestionAdmissionService(1, 1000L, 1, 50L);
+
+    try (IngestionAdmissionService.Permit permit = admission.admit(100L)) {
+      assertThrows(IngestionRejectedException.class, () -> admission.admit(100L));
+      assertEquals(0, admission.getQueued());
+    }
+  }
+
+  @Test
+  void testPermit_CloseIsIdempotent() {
+    IngestionAdmissionService admission = new IngestionAdmissionService(1, 1000L, 0, 0L);
+
+    IngestionAdmissionService.Permit permit = admission.admit(100L);
+    permit.close();
+    permit.close();
+
+    assertEquals(0, admission.getInFlight());
+  }
+}
@@ -0,0 +1,64 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class MinHasherTest {
+
+  private final MinHasher hasher = new MinHasher(256, 3);
+
+  @Test
+  void testSignature_IgnoresCaseAndPunctuation() {
+    assertArrayEquals(hasher.signature("The report, dated May 1st: final."),
+        hasher.signature("the REPORT dated\n\nmay 1ST -- final"));
+    assertEquals(256, hasher.signature("one").length);
+    assertEquals(0, hasher.signature(" ... ").length);
+  }
+
+  @Test
+  void testSimilarity_EstimatesJaccardOfShingles() {
+    Random random = new Random(5);
+    List<String> words = new ArrayList<>();
+    for (int i = 0; i < 600; i++) {
+      words.add("w" + random.nextInt(400));
+    }
+    List<String> edited = new ArrayList<>(words);
+    for (int i = 0; i < 60; i++) {
+      edited.set(random.nextInt(edited.size()), "x" + i);
+    }
+
+    double estimate = MinHasher.similarity(hasher.signature(String.join(" ", words)),
+        hasher.signature(String.join(" ", edited)));
+
+    double exact = jaccard(shingles(words), shingles(edited));
+    assertTrue(Math.abs(estimate - exact) < 0.1, estimate + " vs " + exact);
+    assertEquals(1.0, MinHasher.similarity(hasher.signature("a b c d"),
+        hasher.signature("a b c d")));
+    assertTrue(MinHasher.similarity(hasher.signature("a b c d e f"),
+        hasher.signature("u v w x y z")) < 0.05);
+  }
+
+  private static Set<String> shingles(List<String> words) {
+    Set<String> shingles = new HashSet<>();
+    for (int i = 0; i + 3 <= words.size(); i++) {
+      shingles.add(String.join(" ", words.subList(i, i + 3)));
+    }
+    return shingles;
+  }
+
+  private static double jaccard(Set<String> first, Set<String> second) {
+    Set<String> union = new HashSet<>(first);
+    union.addAll(second);
+    Set<String> intersection = new HashSet<>(first);
+    intersection.retainAll(second);
+    return (double) intersection.size() / union.size();
+  }
+}
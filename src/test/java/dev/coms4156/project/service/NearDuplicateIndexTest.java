@@ -0,0 +1,93 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.coms4156.project.model.DocumentSignature;
+import dev.coms4156.project.repository.DocumentSignatureRepository;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class NearDuplicateIndexTest {
+
+  private static final String REPORT = "The committee met on Monday to review the budget for "
+      + "the coming year. Spending on maintenance rose by four percent, while travel fell. "
+      + "The chair asked every department to submit revised estimates by the end of the month, "
+      + "and the minutes were approved without objection.";
+
+  @Mock
+  private DocumentSignatureRepository signatureRepository;
+
+  private NearDuplicateIndex index;
+
+  @BeforeEach
+  void setUp() {
+    index = new NearDuplicateIndex(signatureRepository, true, 128, 16, 3, 0.7);
+  }
+
+  @Test
+  void testFindNearDuplicate_FindsEditedTextOnly() {
+    index.add(1L, index.signature(REPORT));
+    index.add(2L, index.signature("A completely different text about the migration of birds "
+        + "across the northern hemisphere in the spring and the autumn of every year."));
+
+    Optional<NearDuplicateIndex.Match> match = index.findNearDuplicate(
+        index.signature(REPORT.replace("Monday", "Tuesday")));
+
+    assertTrue(match.isPresent());
+    assertEquals(1L, match.get().getDocumentId());
+    assertTrue(match.get().getSimilarity() >= 0.7);
+    assertTrue(index.findNearDuplicate(index.signature(
+        "Unrelated notes on cooking rice, pasta and beans for a large group of people."))
+        .isEmpty());
+  }
+
+  @Test
+  void testRemove_DropsDocumentFromIndex() {
+    index.add(1L, index.signature(REPORT));
+
+    index.remove(1L);
+
+    assertTrue(index.findNearDuplicate(index.signature(REPORT)).isEmpty());
+    verify(signatureRepository).deleteByDocumentIdNative(1L);
+  }
+
+  @Test
+  void testLoad_RebuildsIndexFromStoredSignatures() {
+    index.add(3L, index.signature(REPORT));
+    ArgumentCaptor<DocumentSignature> stored = ArgumentCaptor.forClass(DocumentSignature.class);
+    verify(signatureRepository).save(stored.capture());
+    DocumentSignature otherSettings = DocumentSignature.builder().documentId(4L).shingleSize(5)
+        .minHashes(stored.getValue().getMinHashes()).build();
+    when(signatureRepository.findPageAfter(eq(0L), any()))
+        .thenReturn(List.of(stored.getValue(), otherSettings));
+
+    NearDuplicateIndex restarted =
+        new NearDuplicateIndex(signatureRepository, true, 128, 16, 3, 0.7);
+    restarted.load();
+
+    assertEquals(1, restarted.size());
+    assertEquals(3L, restarted.findNearDuplicate(restarted.signature(REPORT)).get()
+        .getDocumentId());
+  }
+
+  @Test
+  void testSignature_EmptyWhenDisabled() {
+    NearDuplicateIndex disabled =
+        new NearDuplicateIndex(signatureRepository, false, 128, 16, 3, 0.7);
+
+    assertArrayEquals(new int[0], disabled.signature(REPORT));
+  }
+}
@@ -0,0 +1,89 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ParallelPdfExtractorTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testExtract_ReassemblesRangesInPageOrder() throws Exception {
+    Path pdf = writePdf(12);
+    TikaParserPool pool = new TikaParserPool("in-process", 3, 10_000L, "");
+    ParallelPdfExtractor extractor = new ParallelPdfExtractor(pool, 4, 2);
+    StringBuilder text = new StringBuilder();
+    ChunkSplitter splitter = new ChunkSplitter(40, 0);
+
+    assertTrue(extractor.extract(pdf, new NormalizingTextHandler(text, splitter)));
+
+    int previous = -1;
+    for (int page = 1; page <= 12; page++) {
+      int position = text.indexOf("Page number " + page + " ends here.");
+      assertTrue(position > previous, "page " + page + " out of order");
+      previous = position;
+    }
+    // Offsets computed while streaming point into the reassembled text
+    splitter.finish(null).forEach(chunk -> assertEquals(chunk.getTextContent(),
+        text.substring(chunk.getStartPosition(), chunk.getEndPosition()).trim()));
+    // Every range was a parse on the pool
+    assertEquals(6L, pool.getStats().getCompleted());
+    pool.shutdown();
+  }
+
+  @Test
+  void testExtract_SmallOrUnreadableDocumentsAreLeftToTika() throws Exception {
+    TikaParserPool pool = new TikaParserPool("in-process", 2, 10_000L, "");
+    ParallelPdfExtractor extractor = new ParallelPdfExtractor(pool, 4, 2);
+    StringBuilder text = new StringBuilder();
+
+    assertFalse(extractor.extract(writePdf(3), new NormalizingTextHandler(text)));
+    Path notPdf = Files.writeString(tempDir.resolve("plain.pdf"), "Not a PDF",
+        StandardCharsets.UTF_8);
+    assertFalse(extractor.extract(notPdf, new NormalizingTextHandler(text)));
+    assertEquals("", text.toString());
+    assertFalse(new ParallelPdfExtractor(pool, 0, 2).isEnabled());
+    pool.shutdown();
+  }
+
+  @Test
+  void testIsEnabled_NotInForkMode() {
+    TikaParserPool pool = new TikaParserPool("fork", 1, 0L, "");
+
+    // Ranges would run in the API's JVM, without the isolation of the child JVMs
+    assertFalse(new ParallelPdfExtractor(pool, 4, 2).isEnabled());
+    pool.shutdown();
+  }
+
+  private Path writePdf(int pages) throws IOException {
+    Path file = tempDir.resolve("document-" + pages + ".pdf");
+    try (PDDocument document = new PDDocument()) {
+      for (int page = 1; page <= pages; page++) {
+        PDPage pdPage = new PDPage();
+        document.addPage(pdPage);
+        try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+          content.beginText();
+          content.setFont(PDType1Font.HELVETICA, 12);
+          content.newLineAtOffset(72, 700);
+          content.showText("Page number " + page + " ends here.");
+          content.endText();
+        }
+      }
+      document.save(file.toFile());
+    }
+    return file;
+  }
+}
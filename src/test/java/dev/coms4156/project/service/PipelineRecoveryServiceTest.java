@@ -0,0 +1,66 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import dev.coms4156.project.repository.DocumentRepository;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class PipelineRecoveryServiceTest {
+
+  @Mock
+  private DocumentRepository documentRepository;
+
+  @Mock
+  private DocumentService documentService;
+
+  @Test
+  void testRecover_ResumesEachInterruptedDocument() {
+    PipelineRecoveryService recoveryService =
+        new PipelineRecoveryService(documentRepository, documentService, true, 0);
+    LocalDateTime cutoff = LocalDateTime.now();
+    when(documentRepository.findIdsByStatusNotUpdatedSince(
+        PipelineRecoveryService.INTERRUPTIBLE, cutoff)).thenReturn(List.of(1L, 2L, 3L));
+    when(documentService.resumeProcessing(2L))
+        .thenThrow(new IllegalStateException("Embedding failed"));
+
+    int resumed = recoveryService.recover(cutoff);
+
+    // A failing document does not stop the others from being resumed
+    assertEquals(2, resumed);
+    verify(documentService).resumeProcessing(1L);
+    verify(documentService).resumeProcessing(3L);
+  }
+
+  @Test
+  void testRecover_NothingInterrupted() {
+    PipelineRecoveryService recoveryService =
+        new PipelineRecoveryService(documentRepository, documentService, true, 0);
+    when(documentRepository.findIdsByStatusNotUpdatedSince(
+        eq(PipelineRecoveryService.INTERRUPTIBLE), any(LocalDateTime.class)))
+        .thenReturn(List.of());
+
+    assertEquals(0, recoveryService.recover(LocalDateTime.now()));
+    verifyNoInteractions(documentService);
+  }
+
+  @Test
+  void testRun_DisabledDoesNothing() {
+    PipelineRecoveryService recoveryService =
+        new PipelineRecoveryService(documentRepository, documentService, false, 0);
+
+    recoveryService.run(null);
+
+    verifyNoInteractions(documentRepository, documentService);
+  }
+}
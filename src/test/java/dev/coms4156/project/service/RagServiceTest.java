@@ -3,16 +3,19 @@ package dev.coms4156.project.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import dev.coms4156.project.model.DocumentChunk;
 import dev.coms4156.project.repository.DocumentChunkRepository;
+import dev.coms4156.project.repository.DocumentRepository;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.chat.client.ChatClient;
@@ -23,6 +26,9 @@ class RagServiceTest {
   @Mock
   private DocumentChunkRepository documentChunkRepository;
 
+  @Mock
+  private DocumentRepository documentRepository;
+
   @Mock
   private ChatClient chatClient;
 
@@ -39,7 +45,33 @@ class RagServiceTest {
 
   @BeforeEach
   void setUp() {
-    ragService = new RagService(documentChunkRepository, chatClient, embeddingService);
+    DocumentStatisticsService statisticsService =
+        new DocumentStatisticsService(documentRepository, documentChunkRepository, 300000);
+    ragService = new RagService(chatClient, embeddingService, statisticsService,
+        new ApproximateTokenCounter(), 2048);
+  }
+
+  @Test
+  void testQueryWithRag_PacksChunksIntoTokenBudget() {
+    RagService limited = new RagService(chatClient, embeddingService,
+        new DocumentStatisticsService(documentRepository, documentChunkRepository, 300000),
+        new ApproximateTokenCounter(), 6);
+    List<DocumentChunk> chunks = Arrays.asList(
+        DocumentChunk.builder().id(1L).textContent("Best match in four").build(),
+        DocumentChunk.builder().id(2L).textContent("Too long to fit the rest").build(),
+        DocumentChunk.builder().id(3L).textContent("Fits here").build());
+    when(embeddingService.findSimilarChunks("Why?", 5)).thenReturn(chunks);
+    when(chatClient.prompt()).thenReturn(requestSpec);
+    when(requestSpec.user(anyString())).thenReturn(requestSpec);
+    when(requestSpec.call()).thenReturn(responseSpec);
+    when(responseSpec.content()).thenReturn("Because.");
+
+    assertEquals("Because.", limited.queryWithRag("Why?"));
+
+    ArgumentCaptor<String> prompt = ArgumentCaptor.forClass(String.class);
+    verify(requestSpec).user(prompt.capture());
+    assertEquals("Context: Best match in four\n\nFits here\n\n\n\nQuestion: Why?",
+        prompt.getValue());
   }
 
   @Test
@@ -99,12 +131,16 @@ class RagServiceTest {
     // Given
     when(documentChunkRepository.count()).thenReturn(100L);
     when(documentChunkRepository.countByEmbeddingIsNotNull()).thenReturn(95L);
+    when(embeddingService.getModelName()).thenReturn("llama3.2");
+    when(embeddingService.getDimensions()).thenReturn(3072);
 
     // When
     Map<String, Object> result = ragService.getVectorStoreStats();
 
     // Then
     assertEquals("active", result.get("status"));
+    assertEquals("llama3.2", result.get("model"));
+    assertEquals(3072, result.get("dimensions"));
     assertEquals(100L, result.get("totalChunks"));
     assertEquals(95L, result.get("chunksWithEmbeddings"));
     assertEquals(0.95, (Double) result.get("embeddingCoverage"), 0.01);
@@ -2,21 +2,30 @@ package dev.coms4156.project.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import dev.coms4156.project.model.ChunkEmbedding;
 import dev.coms4156.project.model.Document;
 import dev.coms4156.project.model.DocumentChunk;
+import dev.coms4156.project.repository.ChunkEmbeddingRepository;
 import dev.coms4156.project.repository.DocumentChunkRepository;
+import dev.coms4156.project.repository.DocumentRepository;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -28,6 +37,7 @@ import org.springframework.ai.embedding.Embedding;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.embedding.EmbeddingRequest;
 import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.dao.DataIntegrityViolationException;
 
 @ExtendWith(MockitoExtension.class)
 class SimpleEmbeddingServiceTest {
@@ -35,6 +45,12 @@ class SimpleEmbeddingServiceTest {
   @Mock
   private DocumentChunkRepository documentChunkRepository;
 
+  @Mock
+  private DocumentRepository documentRepository;
+
+  @Mock
+  private ChunkEmbeddingRepository chunkEmbeddingRepository;
+
   @Mock
   private EmbeddingModel embeddingModel;
 
@@ -42,7 +58,12 @@ class SimpleEmbeddingServiceTest {
 
   @BeforeEach
   void setUp() {
-    embeddingService = new SimpleEmbeddingService(documentChunkRepository, embeddingModel);
+    DocumentStatisticsService statisticsService =
+        new DocumentStatisticsService(documentRepository, documentChunkRepository, 300000);
+    embeddingService = new SimpleEmbeddingService(documentChunkRepository,
+        new ChunkTextResolver(documentRepository),
+        new ChunkEmbeddingStore(chunkEmbeddingRepository, 1000, 0.01), embeddingModel,
+        statisticsService, "llama3.2", 3072, 4, 8);
   }
 
   @Test
@@ -125,6 +146,51 @@ class SimpleEmbeddingServiceTest {
     assertNotNull(result.get(1).getEmbedding());
   }
 
+  @Test
+  void testGenerateEmbeddings_ReusesEmbeddingOfSameText() {
+    Document doc = Document.builder().id(1L).build();
+    DocumentChunk chunk = DocumentChunk.builder()
+        .document(doc)
+        .chunkIndex(0)
+        .textContent("  Shared\n boilerplate   text ")
+        .build();
+    float[] stored = {0.5f, 0.25f};
+    when(chunkEmbeddingRepository.findByContentHash(
+        ChunkEmbeddingStore.contentKey("Shared boilerplate text")))
+        .thenReturn(Optional.of(ChunkEmbedding.builder().id(7L).embedding(stored).build()));
+    when(documentChunkRepository.save(chunk)).thenReturn(chunk);
+
+    List<DocumentChunk> result = embeddingService.generateEmbeddings(List.of(chunk));
+
+    assertEquals(1, result.size());
+    assertEquals(7L, result.get(0).getEmbeddingId());
+    assertSame(stored, result.get(0).getEmbedding());
+    verify(embeddingModel, never()).call(any(EmbeddingRequest.class));
+  }
+
+  @Test
+  void testGenerateEmbeddings_ResolvesChunksStoredAsOffsets() {
+    DocumentChunk chunk = DocumentChunk.builder()
+        .id(3L)
+        .documentId(7L)
+        .chunkIndex(0)
+        .startPosition(6)
+        .endPosition(19)
+        .offsetsOnly(true)
+        .build();
+    when(documentRepository.findExtractedTextById(7L))
+        .thenReturn(Optional.of("Intro. Stored once. Outro."));
+    Embedding embedding = new Embedding(new float[] {0.1f, 0.2f}, 0);
+    when(embeddingModel.call(any(EmbeddingRequest.class)))
+        .thenReturn(new EmbeddingResponse(List.of(embedding)));
+    when(documentChunkRepository.save(chunk)).thenReturn(chunk);
+
+    List<DocumentChunk> result = embeddingService.generateEmbeddings(List.of(chunk));
+
+    assertEquals(1, result.size());
+    assertEquals("Stored once.", result.get(0).getTextContent());
+  }
+
   // Boundary analysis - empty chunks list
   @Test
   void testGenerateEmbeddings_EmptyList() {
@@ -204,6 +270,36 @@ class SimpleEmbeddingServiceTest {
     }
   }
 
+  @Test
+  void testGenerateEmbeddings_BoundsRequestsPerDocument() {
+    Document doc = Document.builder().id(1L).build();
+    List<DocumentChunk> chunks = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      chunks.add(DocumentChunk.builder()
+          .id((long) i)
+          .document(doc)
+          .chunkIndex(i)
+          .textContent("Chunk " + i + " content")
+          .build());
+    }
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    when(embeddingModel.call(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      Thread.sleep(5);
+      inFlight.decrementAndGet();
+      return new EmbeddingResponse(List.of(new Embedding(new float[] {0.1f, 0.2f}, 0)));
+    });
+    when(documentChunkRepository.save(any(DocumentChunk.class)))
+        .thenAnswer(AdditionalAnswers.returnsFirstArg());
+
+    List<DocumentChunk> result = embeddingService.generateEmbeddings(chunks);
+
+    assertEquals(chunks, result);
+    assertTrue(maxInFlight.get() > 1);
+    assertTrue(maxInFlight.get() <= 4);
+  }
+
   @Test
   void testCalculateSimilarity() {
     // Given
@@ -427,6 +523,37 @@ class SimpleEmbeddingServiceTest {
     assertNotNull(result.getEmbedding());
   }
 
+  @Test
+  void testGenerateEmbedding_StoresEmbeddingAgainWhenDeletedMeanwhile() {
+    Document doc = Document.builder().id(1L).build();
+    DocumentChunk chunk = DocumentChunk.builder()
+        .document(doc)
+        .chunkIndex(0)
+        .chunkSize(12)
+        .startPosition(0)
+        .endPosition(12)
+        .textContent("Shared text.")
+        .build();
+    String key = ChunkEmbeddingStore.contentKey("Shared text.");
+    float[] stored = {0.5f, 0.25f};
+    when(chunkEmbeddingRepository.findByContentHash(key)).thenReturn(Optional.of(
+        ChunkEmbedding.builder().id(7L).contentHash(key).embedding(stored).build()));
+    // The embedding found is deleted before the chunk referring to it is inserted
+    Mockito.doThrow(new DataIntegrityViolationException("chunk embedding 7 does not exist"))
+        .doNothing()
+        .when(documentChunkRepository)
+        .insertChunkWithEmbedding(any(), any(), any(), any(), any(), any(), any());
+    when(chunkEmbeddingRepository.insertIfAbsent(eq(key), anyString())).thenReturn(8L);
+
+    DocumentChunk result = embeddingService.generateEmbedding(chunk);
+
+    assertEquals(8L, result.getEmbeddingId());
+    assertSame(stored, result.getEmbedding());
+    verify(documentChunkRepository).insertChunkWithEmbedding(0, 12, 1L, 8L, 12, 0,
+        "Shared text.");
+    verify(embeddingModel, never()).call(any(EmbeddingRequest.class));
+  }
+
   // Test embedding service failure
   @Test
   void testGenerateEmbedding_ServiceFailure() {
@@ -457,6 +584,7 @@ class SimpleEmbeddingServiceTest {
     assertEquals(80L, stats.get("chunksWithEmbeddings"));
     assertEquals(0.8, stats.get("embeddingCoverage"));
     assertEquals("llama3.2", stats.get("model"));
+    assertEquals(3072, stats.get("dimensions"));
   }
 
   // Test getEmbeddingStatistics with zero chunks
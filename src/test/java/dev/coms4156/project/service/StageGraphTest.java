@@ -0,0 +1,158 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StageGraphTest {
+
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void testRun_IndependentStagesRunConcurrently() {
+    // Each stage only finishes once the other has started
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    Runnable meet = () -> {
+      bothStarted.countDown();
+      await(bothStarted);
+    };
+    StageGraph graph = new StageGraph("test")
+        .stage("relationships", meet)
+        .stage("summary", meet);
+
+    graph.run(executor);
+
+    assertEquals(0, bothStarted.getCount());
+  }
+
+  @Test
+  void testRun_StageStartsAfterItsDependencies() {
+    List<String> order = new CopyOnWriteArrayList<>();
+    StageGraph graph = new StageGraph("test")
+        .stage("a", () -> order.add("a"))
+        .stage("b", () -> order.add("b"))
+        .stage("c", () -> order.add("c"), "a", "b");
+
+    graph.run(executor);
+
+    assertEquals(3, order.size());
+    assertEquals("c", order.get(2));
+  }
+
+  @Test
+  void testRun_DirectExecutorRunsStagesOnCallingThread() {
+    List<String> threads = new CopyOnWriteArrayList<>();
+    Runnable record = () -> threads.add(Thread.currentThread().getName());
+    StageGraph graph = new StageGraph("test")
+        .stage("a", record)
+        .optionalStage("b", () -> {
+          throw new IllegalStateException("no embeddings");
+        })
+        .stage("c", record, "a");
+
+    graph.run(Runnable::run);
+
+    assertEquals(List.of(Thread.currentThread().getName(), Thread.currentThread().getName()),
+        threads);
+    assertTrue(graph.hasFailed("b"));
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  void testRun_RequiredFailureInterruptsRunningStages() {
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicBoolean interrupted = new AtomicBoolean();
+    AtomicBoolean dependentRan = new AtomicBoolean();
+    IllegalStateException failure = new IllegalStateException("boom");
+    StageGraph graph = new StageGraph("test")
+        .stage("slow", () -> {
+          started.countDown();
+          try {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+          } catch (InterruptedException e) {
+            interrupted.set(true);
+          }
+        })
+        .stage("failing", () -> {
+          await(started);
+          throw failure;
+        })
+        .stage("after", () -> dependentRan.set(true), "slow");
+
+    IllegalStateException thrown = assertThrows(IllegalStateException.class,
+        () -> graph.run(executor));
+
+    assertSame(failure, thrown);
+    // The interrupted stage has stopped by the time the failure is rethrown
+    assertTrue(interrupted.get());
+    assertFalse(dependentRan.get());
+  }
+
+  @Test
+  void testRun_OptionalFailureOnlySkipsItsDependents() {
+    AtomicBoolean dependentRan = new AtomicBoolean();
+    AtomicBoolean otherRan = new AtomicBoolean();
+    StageGraph graph = new StageGraph("test")
+        .optionalStage("summary", () -> {
+          throw new IllegalStateException("no embeddings");
+        })
+        .stage("store", () -> dependentRan.set(true), "summary")
+        .stage("relationships", () -> otherRan.set(true));
+
+    graph.run(executor);
+
+    assertTrue(graph.hasFailed("summary"));
+    assertTrue(graph.hasFailed("store"));
+    assertFalse(graph.hasFailed("relationships"));
+    assertFalse(dependentRan.get());
+    assertTrue(otherRan.get());
+  }
+
+  @Test
+  void testStage_RejectsUnknownOrDuplicateStages() {
+    StageGraph graph = new StageGraph("test").stage("a", () -> { });
+
+    assertThrows(IllegalArgumentException.class, () -> graph.stage("b", () -> { }, "c"));
+    assertThrows(IllegalArgumentException.class, () -> graph.stage("a", () -> { }));
+  }
+
+  @Test
+  void testRun_RunsOnce() {
+    StageGraph graph = new StageGraph("test").stage("a", () -> { });
+    graph.run(executor);
+
+    assertThrows(IllegalStateException.class, () -> graph.run(executor));
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
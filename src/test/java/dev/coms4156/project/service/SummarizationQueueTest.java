@@ -0,0 +1,87 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SummarizationQueueTest {
+
+  private DocumentSummarizationService summarizationService;
+  private SummarizationQueue queue;
+  private final List<Long> summarized = new CopyOnWriteArrayList<>();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final CountDownLatch firstStarted = new CountDownLatch(1);
+  private final CountDownLatch finished = new CountDownLatch(3);
+
+  @BeforeEach
+  void setUp() {
+    summarizationService = mock(DocumentSummarizationService.class);
+    doAnswer(invocation -> {
+      Long id = invocation.getArgument(0);
+      if (id == 1L) {
+        firstStarted.countDown();
+        release.await(5, TimeUnit.SECONDS);
+      }
+      summarized.add(id);
+      finished.countDown();
+      return "summary";
+    }).when(summarizationService).summarizeDocument(anyLong());
+
+    queue = new SummarizationQueue(summarizationService, 1);
+  }
+
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    queue.shutdown();
+  }
+
+  @Test
+  void testEnqueue_SummarizesDocument() {
+    release.countDown();
+
+    queue.enqueue(1L);
+
+    verify(summarizationService, timeout(2000)).summarizeDocument(1L);
+  }
+
+  @Test
+  void testRecordAccess_OpenedDocumentsAreSummarizedFirst() throws Exception {
+    queue.enqueue(1L);
+    assertTrue(firstStarted.await(2, TimeUnit.SECONDS));
+
+    // The single worker is busy, so these wait in the queue
+    queue.enqueue(2L);
+    queue.enqueue(3L);
+    queue.recordAccess(3L);
+    assertEquals(3, queue.getPendingCount());
+
+    release.countDown();
+    assertTrue(finished.await(2, TimeUnit.SECONDS));
+
+    assertEquals(List.of(1L, 3L, 2L), summarized);
+  }
+
+  @Test
+  void testEnqueue_IgnoresDuplicatesWhilePending() throws Exception {
+    queue.enqueue(1L);
+    assertTrue(firstStarted.await(2, TimeUnit.SECONDS));
+
+    queue.enqueue(2L);
+    queue.enqueue(2L);
+
+    assertEquals(2, queue.getPendingCount());
+  }
+}
@@ -0,0 +1,110 @@
+package dev.coms4156.project.service;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark comparing {@link TextNormalizer} with the {@code replaceAll} chain it replaced,
+ * on 1 MB and 10 MB of text shaped like extractor output. Run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=dev.coms4156.project.service.TextNormalizerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextNormalizerBenchmark {
+
+  private static final String[] PIECES = {
+      "word", "Sentence.", " ", "  ", "\t", " \t ", "\n", "\r\n", "\r", "\n\n\n", "\r\n\r\n\r\n"
+  };
+
+  @Param({"1048576", "10485760"})
+  public int size;
+
+  private String text;
+
+  /**
+   * Builds the input text once per benchmark run.
+   */
+  @Setup
+  public void setUp() {
+    text = sampleText(size, new Random(42));
+  }
+
+  @Benchmark
+  public String regexChain() {
+    return regexNormalize(text);
+  }
+
+  @Benchmark
+  public String singlePass() {
+    return TextNormalizer.normalize(text);
+  }
+
+  /**
+   * Normalizes text the way extraction did before {@link TextNormalizer}: the baseline of the
+   * benchmark, and the reference its output is checked against.
+   *
+   * @param rawText the raw text.
+   * @return the normalized text.
+   */
+  static String regexNormalize(String rawText) {
+    if (rawText == null || rawText.isBlank()) {
+      return "";
+    }
+    return rawText
+        .replaceAll("\\r\\n", "\n")
+        .replaceAll("\\r", "\n")
+        .replaceAll("\\n{3,}", "\n\n")
+        .replaceAll("[ \\t]+", " ")
+        .trim();
+  }
+
+  /**
+   * Generates text of the given length from words and whitespace runs typical of PDF and
+   * office extraction output.
+   *
+   * @param length the length of the text.
+   * @param random the source of randomness.
+   * @return the text.
+   */
+  static String sampleText(int length, Random random) {
+    StringBuilder text = new StringBuilder(length + 16);
+    while (text.length() < length) {
+      // Mostly words, so whitespace runs are as frequent as in real documents
+      text.append(random.nextInt(3) == 0 ? PIECES[random.nextInt(PIECES.length)]
+          : PIECES[random.nextInt(2)]);
+    }
+    text.setLength(length);
+    return text.toString();
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused.
+   * @throws RunnerException if the benchmark cannot be run.
+   */
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(TextNormalizerBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
@@ -0,0 +1,43 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TextNormalizerTest {
+
+  @Test
+  void testNormalize_CollapsesWhitespace() {
+    assertEquals("Hello world\n\nBye",
+        TextNormalizer.normalize(" \r\n Hello \t  world\r\r\n\n\rBye \n"));
+  }
+
+  @Test
+  void testNormalize_BlankOrNull() {
+    assertEquals("", TextNormalizer.normalize(null));
+    assertEquals("", TextNormalizer.normalize(" \t\r\n\f "));
+  }
+
+  @Test
+  void testNormalize_MatchesRegexChain() {
+    Random random = new Random(7);
+    String alphabet = "ab \t\r\n\f.";
+    for (int run = 0; run < 2000; run++) {
+      StringBuilder raw = new StringBuilder();
+      for (int i = random.nextInt(40); i > 0; i--) {
+        raw.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      String text = raw.toString();
+      assertEquals(TextNormalizerBenchmark.regexNormalize(text), TextNormalizer.normalize(text),
+          () -> "Mismatch for " + text.replace("\r", "\\r").replace("\n", "\\n"));
+    }
+  }
+
+  @Test
+  void testNormalize_MatchesRegexChainOnBenchmarkInput() {
+    String text = TextNormalizerBenchmark.sampleText(1 << 16, new Random(42));
+
+    assertEquals(TextNormalizerBenchmark.regexNormalize(text), TextNormalizer.normalize(text));
+  }
+}
@@ -0,0 +1,129 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.coms4156.project.dtos.ExtractionStats;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.sax.BodyContentHandler;
+import org.junit.jupiter.api.Test;
+
+class TikaParserPoolTest {
+
+  @Test
+  void testParse_CountsCompletedParses() throws Exception {
+    TikaParserPool pool = new TikaParserPool("in-process", 2, 5000L, "");
+    BodyContentHandler handler = new BodyContentHandler();
+
+    pool.parse(new ByteArrayInputStream("Pooled text".getBytes(StandardCharsets.UTF_8)),
+        handler, new Metadata());
+
+    assertEquals("Pooled text", handler.toString().trim());
+    ExtractionStats stats = pool.getStats();
+    assertEquals("in-process", stats.getMode());
+    assertEquals(2, stats.getPoolSize());
+    assertEquals(1L, stats.getCompleted());
+    assertEquals(0L, stats.getTimedOut());
+    pool.shutdown();
+  }
+
+  @Test
+  void testParse_TimesOutAndFreesTheParser() throws Exception {
+    TikaParserPool pool = new TikaParserPool("in-process", 1, 100L, "");
+
+    TikaException e = assertThrows(TikaException.class,
+        () -> pool.parse(new StallingInputStream(), new BodyContentHandler(), new Metadata()));
+    assertTrue(e.getMessage().contains("timed out"));
+    assertEquals(1L, pool.getStats().getTimedOut());
+    assertEquals(1L, pool.getStats().getFailed());
+
+    // The interrupted parse gives its thread back to the next document
+    BodyContentHandler handler = new BodyContentHandler();
+    pool.parse(new ByteArrayInputStream("Next".getBytes(StandardCharsets.UTF_8)), handler,
+        new Metadata());
+    assertEquals("Next", handler.toString().trim());
+    pool.shutdown();
+  }
+
+  @Test
+  void testParse_ReplacesThreadOfStuckParse() throws Exception {
+    TikaParserPool pool = new TikaParserPool("in-process", 1, 100L, "");
+    CountDownLatch release = new CountDownLatch(1);
+
+    assertThrows(TikaException.class, () -> pool.parse(new StuckInputStream(release),
+        new BodyContentHandler(), new Metadata()));
+    assertEquals(1, pool.getStats().getStuckParses());
+
+    // The stuck parse ignored the interrupt, but a replacement thread parses the next document
+    BodyContentHandler handler = new BodyContentHandler();
+    pool.parse(new ByteArrayInputStream("Next".getBytes(StandardCharsets.UTF_8)), handler,
+        new Metadata());
+    assertEquals("Next", handler.toString().trim());
+
+    // Once the stuck parse ends, its replacement is retired
+    release.countDown();
+    long deadline = System.currentTimeMillis() + 5000L;
+    while (pool.getStats().getStuckParses() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+    assertEquals(0, pool.getStats().getStuckParses());
+    pool.shutdown();
+  }
+
+  @Test
+  void testMode_FromProperty() {
+    assertEquals(TikaParserPool.Mode.IN_PROCESS, TikaParserPool.Mode.fromProperty("in-process"));
+    assertEquals(TikaParserPool.Mode.FORK, TikaParserPool.Mode.fromProperty(" Fork "));
+    assertThrows(IllegalArgumentException.class,
+        () -> TikaParserPool.Mode.fromProperty("remote"));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TikaParserPool("in-process", 0, 0L, ""));
+  }
+
+  /**
+   * A stream that never delivers data, standing in for a parser stuck on a document.
+   */
+  private static final class StallingInputStream extends InputStream {
+    @Override
+    public int read() throws IOException {
+      try {
+        Thread.sleep(60_000L);
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("Interrupted");
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * A stream that ignores interrupts until released, standing in for a parser that never
+   * checks for them.
+   */
+  private static final class StuckInputStream extends InputStream {
+    private final CountDownLatch release;
+
+    StuckInputStream(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public int read() {
+      while (true) {
+        try {
+          release.await();
+          return -1;
+        } catch (InterruptedException e) {
+          // Keeps waiting, as a parser stuck in a tight loop would
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package dev.coms4156.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.coms4156.project.model.DocumentChunk;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TokenBudgetChunkingStrategyTest {
+
+  private final TokenCounter counter = new ApproximateTokenCounter();
+
+  private static List<DocumentChunk> chunk(ChunkingStrategy strategy, String text) {
+    return new ChunkSplitter(strategy, true).append(text).finish(null);
+  }
+
+  @Test
+  void testCut_FillsTheTokenBudget() {
+    String text = "alpha beta gamma delta ".repeat(100);
+
+    List<DocumentChunk> chunks = chunk(new TokenBudgetChunkingStrategy(counter, 50, 0), text);
+
+    assertEquals(8, chunks.size());
+    for (DocumentChunk chunk : chunks) {
+      assertTrue(counter.countTokens(chunk.getTextContent()) <= 50);
+    }
+    assertEquals(50, counter.countTokens(chunks.get(0).getTextContent()));
+    assertEquals(chunks.get(0).getEndPosition(), chunks.get(1).getStartPosition());
+  }
+
+  @Test
+  void testCut_PrefersSentenceEnds() {
+    String text = "One two three four five six seven eight. Nine ten eleven.";
+
+    List<DocumentChunk> chunks = chunk(new TokenBudgetChunkingStrategy(counter, 10, 0), text);
+
+    assertEquals("One two three four five six seven eight.", chunks.get(0).getTextContent());
+    assertEquals("Nine ten eleven.", chunks.get(1).getTextContent());
+  }
+
+  @Test
+  void testCut_OverlapsWholeWords() {
+    String text = "one two three four five six seven eight nine ten";
+
+    List<DocumentChunk> chunks = chunk(new TokenBudgetChunkingStrategy(counter, 6, 2), text);
+
+    assertEquals("one two three four five six", chunks.get(0).getTextContent());
+    assertEquals("five six seven eight nine ten", chunks.get(1).getTextContent());
+    assertEquals(2, chunks.size());
+  }
+
+  @Test
+  void testCut_SplitsWordsLongerThanTheBudget() {
+    String text = "x".repeat(100) + " tail";
+
+    List<DocumentChunk> chunks = chunk(new TokenBudgetChunkingStrategy(counter, 5, 0), text);
+
+    assertEquals("x".repeat(20), chunks.get(0).getTextContent());
+    assertEquals("tail", chunks.get(chunks.size() - 1).getTextContent());
+  }
+
+  @Test
+  void testStructureAware_EndsAtParagraphs() {
+    String text = "# Setup\n\nInstall the tools and check the versions. Then build it.\n\n"
+        + "# Usage\n\nRun the service and call the API.";
+
+    List<DocumentChunk> chunks =
+        chunk(new StructureAwareChunkingStrategy(counter, 20, 0), text);
+
+    assertEquals("# Setup\n\nInstall the tools and check the versions. Then build it.",
+        chunks.get(0).getTextContent());
+    assertTrue(chunks.get(1).getTextContent().startsWith("# Usage"));
+  }
+
+  @Test
+  void testApproximateTokenCounter() {
+    assertEquals(0, counter.countTokens(null));
+    assertEquals(2, counter.countTokens("hello world"));
+    assertEquals(3, counter.countTokens("tokenization"));
+    assertEquals(3, counter.countTokens("1234567"));
+    assertEquals(4, counter.countTokens("a, b\n\n"));
+    assertEquals(4, counter.countTokens("\u65e5\u672c\u8a9e.", 0, 4));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TokenBudgetChunkingStrategy(counter, 0, 0));
+  }
+}